@@ -0,0 +1,112 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.spacious_team.broker.pojo.Security;
+import org.spacious_team.broker.pojo.SecurityType;
+import ru.investbook.api.CreateResult;
+import ru.investbook.api.SecurityRestController;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Saving of objects one by one, each in own transaction, compared with saving by chunk in one transaction,
+ * as done by batch POST endpoints. New objects are inserted, existing objects are selected only (conflict).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EntityRepositoryServiceBenchmark {
+    private static final int CHUNK_SIZE = 500;
+    private final AtomicInteger counter = new AtomicInteger();
+    private SecurityRestController service;
+    private List<Security> existingSecurities;
+    private List<Security> newSecurities;
+
+    @Setup(Level.Trial)
+    public void setUp(InvestbookState state) {
+        service = state.getBean(SecurityRestController.class);
+        existingSecurities = service.createAllIfAbsentAndGet(createSecurities())
+                .stream()
+                .map(CreateResult::object)
+                .toList();
+    }
+
+    @Setup(Level.Invocation)
+    public void createNewSecurities() {
+        newSecurities = createSecurities();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public void createIfAbsent(Blackhole blackhole) {
+        for (Security security : newSecurities) {
+            blackhole.consume(service.createIfAbsent(security));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public List<CreateResult<Security>> createAllIfAbsentAndGet() {
+        return service.createAllIfAbsentAndGet(newSecurities);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public void createIfAbsentConflict(Blackhole blackhole) {
+        for (Security security : existingSecurities) {
+            blackhole.consume(service.createIfAbsent(security));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNK_SIZE)
+    public List<CreateResult<Security>> createAllIfAbsentAndGetConflict() {
+        return service.createAllIfAbsentAndGet(existingSecurities);
+    }
+
+    private List<Security> createSecurities() {
+        return IntStream.range(0, CHUNK_SIZE)
+                .mapToObj(_ -> Security.builder()
+                        .type(SecurityType.STOCK)
+                        .name("benchmark-" + counter.getAndIncrement())
+                        .build())
+                .toList();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.investbook.report.ForeignExchangeRateService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static ru.investbook.benchmark.SyntheticPortfolioGenerator.FROM_DATE;
+import static ru.investbook.benchmark.SyntheticPortfolioGenerator.TO_DATE;
+
+/**
+ * Exchange rate lookups by random dates with warm cache, as done by report table factories
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ForeignExchangeRateBenchmark {
+    private static final int LOOKUPS = 1000;
+    private final LocalDate[] dates = new LocalDate[LOOKUPS];
+    private ForeignExchangeRateService foreignExchangeRateService;
+
+    @Setup(Level.Trial)
+    public void setUp(InvestbookState state) {
+        foreignExchangeRateService = state.getBean(ForeignExchangeRateService.class);
+        Random random = new Random(42);
+        int days = (int) ChronoUnit.DAYS.between(FROM_DATE, TO_DATE);
+        for (int i = 0; i < LOOKUPS; i++) {
+            dates[i] = FROM_DATE.plusDays(random.nextInt(days));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getExchangeRate(Blackhole blackhole) {
+        for (LocalDate date : dates) {
+            blackhole.consume(foreignExchangeRateService.getExchangeRate("USD", "RUB", date));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void convertValueToCurrency(Blackhole blackhole) {
+        BigDecimal value = BigDecimal.valueOf(1000);
+        for (int i = 0; i < LOOKUPS; i++) {
+            blackhole.consume(foreignExchangeRateService.convertValueToCurrency(value, "RUB", "USD"));
+        }
+    }
+}
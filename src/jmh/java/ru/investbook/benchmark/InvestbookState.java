@@ -0,0 +1,90 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.spacious_team.broker.pojo.Security;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.investbook.InvestbookApplication;
+import ru.investbook.parser.InvestbookApiClient;
+import ru.investbook.parser.SecurityRegistrar;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Application with in-memory H2 database filled by synthetic portfolio
+ */
+@State(Scope.Benchmark)
+public class InvestbookState {
+
+    @Param("20")
+    public int securities;
+
+    @Param("500")
+    public int trades;
+
+    @Param("40")
+    public int coupons;
+
+    @Param("2")
+    public int splits;
+
+    private ConfigurableApplicationContext context;
+    private List<Security> generatedSecurities;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(InvestbookApplication.class)
+                .run("--spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() +
+                                ";mode=mysql;non_keywords=value;DB_CLOSE_DELAY=-1",
+                        "--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn",
+                        "--investbook.open-home-page-after-start=false",
+                        "--investbook.report-backup=false");
+        generatedSecurities = new SyntheticPortfolioGenerator(
+                getBean(InvestbookApiClient.class),
+                getBean(SecurityRegistrar.class))
+                .generate(securities, trades, coupons, splits);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public <T> List<T> getBeans(Class<T> type) {
+        return List.copyOf(context.getBeansOfType(type).values());
+    }
+
+    public List<Security> getSecurities() {
+        return generatedSecurities;
+    }
+}
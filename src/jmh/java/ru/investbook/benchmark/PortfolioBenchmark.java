@@ -0,0 +1,148 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.spacious_team.broker.pojo.Portfolio;
+import org.spacious_team.broker.pojo.Security;
+import org.spacious_team.broker.pojo.SecurityEventCashFlow;
+import org.spacious_team.broker.pojo.SecurityQuote;
+import org.spacious_team.broker.pojo.Transaction;
+import ru.investbook.report.FifoPositions;
+import ru.investbook.report.FifoPositionsFactory;
+import ru.investbook.report.FifoPositionsFilter;
+import ru.investbook.report.ForeignExchangeRateService;
+import ru.investbook.report.InternalRateOfReturn;
+import ru.investbook.report.PaidInterestFactory;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static ru.investbook.benchmark.SyntheticPortfolioGenerator.FROM_DATE;
+import static ru.investbook.benchmark.SyntheticPortfolioGenerator.PORTFOLIO;
+import static ru.investbook.benchmark.SyntheticPortfolioGenerator.TO_DATE;
+
+/**
+ * Position and profit calculations for all securities of synthetic portfolio.
+ * Caches are dropped before each invocation, so DB reads are included where caches are used by application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PortfolioBenchmark {
+    private static final Portfolio portfolio = Portfolio.builder().id(PORTFOLIO).build();
+    private static final Set<String> portfolios = Set.of(PORTFOLIO);
+    private static final Instant fromDate = FROM_DATE.atStartOfDay(ZoneId.systemDefault()).toInstant();
+    private static final Instant toDate = TO_DATE.atStartOfDay(ZoneId.systemDefault()).toInstant();
+    private List<Security> securities;
+    private final List<SecurityQuote> quotes = new ArrayList<>();
+    private final Collection<Collection<Transaction>> transactions = new ArrayList<>();
+    private final Collection<Collection<SecurityEventCashFlow>> redemptions = new ArrayList<>();
+    private FifoPositionsFactory fifoPositionsFactory;
+    private PaidInterestFactory paidInterestFactory;
+    private InternalRateOfReturn internalRateOfReturn;
+    private ForeignExchangeRateService foreignExchangeRateService;
+
+    @Setup(Level.Trial)
+    public void setUp(InvestbookState state) {
+        securities = state.getSecurities();
+        fifoPositionsFactory = state.getBean(FifoPositionsFactory.class);
+        paidInterestFactory = state.getBean(PaidInterestFactory.class);
+        internalRateOfReturn = state.getBean(InternalRateOfReturn.class);
+        foreignExchangeRateService = state.getBean(ForeignExchangeRateService.class);
+        for (Security security : securities) {
+            FifoPositions positions = fifoPositionsFactory.get(security, FifoPositionsFilter.of(portfolio));
+            transactions.add(List.copyOf(positions.getTransactions()));
+            redemptions.add(List.copyOf(positions.getRedemptions()));
+            quotes.add(SecurityQuote.builder()
+                    .security(security.getId())
+                    .timestamp(toDate)
+                    .quote(BigDecimal.valueOf(100))
+                    .price(BigDecimal.valueOf(1000))
+                    .accruedInterest(BigDecimal.ZERO)
+                    .currency("RUB")
+                    .build());
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void invalidateCaches() {
+        fifoPositionsFactory.invalidateCache();
+        foreignExchangeRateService.invalidateCache();
+    }
+
+    /**
+     * FIFO positions construction from transactions loaded to memory
+     */
+    @Benchmark
+    public void fifoPositions(Blackhole blackhole) {
+        var redemptionIterator = redemptions.iterator();
+        for (Collection<Transaction> securityTransactions : transactions) {
+            blackhole.consume(new FifoPositions(
+                    new LinkedList<>(securityTransactions),
+                    new LinkedList<>(redemptionIterator.next())));
+        }
+    }
+
+    /**
+     * FIFO positions construction including DB read
+     */
+    @Benchmark
+    public void fifoPositionsFactory(Blackhole blackhole) {
+        for (Security security : securities) {
+            blackhole.consume(fifoPositionsFactory.get(security, FifoPositionsFilter.of(portfolio)));
+        }
+    }
+
+    @Benchmark
+    public void paidInterest(Blackhole blackhole) {
+        for (Security security : securities) {
+            blackhole.consume(paidInterestFactory.get(portfolio, security, fromDate, toDate));
+        }
+    }
+
+    @Benchmark
+    public void internalRateOfReturn(Blackhole blackhole) {
+        var quoteIterator = quotes.iterator();
+        for (Security security : securities) {
+            blackhole.consume(internalRateOfReturn.calc(portfolios, security, quoteIterator.next(), fromDate, toDate));
+        }
+    }
+}
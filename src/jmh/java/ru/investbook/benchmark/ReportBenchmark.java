@@ -0,0 +1,107 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.benchmark;
+
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.investbook.report.FifoPositionsFactory;
+import ru.investbook.report.ForeignExchangeRateService;
+import ru.investbook.report.ViewFilter;
+import ru.investbook.report.excel.CellStyles;
+import ru.investbook.report.excel.ExcelTable;
+import ru.investbook.report.excel.ExcelTableView;
+import ru.investbook.report.excel.ExcelView;
+import ru.investbook.report.html.HtmlView;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end report build for synthetic portfolio. Report is written to null output stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+    private final ViewFilter filter = ViewFilter.builder().build();
+    private final Collection<ExcelTable> excelTables = new ArrayList<>();
+    private ExcelView excelView;
+    private HtmlView htmlView;
+    private FifoPositionsFactory fifoPositionsFactory;
+    private ForeignExchangeRateService foreignExchangeRateService;
+
+    @Setup(Level.Trial)
+    public void setUp(InvestbookState state) {
+        excelView = state.getBean(ExcelView.class);
+        htmlView = state.getBean(HtmlView.class);
+        fifoPositionsFactory = state.getBean(FifoPositionsFactory.class);
+        foreignExchangeRateService = state.getBean(ForeignExchangeRateService.class);
+        state.getBeans(ExcelTableView.class)
+                .forEach(view -> excelTables.addAll(view.createExcelTables(filter)));
+    }
+
+    /**
+     * Report is built after data update, so caches are dropped
+     */
+    @Setup(Level.Invocation)
+    public void invalidateCaches() {
+        fifoPositionsFactory.invalidateCache();
+        foreignExchangeRateService.invalidateCache();
+    }
+
+    @Benchmark
+    public void excelReport() {
+        excelView.create(OutputStream.nullOutputStream(), filter);
+    }
+
+    @Benchmark
+    public void htmlReport() throws Exception {
+        htmlView.create(OutputStream.nullOutputStream(), filter);
+    }
+
+    /**
+     * Writes prepared report tables to Excel sheets by {@link ExcelTableView#createSheet}
+     */
+    @Benchmark
+    public void excelSheetWrite() throws IOException {
+        SXSSFWorkbook book = new SXSSFWorkbook(-1);
+        try (book) {
+            CellStyles styles = new CellStyles(book);
+            excelTables.forEach(table -> table.writeTo(book, styles));
+        } finally {
+            book.dispose();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spacious_team.broker.pojo.Security;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.investbook.entity.SecurityQuoteEntity;
+import ru.investbook.repository.SecurityQuoteRepository;
+import ru.investbook.repository.specs.SecurityQuoteSearchSpecification;
+import ru.investbook.web.forms.model.SecurityQuoteModel;
+import ru.investbook.web.forms.model.WindowWrapperModel;
+import ru.investbook.web.forms.model.filter.SecurityQuoteFormFilterModel;
+import ru.investbook.web.forms.service.SecurityQuoteFormsService;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.domain.Sort.Order.asc;
+import static org.springframework.data.domain.Sort.Order.desc;
+
+/**
+ * Security quotes web page selection by keyset scrolling compared with OFFSET pagination.
+ * Keyset page cost should not depend on page number.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScrollBenchmark {
+    private static final int PAGE_SIZE = 20;
+    private static final int QUOTES_PER_SECURITY = 5_000;
+    private static final LocalDate QUOTES_FROM_DATE = LocalDate.of(1990, 1, 1); // before synthetic portfolio quotes
+
+    @Param({"1", "5000"})
+    public int page;
+
+    private SecurityQuoteFormsService securityQuoteFormsService;
+    private SecurityQuoteRepository securityQuoteRepository;
+    private final SecurityQuoteFormFilterModel filter = new SecurityQuoteFormFilterModel();
+    private final SecurityQuoteSearchSpecification spec = SecurityQuoteSearchSpecification.of(null, null, null);
+    private PageRequest pageRequest;
+
+    @Setup(Level.Trial)
+    public void setUp(InvestbookState state) {
+        securityQuoteFormsService = state.getBean(SecurityQuoteFormsService.class);
+        securityQuoteRepository = state.getBean(SecurityQuoteRepository.class);
+        insertQuotes(state);
+
+        filter.setPageSize(PAGE_SIZE);
+        String cursor = null;
+        for (int i = 1; i < page; i++) { // follows "next" links as a user does
+            filter.setCursor(cursor);
+            cursor = new WindowWrapperModel<>(securityQuoteFormsService.getPage(filter), cursor).getNext();
+        }
+        filter.setCursor(cursor);
+
+        Sort sort = Sort.by(desc("timestamp"), asc("security.id"), asc("id"));
+        pageRequest = PageRequest.of(page - 1, PAGE_SIZE, sort);
+    }
+
+    private static void insertQuotes(InvestbookState state) {
+        JdbcTemplate jdbcTemplate = state.getBean(JdbcTemplate.class);
+        for (Security security : state.getSecurities()) {
+            List<Object[]> rows = new ArrayList<>(QUOTES_PER_SECURITY);
+            for (int i = 0; i < QUOTES_PER_SECURITY; i++) {
+                Timestamp timestamp = Timestamp.from(QUOTES_FROM_DATE.plusDays(i).atStartOfDay().toInstant(ZoneOffset.UTC));
+                rows.add(new Object[]{security.getId(), timestamp, BigDecimal.valueOf(100 + i % 50)});
+            }
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO `security_quote` (`security`, `timestamp`, `quote`) VALUES (?, ?, ?)", rows);
+        }
+    }
+
+    @Benchmark
+    public Window<SecurityQuoteModel> keysetPage() {
+        return securityQuoteFormsService.getPage(filter);
+    }
+
+    /**
+     * Previous implementation of web page selection, selected by OFFSET with total rows count
+     */
+    @Benchmark
+    public Page<SecurityQuoteEntity> offsetPage() {
+        return securityQuoteRepository.findAll(spec, pageRequest);
+    }
+}
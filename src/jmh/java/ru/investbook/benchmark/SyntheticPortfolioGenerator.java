@@ -0,0 +1,187 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import org.spacious_team.broker.pojo.CashFlowType;
+import org.spacious_team.broker.pojo.ForeignExchangeRate;
+import org.spacious_team.broker.pojo.Portfolio;
+import org.spacious_team.broker.pojo.Security;
+import org.spacious_team.broker.pojo.SecurityEventCashFlow;
+import org.spacious_team.broker.pojo.SecurityQuote;
+import org.spacious_team.broker.pojo.SecurityType;
+import org.spacious_team.broker.report_parser.api.AbstractTransaction;
+import org.spacious_team.broker.report_parser.api.SecurityTransaction;
+import ru.investbook.parser.InvestbookApiClient;
+import ru.investbook.parser.SecurityRegistrar;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static java.math.BigDecimal.ZERO;
+import static org.spacious_team.broker.pojo.SecurityType.BOND;
+import static org.spacious_team.broker.pojo.SecurityType.STOCK;
+
+/**
+ * Generates reproducible portfolio: N securities (stocks and bonds), M trades per security,
+ * K coupons or dividends per security and S splits per stock. USDRUB exchange rate is generated for each day.
+ */
+@RequiredArgsConstructor
+class SyntheticPortfolioGenerator {
+    static final String PORTFOLIO = "benchmark";
+    static final LocalDate FROM_DATE = LocalDate.of(2015, 1, 1);
+    static final LocalDate TO_DATE = LocalDate.of(2024, 1, 1);
+    private static final ZoneId zoneId = ZoneId.systemDefault();
+    private final InvestbookApiClient api;
+    private final SecurityRegistrar securityRegistrar;
+    private final Random random = new Random(42);
+
+    /**
+     * @return generated securities
+     */
+    List<Security> generate(int securities, int trades, int coupons, int splits) {
+        api.addPortfolio(Portfolio.builder().id(PORTFOLIO).build());
+        generateExchangeRates();
+        List<Security> result = new ArrayList<>(securities);
+        for (int i = 0; i < securities; i++) {
+            SecurityType type = (i % 2 == 0) ? STOCK : BOND;
+            Security security = declareSecurity(i, type);
+            generateTrades(security, trades, coupons, (type == STOCK) ? splits : 0);
+            generateQuote(security);
+            result.add(security);
+        }
+        return result;
+    }
+
+    private void generateExchangeRates() {
+        double rate = 60;
+        for (LocalDate date = FROM_DATE; date.isBefore(TO_DATE); date = date.plusDays(1)) {
+            rate = Math.max(30, rate + random.nextGaussian());
+            api.addForeignExchangeRate(ForeignExchangeRate.builder()
+                    .date(date)
+                    .currencyPair("USDRUB")
+                    .rate(BigDecimal.valueOf(rate))
+                    .build());
+        }
+    }
+
+    private Security declareSecurity(int i, SecurityType type) {
+        String isin = String.format("RU%010d", i);
+        Security.SecurityBuilder builder = Security.builder()
+                .isin(isin)
+                .name(type + " " + i)
+                .type(type);
+        int id = (type == STOCK) ?
+                securityRegistrar.declareStockByIsin(isin, () -> builder) :
+                securityRegistrar.declareBondByIsin(isin, () -> builder);
+        return builder.id(id).build();
+    }
+
+    /**
+     * Events are distributed uniformly over period, position count is never negative
+     */
+    private void generateTrades(Security security, int trades, int coupons, int splits) {
+        int events = trades + coupons + splits;
+        long periodSeconds = TO_DATE.atStartOfDay(zoneId).toEpochSecond() - FROM_DATE.atStartOfDay(zoneId).toEpochSecond();
+        long step = Math.max(1, periodSeconds / (events + 1));
+        Instant timestamp = FROM_DATE.atStartOfDay(zoneId).toInstant();
+        Collection<AbstractTransaction> transactions = new ArrayList<>(trades + 2 * splits);
+        int position = 0;
+        int tradeCnt = 0, couponCnt = 0, splitCnt = 0;
+        for (int i = 0; i < events; i++) {
+            timestamp = timestamp.plusSeconds(step);
+            String tradeId = security.getId() + "-" + i;
+            int event = random.nextInt(events - i);
+            if (event < trades - tradeCnt || position == 0) {
+                tradeCnt++;
+                int count = (position == 0 || random.nextInt(3) != 0) ?
+                        (1 + random.nextInt(100)) :
+                        -(1 + random.nextInt(position));
+                position += count;
+                transactions.add(getTransaction(security, tradeId, timestamp, count));
+            } else if (event < trades - tradeCnt + coupons - couponCnt) {
+                couponCnt++;
+                api.addSecurityEventCashFlow(SecurityEventCashFlow.builder()
+                        .portfolio(PORTFOLIO)
+                        .security(security.getId())
+                        .timestamp(timestamp)
+                        .count(position)
+                        .eventType((security.getType() == BOND) ? CashFlowType.COUPON : CashFlowType.DIVIDEND)
+                        .value(BigDecimal.valueOf(position).multiply(BigDecimal.valueOf(10)))
+                        .currency("RUB")
+                        .build());
+            } else {
+                splitCnt++;
+                transactions.add(getSplitTransaction(security, tradeId + "w", timestamp, -position));
+                transactions.add(getSplitTransaction(security, tradeId + "d", timestamp, 2 * position));
+                position *= 2;
+            }
+        }
+        api.addTransactions(transactions);
+    }
+
+    private SecurityTransaction getTransaction(Security security, String tradeId, Instant timestamp, int count) {
+        BigDecimal price = BigDecimal.valueOf(900 + random.nextInt(200));
+        BigDecimal value = price.multiply(BigDecimal.valueOf(-count));
+        return SecurityTransaction.builder()
+                .tradeId(tradeId)
+                .portfolio(PORTFOLIO)
+                .security(security.getId())
+                .timestamp(timestamp)
+                .count(count)
+                .value(value)
+                .accruedInterest(ZERO)
+                .fee(value.abs().multiply(BigDecimal.valueOf(-0.0005)))
+                .valueCurrency("RUB")
+                .feeCurrency("RUB")
+                .build();
+    }
+
+    private static SecurityTransaction getSplitTransaction(Security security, String tradeId,
+                                                           Instant timestamp, int count) {
+        return SecurityTransaction.builder()
+                .tradeId(tradeId)
+                .portfolio(PORTFOLIO)
+                .security(security.getId())
+                .timestamp(timestamp)
+                .count(count)
+                .build();
+    }
+
+    private void generateQuote(Security security) {
+        SecurityQuote.SecurityQuoteBuilder builder = SecurityQuote.builder()
+                .security(security.getId())
+                .timestamp(TO_DATE.atStartOfDay(zoneId).toInstant())
+                .currency("RUB");
+        if (security.getType() == BOND) {
+            builder.quote(BigDecimal.valueOf(100))
+                    .price(BigDecimal.valueOf(1000))
+                    .accruedInterest(ZERO);
+        } else {
+            builder.quote(BigDecimal.valueOf(1000));
+        }
+        api.addSecurityQuote(builder.build());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application wide named bounded thread pools. Pool metrics (active threads, queued tasks, task execution
+ * and queue wait time) are exposed by Micrometer as "executor.*" meters with tag "name".
+ * Tasks should not wait for tasks submitted to the same pool.
+ */
+@Component
+@Slf4j
+public class InvestbookExecutors {
+    private final Collection<ExecutorService> executors = new ArrayList<>();
+    private final Duration shutdownTimeout;
+    /**
+     * Builds report sheets
+     */
+    @Getter
+    private final ExecutorService reportExecutor;
+    /**
+     * Builds rows of report sheet, tasks are submitted by {@link #reportExecutor} tasks
+     */
+    @Getter
+    private final ExecutorService reportRowsExecutor;
+    /**
+     * Fetches data from external services (MOEX, CBR)
+     */
+    @Getter
+    private final ExecutorService ioExecutor;
+    /**
+     * Imports uploaded broker report files
+     */
+    @Getter
+    private final ExecutorService reportUploadExecutor;
+    /**
+     * Saves parsed report tables, tasks may be submitted by {@link #reportUploadExecutor} tasks
+     */
+    @Getter
+    private final ExecutorService importExecutor;
+
+    public InvestbookExecutors(InvestbookProperties properties, MeterRegistry meterRegistry) {
+        this.shutdownTimeout = properties.getExecutorShutdownTimeout();
+        this.reportExecutor = create("report", properties.getReportThreads(), meterRegistry);
+        this.reportRowsExecutor = create("report-rows", properties.getReportThreads(), meterRegistry);
+        this.ioExecutor = create("io", properties.getIoThreads(), meterRegistry);
+        this.reportUploadExecutor = create("report-upload", properties.getReportUploadThreads(), meterRegistry);
+        this.importExecutor = create("import", properties.getImportThreads(), meterRegistry);
+    }
+
+    private ExecutorService create(String name, int threads, MeterRegistry meterRegistry) {
+        ThreadFactory threadFactory = Thread.ofPlatform()
+                .name(name + "-", 1)
+                .daemon(true)
+                .factory();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), threadFactory);
+        executors.add(executor);
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, name);
+    }
+
+    /**
+     * Waits for running and queued tasks, then interrupts not finished tasks
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executors.forEach(ExecutorService::shutdown);
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        for (ExecutorService executor : executors) {
+            long timeout = Math.max(0, deadline - System.nanoTime());
+            if (!executor.awaitTermination(timeout, TimeUnit.NANOSECONDS)) {
+                log.warn("Пул потоков не завершил задачи за {}, прерываю задачи", shutdownTimeout);
+                executor.shutdownNow();
+            }
+        }
+    }
+}
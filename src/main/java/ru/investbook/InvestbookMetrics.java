@@ -0,0 +1,131 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Application metrics, exported by Actuator "metrics" and "prometheus" endpoints.
+ * Tag values should have low cardinality: broker names, class names of report sheets and table factories.
+ */
+@Component
+public class InvestbookMetrics {
+    private final MeterRegistry registry;
+    private final Counter fifoPositionsCacheHits;
+    private final Counter fifoPositionsCacheMisses;
+    private final Counter foreignExchangeRateCacheHits;
+    private final Counter foreignExchangeRateCacheMisses;
+
+    public InvestbookMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.fifoPositionsCacheHits = cacheCounter("fifo-positions", "hit");
+        this.fifoPositionsCacheMisses = cacheCounter("fifo-positions", "miss");
+        this.foreignExchangeRateCacheHits = cacheCounter("foreign-exchange-rates", "hit");
+        this.foreignExchangeRateCacheMisses = cacheCounter("foreign-exchange-rates", "miss");
+    }
+
+    private Counter cacheCounter(String cache, String result) {
+        return Counter.builder("cache.gets")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * @param format report file format, "xlsx" or "html"
+     * @param cached true if report is taken from report snapshot cache instead of building
+     */
+    public void recordReportBuild(String format, boolean cached, Duration duration) {
+        registry.timer("investbook.report.build", "format", format, "cached", String.valueOf(cached))
+                .record(duration);
+    }
+
+    /**
+     * Records time of report sheet data calculation
+     */
+    public void recordSheetBuild(String sheet, String tableFactory, Duration duration) {
+        registry.timer("investbook.report.sheet.build", "sheet", sheet, "factory", tableFactory)
+                .record(duration);
+    }
+
+    /**
+     * Records time of writing calculated data to Excel sheet
+     */
+    public void recordSheetWrite(String sheet, Duration duration) {
+        registry.timer("investbook.report.sheet.write", "sheet", sheet)
+                .record(duration);
+    }
+
+    public void recordBrokerReportImport(String broker, Duration duration) {
+        registry.timer("investbook.broker.report.import", "broker", broker)
+                .record(duration);
+    }
+
+    public void countBrokerReportTableRows(String broker, String table, int rows) {
+        registry.counter("investbook.broker.report.rows", "broker", broker, "table", table)
+                .increment(rows);
+    }
+
+    /**
+     * Counts imported objects skipped because they are already stored
+     *
+     * @param type imported object type
+     */
+    public void countSkippedDuplicate(String type) {
+        countSkippedDuplicates(type, 1);
+    }
+
+    /**
+     * @param type imported object type
+     */
+    public void countSkippedDuplicates(String type, int count) {
+        if (count > 0) {
+            registry.counter("investbook.import.duplicates", "type", type)
+                    .increment(count);
+        }
+    }
+
+    /**
+     * @param source external data source, for example "moex", "cbr", "sp500", "smartlab"
+     */
+    public void recordExternalUpdate(String source, Duration duration) {
+        registry.timer("investbook.external.update", "source", source)
+                .record(duration);
+    }
+
+    /**
+     * @param type "sector" or "security"
+     */
+    public void recordInvestmentProportion(String type, Duration duration) {
+        registry.timer("investbook.investment.proportion", "type", type)
+                .record(duration);
+    }
+
+    public void countFifoPositionsCacheGet(boolean hit) {
+        (hit ? fifoPositionsCacheHits : fifoPositionsCacheMisses).increment();
+    }
+
+    public void countForeignExchangeRateCacheGet(boolean hit) {
+        (hit ? foreignExchangeRateCacheHits : foreignExchangeRateCacheMisses).increment();
+    }
+}
@@ -22,9 +22,11 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 
@@ -53,4 +55,94 @@ public class InvestbookProperties {
     private Set<String> tableParsers = Set.of();
 
     private boolean reportBackup = true;
+
+    /**
+     * If foreign exchange rate is unknown at date (weekend or holiday), the latest rate of previous days is used,
+     * but not older than this number of days. Zero value requires exact date rate.
+     */
+    private int foreignExchangeRateMaxLookbackDays = 7;
+
+    /**
+     * Number of broker report transactions saved to DB by one JDBC batch. Value 0 or 1 saves transactions one by one.
+     */
+    private int reportImportBatchSize = 500;
+
+    /**
+     * Number of threads importing uploaded broker report files
+     */
+    private int reportUploadThreads = 4;
+
+    /**
+     * Number of threads building reports
+     */
+    private int reportThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of threads fetching data from external services (MOEX, CBR)
+     */
+    private int ioThreads = 4 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of threads saving parsed broker report tables and Portfolio Open Format files
+     */
+    private int importThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Time to wait for running tasks on application shutdown
+     */
+    private Duration executorShutdownTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Max total size of uploaded broker report files waiting for import or being imported,
+     * upload request waits while limit is exceeded
+     */
+    private DataSize reportUploadMaxBytesInFlight = DataSize.ofMegabytes(256);
+
+    /**
+     * Saves built reports to disk, the same report is not rebuilt until data is changed
+     */
+    private boolean reportCache = true;
+
+    /**
+     * Directory of cached reports, {@code report-cache} directory of {@link #dataPath} by default
+     */
+    private Path reportCachePath;
+
+    /**
+     * Max total size of cached reports, least recently used reports are evicted
+     */
+    private DataSize reportCacheMaxSize = DataSize.ofMegabytes(200);
+
+    /**
+     * Recomputes daily portfolio valuations from the first portfolio event once per application run,
+     * because data may be modified while application is stopped (DB restore, SQL script).
+     * If false, valuations are recomputed incrementally from the last computed day.
+     */
+    private boolean portfolioValuationRebuildOnStart = true;
+
+    /**
+     * MOEX ISS server URL, may be changed to a local stub server for testing
+     */
+    private String moexIssUrl = "http://iss.moex.com";
+
+    /**
+     * Requests quotes of all securities of the same MOEX board by one request.
+     * Security MOEX board is saved to DB for {@link #moexResolutionCacheTtl}.
+     * If false, quotes are requested one by one.
+     */
+    private boolean moexBulkQuoteUpdate = true;
+
+    /**
+     * Time to keep MOEX secid and primary board of security saved in DB
+     */
+    private Duration moexResolutionCacheTtl = Duration.ofDays(30);
+
+    /**
+     * Time to keep saved in DB result of MOEX secid or primary board request if MOEX hasn't security
+     */
+    private Duration moexResolutionNegativeCacheTtl = Duration.ofDays(1);
+
+    public Path getReportCachePath() {
+        return (reportCachePath == null) ? dataPath.resolve("report-cache") : reportCachePath;
+    }
 }
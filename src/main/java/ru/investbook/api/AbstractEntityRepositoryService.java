@@ -29,10 +29,15 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 import ru.investbook.converter.EntityConverter;
 import ru.investbook.repository.ConstraintAwareRepository;
+import ru.investbook.repository.DataVersion;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import static org.springframework.transaction.TransactionDefinition.PROPAGATION_REQUIRES_NEW;
@@ -47,6 +52,8 @@ public abstract class AbstractEntityRepositoryService<ID, Pojo, Entity> implemen
     private EntityManager entityManager;
     @Autowired
     private PlatformTransactionManager transactionManager;
+    @Autowired
+    private DataVersion dataVersion;
     private TransactionTemplate transactionTemplateRequired;
     private TransactionTemplate transactionTemplateRequiresNew;
 
@@ -85,6 +92,7 @@ public abstract class AbstractEntityRepositoryService<ID, Pojo, Entity> implemen
                 Entity entity = converter.toEntity(object);
                 // Hibernate save() method does sql INSERT
                 transactionTemplateRequiresNew.executeWithoutResult(_ -> hibernateSpecificSession.save(entity));
+                dataVersion.increment();
                 return true;
             } catch (Exception e) {
                 if (isUniqIndexViolationException(e)) {
@@ -116,6 +124,17 @@ public abstract class AbstractEntityRepositoryService<ID, Pojo, Entity> implemen
         return createIfAbsentAndGetInternal(object);
     }
 
+    @Override
+    public List<CreateResult<Pojo>> createAllIfAbsentAndGet(Collection<Pojo> objects) {
+        List<CreateResult<Pojo>> result = transactionTemplateRequired.execute(_ -> objects.stream()
+                .map(this::createIfAbsentAndGet) // subclasses may override to update caches
+                .toList());
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.clear(); // release saved entities, open-in-view persistence context lives till request end
+        }
+        return Objects.requireNonNull(result);
+    }
+
     /**
      * Creates a new object (with SELECT check)
      *
@@ -143,6 +162,7 @@ public abstract class AbstractEntityRepositoryService<ID, Pojo, Entity> implemen
             entity = converter.toEntity(object);
         }
         Entity savedEntity = repository.save(entity);
+        dataVersion.increment();
         return Optional.of(savedEntity);
     }
 
@@ -177,6 +197,7 @@ public abstract class AbstractEntityRepositoryService<ID, Pojo, Entity> implemen
             entity = converter.toEntity(object);
         }
         Entity savedEntity = repository.save(entity);
+        dataVersion.increment();
         Pojo savedObject = converter.fromEntity(savedEntity);
         return CreateResult.created(savedObject);
     }
@@ -196,11 +217,14 @@ public abstract class AbstractEntityRepositoryService<ID, Pojo, Entity> implemen
 
     private Entity createOrUpdateInternal(Pojo object) {
         Entity entity = converter.toEntity(object);
-        return repository.save(entity);
+        Entity savedEntity = repository.save(entity);
+        dataVersion.increment();
+        return savedEntity;
     }
 
     @Override
     public void deleteById(ID id) {
         repository.deleteById(id);
+        dataVersion.increment();
     }
 }
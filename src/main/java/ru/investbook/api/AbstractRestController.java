@@ -18,25 +18,56 @@
 
 package ru.investbook.api;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.GeneratedValue;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.ClassUtils;
 import org.springframework.web.util.UriUtils;
 import ru.investbook.converter.EntityConverter;
+import ru.investbook.repository.ScrollPositionHelper;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.nonNull;
+import static java.util.stream.Collectors.joining;
 
+@Slf4j
 public abstract class AbstractRestController<ID, Pojo, Entity> extends AbstractEntityRepositoryService<ID, Pojo, Entity> {
+    private static final int BATCH_CHUNK_SIZE = 500;
+    private static final int MAX_SCROLL_SIZE = 1000;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private Validator validator;
 
     protected AbstractRestController(JpaRepository<Entity, ID> repository, EntityConverter<Entity, Pojo> converter) {
         super(repository, converter);
@@ -46,6 +77,45 @@ public abstract class AbstractRestController<ID, Pojo, Entity> extends AbstractE
         return getPage(pageable);
     }
 
+    /**
+     * Gets objects page by keyset scrolling in ID order. Page cost doesn't depend on page position,
+     * unlike {@link #get(Pageable)}.
+     *
+     * @param repository repository of controller, should support keyset scrolling
+     * @param converter  entity to object converter
+     * @param cursor     continuation token from previous page or null for first page
+     * @param size       page size, limited by {@value #MAX_SCROLL_SIZE}
+     * @param withTotal  calculate total objects count (slow for big tables)
+     * @throws BadRequestException if continuation token is malformed
+     */
+    protected CursorPage<Pojo> scroll(JpaSpecificationExecutor<Entity> repository,
+                                      Function<Entity, Pojo> converter,
+                                      @Nullable String cursor,
+                                      int size,
+                                      boolean withTotal) {
+        KeysetScrollPosition position;
+        try {
+            position = ScrollPositionHelper.fromToken(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Некорректный токен продолжения: " + cursor);
+        }
+        if (!position.scrollsForward()) {
+            throw new BadRequestException("Поддерживается только обход вперед");
+        }
+        int limit = Math.clamp(size, 1, MAX_SCROLL_SIZE);
+        Specification<Entity> all = (_, _, _) -> null;
+        Window<Pojo> window = repository.findBy(all, query -> query
+                        .sortBy(Sort.by("id"))
+                        .limit(limit)
+                        .scroll(position))
+                .map(converter);
+        String next = window.hasNext() ?
+                ScrollPositionHelper.toToken((KeysetScrollPosition) window.positionAt(window.size() - 1)) :
+                null;
+        Long total = withTotal ? repository.count(all) : null;
+        return new CursorPage<>(window.getContent(), next, total);
+    }
+
     /**
      * Gets the entity.
      * If entity not exists NOT_FOUND http status will be returned.
@@ -82,6 +152,105 @@ public abstract class AbstractRestController<ID, Pojo, Entity> extends AbstractE
         }
     }
 
+    /**
+     * Creates new entities from JSON array or NDJSON stream, doesn't update existing.
+     * Objects are saved by chunks, each chunk in one transaction. If chunk is not saved,
+     * its objects are saved one by one to find out failed objects.
+     * If object can't be read, objects before it are saved and rest of stream is ignored.
+     *
+     * @param body JSON array or NDJSON stream of objects (ID may be missed)
+     * @return results for each object in request order
+     * @throws BadRequestException if request body is not JSON
+     */
+    protected ResponseEntity<List<BatchItemResult<ID>>> postBatch(InputStream body) {
+        List<BatchItemResult<ID>> results = new ArrayList<>();
+        List<BatchItem<Pojo>> chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+        int index = 0;
+        try (MappingIterator<Pojo> objects = objectMapper.readerFor(getPojoType()).readValues(body)) {
+            for (; objects.hasNextValue(); index++) {
+                Pojo object = objects.nextValue();
+                String violations = getViolations(object);
+                if (violations != null) {
+                    results.add(BatchItemResult.error(index, violations));
+                    continue;
+                }
+                chunk.add(new BatchItem<>(index, object));
+                if (chunk.size() >= BATCH_CHUNK_SIZE) {
+                    results.addAll(createAll(chunk));
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            results.add(BatchItemResult.error(index, "Не могу прочитать объект: " + e.getOriginalMessage()));
+        } catch (IOException e) {
+            throw new BadRequestException("Не могу прочитать тело запроса: " + e.getMessage());
+        }
+        results.addAll(createAll(chunk));
+        results.sort(Comparator.comparingInt(BatchItemResult::index));
+        return ResponseEntity.ok(results);
+    }
+
+    private record BatchItem<Pojo>(int index, Pojo object) {
+    }
+
+    private List<BatchItemResult<ID>> createAll(List<BatchItem<Pojo>> chunk) {
+        if (chunk.isEmpty()) {
+            return List.of();
+        }
+        try {
+            List<CreateResult<Pojo>> results = createAllIfAbsentAndGet(chunk.stream()
+                    .map(BatchItem::object)
+                    .toList());
+            List<BatchItemResult<ID>> batchResults = new ArrayList<>(results.size());
+            for (int i = 0; i < results.size(); i++) {
+                batchResults.add(toBatchItemResult(chunk.get(i).index(), results.get(i)));
+            }
+            return batchResults;
+        } catch (Exception e) {
+            log.debug("Не могу сохранить {} объектов одной транзакцией, сохраняю по одному", chunk.size(), e);
+            return chunk.stream()
+                    .map(this::create)
+                    .toList();
+        }
+    }
+
+    private BatchItemResult<ID> create(BatchItem<Pojo> item) {
+        try {
+            CreateResult<Pojo> result = createAllIfAbsentAndGet(List.of(item.object())).getFirst();
+            return toBatchItemResult(item.index(), result);
+        } catch (Exception e) {
+            log.warn("Не могу создать объект {}", item.object(), e);
+            return BatchItemResult.error(item.index(), "Не могу создать объект: " + e.getMessage());
+        }
+    }
+
+    private BatchItemResult<ID> toBatchItemResult(int index, CreateResult<Pojo> result) {
+        ID id = getId(result.object());
+        return result.created() ?
+                BatchItemResult.created(index, id) :
+                BatchItemResult.conflict(index, id);
+    }
+
+    @Nullable
+    private String getViolations(@Nullable Pojo object) {
+        if (object == null) {
+            return "объект не задан";
+        }
+        Set<ConstraintViolation<Pojo>> violations = validator.validate(object);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> "поле '" + violation.getPropertyPath() + "' " + violation.getMessage())
+                .collect(joining("; "));
+    }
+
+    private Class<?> getPojoType() {
+        Class<?>[] typeArguments = GenericTypeResolver.resolveTypeArguments(
+                ClassUtils.getUserClass(getClass()), AbstractRestController.class);
+        return Objects.requireNonNull(typeArguments)[1];
+    }
+
     @NonNull
     private ResponseEntity<Void> createConflictResponse(Pojo object) {
         ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.CONFLICT);
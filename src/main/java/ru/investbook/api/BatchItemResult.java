@@ -0,0 +1,52 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.api;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.springframework.lang.Nullable;
+
+/**
+ * Result of one object creation by batch request
+ *
+ * @param index  object position in request, starting from 0
+ * @param status object creation status
+ * @param id     created or existing object ID, if known
+ * @param error  error description for {@link Status#ERROR} status
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResult<ID>(int index, Status status, @Nullable ID id, @Nullable String error) {
+
+    public enum Status {
+        CREATED,
+        CONFLICT, // object already exists, not updated
+        ERROR
+    }
+
+    public static <ID> BatchItemResult<ID> created(int index, ID id) {
+        return new BatchItemResult<>(index, Status.CREATED, id, null);
+    }
+
+    public static <ID> BatchItemResult<ID> conflict(int index, @Nullable ID id) {
+        return new BatchItemResult<>(index, Status.CONFLICT, id, null);
+    }
+
+    public static <ID> BatchItemResult<ID> error(int index, String error) {
+        return new BatchItemResult<>(index, Status.ERROR, null, error);
+    }
+}
@@ -21,6 +21,8 @@ package ru.investbook.api;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface EntityRepositoryService<ID, Pojo> {
@@ -74,6 +76,16 @@ public interface EntityRepositoryService<ID, Pojo> {
      */
     CreateResult<Pojo> createIfAbsentAndGet(Pojo object);
 
+    /**
+     * Creates new objects in one transaction, doesn't update.
+     * Calls SELECT to check if object's ID exists in DB for each object.
+     *
+     * @return created or existing objects in the same order
+     * @throws RuntimeException if an INSERT error occurs, no one object is created in this case
+     * @see #createIfAbsentAndGet(Object)
+     */
+    List<CreateResult<Pojo>> createAllIfAbsentAndGet(Collection<Pojo> objects);
+
     /**
      * Create new or update existing object in DB.
      * Use instead of the slower method {@link #createOrUpdateAndGet(Object)}
@@ -42,7 +42,12 @@ import org.springframework.web.bind.annotation.RestController;
 import ru.investbook.converter.EntityConverter;
 import ru.investbook.entity.EventCashFlowEntity;
 
+import java.io.InputStream;
+import java.util.List;
+
 import static org.springframework.http.HttpHeaders.LOCATION;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 
 @RestController
 @Tag(name = "Движения ДС по счету", description = """
@@ -88,6 +93,21 @@ public class EventCashFlowRestController extends AbstractRestController<Integer,
         return super.post(event);
     }
 
+    /**
+     * see {@link AbstractRestController#postBatch(InputStream)}
+     */
+    @Override
+    @PostMapping(path = "batch", consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Добавить несколько", description = "Сохранить информацию о движениях ДС из JSON массива или NDJSON потока, " +
+            "результат возвращается для каждого объекта",
+            responses = {
+                    @ApiResponse(responseCode = "200"),
+                    @ApiResponse(responseCode = "400", content = @Content),
+                    @ApiResponse(responseCode = "500", content = @Content)})
+    public ResponseEntity<List<BatchItemResult<Integer>>> postBatch(@Parameter(hidden = true) InputStream body) {
+        return super.postBatch(body);
+    }
+
     @Override
     @PutMapping("{id}")
     @Operation(summary = "Обновить", description = "Модифицировать информацию", responses = {
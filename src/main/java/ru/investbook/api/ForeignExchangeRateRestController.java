@@ -46,12 +46,16 @@ import ru.investbook.entity.ForeignExchangeRateEntityPk;
 import ru.investbook.report.ForeignExchangeRateService;
 import ru.investbook.repository.ForeignExchangeRateRepository;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static org.springframework.http.HttpHeaders.LOCATION;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 
 @RestController
 @Tag(name = "Официальные обменные курсы", description = "История обменных курсов валют")
@@ -121,8 +125,22 @@ public class ForeignExchangeRateRestController extends AbstractRestController<Fo
             @ApiResponse(responseCode = "409"),
             @ApiResponse(responseCode = "500", content = @Content)})
     public ResponseEntity<Void> post(@Valid @RequestBody ForeignExchangeRate object) {
-        foreignExchangeRateService.invalidateCache();
-        return super.post(object);
+        return super.post(object); // cache is invalidated by createIfAbsentAndGet() if object is created
+    }
+
+    /**
+     * see {@link AbstractRestController#postBatch(InputStream)}
+     */
+    @Override
+    @PostMapping(path = "batch", consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Добавить несколько", description = "Сохранить курсы валют из JSON массива или NDJSON потока, " +
+            "результат возвращается для каждого объекта",
+            responses = {
+                    @ApiResponse(responseCode = "200"),
+                    @ApiResponse(responseCode = "400", content = @Content),
+                    @ApiResponse(responseCode = "500", content = @Content)})
+    public ResponseEntity<List<BatchItemResult<ForeignExchangeRateEntityPk>>> postBatch(@Parameter(hidden = true) InputStream body) {
+        return super.postBatch(body); // cache is invalidated by createIfAbsentAndGet() after chunk commit
     }
 
     /**
@@ -144,8 +162,9 @@ public class ForeignExchangeRateRestController extends AbstractRestController<Fo
                                     @Valid
                                     @RequestBody
                                     ForeignExchangeRate object) {
-        foreignExchangeRateService.invalidateCache();
-        return super.put(getId(currencyPair, date), object);
+        ResponseEntity<Void> response = super.put(getId(currencyPair, date), object);
+        foreignExchangeRateService.invalidateCache(); // after commit, if called in transaction
+        return response;
     }
 
     /**
@@ -163,8 +182,45 @@ public class ForeignExchangeRateRestController extends AbstractRestController<Fo
                                        @Parameter(description = "Дата", example = "2021-01-23")
                                        @DateTimeFormat(pattern = "yyyy-MM-dd")
                                        LocalDate date) {
+        ResponseEntity<Void> response = super.delete(getId(currencyPair, date));
         foreignExchangeRateService.invalidateCache();
-        return super.delete(getId(currencyPair, date));
+        return response;
+    }
+
+    @Override
+    public boolean insert(ForeignExchangeRate object) {
+        boolean inserted = super.insert(object);
+        if (inserted) {
+            foreignExchangeRateService.invalidateCache();
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean createIfAbsent(ForeignExchangeRate object) {
+        boolean created = super.createIfAbsent(object);
+        if (created) {
+            foreignExchangeRateService.invalidateCache();
+        }
+        return created;
+    }
+
+    @Override
+    public Optional<ForeignExchangeRate> createAndGetIfAbsent(ForeignExchangeRate object) {
+        Optional<ForeignExchangeRate> created = super.createAndGetIfAbsent(object);
+        if (created.isPresent()) {
+            foreignExchangeRateService.invalidateCache();
+        }
+        return created;
+    }
+
+    @Override
+    public CreateResult<ForeignExchangeRate> createIfAbsentAndGet(ForeignExchangeRate object) {
+        CreateResult<ForeignExchangeRate> result = super.createIfAbsentAndGet(object);
+        if (result.created()) {
+            foreignExchangeRateService.invalidateCache(); // after commit, if called in transaction
+        }
+        return result;
     }
 
     @Override
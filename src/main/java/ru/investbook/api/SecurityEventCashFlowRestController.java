@@ -43,8 +43,14 @@ import ru.investbook.converter.EntityConverter;
 import ru.investbook.entity.SecurityEventCashFlowEntity;
 import ru.investbook.report.FifoPositionsFactory;
 
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+
 import static org.spacious_team.broker.pojo.CashFlowType.REDEMPTION;
 import static org.springframework.http.HttpHeaders.LOCATION;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 
 @RestController
 @Tag(name = "События по бумаге", description = """
@@ -90,10 +96,24 @@ public class SecurityEventCashFlowRestController extends AbstractRestController<
             @ApiResponse(responseCode = "409"),
             @ApiResponse(responseCode = "500", content = @Content)})
     public ResponseEntity<Void> post(@Valid @RequestBody SecurityEventCashFlow event) {
-        if (event.getEventType() == REDEMPTION) positionsFactory.invalidateCache();
         return super.post(event);
     }
 
+    /**
+     * see {@link AbstractRestController#postBatch(InputStream)}
+     */
+    @Override
+    @PostMapping(path = "batch", consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Добавить несколько", description = "Сохранить информацию о выплатах из JSON массива или NDJSON потока, " +
+            "результат возвращается для каждого объекта",
+            responses = {
+                    @ApiResponse(responseCode = "200"),
+                    @ApiResponse(responseCode = "400", content = @Content),
+                    @ApiResponse(responseCode = "500", content = @Content)})
+    public ResponseEntity<List<BatchItemResult<Integer>>> postBatch(@Parameter(hidden = true) InputStream body) {
+        return super.postBatch(body);
+    }
+
     @Override
     @PutMapping("{id}")
     @Operation(summary = "Обновить", description = "Модифицировать информацию о выплате", responses = {
@@ -106,7 +126,8 @@ public class SecurityEventCashFlowRestController extends AbstractRestController<
                                     @Valid
                                     @RequestBody
                                     SecurityEventCashFlow event) {
-        if (event.getEventType() == REDEMPTION) positionsFactory.invalidateCache();
+        getById(id).ifPresent(this::invalidateCacheIfRedemption);
+        invalidateCacheIfRedemption(event);
         return super.put(id, event);
     }
 
@@ -118,10 +139,47 @@ public class SecurityEventCashFlowRestController extends AbstractRestController<
     public ResponseEntity<Void> delete(@PathVariable("id")
                                        @Parameter(description = "Внутренний идентификатор выплаты")
                                        Integer id) {
-        positionsFactory.invalidateCache();
+        getById(id).ifPresent(this::invalidateCacheIfRedemption);
         return super.delete(id);
     }
 
+    @Override
+    public boolean insert(SecurityEventCashFlow object) {
+        boolean inserted = super.insert(object);
+        if (inserted) {
+            invalidateCacheIfRedemption(object);
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean createIfAbsent(SecurityEventCashFlow object) {
+        return createAndGetIfAbsent(object)
+                .isPresent();
+    }
+
+    @Override
+    public Optional<SecurityEventCashFlow> createAndGetIfAbsent(SecurityEventCashFlow object) {
+        Optional<SecurityEventCashFlow> createdObject = super.createAndGetIfAbsent(object);
+        createdObject.ifPresent(positionsFactory::add);
+        return createdObject;
+    }
+
+    @Override
+    public CreateResult<SecurityEventCashFlow> createIfAbsentAndGet(SecurityEventCashFlow object) {
+        CreateResult<SecurityEventCashFlow> result = super.createIfAbsentAndGet(object);
+        if (result.created()) {
+            positionsFactory.add(result.object());
+        }
+        return result;
+    }
+
+    private void invalidateCacheIfRedemption(SecurityEventCashFlow event) {
+        if (event.getEventType() == REDEMPTION) {
+            positionsFactory.invalidateCache(event.getSecurity());
+        }
+    }
+
     @Override
     public Integer getId(SecurityEventCashFlow object) {
         return object.getId();
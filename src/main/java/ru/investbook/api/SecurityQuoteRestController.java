@@ -29,7 +29,6 @@ import org.spacious_team.broker.pojo.SecurityQuote;
 import org.springdoc.core.converters.models.PageableAsQueryParam;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -38,20 +37,31 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import ru.investbook.converter.EntityConverter;
 import ru.investbook.entity.SecurityQuoteEntity;
+import ru.investbook.repository.SecurityQuoteRepository;
+
+import java.io.InputStream;
+import java.util.List;
 
 import static org.springframework.http.HttpHeaders.LOCATION;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 
 @RestController
 @Tag(name = "Котировки", description = "Котировки биржевых инструментов")
 @RequestMapping("/api/v1/security-quotes")
 public class SecurityQuoteRestController extends AbstractRestController<Integer, SecurityQuote, SecurityQuoteEntity> {
+    private final SecurityQuoteRepository repository;
+    private final EntityConverter<SecurityQuoteEntity, SecurityQuote> converter;
 
-    public SecurityQuoteRestController(JpaRepository<SecurityQuoteEntity, Integer> repository,
+    public SecurityQuoteRestController(SecurityQuoteRepository repository,
                                        EntityConverter<SecurityQuoteEntity, SecurityQuote> converter) {
         super(repository, converter);
+        this.repository = repository;
+        this.converter = converter;
     }
 
     @Override
@@ -67,6 +77,28 @@ public class SecurityQuoteRestController extends AbstractRestController<Integer,
     }
 
 
+    /**
+     * see {@link AbstractRestController#scroll}
+     */
+    @GetMapping("scroll")
+    @Operation(summary = "Отобразить постранично по токену", description = "Отобразить котировки в порядке номера записи, " +
+            "стоимость запроса не зависит от номера страницы",
+            responses = {
+                    @ApiResponse(responseCode = "200"),
+                    @ApiResponse(responseCode = "400", content = @Content),
+                    @ApiResponse(responseCode = "500", content = @Content)})
+    public CursorPage<SecurityQuote> scroll(@RequestParam(value = "cursor", required = false)
+                                            @Parameter(description = "Токен продолжения из ответа на запрос предыдущей страницы")
+                                            String cursor,
+                                            @RequestParam(value = "size", defaultValue = "100")
+                                            @Parameter(description = "Размер страницы")
+                                            int size,
+                                            @RequestParam(value = "with-total", defaultValue = "false")
+                                            @Parameter(description = "Вычислить общее количество записей")
+                                            boolean withTotal) {
+        return scroll(repository, converter::fromEntity, cursor, size, withTotal);
+    }
+
     @Override
     @GetMapping("{id}")
     @Operation(summary = "Отобразить одну", description = "Отобразить котировку по номеру записи",
@@ -89,6 +121,21 @@ public class SecurityQuoteRestController extends AbstractRestController<Integer,
         return super.post(quote);
     }
 
+    /**
+     * see {@link AbstractRestController#postBatch(InputStream)}
+     */
+    @Override
+    @PostMapping(path = "batch", consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Добавить несколько", description = "Сохранить котировки из JSON массива или NDJSON потока, " +
+            "результат возвращается для каждого объекта",
+            responses = {
+                    @ApiResponse(responseCode = "200"),
+                    @ApiResponse(responseCode = "400", content = @Content),
+                    @ApiResponse(responseCode = "500", content = @Content)})
+    public ResponseEntity<List<BatchItemResult<Integer>>> postBatch(@Parameter(hidden = true) InputStream body) {
+        return super.postBatch(body);
+    }
+
     @Override
     @PutMapping("{id}")
     @Operation(summary = "Обновить", responses = {
@@ -46,9 +46,12 @@ import ru.investbook.converter.TransactionCashFlowConverter;
 import ru.investbook.entity.TransactionCashFlowEntity;
 import ru.investbook.repository.TransactionCashFlowRepository;
 
+import java.io.InputStream;
 import java.util.List;
 
 import static org.springframework.http.HttpHeaders.LOCATION;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 
 @RestController
 @Tag(name = "Движения ДС по сделкам", description = "Уплаченные и вырученные суммы в сделках")
@@ -129,6 +132,21 @@ public class TransactionCashFlowRestController extends AbstractRestController<In
         return super.post(object);
     }
 
+    /**
+     * see {@link AbstractRestController#postBatch(InputStream)}
+     */
+    @Override
+    @PostMapping(path = "batch", consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Добавить несколько", description = "Добавить информацию об объемах движения ДС по сделкам " +
+            "из JSON массива или NDJSON потока, результат возвращается для каждого объекта",
+            responses = {
+                    @ApiResponse(responseCode = "200"),
+                    @ApiResponse(responseCode = "400", content = @Content),
+                    @ApiResponse(responseCode = "500", content = @Content)})
+    public ResponseEntity<List<BatchItemResult<Integer>>> postBatch(@Parameter(hidden = true) InputStream body) {
+        return super.postBatch(body);
+    }
+
     /**
      * see {@link AbstractRestController#put(Object, Object)}
      */
@@ -45,9 +45,13 @@ import ru.investbook.entity.TransactionEntity;
 import ru.investbook.report.FifoPositionsFactory;
 import ru.investbook.repository.TransactionRepository;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.Optional;
 
 import static org.springframework.http.HttpHeaders.LOCATION;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 
 @RestController
 @Tag(name = "Сделки", description = "Операции купли/продажи биржевых инструментов")
@@ -109,6 +113,28 @@ public class TransactionRestController extends AbstractRestController<Integer, T
         return new PageImpl<>(transactions);
     }
 
+    /**
+     * see {@link AbstractRestController#scroll}
+     */
+    @GetMapping("scroll")
+    @Operation(summary = "Отобразить постранично по токену", description = "Отображает сделки в порядке внутреннего идентификатора, " +
+            "стоимость запроса не зависит от номера страницы",
+            responses = {
+                    @ApiResponse(responseCode = "200"),
+                    @ApiResponse(responseCode = "400", content = @Content),
+                    @ApiResponse(responseCode = "500", content = @Content)})
+    public CursorPage<Transaction> scroll(@RequestParam(value = "cursor", required = false)
+                                          @Parameter(description = "Токен продолжения из ответа на запрос предыдущей страницы")
+                                          String cursor,
+                                          @RequestParam(value = "size", defaultValue = "100")
+                                          @Parameter(description = "Размер страницы")
+                                          int size,
+                                          @RequestParam(value = "with-total", defaultValue = "false")
+                                          @Parameter(description = "Вычислить общее количество записей")
+                                          boolean withTotal) {
+        return scroll(repository, converter::fromEntity, cursor, size, withTotal);
+    }
+
     /**
      * see {@link AbstractRestController#get(Object)}
      */
@@ -132,10 +158,24 @@ public class TransactionRestController extends AbstractRestController<Integer, T
                     @ApiResponse(responseCode = "409"),
                     @ApiResponse(responseCode = "500", content = @Content)})
     public ResponseEntity<Void> post(@Valid @RequestBody Transaction object) {
-        positionsFactory.invalidateCache();
         return super.post(object);
     }
 
+    /**
+     * see {@link AbstractRestController#postBatch(InputStream)}
+     */
+    @Override
+    @PostMapping(path = "batch", consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    @Operation(summary = "Добавить несколько", description = "Сохраняет новые сделки из JSON массива или NDJSON потока, " +
+            "результат возвращается для каждого объекта",
+            responses = {
+                    @ApiResponse(responseCode = "200"),
+                    @ApiResponse(responseCode = "400", content = @Content),
+                    @ApiResponse(responseCode = "500", content = @Content)})
+    public ResponseEntity<List<BatchItemResult<Integer>>> postBatch(@Parameter(hidden = true) InputStream body) {
+        return super.postBatch(body);
+    }
+
     /**
      * see {@link AbstractRestController#put(Object, Object)}
      */
@@ -152,7 +192,8 @@ public class TransactionRestController extends AbstractRestController<Integer, T
                                     @Valid
                                     @RequestBody
                                     Transaction object) {
-        positionsFactory.invalidateCache();
+        getById(id).ifPresent(transaction -> positionsFactory.invalidateCache(transaction.getSecurity()));
+        positionsFactory.invalidateCache(object.getSecurity());
         return super.put(id, object);
     }
 
@@ -168,10 +209,41 @@ public class TransactionRestController extends AbstractRestController<Integer, T
     public ResponseEntity<Void> delete(@PathVariable("id")
                                        @Parameter(description = "Внутренний идентификатор сделки")
                                        Integer id) {
-        positionsFactory.invalidateCache();
+        getById(id).ifPresent(transaction -> positionsFactory.invalidateCache(transaction.getSecurity()));
         return super.delete(id);
     }
 
+    @Override
+    public boolean insert(Transaction object) {
+        boolean inserted = super.insert(object);
+        if (inserted) {
+            positionsFactory.invalidateCache(object.getSecurity());
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean createIfAbsent(Transaction object) {
+        return createAndGetIfAbsent(object)
+                .isPresent();
+    }
+
+    @Override
+    public Optional<Transaction> createAndGetIfAbsent(Transaction object) {
+        Optional<Transaction> createdObject = super.createAndGetIfAbsent(object);
+        createdObject.ifPresent(positionsFactory::add);
+        return createdObject;
+    }
+
+    @Override
+    public CreateResult<Transaction> createIfAbsentAndGet(Transaction object) {
+        CreateResult<Transaction> result = super.createIfAbsentAndGet(object);
+        if (result.created()) {
+            positionsFactory.add(result.object());
+        }
+        return result;
+    }
+
     @Override
     public Integer getId(Transaction object) {
         return object.getId();
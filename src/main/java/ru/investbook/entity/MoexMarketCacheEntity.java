@@ -0,0 +1,61 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.entity;
+
+import jakarta.persistence.Basic;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Primary MOEX board of security, all fields except secid are null if MOEX hasn't primary board for security
+ */
+@Entity
+@Table(name = "moex_market_cache")
+@Data
+public class MoexMarketCacheEntity {
+
+    @Id
+    @Column(name = "secid")
+    private String secid;
+
+    @Basic
+    @Column(name = "engine")
+    private String engine;
+
+    @Basic
+    @Column(name = "market")
+    private String market;
+
+    @Basic
+    @Column(name = "board")
+    private String board;
+
+    @Basic
+    @Column(name = "currency")
+    private String currency;
+
+    @Basic
+    @Column(name = "resolved_at", nullable = false)
+    private Instant resolvedAt;
+}
@@ -0,0 +1,48 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.entity;
+
+import jakarta.persistence.Basic;
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "moex_secid_cache")
+@Data
+public class MoexSecidCacheEntity {
+
+    @EmbeddedId
+    private MoexSecidCacheEntityPk pk;
+
+    /**
+     * Null if MOEX hasn't security
+     */
+    @Basic
+    @Column(name = "secid")
+    private String secid;
+
+    @Basic
+    @Column(name = "resolved_at", nullable = false)
+    private Instant resolvedAt;
+}
@@ -0,0 +1,63 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.entity;
+
+import jakarta.persistence.Basic;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Precomputed portfolio value at the end of day, values are in RUB
+ */
+@Entity
+@Table(name = "portfolio_valuation")
+@Data
+public class PortfolioValuationEntity {
+
+    @Id
+    @AssignedOrGeneratedValue
+    @Column(name = "id")
+    private Integer id;
+
+    @Basic
+    @Column(name = "portfolio", nullable = false)
+    private String portfolio;
+
+    @Basic
+    @Column(name = "date", nullable = false)
+    private LocalDate date;
+
+    @Basic
+    @Column(name = "securities", nullable = false)
+    private BigDecimal securities;
+
+    @Basic
+    @Column(name = "cash", nullable = false)
+    private BigDecimal cash;
+
+    @Basic
+    @Column(name = "total", nullable = false)
+    private BigDecimal total;
+}
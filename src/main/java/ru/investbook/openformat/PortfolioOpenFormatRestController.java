@@ -18,7 +18,6 @@
 
 package ru.investbook.openformat;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,12 +28,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
-import ru.investbook.openformat.v1_1_0.PortfolioOpenFormatBuilder;
-import ru.investbook.openformat.v1_1_0.PortfolioOpenFormatPersister;
-import ru.investbook.openformat.v1_1_0.PortfolioOpenFormatV1_1_0;
-import ru.investbook.parser.ValidatorService;
+import ru.investbook.openformat.v1_1_0.PortfolioOpenFormatReader;
+import ru.investbook.openformat.v1_1_0.PortfolioOpenFormatWriter;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
@@ -49,22 +45,16 @@ import static ru.investbook.web.ReportControllerHelper.errorPage;
 @RequiredArgsConstructor
 @Slf4j
 public class PortfolioOpenFormatRestController {
-    private final ObjectMapper objectMapper;
-    private final PortfolioOpenFormatBuilder portfolioOpenFormatFactory;
-    private final PortfolioOpenFormatPersister portfolioOpenFormatPersister;
-    private final ValidatorService validator;
+    private final PortfolioOpenFormatWriter portfolioOpenFormatWriter;
+    private final PortfolioOpenFormatReader portfolioOpenFormatReader;
 
     @GetMapping("download")
     public void download(HttpServletResponse response) throws IOException {
         try {
             long t0 = System.nanoTime();
             String fileName = "portfolio.json";
-            PortfolioOpenFormatV1_1_0 object = portfolioOpenFormatFactory.create();
-            validate(object);
             sendSuccessHeader(response, fileName, "application/json");
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(10240);
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(outputStream, object);
-            outputStream.writeTo(response.getOutputStream());
+            portfolioOpenFormatWriter.write(response.getOutputStream());
             log.info("Файл '{}' в формате 'Portfolio Open Format' сформирован за {}",
                     fileName, Duration.ofNanos(System.nanoTime() - t0));
         } catch (Exception e) {
@@ -78,9 +68,7 @@ public class PortfolioOpenFormatRestController {
     public ResponseEntity<String> upload(@RequestParam("file") MultipartFile file) {
         try (InputStream inputStream = file.getInputStream()) { // creates new input stream
             long t0 = System.nanoTime();
-            PortfolioOpenFormatV1_1_0 object = objectMapper.readValue(inputStream, PortfolioOpenFormatV1_1_0.class);
-            validate(object);
-            portfolioOpenFormatPersister.persist(object);
+            portfolioOpenFormatReader.read(inputStream);
             log.info("Выполнено восстановление данных из бэкапа за {}", Duration.ofNanos(System.nanoTime() - t0));
             return ok();
         } catch (Exception e) {
@@ -95,12 +83,4 @@ public class PortfolioOpenFormatRestController {
                 <script type="text/javascript">document.location.href="/"</script>
                 """);
     }
-
-    private void validate(PortfolioOpenFormatV1_1_0 object) {
-        try {
-            validator.validate(object);
-        } catch (Exception e) {
-            log.warn("Найдены ошибки в данных формата 'Open Portfolio Format'", e);
-        }
-    }
 }
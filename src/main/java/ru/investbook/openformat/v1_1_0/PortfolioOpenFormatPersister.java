@@ -21,119 +21,183 @@ package ru.investbook.openformat.v1_1_0;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.spacious_team.broker.pojo.PortfolioCash;
+import org.spacious_team.broker.pojo.PortfolioProperty;
 import org.spacious_team.broker.pojo.SecurityDescription;
 import org.spacious_team.broker.pojo.SecurityQuote;
 import org.spacious_team.broker.pojo.SecurityType;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import ru.investbook.InvestbookExecutors;
 import ru.investbook.parser.InvestbookApiClient;
 import ru.investbook.parser.SecurityRegistrar;
 
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import static java.util.concurrent.Executors.newWorkStealingPool;
 import static java.util.stream.Collectors.toMap;
-import static ru.investbook.openformat.v1_1_0.PortfolioOpenFormatV1_1_0.GENERATED_BY_INVESTBOOK;
 
+/**
+ * Persists Portfolio Open Format data by chunks. Accounts and assets are persisted first,
+ * other data depend on them only and are persisted in parallel.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PortfolioOpenFormatPersister {
     private static final int TRADE_ID_MAX_LENGTH = 32; // investbook storage limit
+    private static final int MAX_PENDING_CHUNKS = 8; // limits memory usage, if file reading is faster than saving
     private final InvestbookApiClient api;
     private final SecurityRegistrar securityRegistrar;
+    private final InvestbookExecutors executors;
 
-    public void persist(PortfolioOpenFormatV1_1_0 object) {
-        Collection<Runnable> tasks = new ArrayList<>();
+    /**
+     * Import state, should be used by one (file reading) thread
+     */
+    static class ImportContext {
+        private final Map<Integer, String> accountToPortfolioId;
+        private final Map<Integer, Integer> assetToSecurityId;
+        private final Map<Integer, SecurityType> assetTypes;
+        private final Set<String> tradeIds = new HashSet<>();
+        private final Set<String> transferIds = new HashSet<>();
+        private final Deque<Future<?>> pendingTasks = new ArrayDeque<>();
 
-        object.getAccounts()
-                .stream()
+        private ImportContext(Map<Integer, String> accountToPortfolioId,
+                              Map<Integer, Integer> assetToSecurityId,
+                              Map<Integer, SecurityType> assetTypes) {
+            this.accountToPortfolioId = accountToPortfolioId;
+            this.assetToSecurityId = assetToSecurityId;
+            this.assetTypes = assetTypes;
+        }
+    }
+
+    ImportContext persistAccountsAndAssets(Collection<AccountPof> accounts, Collection<AssetPof> assets) {
+        accounts.stream()
                 .map(AccountPof::toPortfolio)
                 .flatMap(Optional::stream)
                 .forEach(api::addPortfolio);
 
-        Map<Integer, Integer> assetToSecurityId = object.getAssets()
+        Map<Integer, Integer> assetToSecurityId = assets
                 .parallelStream()
                 .map(this::storeAndGetSecurityIdentifierMap)
                 .flatMap(Optional::stream)
                 .collect(toMap(SecurityIdentifierMap::assetId, SecurityIdentifierMap::securityId));
 
-        Map<Integer, String> accountToPortfolioId = object.getAccounts()
+        Map<Integer, String> accountToPortfolioId = accounts
                 .stream()
                 .collect(toMap(
                         AccountPof::getId,
                         a -> Optional.ofNullable(a.getAccountNumber()).orElse(String.valueOf(a.getId()))));
-        Map<Integer, SecurityType> assetTypes = object.getAssets()
+        Map<Integer, SecurityType> assetTypes = assets
                 .stream()
                 .collect(toMap(AssetPof::getId, AssetPof::getSecurityType));
 
-        tasks.add(() -> getTradesWithUniqTradeId(object.getTrades(), assetToSecurityId)
+        return new ImportContext(accountToPortfolioId, assetToSecurityId, assetTypes);
+    }
+
+    void persistTrades(Collection<TradePof> trades, ImportContext context) {
+        Collection<TradePof> tradesWithUniqTradeId =
+                getTradesWithUniqTradeId(trades, context.assetToSecurityId, context.tradeIds);
+        submit(context, () -> tradesWithUniqTradeId
                 .parallelStream()
-                .map(t -> t.toTransaction(accountToPortfolioId, assetToSecurityId, assetTypes))
+                .map(t -> t.toTransaction(context.accountToPortfolioId, context.assetToSecurityId, context.assetTypes))
                 .flatMap(Optional::stream)
                 .forEach(api::addTransaction));
+    }
 
-        tasks.add(() -> getTransfersWithUniqTransferId(object.getTransfer(), assetToSecurityId)
+    void persistTransfers(Collection<TransferPof> transfers, ImportContext context) {
+        Collection<TransferPof> transfersWithUniqTransferId =
+                getTransfersWithUniqTransferId(transfers, context.assetToSecurityId, context.transferIds);
+        submit(context, () -> transfersWithUniqTransferId
                 .parallelStream()
-                .map(t -> t.toTransaction(accountToPortfolioId, assetToSecurityId))
+                .map(t -> t.toTransaction(context.accountToPortfolioId, context.assetToSecurityId))
                 .flatMap(Optional::stream)
                 .forEach(api::addTransaction));
 
-        tasks.add(() -> object.getTransfer()
+        submit(context, () -> transfers
                 .parallelStream()
-                .map(t -> t.getSecurityEventCashFlow(accountToPortfolioId, assetToSecurityId))
+                .map(t -> t.getSecurityEventCashFlow(context.accountToPortfolioId, context.assetToSecurityId))
                 .flatMap(Collection::stream)
                 .forEach(api::addSecurityEventCashFlow));
+    }
 
-        tasks.add(() -> object.getPayments()
+    void persistPayments(Collection<PaymentPof> payments, ImportContext context) {
+        submit(context, () -> payments
                 .parallelStream()
-                .map(t -> t.getSecurityEventCashFlow(accountToPortfolioId, assetToSecurityId, assetTypes))
+                .map(t -> t.getSecurityEventCashFlow(context.accountToPortfolioId, context.assetToSecurityId, context.assetTypes))
                 .flatMap(Collection::stream)
                 .forEach(api::addSecurityEventCashFlow));
+    }
 
-        tasks.add(() -> object.getCashFlows()
+    void persistCashFlows(Collection<CashFlowPof> cashFlows, ImportContext context) {
+        submit(context, () -> cashFlows
                 .parallelStream()
-                .map(c -> c.toEventCashFlow(accountToPortfolioId))
+                .map(c -> c.toEventCashFlow(context.accountToPortfolioId))
                 .flatMap(Optional::stream)
                 .forEach(api::addEventCashFlow));
+    }
 
-        VndInvestbookPof vndInvestbook = object.getVndInvestbook();
-        if (vndInvestbook != null) {
-            tasks.add(() -> vndInvestbook.getPortfolioCash().forEach(api::addPortfolioCash));
-            tasks.add(() -> vndInvestbook.getPortfolioProperties().forEach(api::addPortfolioProperty));
-            tasks.add(() -> vndInvestbook.getSecurityDescriptions()
-                    .forEach(security -> persistSecurityDescription(security, assetToSecurityId)));
-            tasks.add(() -> vndInvestbook.getSecurityQuotes()
-                    .forEach(quote -> persistSecurityQuote(quote, assetToSecurityId)));
-        }
+    void persistPortfolioCash(Collection<PortfolioCash> portfolioCash, ImportContext context) {
+        submit(context, () -> portfolioCash.forEach(api::addPortfolioCash));
+    }
+
+    void persistPortfolioProperties(Collection<PortfolioProperty> portfolioProperties, ImportContext context) {
+        submit(context, () -> portfolioProperties.forEach(api::addPortfolioProperty));
+    }
 
-        if (!Objects.equals(object.getGeneratedBy(), GENERATED_BY_INVESTBOOK)) {
-            tasks.add(() -> persistTotalAssetsAndPortfolioCash(object, accountToPortfolioId));
+    void persistSecurityDescriptions(Collection<SecurityDescription> securityDescriptions, ImportContext context) {
+        submit(context, () -> securityDescriptions
+                .forEach(security -> persistSecurityDescription(security, context.assetToSecurityId)));
+    }
+
+    void persistSecurityQuotes(Collection<SecurityQuote> securityQuotes, ImportContext context) {
+        submit(context, () -> securityQuotes
+                .forEach(quote -> persistSecurityQuote(quote, context.assetToSecurityId)));
+    }
+
+    /**
+     * Persists total assets and cash balances, should be called for files generated by third-party software only
+     */
+    void persistTotalAssetsAndPortfolioCash(long end,
+                                            Collection<CashBalancesPof> cashBalances,
+                                            Collection<AccountPof> accounts,
+                                            ImportContext context) {
+        submit(context, () -> persistTotalAssetsAndPortfolioCash(end, cashBalances, accounts, context.accountToPortfolioId));
+    }
+
+    /**
+     * Waits for all submitted data are persisted
+     */
+    void await(ImportContext context) {
+        while (!context.pendingTasks.isEmpty()) {
+            await(context.pendingTasks.removeFirst());
         }
+    }
 
-        runTasks(tasks);
+    private void submit(ImportContext context, Runnable task) {
+        Deque<Future<?>> pendingTasks = context.pendingTasks;
+        while (pendingTasks.size() >= MAX_PENDING_CHUNKS) {
+            await(pendingTasks.removeFirst());
+        }
+        pendingTasks.addLast(executors.getImportExecutor().submit(task));
     }
 
     @SneakyThrows
-    private void runTasks(Collection<Runnable> tasks) {
-        ExecutorService executorService = newWorkStealingPool(4 * Runtime.getRuntime().availableProcessors());
+    private static void await(Future<?> future) {
         try {
-            Collection<Callable<Object>> callables = tasks.stream()
-                    .map(Executors::callable)
-                    .toList();
-            executorService.invokeAll(callables);
-        } finally {
-            executorService.shutdown();
+            future.get();
+        } catch (ExecutionException e) {
+            log.error("Ошибка сохранения данных из бэкапа", e.getCause());
         }
     }
 
@@ -147,9 +211,9 @@ public class PortfolioOpenFormatPersister {
     }
 
     private Collection<TradePof> getTradesWithUniqTradeId(Collection<TradePof> trades,
-                                                          Map<Integer, Integer> assetToSecurityId) {
+                                                          Map<Integer, Integer> assetToSecurityId,
+                                                          Set<String> tradeIds) {
         Collection<TradePof> tradesWithUniqId = new ArrayList<>(trades.size());
-        Set<String> tradeIds = new HashSet<>(trades.size());
         for (TradePof t : trades) {
             String tradeId = StringUtils.hasText(t.getTradeId()) ?
                     t.getTradeId() :
@@ -164,9 +228,9 @@ public class PortfolioOpenFormatPersister {
     }
 
     private Collection<TransferPof> getTransfersWithUniqTransferId(Collection<TransferPof> transfers,
-                                                                   Map<Integer, Integer> assetToSecurityId) {
+                                                                   Map<Integer, Integer> assetToSecurityId,
+                                                                   Set<String> transferIds) {
         Collection<TransferPof> transfersWithUniqId = new ArrayList<>(transfers.size());
-        Set<String> transferIds = new HashSet<>(transfers.size());
         for (TransferPof t : transfers) {
             String transferId = StringUtils.hasText(t.getTransferId()) ?
                     t.getTransferId() :
@@ -215,16 +279,18 @@ public class PortfolioOpenFormatPersister {
         return Objects.requireNonNull(assetToSecurityId.get(asset));
     }
 
-    private void persistTotalAssetsAndPortfolioCash(PortfolioOpenFormatV1_1_0 object,
+    private void persistTotalAssetsAndPortfolioCash(long endEpochSecond,
+                                                    Collection<CashBalancesPof> cashBalances,
+                                                    Collection<AccountPof> accounts,
                                                     Map<Integer, String> accountToPortfolioId) {
         try {
-            Instant end = Instant.ofEpochSecond(object.getEnd());
-            object.getCashBalances()
+            Instant end = Instant.ofEpochSecond(endEpochSecond);
+            cashBalances
                     .stream()
                     .map(cash -> cash.toPortfolioCash(accountToPortfolioId, end))
                     .flatMap(Collection::stream)
                     .forEach(api::addPortfolioCash);
-            object.getAccounts()
+            accounts
                     .stream()
                     .map(a -> a.toTotalAssets(end))
                     .flatMap(Optional::stream)
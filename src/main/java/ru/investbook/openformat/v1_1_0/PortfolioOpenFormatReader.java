@@ -0,0 +1,200 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.openformat.v1_1_0;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.spacious_team.broker.pojo.PortfolioCash;
+import org.spacious_team.broker.pojo.PortfolioProperty;
+import org.spacious_team.broker.pojo.SecurityDescription;
+import org.spacious_team.broker.pojo.SecurityQuote;
+import org.springframework.stereotype.Service;
+import ru.investbook.openformat.v1_1_0.PortfolioOpenFormatPersister.ImportContext;
+import ru.investbook.parser.ValidatorService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static ru.investbook.openformat.v1_1_0.PortfolioOpenFormatV1_1_0.GENERATED_BY_INVESTBOOK;
+
+/**
+ * Reads {@link PortfolioOpenFormatV1_1_0} JSON by chunks and passes them to persister as soon as read.
+ * Accounts and assets are required to persist other data, data found in file before them is kept in memory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PortfolioOpenFormatReader {
+    private static final int CHUNK_SIZE = 1000;
+    private final ObjectMapper objectMapper;
+    private final PortfolioOpenFormatPersister persister;
+    private final ValidatorService validator;
+    private ObjectMapper vndInvestbookMapper;
+
+    @PostConstruct
+    void init() {
+        vndInvestbookMapper = VndInvestbookPof.addMixIns(objectMapper.copy());
+    }
+
+    private static class ReadState {
+        private String generatedBy;
+        private long end;
+        private Collection<AccountPof> accounts;
+        private Collection<CashBalancesPof> cashBalances = List.of();
+        private Collection<AssetPof> assets;
+        private ImportContext context;
+        private final Collection<Consumer<ImportContext>> deferred = new ArrayList<>();
+    }
+
+    public void read(InputStream inputStream) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Ожидается JSON объект");
+            }
+            ReadState state = new ReadState();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "generated-by" -> state.generatedBy = parser.getValueAsString();
+                    case "end" -> state.end = parser.getValueAsLong();
+                    case "accounts" -> {
+                        state.accounts = readList(parser, AccountPof.class);
+                        startImportIfReady(state);
+                    }
+                    case "cash-balances" -> state.cashBalances = readList(parser, CashBalancesPof.class);
+                    case "assets" -> {
+                        state.assets = readList(parser, AssetPof.class);
+                        startImportIfReady(state);
+                    }
+                    case "trades" -> readArray(parser, objectMapper, TradePof.class, state, persister::persistTrades);
+                    case "transfers" -> readArray(parser, objectMapper, TransferPof.class, state, persister::persistTransfers);
+                    case "payments" -> readArray(parser, objectMapper, PaymentPof.class, state, persister::persistPayments);
+                    case "cash-flows" -> readArray(parser, objectMapper, CashFlowPof.class, state, persister::persistCashFlows);
+                    case "vnd-investbook" -> readVndInvestbook(parser, state);
+                    default -> parser.skipChildren();
+                }
+            }
+            if (state.context == null) { // accounts or assets are not found in file
+                state.accounts = Objects.requireNonNullElse(state.accounts, List.of());
+                state.assets = Objects.requireNonNullElse(state.assets, List.of());
+                startImportIfReady(state);
+            }
+            if (!Objects.equals(state.generatedBy, GENERATED_BY_INVESTBOOK)) {
+                persister.persistTotalAssetsAndPortfolioCash(state.end, state.cashBalances, state.accounts, state.context);
+            }
+            persister.await(state.context);
+        }
+    }
+
+    private void startImportIfReady(ReadState state) {
+        if (state.accounts != null && state.assets != null && state.context == null) {
+            state.context = persister.persistAccountsAndAssets(state.accounts, state.assets);
+            state.deferred.forEach(task -> task.accept(state.context));
+            state.deferred.clear();
+        }
+    }
+
+    private void readVndInvestbook(JsonParser parser, ReadState state) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "portfolio-cash" -> readArray(parser, vndInvestbookMapper, PortfolioCash.class, state,
+                        persister::persistPortfolioCash);
+                case "portfolio-properties" -> readArray(parser, vndInvestbookMapper, PortfolioProperty.class, state,
+                        persister::persistPortfolioProperties);
+                case "security-descriptions" -> readArray(parser, vndInvestbookMapper, SecurityDescription.class, state,
+                        persister::persistSecurityDescriptions);
+                case "security-quotes" -> readArray(parser, vndInvestbookMapper, SecurityQuote.class, state,
+                        persister::persistSecurityQuotes);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private <T> List<T> readList(JsonParser parser, Class<T> type) throws IOException {
+        List<T> result = new ArrayList<>();
+        readArray(parser, objectMapper, type, result::add);
+        return result;
+    }
+
+    /**
+     * Passes array elements to persister by chunks, if accounts and assets are persisted already,
+     * or defers whole array persisting otherwise
+     */
+    private <T> void readArray(JsonParser parser,
+                               ObjectMapper mapper,
+                               Class<T> type,
+                               ReadState state,
+                               BiConsumer<Collection<T>, ImportContext> chunkPersister) throws IOException {
+        List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+        readArray(parser, mapper, type, object -> {
+            chunk.add(object);
+            if (state.context != null && chunk.size() >= CHUNK_SIZE) {
+                chunkPersister.accept(new ArrayList<>(chunk), state.context);
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            if (state.context != null) {
+                chunkPersister.accept(chunk, state.context);
+            } else {
+                state.deferred.add(context -> chunkPersister.accept(chunk, context));
+            }
+        }
+    }
+
+    private <T> void readArray(JsonParser parser, ObjectMapper mapper, Class<T> type, Consumer<T> consumer)
+            throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            T object = mapper.readValue(parser, type);
+            if (object != null) {
+                validate(object);
+                consumer.accept(object);
+            }
+        }
+    }
+
+    private void validate(Object object) {
+        try {
+            validator.validate(object);
+        } catch (Exception e) {
+            log.warn("Найдены ошибки в данных формата 'Open Portfolio Format': {}", e.getMessage());
+        }
+    }
+}
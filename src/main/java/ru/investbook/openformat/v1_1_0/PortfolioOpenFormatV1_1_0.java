@@ -36,12 +36,13 @@ import java.util.Collections;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class PortfolioOpenFormatV1_1_0 {
+    public static final String VERSION = "1.1.0";
     public static String GENERATED_BY_INVESTBOOK = "investbook";
 
     @NotNull
     @Builder.Default
     @JsonProperty("version")
-    String version = "1.1.0";
+    String version = VERSION;
 
     @NotNull
     @Builder.Default
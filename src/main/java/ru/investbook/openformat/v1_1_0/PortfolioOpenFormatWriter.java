@@ -0,0 +1,392 @@
+/*
+ * InvestBook
+ * Copyright (C) 2022  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.openformat.v1_1_0;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.spacious_team.broker.pojo.CashFlowType;
+import org.spacious_team.broker.pojo.SecurityType;
+import org.springframework.boot.info.BuildProperties;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import ru.investbook.api.PortfolioCashRestController;
+import ru.investbook.api.PortfolioPropertyRestController;
+import ru.investbook.api.SecurityDescriptionRestController;
+import ru.investbook.api.SecurityQuoteRestController;
+import ru.investbook.entity.EventCashFlowEntity;
+import ru.investbook.entity.PortfolioCashEntity;
+import ru.investbook.entity.PortfolioEntity;
+import ru.investbook.entity.PortfolioPropertyEntity;
+import ru.investbook.entity.SecurityEntity;
+import ru.investbook.entity.SecurityEventCashFlowEntity;
+import ru.investbook.entity.TransactionCashFlowEntity;
+import ru.investbook.entity.TransactionEntity;
+import ru.investbook.parser.ValidatorService;
+import ru.investbook.repository.EventCashFlowRepository;
+import ru.investbook.repository.PortfolioCashRepository;
+import ru.investbook.repository.PortfolioPropertyRepository;
+import ru.investbook.repository.PortfolioRepository;
+import ru.investbook.repository.SecurityEventCashFlowRepository;
+import ru.investbook.repository.SecurityRepository;
+import ru.investbook.repository.TransactionCashFlowRepository;
+import ru.investbook.repository.TransactionRepository;
+import ru.investbook.service.AssetsAndCashService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.fasterxml.jackson.databind.SerializationFeature.FLUSH_AFTER_WRITE_VALUE;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+import static org.spacious_team.broker.pojo.CashFlowType.DERIVATIVE_PRICE;
+import static org.spacious_team.broker.pojo.CashFlowType.PRICE;
+import static org.spacious_team.broker.pojo.SecurityType.CURRENCY_PAIR;
+import static org.spacious_team.broker.pojo.SecurityType.DERIVATIVE;
+
+/**
+ * Writes database content in Portfolio Open Format by pages, memory usage doesn't depend on database size
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PortfolioOpenFormatWriter {
+    private static final int PAGE_SIZE = 1000;
+    private static final Sort ORDER_BY_ID = Sort.by("id");
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final ValidatorService validator;
+    private final BuildProperties buildProperties;
+    private final AssetsAndCashService assetsAndCashService;
+    private final PortfolioRepository portfolioRepository;
+    private final SecurityRepository securityRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionCashFlowRepository transactionCashFlowRepository;
+    private final SecurityEventCashFlowRepository securityEventCashFlowRepository;
+    private final EventCashFlowRepository eventCashFlowRepository;
+    private final PortfolioPropertyRepository portfolioPropertyRepository;
+    private final PortfolioCashRepository portfolioCashRepository;
+    private final SecurityDescriptionRestController securityDescriptionRestController;
+    private final PortfolioPropertyRestController portfolioPropertyRestController;
+    private final PortfolioCashRestController portfolioCashRestController;
+    private final SecurityQuoteRestController securityQuoteRestController;
+    private ObjectWriter pofWriter;
+    private ObjectWriter vndInvestbookWriter;
+
+    @PostConstruct
+    void init() {
+        pofWriter = objectMapper.writer()
+                .without(FLUSH_AFTER_WRITE_VALUE);
+        vndInvestbookWriter = VndInvestbookPof.addMixIns(objectMapper.copy())
+                .writer()
+                .without(FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Writes {@link PortfolioOpenFormatV1_1_0} JSON, output stream is not closed
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeStringField("version", PortfolioOpenFormatV1_1_0.VERSION);
+            generator.writeStringField("generated-by", PortfolioOpenFormatV1_1_0.GENERATED_BY_INVESTBOOK);
+            generator.writeNumberField("generated", System.currentTimeMillis() / 1000);
+            generator.writeNumberField("end", getLatestEventTimestamp());
+            writeAccounts(generator);
+            writeCashBalances(generator);
+            writeAssets(generator);
+            writeTrades(generator);
+            writeTransfers(generator);
+            writePayments(generator);
+            writeCashFlows(generator);
+            writeVndInvestbook(generator);
+            generator.writeEndObject();
+        } finally {
+            AccountPof.resetAccountIdGenerator(); // release mem
+        }
+    }
+
+    private long getLatestEventTimestamp() {
+        return Stream.of(
+                        transactionRepository.findFirstByOrderByTimestampDesc()
+                                .map(TransactionEntity::getTimestamp)
+                                .orElse(Instant.EPOCH),
+                        securityEventCashFlowRepository.findFirstByOrderByTimestampDesc()
+                                .map(SecurityEventCashFlowEntity::getTimestamp)
+                                .orElse(Instant.EPOCH),
+                        eventCashFlowRepository.findFirstByOrderByTimestampDesc()
+                                .map(EventCashFlowEntity::getTimestamp)
+                                .orElse(Instant.EPOCH),
+                        portfolioPropertyRepository.findFirstByOrderByTimestampDesc()
+                                .map(PortfolioPropertyEntity::getTimestamp)
+                                .orElse(Instant.EPOCH),
+                        portfolioCashRepository.findFirstByOrderByTimestampDesc()
+                                .map(PortfolioCashEntity::getTimestamp)
+                                .orElse(Instant.EPOCH))
+                .map(Instant::getEpochSecond)
+                .max(Comparator.naturalOrder())
+                .orElse(0L);
+    }
+
+    private void writeAccounts(JsonGenerator generator) throws IOException {
+        AccountPof.resetAccountIdGenerator();
+        generator.writeArrayFieldStart("accounts");
+        for (PortfolioEntity portfolio : portfolioRepository.findAll()) {
+            BigDecimal totalAssets = assetsAndCashService.getTotalAssetsInRub(portfolio.getId()).orElse(BigDecimal.ZERO);
+            write(generator, AccountPof.of(portfolio, totalAssets));
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeCashBalances(JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart("cash-balances");
+        for (PortfolioEntity portfolio : portfolioRepository.findAll()) {
+            write(generator, getCashBalances(portfolio));
+        }
+        generator.writeEndArray();
+    }
+
+    private CashBalancesPof getCashBalances(PortfolioEntity portfolio) {
+        List<PortfolioCashEntity> latestCashBalances = portfolioCashRepository
+                .findDistinctOnPortfolioByPortfolioInAndTimestampBetweenOrderByTimestampDesc(
+                        Set.of(portfolio.getId()),
+                        Instant.EPOCH,
+                        Instant.now());
+        return CashBalancesPof.of(AccountPof.getAccountId(portfolio.getId()), latestCashBalances);
+    }
+
+    private void writeAssets(JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart("assets");
+        forEachPage(securityRepository::findAll, securities -> {
+            for (SecurityEntity security : securities) {
+                write(generator, AssetPof.of(security));
+            }
+        });
+        generator.writeEndArray();
+    }
+
+    /**
+     * Writes security trades and bond redemptions
+     */
+    private void writeTrades(JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart("trades");
+        int[] maxTradeId = {0};
+        forEachPage(transactionRepository::findAll, transactions -> {
+            Map<Integer, List<TransactionCashFlowEntity>> cashFlows = getTransactionCashFlows(transactions);
+            for (TransactionEntity transaction : transactions) {
+                List<TransactionCashFlowEntity> cashFlow = cashFlows.getOrDefault(transaction.getId(), List.of());
+                if (!isDepositOrWithdrawal(transaction, cashFlow)) {
+                    TradePof trade = TradePof.of(transaction, cashFlow);
+                    maxTradeId[0] = Math.max(maxTradeId[0], trade.getId());
+                    write(generator, trade);
+                }
+            }
+        });
+        int redemptionType = CashFlowType.REDEMPTION.getId();
+        forEachPage(pageable -> securityEventCashFlowRepository.findByCashFlowTypeId(redemptionType, pageable),
+                redemptions -> {
+                    for (SecurityEventCashFlowEntity redemption : redemptions) {
+                        write(generator, TradePof.of(redemption, ++maxTradeId[0]));
+                    }
+                });
+        generator.writeEndArray();
+    }
+
+    /**
+     * Writes deposits and withdrawals, second pass over transactions allows not to keep them in memory
+     */
+    private void writeTransfers(JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart("transfers");
+        forEachPage(transactionRepository::findAll, transactions -> {
+            Map<Integer, List<TransactionCashFlowEntity>> cashFlows = getTransactionCashFlows(transactions);
+            for (TransactionEntity transaction : transactions) {
+                List<TransactionCashFlowEntity> cashFlow = cashFlows.getOrDefault(transaction.getId(), List.of());
+                if (isDepositOrWithdrawal(transaction, cashFlow)) {
+                    write(generator, TransferPof.of(transaction));
+                }
+            }
+        });
+        generator.writeEndArray();
+    }
+
+    /**
+     * @return transaction cash flows of page by one SELECT
+     */
+    private Map<Integer, List<TransactionCashFlowEntity>> getTransactionCashFlows(Collection<TransactionEntity> transactions) {
+        if (transactions.isEmpty()) {
+            return Map.of();
+        }
+        Set<Integer> transactionIds = transactions.stream()
+                .map(TransactionEntity::getId)
+                .collect(toSet());
+        return transactionCashFlowRepository.findByTransactionIdIn(transactionIds)
+                .stream()
+                .collect(groupingBy(TransactionCashFlowEntity::getTransactionId));
+    }
+
+    private static boolean isDepositOrWithdrawal(TransactionEntity transaction,
+                                                 List<TransactionCashFlowEntity> transactionCashFlow) {
+        SecurityType type = transaction.getSecurity().getType();
+        return type != DERIVATIVE &&
+                type != CURRENCY_PAIR &&
+                (transactionCashFlow.isEmpty() ||
+                        transactionCashFlow.stream()
+                                .noneMatch(e -> e.getCashFlowType().getId() == PRICE.getId() ||
+                                        e.getCashFlowType().getId() == DERIVATIVE_PRICE.getId()));
+    }
+
+    private void writePayments(JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart("payments");
+        Set<Integer> excludedTypes = Set.of(
+                CashFlowType.TAX.getId(),
+                CashFlowType.REDEMPTION.getId()); // bond redemptions saved as trades
+        forEachPage(pageable -> securityEventCashFlowRepository.findByCashFlowTypeIdNotIn(excludedTypes, pageable),
+                payments -> {
+                    Map<PaymentKey, SecurityEventCashFlowEntity> taxes = getPaymentTaxes(payments);
+                    for (SecurityEventCashFlowEntity payment : payments) {
+                        Optional<SecurityEventCashFlowEntity> tax = Optional.ofNullable(taxes.get(PaymentKey.of(payment)));
+                        write(generator, PaymentPof.of(payment, tax));
+                    }
+                });
+        generator.writeEndArray();
+    }
+
+    /**
+     * @return taxes of page payments by one SELECT
+     */
+    private Map<PaymentKey, SecurityEventCashFlowEntity> getPaymentTaxes(Collection<SecurityEventCashFlowEntity> payments) {
+        if (payments.isEmpty()) {
+            return Map.of();
+        }
+        Set<Integer> securityIds = payments.stream()
+                .map(e -> e.getSecurity().getId())
+                .collect(toSet());
+        Instant from = payments.stream()
+                .map(SecurityEventCashFlowEntity::getTimestamp)
+                .min(Comparator.naturalOrder())
+                .orElseThrow();
+        Instant to = payments.stream()
+                .map(SecurityEventCashFlowEntity::getTimestamp)
+                .max(Comparator.naturalOrder())
+                .orElseThrow();
+        return securityEventCashFlowRepository.findBySecurityIdInAndCashFlowTypeIdInAndTimestampBetween(
+                        securityIds, Set.of(CashFlowType.TAX.getId()), from, to)
+                .stream()
+                .collect(toMap(PaymentKey::of, Function.identity(), (e1, _) -> e1));
+    }
+
+    private record PaymentKey(String portfolio, Integer security, Instant timestamp, Integer count) {
+        static PaymentKey of(SecurityEventCashFlowEntity cashFlow) {
+            return new PaymentKey(
+                    cashFlow.getPortfolio().getId(),
+                    cashFlow.getSecurity().getId(),
+                    cashFlow.getTimestamp(),
+                    cashFlow.getCount());
+        }
+    }
+
+    private void writeCashFlows(JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart("cash-flows");
+        forEachPage(eventCashFlowRepository::findAll, cashFlows -> {
+            for (EventCashFlowEntity cashFlow : cashFlows) {
+                write(generator, CashFlowPof.of(cashFlow));
+            }
+        });
+        generator.writeEndArray();
+    }
+
+    private void writeVndInvestbook(JsonGenerator generator) throws IOException {
+        generator.writeObjectFieldStart("vnd-investbook");
+        generator.writeStringField("version", buildProperties.getVersion());
+        writeVndInvestbookArray(generator, "portfolio-cash", portfolioCashRestController::get, ORDER_BY_ID);
+        writeVndInvestbookArray(generator, "portfolio-properties", portfolioPropertyRestController::get, ORDER_BY_ID);
+        writeVndInvestbookArray(generator, "security-descriptions", securityDescriptionRestController::get,
+                Sort.by("security"));
+        writeVndInvestbookArray(generator, "security-quotes", securityQuoteRestController::get, ORDER_BY_ID);
+        generator.writeEndObject();
+    }
+
+    private <T> void writeVndInvestbookArray(JsonGenerator generator,
+                                             String fieldName,
+                                             Function<Pageable, ? extends Slice<T>> pageReader,
+                                             Sort sort) throws IOException {
+        generator.writeArrayFieldStart(fieldName);
+        forEachPage(pageReader, sort, page -> {
+            for (T object : page) {
+                vndInvestbookWriter.writeValue(generator, object);
+            }
+        });
+        generator.writeEndArray();
+    }
+
+    private void write(JsonGenerator generator, Object object) throws IOException {
+        validate(object);
+        pofWriter.writeValue(generator, object);
+    }
+
+    private void validate(Object object) {
+        try {
+            validator.validate(object);
+        } catch (Exception e) {
+            log.warn("Найдены ошибки в данных формата 'Open Portfolio Format': {}", e.getMessage());
+        }
+    }
+
+    private <T> void forEachPage(Function<Pageable, ? extends Slice<T>> pageReader,
+                                 PageConsumer<T> consumer) throws IOException {
+        forEachPage(pageReader, ORDER_BY_ID, consumer);
+    }
+
+    private <T> void forEachPage(Function<Pageable, ? extends Slice<T>> pageReader,
+                                 Sort sort,
+                                 PageConsumer<T> consumer) throws IOException {
+        Pageable pageable = PageRequest.of(0, PAGE_SIZE, sort);
+        Slice<T> page;
+        do {
+            page = pageReader.apply(pageable);
+            consumer.accept(page.getContent());
+            entityManager.clear(); // page entities are not needed anymore, persistence context is opened till request end
+            pageable = page.nextPageable();
+        } while (page.hasNext());
+    }
+
+    private interface PageConsumer<T> {
+        void accept(List<T> page) throws IOException;
+    }
+}
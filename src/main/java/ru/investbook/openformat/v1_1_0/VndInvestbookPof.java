@@ -21,6 +21,7 @@ package ru.investbook.openformat.v1_1_0;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.constraints.NotNull;
 import lombok.Builder;
 import lombok.Value;
@@ -67,4 +68,24 @@ public class VndInvestbookPof {
     @JsonIgnoreProperties(value = {"id"})
     @JsonProperty("security-quotes")
     Collection<SecurityQuote> securityQuotes = Collections.emptySet();
+
+    /**
+     * Registers mix-ins, which ignore the same properties as field annotations do. Used to write
+     * and read collection elements one by one.
+     */
+    static ObjectMapper addMixIns(ObjectMapper objectMapper) {
+        return objectMapper
+                .addMixIn(PortfolioCash.class, IgnoreIdMixIn.class)
+                .addMixIn(PortfolioProperty.class, IgnoreIdMixIn.class)
+                .addMixIn(SecurityDescription.class, IgnoreIssuerMixIn.class)
+                .addMixIn(SecurityQuote.class, IgnoreIdMixIn.class);
+    }
+
+    @JsonIgnoreProperties(value = {"id"})
+    private interface IgnoreIdMixIn {
+    }
+
+    @JsonIgnoreProperties(value = {"issuer"})
+    private interface IgnoreIssuerMixIn {
+    }
 }
@@ -0,0 +1,66 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.parser;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Broker report layout key, which is built without report parsing: by file content signature (magic bytes)
+ * and file name with masked digits, for example "ZIP:broker_rep_0-0-0.xlsx" for "broker_rep_2023-01-01.xlsx".
+ */
+record BrokerReportFingerprint(Signature signature, String fileNamePattern) {
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final byte[] ZIP_MAGIC = {0x50, 0x4B, 0x03, 0x04};
+    private static final byte[] OLE2_MAGIC = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    static BrokerReportFingerprint of(String fileName, ByteArrayInputStream inputStream) {
+        String fileNamePattern = (fileName == null) ? "" : DIGITS.matcher(fileName.toLowerCase(Locale.ROOT)).replaceAll("0");
+        inputStream.mark(OLE2_MAGIC.length);
+        byte[] header = inputStream.readNBytes(OLE2_MAGIC.length);
+        inputStream.reset();
+        return new BrokerReportFingerprint(Signature.of(header), fileNamePattern);
+    }
+
+    enum Signature {
+        ZIP,  // xlsx
+        OLE2, // xls
+        XML,  // xml or html
+        OTHER;
+
+        private static Signature of(byte[] header) {
+            if (startsWith(header, ZIP_MAGIC)) {
+                return ZIP;
+            } else if (startsWith(header, OLE2_MAGIC)) {
+                return OLE2;
+            }
+            int offset = startsWith(header, UTF8_BOM) ? UTF8_BOM.length : 0;
+            return (header.length > offset && header[offset] == '<') ? XML : OTHER;
+        }
+
+        private static boolean startsWith(byte[] array, byte[] prefix) {
+            return array.length >= prefix.length &&
+                    Arrays.equals(array, 0, prefix.length, prefix, 0, prefix.length);
+        }
+    }
+}
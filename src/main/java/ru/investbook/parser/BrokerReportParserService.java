@@ -19,6 +19,8 @@
 package ru.investbook.parser;
 
 import java.io.InputStream;
+import java.time.Instant;
+import java.util.Optional;
 
 public interface BrokerReportParserService {
 
@@ -32,4 +34,39 @@ public interface BrokerReportParserService {
      * @throws RuntimeException if report has broken format or parser not found
      */
     void parseReport(InputStream inputStream, String fileName, String providedByBroker);
+
+    /**
+     * Opens report, report is not saved until {@link OpenedReport#parse()} is called.
+     * Method does not close input stream.
+     *
+     * @param inputStream      file content
+     * @param fileName         file name
+     * @param providedByBroker broker what generates report, may be null if unknown
+     * @throws RuntimeException if report has broken format or parser not found
+     */
+    OpenedReport openReport(InputStream inputStream, String fileName, String providedByBroker);
+
+    /**
+     * Report file read by broker report factory. Opened report holds file content in memory, it should be closed.
+     */
+    interface OpenedReport extends AutoCloseable {
+
+        /**
+         * @return empty if report contains several portfolios or report date is unknown
+         */
+        Optional<ReportDescription> getDescription();
+
+        /**
+         * Parse and backups report. Should be called once.
+         *
+         * @throws RuntimeException if report has broken format
+         */
+        void parse();
+
+        @Override
+        void close();
+    }
+
+    record ReportDescription(String portfolio, Instant reportEndDateTime) {
+    }
 }
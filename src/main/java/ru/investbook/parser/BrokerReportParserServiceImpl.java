@@ -28,6 +28,7 @@ import org.spacious_team.broker.report_parser.api.ReportTables;
 import org.spacious_team.broker.report_parser.api.ReportTablesFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import ru.investbook.InvestbookMetrics;
 import ru.investbook.InvestbookProperties;
 
 import java.io.ByteArrayInputStream;
@@ -38,37 +39,45 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BrokerReportParserServiceImpl implements BrokerReportParserService {
+    private static final int MAX_FINGERPRINT_CACHE_SIZE = 1000;
 
     private final InvestbookProperties investbookProperties;
     private final ReportParserService reportParserService;
+    private final InvestbookMetrics metrics;
     private final List<BrokerReportFactory> brokerReportFactories;
     private final Collection<ReportTablesFactory> reportTablesFactories;
+    private final Map<BrokerReportFingerprint, BrokerReportFactory> factoryByFingerprint = new ConcurrentHashMap<>();
 
 
-    @SneakyThrows
     @Override
     public void parseReport(InputStream inputStream, String fileName, String broker) {
-        ByteArrayInputStream is = castToByteArrayInputStream(inputStream);
+        try (OpenedReport report = openReport(inputStream, fileName, broker)) {
+            report.parse();
+        }
+    }
+
+    @SneakyThrows
+    @Override
+    public OpenedReport openReport(InputStream inputStream, String fileName, String broker) {
         long t0 = System.nanoTime();
+        ByteArrayInputStream is = castToByteArrayInputStream(inputStream);
         is.mark(Integer.MAX_VALUE);
-        String brokerName = parseReport0(is, fileName, broker);
-        if (investbookProperties.isReportBackup()) {
-            is.reset();
-            Path path = saveToBackup(is, fileName, brokerName);
-            log.info("Загрузка отчета {} завершена за {}, бекап отчета сохранен в {}",
-                    fileName, Duration.ofNanos(System.nanoTime() - t0), path.toAbsolutePath());
-        } else {
-            log.info("Загрузка отчета {} завершена за {}, бекап отключен конфигурацией",
-                    fileName, Duration.ofNanos(System.nanoTime() - t0));
+        try {
+            BrokerNameAndReport brokerNameAndReport = getBrokerReport(is, fileName, broker);
+            return new OpenedReportImpl(is, fileName, brokerNameAndReport, System.nanoTime() - t0);
+        } catch (Exception e) {
+            throw parsingError(fileName, e);
         }
     }
 
@@ -81,23 +90,10 @@ public class BrokerReportParserServiceImpl implements BrokerReportParserService
         }
     }
 
-    /**
-     * @param inputStream      file content
-     * @param fileName         file name
-     * @param providedByBroker broker what generates report, may be null if unknown
-     * @return the exact name of the broker providing the report
-     * @throws RuntimeException if report has broken format or parser not found
-     */
-    private String parseReport0(ByteArrayInputStream inputStream, String fileName, String providedByBroker) {
-        try (BrokerNameAndReport brokerNameAndReport = getBrokerReport(inputStream, fileName, providedByBroker)) {
-            ReportTables reportTables = getReportTables(brokerNameAndReport.getBrokerReport());
-            reportParserService.parse(reportTables);
-            return brokerNameAndReport.getBrokerName();
-        } catch (Exception e) {
-            String error = "Произошла ошибка парсинга отчета '" + fileName + "'";
-            log.warn(error, e);
-            throw new RuntimeException(error, e);
-        }
+    private static RuntimeException parsingError(String fileName, Exception e) {
+        String error = "Произошла ошибка парсинга отчета '" + fileName + "'";
+        log.warn(error, e);
+        return new RuntimeException(error, e);
     }
 
     /**
@@ -131,21 +127,43 @@ public class BrokerReportParserServiceImpl implements BrokerReportParserService
         }
     }
 
+    /**
+     * Factory which created report of the same layout before is tried first,
+     * this avoids excel file parsing by factories of other brokers
+     */
     @SneakyThrows
     private BrokerNameAndReport getReportOfUnknownBroker(ByteArrayInputStream inputStream, String fileName) {
-        Optional<BrokerReport> brokerReport;
-        // convert to mark supporting input stream
-
+        BrokerReportFingerprint fingerprint = BrokerReportFingerprint.of(fileName, inputStream);
+        BrokerReportFactory knownFactory = factoryByFingerprint.get(fingerprint);
+        if (knownFactory != null) {
+            Optional<BrokerNameAndReport> brokerReport = createReport(knownFactory, inputStream, fileName);
+            if (brokerReport.isPresent()) {
+                return brokerReport.get();
+            }
+        }
         for (BrokerReportFactory brokerReportFactory : brokerReportFactories) {
-            if (!brokerReportFactory.canCreate(fileName, inputStream)) continue;
-            brokerReport = brokerReportFactory.create(fileName, inputStream);
+            if (brokerReportFactory == knownFactory) continue;
+            Optional<BrokerNameAndReport> brokerReport = createReport(brokerReportFactory, inputStream, fileName);
             if (brokerReport.isPresent()) {
-                return new BrokerNameAndReport(brokerReportFactory.getBrokerName(), brokerReport.get());
+                if (factoryByFingerprint.size() < MAX_FINGERPRINT_CACHE_SIZE) {
+                    factoryByFingerprint.put(fingerprint, brokerReportFactory);
+                }
+                return brokerReport.get();
             }
         }
         throw new IllegalArgumentException("Неизвестный формат отчета '" + fileName + "'");
     }
 
+    private static Optional<BrokerNameAndReport> createReport(BrokerReportFactory brokerReportFactory,
+                                                              ByteArrayInputStream inputStream,
+                                                              String fileName) {
+        if (!brokerReportFactory.canCreate(fileName, inputStream)) {
+            return Optional.empty();
+        }
+        return brokerReportFactory.create(fileName, inputStream)
+                .map(report -> new BrokerNameAndReport(brokerReportFactory.getBrokerName(), report));
+    }
+
     @SneakyThrows
     private BrokerNameAndReport getReportOfKnownBroker(ByteArrayInputStream inputStream, String fileName, String providedByBroker) {
         return findBrokerReportFactory(providedByBroker).stream()
@@ -174,6 +192,55 @@ public class BrokerReportParserServiceImpl implements BrokerReportParserService
                 "Can't fina ReportTablesFactory for broker report of type: " + brokerReport.getClass().getSimpleName());
     }
 
+    @RequiredArgsConstructor
+    private class OpenedReportImpl implements OpenedReport {
+        private final ByteArrayInputStream inputStream;
+        private final String fileName;
+        private final BrokerNameAndReport brokerNameAndReport;
+        private final long openNanos;
+
+        @Override
+        public Optional<ReportDescription> getDescription() {
+            try {
+                if (brokerNameAndReport.getBrokerReport() instanceof SingleBrokerReport report &&
+                        report.getPortfolio() != null && report.getReportEndDateTime() != null) {
+                    return Optional.of(new ReportDescription(report.getPortfolio(), report.getReportEndDateTime()));
+                }
+            } catch (Exception e) {
+                log.debug("Не могу определить счет и дату отчета '{}'", fileName, e);
+            }
+            return Optional.empty();
+        }
+
+        @Override
+        public void parse() {
+            long t0 = System.nanoTime();
+            String brokerName = brokerNameAndReport.getBrokerName();
+            try {
+                ReportTables reportTables = getReportTables(brokerNameAndReport.getBrokerReport());
+                reportParserService.parse(reportTables, brokerName);
+                metrics.recordBrokerReportImport(brokerName, Duration.ofNanos(System.nanoTime() - t0));
+            } catch (Exception e) {
+                throw parsingError(fileName, e);
+            }
+            Duration duration = Duration.ofNanos(openNanos + System.nanoTime() - t0);
+            if (investbookProperties.isReportBackup()) {
+                inputStream.reset();
+                Path path = saveToBackup(inputStream, fileName, brokerName);
+                log.info("Загрузка отчета {} завершена за {}, бекап отчета сохранен в {}",
+                        fileName, duration, path.toAbsolutePath());
+            } else {
+                log.info("Загрузка отчета {} завершена за {}, бекап отключен конфигурацией", fileName, duration);
+            }
+        }
+
+        @SneakyThrows
+        @Override
+        public void close() {
+            brokerNameAndReport.close();
+        }
+    }
+
     @Getter
     @RequiredArgsConstructor
     private static class BrokerNameAndReport implements AutoCloseable {
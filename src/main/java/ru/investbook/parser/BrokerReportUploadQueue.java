@@ -0,0 +1,238 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.parser;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import ru.investbook.InvestbookExecutors;
+import ru.investbook.InvestbookProperties;
+import ru.investbook.parser.BrokerReportParserService.OpenedReport;
+import ru.investbook.parser.BrokerReportParserService.ReportDescription;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsFirst;
+import static java.util.stream.Collectors.groupingBy;
+
+/**
+ * Imports uploaded broker reports in background by bounded worker pool.
+ * Size of files waiting for import is limited by byte budget, caller is blocked when budget is exhausted.
+ * Files read under the budget are dispatched by batch: each report of batch is opened once to read its portfolio
+ * and date, then opened report is imported.
+ * <p>
+ * Reports of the same portfolio are imported one by one. Reports of one batch are imported in report date order.
+ * Batches of one {@link #submit} call are queued in file name order, so reports of the next batch are imported
+ * after reports of the previous batch regardless of dates, because the previous batch should be imported
+ * to release budget for the next one.
+ */
+@Service
+@Slf4j
+public class BrokerReportUploadQueue {
+    private static final int MAX_STATUS_HISTORY_SIZE = 1000;
+    private final BrokerReportParserService brokerReportParserService;
+    private final ExecutorService workers;
+    private final int budgetKiB;
+    private final Semaphore budget; // permit is 1 KiB
+    private final Map<String, CompletableFuture<Void>> portfolioQueues = new HashMap<>(); // guarded by itself
+    private final Deque<ReportUploadStatus> statuses = new ArrayDeque<>(); // guarded by itself
+
+    public BrokerReportUploadQueue(BrokerReportParserService brokerReportParserService,
+                                   InvestbookProperties properties,
+                                   InvestbookExecutors executors) {
+        this.brokerReportParserService = brokerReportParserService;
+        this.workers = executors.getReportUploadExecutor();
+        long budgetKiB = properties.getReportUploadMaxBytesInFlight().toKilobytes();
+        this.budgetKiB = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetKiB));
+        this.budget = new Semaphore(this.budgetKiB);
+    }
+
+    /**
+     * Reads files and queues them for import
+     *
+     * @param broker broker what generates reports, may be null if unknown
+     */
+    public Collection<ReportUploadStatus> submit(Collection<ReportFile> files, String broker) throws InterruptedException {
+        List<ReportFile> sortedFiles = files.stream()
+                .sorted(comparing(ReportFile::fileName, nullsFirst(naturalOrder())))
+                .toList();
+        Collection<ReportUploadStatus> result = new ArrayList<>(sortedFiles.size());
+        List<QueuedReport> batch = new ArrayList<>();
+        CompletableFuture<Void> queuedBatches = CompletableFuture.completedFuture(null);
+        for (ReportFile file : sortedFiles) {
+            ReportUploadStatus status = new ReportUploadStatus(file.fileName(), file.size());
+            addStatus(status);
+            result.add(status);
+            int permits = getPermits(file.size());
+            if (!budget.tryAcquire(permits)) {
+                queuedBatches = dispatch(batch, broker, queuedBatches); // queued files should be started to release budget
+                batch = new ArrayList<>();
+                budget.acquire(permits);
+            }
+            try (InputStream inputStream = file.content().getInputStream()) {
+                batch.add(new QueuedReport(status, inputStream.readAllBytes(), permits));
+            } catch (Exception e) {
+                budget.release(permits);
+                status.failed(e);
+                log.warn("Не могу прочитать отчет '{}'", file.fileName(), e);
+            }
+        }
+        dispatch(batch, broker, queuedBatches);
+        return result;
+    }
+
+    public Collection<ReportUploadStatus> getStatuses() {
+        synchronized (statuses) {
+            return List.copyOf(statuses);
+        }
+    }
+
+    private int getPermits(long size) {
+        long permits = (size + 1023) / 1024;
+        return (int) Math.max(1, Math.min(budgetKiB, permits));
+    }
+
+    private void addStatus(ReportUploadStatus status) {
+        synchronized (statuses) {
+            statuses.addFirst(status);
+            while (statuses.size() > MAX_STATUS_HISTORY_SIZE) {
+                statuses.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Opens reports in parallel to read portfolio and date, then queues opened reports for import by portfolios.
+     * Batch is queued after previous batches, even if it is opened earlier.
+     *
+     * @param queuedBatches completed when previous batches are queued
+     * @return future completed when this and previous batches are queued
+     */
+    private CompletableFuture<Void> dispatch(List<QueuedReport> batch, String broker,
+                                             CompletableFuture<Void> queuedBatches) {
+        if (batch.isEmpty()) {
+            return queuedBatches;
+        }
+        CompletableFuture<?>[] openedReports = batch.stream()
+                .map(report -> CompletableFuture.runAsync(() -> report.open(broker), workers))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(queuedBatches, CompletableFuture.allOf(openedReports))
+                .handle((_, _) -> {
+                    enqueue(batch);
+                    return null;
+                });
+    }
+
+    private void enqueue(List<QueuedReport> batch) {
+        Map<Optional<String>, List<QueuedReport>> reportsByPortfolio = batch.stream()
+                .collect(groupingBy(report -> report.getDescription().map(ReportDescription::portfolio)));
+        reportsByPortfolio.forEach((portfolio, reports) -> {
+            if (portfolio.isPresent()) {
+                List<QueuedReport> sortedReports = reports.stream()
+                        .sorted(comparing(report -> report.getDescription().orElseThrow().reportEndDateTime()))
+                        .toList();
+                enqueue(portfolio.get(), sortedReports);
+            } else {
+                reports.forEach(report -> CompletableFuture.runAsync(() -> importReport(report), workers));
+            }
+        });
+    }
+
+    private void enqueue(String portfolio, List<QueuedReport> reports) {
+        synchronized (portfolioQueues) {
+            CompletableFuture<Void> tail = portfolioQueues.getOrDefault(portfolio, CompletableFuture.completedFuture(null));
+            for (QueuedReport report : reports) {
+                // report is imported and its budget is released even if previous stage is failed
+                tail = tail.handle((_, _) -> null)
+                        .thenRunAsync(() -> importReport(report), workers);
+            }
+            CompletableFuture<Void> queueTail = tail;
+            portfolioQueues.put(portfolio, queueTail);
+            queueTail.whenComplete((_, _) -> {
+                synchronized (portfolioQueues) {
+                    portfolioQueues.remove(portfolio, queueTail);
+                }
+            });
+        }
+    }
+
+    private void importReport(QueuedReport report) {
+        ReportUploadStatus status = report.getStatus();
+        try (OpenedReport openedReport = report.getOpenedReport()) {
+            status.started();
+            if (openedReport == null) {
+                throw report.getOpenError();
+            }
+            openedReport.parse();
+            status.done();
+        } catch (Throwable t) {
+            status.failed(t);
+        } finally {
+            budget.release(report.getPermits());
+        }
+    }
+
+    @Getter
+    private class QueuedReport {
+        private final ReportUploadStatus status;
+        private final byte[] content;
+        private final int permits;
+        private volatile OpenedReport openedReport;
+        private volatile Throwable openError;
+        private volatile Optional<ReportDescription> description = Optional.empty();
+
+        private QueuedReport(ReportUploadStatus status, byte[] content, int permits) {
+            this.status = status;
+            this.content = content;
+            this.permits = permits;
+        }
+
+        void open(String broker) {
+            try {
+                openedReport = brokerReportParserService.openReport(
+                        new ByteArrayInputStream(content), status.getFileName(), broker);
+                description = openedReport.getDescription();
+            } catch (Throwable t) {
+                openError = t;
+            }
+        }
+    }
+
+    /**
+     * @param fileName file name, may be null
+     */
+    public record ReportFile(String fileName, long size, InputStreamSource content) {
+    }
+}
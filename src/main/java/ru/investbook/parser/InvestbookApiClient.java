@@ -35,6 +35,9 @@ import org.spacious_team.broker.pojo.Transaction;
 import org.spacious_team.broker.pojo.TransactionCashFlow;
 import org.spacious_team.broker.report_parser.api.AbstractTransaction;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.investbook.InvestbookMetrics;
+import ru.investbook.InvestbookProperties;
 import ru.investbook.api.CreateResult;
 import ru.investbook.api.EventCashFlowRestController;
 import ru.investbook.api.ForeignExchangeRateRestController;
@@ -47,12 +50,24 @@ import ru.investbook.api.SecurityQuoteRestController;
 import ru.investbook.api.SecurityRestController;
 import ru.investbook.api.TransactionCashFlowRestController;
 import ru.investbook.api.TransactionRestController;
+import ru.investbook.report.FifoPositionsFactory;
+import ru.investbook.repository.TransactionBatchRepository;
+import ru.investbook.repository.TransactionBatchRepository.TradeKey;
+import ru.investbook.service.PortfolioValuationService;
 import ru.investbook.service.moex.MoexDerivativeCodeService;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.minBy;
 import static org.spacious_team.broker.pojo.CashFlowType.DERIVATIVE_PROFIT;
 import static ru.investbook.repository.RepositoryHelper.isUniqIndexViolationException;
 
@@ -73,6 +88,12 @@ public class InvestbookApiClient {
     private final ForeignExchangeRateRestController foreignExchangeRateRestController;
     private final MoexDerivativeCodeService moexDerivativeCodeService;
     private final ValidatorService validator;
+    private final TransactionBatchRepository transactionBatchRepository;
+    private final FifoPositionsFactory positionsFactory;
+    private final PortfolioValuationService portfolioValuationService;
+    private final TransactionTemplate transactionTemplate;
+    private final InvestbookProperties properties;
+    private final InvestbookMetrics metrics;
 
     public boolean addPortfolio(Portfolio portfolio) {
         return saveWithoutUpdate(
@@ -124,6 +145,85 @@ public class InvestbookApiClient {
                 .forEach(this::addTransactionCashFlow);
     }
 
+    /**
+     * Saves transactions and their cash flows by JDBC batches. If batch can't be saved,
+     * its transactions are saved one by one to skip invalid objects only.
+     */
+    public void addTransactions(Collection<? extends AbstractTransaction> transactions) {
+        int batchSize = properties.getReportImportBatchSize();
+        if (batchSize <= 1) {
+            transactions.forEach(this::addTransaction);
+            return;
+        }
+        List<AbstractTransaction> batch = new ArrayList<>(batchSize);
+        for (AbstractTransaction transaction : transactions) {
+            if (transaction.getTransaction().getId() != null) {
+                addTransaction(transaction); // ID is provided by report, batch inserts only generate ID
+            } else if (isValid(transaction.getTransaction(), "Не могу добавить транзакцию")) {
+                batch.add(transaction);
+                if (batch.size() >= batchSize) {
+                    addTransactionBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            addTransactionBatch(batch);
+        }
+    }
+
+    private void addTransactionBatch(List<AbstractTransaction> batch) {
+        try {
+            SkippedDuplicates skipped = transactionTemplate.execute(_ -> insertTransactionBatch(batch));
+            if (skipped != null) {
+                metrics.countSkippedDuplicates(Transaction.class.getSimpleName(), skipped.transactions());
+                metrics.countSkippedDuplicates(TransactionCashFlow.class.getSimpleName(), skipped.cashFlows());
+            }
+        } catch (Exception e) {
+            log.debug("Не могу сохранить пакет из {} транзакций, сохраняю по одной", batch.size(), e);
+            batch.forEach(this::addTransaction);
+        }
+    }
+
+    private SkippedDuplicates insertTransactionBatch(List<AbstractTransaction> batch) {
+        List<Transaction> transactions = batch.stream()
+                .map(AbstractTransaction::getTransaction)
+                .toList();
+        List<Transaction> insertedTransactions = transactionBatchRepository.insertIfAbsent(transactions);
+        Map<TradeKey, Integer> transactionIds = transactionBatchRepository.getIds(transactions);
+        List<TransactionCashFlow> cashFlows = new ArrayList<>();
+        for (AbstractTransaction transaction : batch) {
+            Integer transactionId = getTransactionId(transactionIds, transaction.getTransaction());
+            transaction.toBuilder()
+                    .id(transactionId)
+                    .build()
+                    .getTransactionCashFlows()
+                    .stream()
+                    .filter(cash -> isValid(cash, "Не могу добавить информацию о передвижении средств"))
+                    .forEach(cashFlows::add);
+        }
+        int insertedCashFlows = transactionBatchRepository.insertCashFlowsIfAbsent(cashFlows).size();
+        insertedTransactions.stream()
+                .map(t -> t.toBuilder()
+                        .id(getTransactionId(transactionIds, t))
+                        .build())
+                .forEach(positionsFactory::add); // after commit, back-dated transaction rebuilds positions
+        insertedTransactions.stream()
+                .collect(groupingBy(Transaction::getPortfolio,
+                        mapping(Transaction::getTimestamp, minBy(Comparator.naturalOrder()))))
+                .forEach((portfolio, timestamp) -> timestamp
+                        .ifPresent(from -> portfolioValuationService.invalidate(portfolio, from)));
+        return new SkippedDuplicates(transactions.size() - insertedTransactions.size(), cashFlows.size() - insertedCashFlows);
+    }
+
+    private static Integer getTransactionId(Map<TradeKey, Integer> transactionIds, Transaction transaction) {
+        Integer transactionId = transactionIds.get(TradeKey.of(transaction));
+        if (transactionId == null) {
+            throw new IllegalStateException("Не найден идентификатор сохраненной транзакции " + transaction);
+        }
+        return transactionId;
+    }
+
     public void addTransaction(Transaction transaction) {
         saveWithoutUpdate(
                 transaction,
@@ -183,6 +283,16 @@ public class InvestbookApiClient {
                 "Не могу добавить информацию о курсе валюты");
     }
 
+    private <T> boolean isValid(T object, String errorMsg) {
+        try {
+            validator.validate(object);
+            return true;
+        } catch (ConstraintViolationException e) {  // jakarta.validation, not SQL constraint
+            log.warn("{} {}: {}", errorMsg, object, e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * @return true - if object was created, or it was already exists in DB,
      * false - if object not exists and create error was occurred
@@ -197,6 +307,7 @@ public class InvestbookApiClient {
             return false;
         } catch (Exception e) {
             if (isUniqIndexViolationException(e)) {
+                metrics.countSkippedDuplicate(object.getClass().getSimpleName());
                 log.debug("Дублирование информации: {} {}", errorMsg, object);
                 log.trace("Дублирование вызвано исключением", e);
                 return true;  // object already exists
@@ -216,6 +327,9 @@ public class InvestbookApiClient {
         try {
             validator.validate(object);
             CreateResult<T> result = persistFunction.apply(object);
+            if (!result.created()) {
+                metrics.countSkippedDuplicate(object.getClass().getSimpleName());
+            }
             return Optional.of(result.object());
         } catch (Exception e) {
             // should not be thrown for duplicate
@@ -223,4 +337,7 @@ public class InvestbookApiClient {
             return Optional.empty();
         }
     }
+
+    private record SkippedDuplicates(int transactions, int cashFlows) {
+    }
 }
@@ -29,10 +29,18 @@ import org.spacious_team.broker.report_parser.api.AbstractTransaction;
 import org.spacious_team.broker.report_parser.api.ReportTable;
 import org.spacious_team.broker.report_parser.api.ReportTables;
 import org.springframework.stereotype.Service;
+import ru.investbook.InvestbookExecutors;
+import ru.investbook.InvestbookMetrics;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -43,45 +51,70 @@ import static java.util.stream.Collectors.toCollection;
 @RequiredArgsConstructor
 public class ReportParserService {
     private final InvestbookApiClient api;
+    private final InvestbookExecutors executors;
+    private final InvestbookMetrics metrics;
 
     public void parse(ReportTables reportTables) {
+        parse(reportTables, "unknown");
+    }
+
+    /**
+     * Saves portfolios and securities first, other tables depend on them only and are saved in parallel
+     *
+     * @param broker broker name for metrics tag
+     */
+    public void parse(ReportTables reportTables, String broker) {
         try {
+            long t0 = System.nanoTime();
             boolean isAdded = getPortfolios(reportTables).stream().allMatch(api::addPortfolio);
             if (!isAdded) {
                 return;
             }
+            createStage(broker, "Ценные бумаги", reportTables.getSecuritiesTable(),
+                    data -> data.forEach(api::addSecurity))
+                    .call();
 
-            reportTables.getPortfolioPropertyTable()
-                    .getData()
-                    .forEach(api::addPortfolioProperty);
-            reportTables.getPortfolioCashTable()
-                    .getData()
-                    .forEach(api::addPortfolioCash);
-            reportTables.getSecuritiesTable()
-                    .getData()
-                    .forEach(api::addSecurity);
-            reportTables.getCashFlowTable()
-                    .getData()
-                    .forEach(api::addEventCashFlow);
-            reportTables.getTransactionTable()
-                    .getData()
-                    .forEach(api::addTransaction);
-            reportTables.getSecurityEventCashFlowTable()
-                    .getData()
-                    .forEach(api::addSecurityEventCashFlow);
-            reportTables.getSecurityQuoteTable()
-                    .getData()
-                    .forEach(api::addSecurityQuote);
-            reportTables.getForeignExchangeRateTable()
-                    .getData()
-                    .forEach(api::addForeignExchangeRate);
-
+            // table data is parsed by current thread, report file reading is not thread safe
+            Collection<Callable<Void>> stages = List.of(
+                    createStage(broker, "Свойства портфеля", reportTables.getPortfolioPropertyTable(),
+                            data -> data.forEach(api::addPortfolioProperty)),
+                    createStage(broker, "Остатки денежных средств", reportTables.getPortfolioCashTable(),
+                            data -> data.forEach(api::addPortfolioCash)),
+                    createStage(broker, "Движения денежных средств", reportTables.getCashFlowTable(),
+                            data -> data.forEach(api::addEventCashFlow)),
+                    createStage(broker, "Сделки", reportTables.getTransactionTable(),
+                            api::addTransactions),
+                    createStage(broker, "Выплаты по ценным бумагам", reportTables.getSecurityEventCashFlowTable(),
+                            data -> data.forEach(api::addSecurityEventCashFlow)),
+                    createStage(broker, "Котировки", reportTables.getSecurityQuoteTable(),
+                            data -> data.forEach(api::addSecurityQuote)),
+                    createStage(broker, "Курсы валют", reportTables.getForeignExchangeRateTable(),
+                            data -> data.forEach(api::addForeignExchangeRate)));
+            runInParallel(stages);
+            log.info("Отчет {} сохранен за {}", reportTables.getReport(), Duration.ofNanos(System.nanoTime() - t0));
         } catch (Exception e) {
             log.warn("Не могу распарсить отчет {}", reportTables.getReport(), e);
             throw new RuntimeException(e);
         }
     }
 
+    private <T> Callable<Void> createStage(String broker, String name, ReportTable<T> table, Consumer<List<T>> persister) {
+        List<T> data = table.getData();
+        metrics.countBrokerReportTableRows(broker, table.getClass().getSimpleName(), data.size());
+        return () -> {
+            long t0 = System.nanoTime();
+            persister.accept(data);
+            log.info("Таблица '{}' из {} строк сохранена за {}", name, data.size(), Duration.ofNanos(System.nanoTime() - t0));
+            return null;
+        };
+    }
+
+    private void runInParallel(Collection<Callable<Void>> stages) throws InterruptedException, ExecutionException {
+        for (Future<Void> future : executors.getImportExecutor().invokeAll(stages)) {
+            future.get();
+        }
+    }
+
     private static Set<Portfolio> getPortfolios(ReportTables tables) {
         Set<String> portfolios = new HashSet<>();
 
@@ -0,0 +1,75 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.parser;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Progress of queued broker report import
+ */
+@Getter
+public class ReportUploadStatus {
+    private final String id = UUID.randomUUID().toString();
+    private final String fileName;
+    private final long size;
+    private final Instant queuedAt = Instant.now();
+    private volatile State state = State.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    ReportUploadStatus(String fileName, long size) {
+        this.fileName = fileName;
+        this.size = size;
+    }
+
+    public Duration getDuration() {
+        Instant startedAt = this.startedAt;
+        if (startedAt == null) {
+            return null;
+        }
+        Instant finishedAt = this.finishedAt;
+        return Duration.between(startedAt, (finishedAt == null) ? Instant.now() : finishedAt);
+    }
+
+    void started() {
+        startedAt = Instant.now();
+        state = State.IMPORTING;
+    }
+
+    void done() {
+        finishedAt = Instant.now();
+        state = State.DONE;
+    }
+
+    void failed(Throwable t) {
+        finishedAt = Instant.now();
+        error = t.getMessage();
+        state = State.FAILED;
+    }
+
+    public enum State {
+        QUEUED, IMPORTING, DONE, FAILED
+    }
+}
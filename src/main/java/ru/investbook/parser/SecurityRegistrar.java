@@ -21,6 +21,7 @@ package ru.investbook.parser;
 import org.spacious_team.broker.pojo.Security;
 import org.spacious_team.broker.pojo.Security.SecurityBuilder;
 
+import java.util.Optional;
 import java.util.function.Supplier;
 
 public interface SecurityRegistrar {
@@ -62,4 +63,15 @@ public interface SecurityRegistrar {
     int declareAsset(String assetName, Supplier<SecurityBuilder> supplier);
 
     int declareSecurity(Security security);
+
+    /**
+     * Searches in memory index first, than in DB
+     *
+     * @return security ID
+     */
+    Optional<Integer> findSecurityIdByIsin(String isin);
+
+    Optional<Integer> findSecurityIdByTicker(String ticker);
+
+    Optional<Integer> findSecurityIdByName(String name);
 }
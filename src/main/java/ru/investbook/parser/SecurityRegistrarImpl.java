@@ -27,6 +27,7 @@ import org.spacious_team.broker.pojo.SecurityType;
 import org.springframework.stereotype.Service;
 import ru.investbook.converter.SecurityConverter;
 import ru.investbook.entity.SecurityEntity;
+import ru.investbook.repository.SecurityIdentityIndex;
 import ru.investbook.repository.SecurityRepository;
 import ru.investbook.service.moex.MoexDerivativeCodeService;
 
@@ -42,6 +43,7 @@ import static ru.investbook.repository.RepositoryHelper.isUniqIndexViolationExce
 @RequiredArgsConstructor
 public class SecurityRegistrarImpl implements SecurityRegistrar {
     private final SecurityRepository repository;
+    private final SecurityIdentityIndex securityIndex;
     private final SecurityConverter converter;
     private final MoexDerivativeCodeService derivativeCodeService;
     private final ValidatorService validator;
@@ -108,6 +110,21 @@ public class SecurityRegistrarImpl implements SecurityRegistrar {
         return declareSecurityByName(assetName, ASSET, supplier);
     }
 
+    @Override
+    public Optional<Integer> findSecurityIdByIsin(String isin) {
+        return securityIndex.findByIsin(isin);
+    }
+
+    @Override
+    public Optional<Integer> findSecurityIdByTicker(String ticker) {
+        return securityIndex.findByTicker(ticker);
+    }
+
+    @Override
+    public Optional<Integer> findSecurityIdByName(String name) {
+        return securityIndex.findByName(name);
+    }
+
     @Override
     public int declareSecurity(Security security) {
         return switch (security.getType()) {
@@ -124,37 +141,33 @@ public class SecurityRegistrarImpl implements SecurityRegistrar {
     }
 
     private int declareSecurityByIsin(String isin, SecurityType defaultType, Supplier<SecurityBuilder> supplier) {
-        return repository.findByIsin(isin)
+        return securityIndex.findByIsin(isin)
                 .or(() -> Optional.of(supplier.get())
                         .map(builder -> buildSecurity(builder, defaultType))
                         .map(security -> save(security, () -> repository.findByIsin(isin))))
-                .map(SecurityEntity::getId)
                 .orElseThrow(() -> new RuntimeException("Не смог сохранить ЦБ с ISIN = " + isin));
     }
 
     private Integer declareSecurityByName(String name, SecurityType defaultType, Supplier<SecurityBuilder> supplier) {
-        return repository.findByName(name)
+        return securityIndex.findByName(name)
                 .or(() -> Optional.of(supplier.get())
                         .map(builder -> buildSecurity(builder, defaultType))
                         .map(security -> save(security, () -> repository.findByName(name))))
-                .map(SecurityEntity::getId)
                 .orElseThrow(() -> new RuntimeException("Не смог сохранить актив с наименованием = " + name));
     }
 
     private Integer declareSecurityByTicker(String ticker, SecurityType defaultType, Supplier<SecurityBuilder> supplier) {
-        return repository.findByTicker(ticker)
+        return securityIndex.findByTicker(ticker)
                 .or(() -> Optional.of(supplier.get())
                         .map(builder -> buildSecurity(builder, defaultType))
                         .map(security -> save(security, () -> repository.findByTicker(ticker))))
-                .map(SecurityEntity::getId)
                 .orElseThrow(() -> new RuntimeException("Не смог сохранить актив с тикером = " + ticker));
     }
 
     private Integer declareContractByTicker(String contract, SecurityType contractType) {
-        return repository.findByTicker(contract)
+        return securityIndex.findByTicker(contract)
                 .or(() -> Optional.of(Security.builder().ticker(contract).type(contractType).build())
                         .map(security -> save(security, () -> repository.findByTicker(contract))))
-                .map(SecurityEntity::getId)
                 .orElseThrow(() -> new RuntimeException("Не смог сохранить контракт = " + contract));
     }
 
@@ -166,17 +179,25 @@ public class SecurityRegistrarImpl implements SecurityRegistrar {
         return security;
     }
 
-    private SecurityEntity save(Security security, Supplier<Optional<SecurityEntity>> supplier) {
+    /**
+     * @param savedSecuritySupplier searches security saved concurrently in DB, index is not used,
+     *                              because it may remember security as absent
+     */
+    private Integer save(Security security, Supplier<Optional<SecurityEntity>> savedSecuritySupplier) {
         try {
             validator.validate(security);
-            return repository.save(converter.toEntity(security));
+            SecurityEntity entity = repository.save(converter.toEntity(security));
+            securityIndex.add(entity);
+            return entity.getId();
         } catch (ConstraintViolationException e) {
             throw new RuntimeException("Не смог сохранить ценную бумагу в БД: " + security + ", " + e.getMessage());
         } catch (Exception e) {
             if (isUniqIndexViolationException(e)) {
                 log.trace("Дублирование вызвано исключением", e);
-                return supplier.get()
+                SecurityEntity entity = savedSecuritySupplier.get()
                         .orElseThrow(() -> new RuntimeException("Не смог сохранить ценную бумагу в БД: " + security, e));
+                securityIndex.add(entity);
+                return entity.getId();
             }
             throw new RuntimeException("Не смог сохранить ценную бумагу в БД: " + security, e);
         }
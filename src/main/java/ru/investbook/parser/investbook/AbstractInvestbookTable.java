@@ -20,24 +20,50 @@ package ru.investbook.parser.investbook;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.spacious_team.broker.report_parser.api.AbstractReportTable;
-import org.spacious_team.broker.report_parser.api.BrokerReport;
+import org.spacious_team.broker.report_parser.api.InitializableReportTable;
 import org.spacious_team.table_wrapper.api.AnyOfTableColumn;
 import org.spacious_team.table_wrapper.api.ConstantPositionTableColumn;
 import org.spacious_team.table_wrapper.api.PatternTableColumn;
 import org.spacious_team.table_wrapper.api.TableColumn;
 import org.spacious_team.table_wrapper.api.TableHeaderColumn;
+import org.spacious_team.table_wrapper.api.TableRow;
 
-public class AbstractInvestbookTable<RowType> extends AbstractReportTable<RowType> {
+import java.util.Collection;
+import java.util.Collections;
 
-    protected AbstractInvestbookTable(BrokerReport report) {
-        super(report,
-                "Investbook Report Table",
-                "Дата",
-                null,
-                InvestbookReportTableHeader.class);
+/**
+ * Report rows are read once by {@link InvestbookReportRowDispatcher} and passed to all tables of report
+ */
+public class AbstractInvestbookTable<RowType> extends InitializableReportTable<RowType> {
+    private final InvestbookReportRowDispatcher dispatcher;
+
+    protected AbstractInvestbookTable(InvestbookReportRowDispatcher dispatcher) {
+        super(dispatcher.getReport());
+        this.dispatcher = dispatcher;
+        dispatcher.register(this);
+    }
+
+    @Override
+    protected Collection<RowType> parseTable() {
+        return dispatcher.getTableData(this);
     }
 
+    /**
+     * @param operation row operation in lower case
+     * @return null if row operation is not for this table
+     */
+    protected RowType parseRow(TableRow row, String operation) {
+        return null;
+    }
+
+    /**
+     * @param operation row operation in lower case
+     * @return empty collection if row operation is not for this table
+     */
+    protected Collection<RowType> parseRowToCollection(TableRow row, String operation) {
+        RowType data = parseRow(row, operation);
+        return (data == null) ? Collections.emptyList() : Collections.singletonList(data);
+    }
 
     @Getter
     @RequiredArgsConstructor
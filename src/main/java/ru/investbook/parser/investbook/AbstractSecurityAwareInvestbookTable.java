@@ -20,7 +20,6 @@ package ru.investbook.parser.investbook;
 
 import org.spacious_team.broker.pojo.Security;
 import org.spacious_team.broker.pojo.SecurityType;
-import org.spacious_team.broker.report_parser.api.BrokerReport;
 import ru.investbook.converter.SecurityConverter;
 import ru.investbook.entity.SecurityEntity;
 import ru.investbook.parser.SecurityRegistrar;
@@ -33,16 +32,16 @@ import java.util.Set;
 
 public class AbstractSecurityAwareInvestbookTable<RowType> extends AbstractInvestbookTable<RowType> {
 
-    private final SecurityRegistrar securityRegistrar;
+    protected final SecurityRegistrar securityRegistrar;
     protected final SecurityRepository securityRepository;
     protected final SecurityConverter securityConverter;
     private final Set<String> generatedTradeIds = new HashSet<>();
 
-    protected AbstractSecurityAwareInvestbookTable(BrokerReport report,
+    protected AbstractSecurityAwareInvestbookTable(InvestbookReportRowDispatcher dispatcher,
                                                    SecurityRegistrar securityRegistrar,
                                                    SecurityRepository securityRepository,
                                                    SecurityConverter securityConverter) {
-        super(report);
+        super(dispatcher);
         this.securityRegistrar = securityRegistrar;
         this.securityRepository = securityRepository;
         this.securityConverter = securityConverter;
@@ -65,13 +64,12 @@ public class AbstractSecurityAwareInvestbookTable<RowType> extends AbstractInves
     }
 
     protected int getStockOrBondSecurityId(String securityTickerNameOrIsin, SecurityType securityType) {
-        Optional<SecurityEntity> optionalSecurity = (securityTickerNameOrIsin.length() == 12) ?
-                securityRepository.findByIsin(securityTickerNameOrIsin) :
+        Optional<Integer> optionalSecurityId = (securityTickerNameOrIsin.length() == 12) ?
+                securityRegistrar.findSecurityIdByIsin(securityTickerNameOrIsin) :
                 Optional.empty();
-        return optionalSecurity
-                .or(() -> securityRepository.findByTicker(securityTickerNameOrIsin))
-                .or(() -> securityRepository.findByName(securityTickerNameOrIsin))
-                .map(SecurityEntity::getId)
+        return optionalSecurityId
+                .or(() -> securityRegistrar.findSecurityIdByTicker(securityTickerNameOrIsin))
+                .or(() -> securityRegistrar.findSecurityIdByName(securityTickerNameOrIsin))
                 .orElseGet(() -> createStockOrBond(securityTickerNameOrIsin, securityType).getId());
     }
 
@@ -20,7 +20,6 @@ package ru.investbook.parser.investbook;
 
 import org.spacious_team.broker.pojo.CashFlowType;
 import org.spacious_team.broker.pojo.EventCashFlow;
-import org.spacious_team.broker.report_parser.api.BrokerReport;
 import org.spacious_team.table_wrapper.api.TableRow;
 
 import java.math.BigDecimal;
@@ -32,13 +31,12 @@ import static ru.investbook.parser.investbook.AbstractInvestbookTable.Investbook
 
 public class InvestbookCashFlowTable extends AbstractInvestbookTable<EventCashFlow> {
 
-    protected InvestbookCashFlowTable(BrokerReport report) {
-        super(report);
+    protected InvestbookCashFlowTable(InvestbookReportRowDispatcher dispatcher) {
+        super(dispatcher);
     }
 
     @Override
-    protected EventCashFlow parseRow(TableRow row) {
-        String operation = row.getStringCellValue(OPERATION).toLowerCase();
+    protected EventCashFlow parseRow(TableRow row, String operation) {
         CashFlowType type;
         boolean negate;
         if (operation.contains("налог")) { // Налог / Возврат налога на банковский счет / Налоговый вычет
@@ -19,20 +19,18 @@
 package ru.investbook.parser.investbook;
 
 import org.spacious_team.broker.pojo.PortfolioCash;
-import org.spacious_team.broker.report_parser.api.BrokerReport;
 import org.spacious_team.table_wrapper.api.TableRow;
 
 import static ru.investbook.parser.investbook.AbstractInvestbookTable.InvestbookReportTableHeader.*;
 
 public class InvestbookPortfolioCashTable extends AbstractInvestbookTable<PortfolioCash> {
 
-    protected InvestbookPortfolioCashTable(BrokerReport report) {
-        super(report);
+    protected InvestbookPortfolioCashTable(InvestbookReportRowDispatcher dispatcher) {
+        super(dispatcher);
     }
 
     @Override
-    protected PortfolioCash parseRow(TableRow row) {
-        String operation = row.getStringCellValue(OPERATION).toLowerCase();
+    protected PortfolioCash parseRow(TableRow row, String operation) {
         if (!operation.contains("остаток")) { // Остаток денежных средств
             return null;
         }
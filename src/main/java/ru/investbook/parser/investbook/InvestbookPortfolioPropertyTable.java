@@ -20,20 +20,18 @@ package ru.investbook.parser.investbook;
 
 import org.spacious_team.broker.pojo.PortfolioProperty;
 import org.spacious_team.broker.pojo.PortfolioPropertyType;
-import org.spacious_team.broker.report_parser.api.BrokerReport;
 import org.spacious_team.table_wrapper.api.TableRow;
 
 import static ru.investbook.parser.investbook.AbstractInvestbookTable.InvestbookReportTableHeader.*;
 
 public class InvestbookPortfolioPropertyTable extends AbstractInvestbookTable<PortfolioProperty> {
 
-    protected InvestbookPortfolioPropertyTable(BrokerReport report) {
-        super(report);
+    protected InvestbookPortfolioPropertyTable(InvestbookReportRowDispatcher dispatcher) {
+        super(dispatcher);
     }
 
     @Override
-    protected PortfolioProperty parseRow(TableRow row) {
-        String operation = row.getStringCellValue(OPERATION).toLowerCase();
+    protected PortfolioProperty parseRow(TableRow row, String operation) {
         if (!operation.contains("актив")) { // Оценка стоимости активов
             return null;
         }
@@ -0,0 +1,70 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.parser.investbook;
+
+import org.spacious_team.broker.report_parser.api.AbstractReportTable;
+import org.spacious_team.broker.report_parser.api.BrokerReport;
+import org.spacious_team.table_wrapper.api.TableRow;
+import ru.investbook.parser.investbook.AbstractInvestbookTable.InvestbookReportTableHeader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ru.investbook.parser.investbook.AbstractInvestbookTable.InvestbookReportTableHeader.OPERATION;
+
+/**
+ * Reads each report row once and passes it to all registered tables, rows accepted by table are buffered
+ * until table data is requested. Report is read on first request of any table data.
+ */
+class InvestbookReportRowDispatcher extends AbstractReportTable<Void> {
+
+    private final Map<AbstractInvestbookTable<?>, List<Object>> tablesData = new IdentityHashMap<>();
+
+    InvestbookReportRowDispatcher(BrokerReport report) {
+        super(report,
+                "Investbook Report Table",
+                "Дата",
+                null,
+                InvestbookReportTableHeader.class);
+    }
+
+    /**
+     * Should be called before report reading
+     */
+    void register(AbstractInvestbookTable<?> table) {
+        tablesData.put(table, new ArrayList<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> List<T> getTableData(AbstractInvestbookTable<T> table) {
+        getData(); // reads report once
+        return (List<T>) tablesData.get(table);
+    }
+
+    @Override
+    protected Collection<Void> parseRowToCollection(TableRow row) {
+        String operation = row.getStringCellValue(OPERATION).toLowerCase();
+        tablesData.forEach((table, data) -> data.addAll(table.parseRowToCollection(row, operation)));
+        return Collections.emptyList();
+    }
+}
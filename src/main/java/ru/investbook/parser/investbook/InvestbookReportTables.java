@@ -36,33 +36,46 @@ import ru.investbook.repository.SecurityRepository;
 
 public class InvestbookReportTables extends AbstractReportTables<BrokerReport> {
 
-    private final SecurityRegistrar securityRegistrar;
-    private final SecurityRepository securityRepository;
-    private final SecurityConverter securityConverter;
+    private final ReportTable<PortfolioProperty> portfolioPropertyTable;
+    private final ReportTable<PortfolioCash> portfolioCashTable;
+    private final ReportTable<EventCashFlow> cashFlowTable;
+    private final ReportTable<AbstractTransaction> transactionTable;
+    private final ReportTable<SecurityEventCashFlow> securityEventCashFlowTable;
 
+    /**
+     * All tables share one dispatcher, report rows are read once
+     */
     protected InvestbookReportTables(BrokerReport report,
                                      SecurityRegistrar securityRegistrar,
                                      SecurityRepository securityRepository,
                                      SecurityConverter securityConverter) {
         super(report);
-        this.securityRegistrar = securityRegistrar;
-        this.securityRepository = securityRepository;
-        this.securityConverter = securityConverter;
+        InvestbookReportRowDispatcher dispatcher = new InvestbookReportRowDispatcher(report);
+        this.portfolioPropertyTable = new InvestbookPortfolioPropertyTable(dispatcher);
+        this.portfolioCashTable = new InvestbookPortfolioCashTable(dispatcher);
+        this.cashFlowTable = new InvestbookCashFlowTable(dispatcher);
+        this.transactionTable = WrappingReportTable.of(
+                new InvestbookTransactionTable(
+                        dispatcher, securityRegistrar, securityRepository, securityConverter),
+                new InvestbookSecurityDepositAndWithdrawalTable(
+                        dispatcher, securityRegistrar, securityRepository, securityConverter));
+        this.securityEventCashFlowTable = new InvestbookSecurityEventCashFowTable(
+                dispatcher, securityRegistrar, securityRepository, securityConverter);
     }
 
     @Override
     public ReportTable<PortfolioProperty> getPortfolioPropertyTable() {
-        return new InvestbookPortfolioPropertyTable(getReport());
+        return portfolioPropertyTable;
     }
 
     @Override
     public ReportTable<PortfolioCash> getPortfolioCashTable() {
-        return new InvestbookPortfolioCashTable(getReport());
+        return portfolioCashTable;
     }
 
     @Override
     public ReportTable<EventCashFlow> getCashFlowTable() {
-        return new InvestbookCashFlowTable(getReport());
+        return cashFlowTable;
     }
 
     @Override
@@ -72,17 +85,12 @@ public class InvestbookReportTables extends AbstractReportTables<BrokerReport> {
 
     @Override
     public ReportTable<AbstractTransaction> getTransactionTable() {
-        return WrappingReportTable.of(
-                new InvestbookTransactionTable(
-                        getReport(), securityRegistrar, securityRepository, securityConverter),
-                new InvestbookSecurityDepositAndWithdrawalTable(
-                        getReport(), securityRegistrar, securityRepository, securityConverter));
+        return transactionTable;
     }
 
     @Override
     public ReportTable<SecurityEventCashFlow> getSecurityEventCashFlowTable() {
-        return new InvestbookSecurityEventCashFowTable(
-                getReport(), securityRegistrar, securityRepository, securityConverter);
+        return securityEventCashFlowTable;
     }
 
     @Override
@@ -20,7 +20,6 @@ package ru.investbook.parser.investbook;
 
 import org.spacious_team.broker.pojo.Security;
 import org.spacious_team.broker.pojo.SecurityType;
-import org.spacious_team.broker.report_parser.api.BrokerReport;
 import org.spacious_team.broker.report_parser.api.SecurityTransaction;
 import org.spacious_team.table_wrapper.api.TableRow;
 import ru.investbook.converter.SecurityConverter;
@@ -34,17 +33,16 @@ import static ru.investbook.parser.investbook.AbstractInvestbookTable.Investbook
 
 public class InvestbookSecurityDepositAndWithdrawalTable extends AbstractSecurityAwareInvestbookTable<SecurityTransaction> {
 
-    protected InvestbookSecurityDepositAndWithdrawalTable(BrokerReport report,
+    protected InvestbookSecurityDepositAndWithdrawalTable(InvestbookReportRowDispatcher dispatcher,
                                                           SecurityRegistrar securityRegistrar,
                                                           SecurityRepository securityRepository,
                                                           SecurityConverter securityConverter) {
-        super(report, securityRegistrar, securityRepository, securityConverter);
+        super(dispatcher, securityRegistrar, securityRepository, securityConverter);
     }
 
     @Override
-    protected SecurityTransaction parseRow(TableRow row) {
+    protected SecurityTransaction parseRow(TableRow row, String operation) {
         boolean negate;
-        String operation = row.getStringCellValue(OPERATION).toLowerCase();
         if (operation.contains("зачисление")) { // Зачисление ЦБ
             negate = false;
         } else if (operation.contains("списание")) { // Списание ЦБ
@@ -66,11 +64,10 @@ public class InvestbookSecurityDepositAndWithdrawalTable extends AbstractSecurit
 
     private int getSecurityIdForDepositOrWithdrawal(TableRow row) {
         String securityTickerNameOrIsin = row.getStringCellValue(TICKER_NAME_ISIN);
-        return securityRepository.findByName(securityTickerNameOrIsin)
-                .or(() -> securityRepository.findByTicker(securityTickerNameOrIsin))
-                .or(() -> securityRepository.findByIsin(securityTickerNameOrIsin))
-                .orElseGet(() -> createStockOrBond(securityTickerNameOrIsin))
-                .getId();
+        return securityRegistrar.findSecurityIdByName(securityTickerNameOrIsin)
+                .or(() -> securityRegistrar.findSecurityIdByTicker(securityTickerNameOrIsin))
+                .or(() -> securityRegistrar.findSecurityIdByIsin(securityTickerNameOrIsin))
+                .orElseGet(() -> createStockOrBond(securityTickerNameOrIsin).getId());
     }
 
     private SecurityEntity createStockOrBond(String securityTickerNameOrIsin) {
@@ -21,7 +21,6 @@ package ru.investbook.parser.investbook;
 import org.spacious_team.broker.pojo.CashFlowType;
 import org.spacious_team.broker.pojo.SecurityEventCashFlow;
 import org.spacious_team.broker.pojo.SecurityType;
-import org.spacious_team.broker.report_parser.api.BrokerReport;
 import org.spacious_team.table_wrapper.api.TableRow;
 import ru.investbook.converter.SecurityConverter;
 import ru.investbook.parser.SecurityRegistrar;
@@ -36,16 +35,15 @@ import static ru.investbook.parser.investbook.AbstractInvestbookTable.Investbook
 
 public class InvestbookSecurityEventCashFowTable extends AbstractSecurityAwareInvestbookTable<SecurityEventCashFlow> {
 
-    protected InvestbookSecurityEventCashFowTable(BrokerReport report,
+    protected InvestbookSecurityEventCashFowTable(InvestbookReportRowDispatcher dispatcher,
                                                   SecurityRegistrar securityRegistrar,
                                                   SecurityRepository securityRepository,
                                                   SecurityConverter securityConverter) {
-        super(report, securityRegistrar, securityRepository, securityConverter);
+        super(dispatcher, securityRegistrar, securityRepository, securityConverter);
     }
 
     @Override
-    protected Collection<SecurityEventCashFlow> parseRowToCollection(TableRow row) {
-        String operation = row.getStringCellValue(OPERATION).toLowerCase();
+    protected Collection<SecurityEventCashFlow> parseRowToCollection(TableRow row, String operation) {
         CashFlowType type;
         if (operation.contains("дивиденд")) {
             type = CashFlowType.DIVIDEND;
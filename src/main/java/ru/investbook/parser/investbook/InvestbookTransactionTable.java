@@ -21,7 +21,6 @@ package ru.investbook.parser.investbook;
 import org.spacious_team.broker.pojo.SecurityType;
 import org.spacious_team.broker.report_parser.api.AbstractTransaction;
 import org.spacious_team.broker.report_parser.api.AbstractTransaction.AbstractTransactionBuilder;
-import org.spacious_team.broker.report_parser.api.BrokerReport;
 import org.spacious_team.broker.report_parser.api.DerivativeTransaction;
 import org.spacious_team.broker.report_parser.api.ForeignExchangeTransaction;
 import org.spacious_team.broker.report_parser.api.SecurityTransaction;
@@ -37,16 +36,15 @@ import static ru.investbook.parser.investbook.AbstractInvestbookTable.Investbook
 
 public class InvestbookTransactionTable extends AbstractSecurityAwareInvestbookTable<AbstractTransaction> {
 
-    protected InvestbookTransactionTable(BrokerReport report,
+    protected InvestbookTransactionTable(InvestbookReportRowDispatcher dispatcher,
                                          SecurityRegistrar securityRegistrar,
                                          SecurityRepository securityRepository,
                                          SecurityConverter securityConverter) {
-        super(report, securityRegistrar, securityRepository, securityConverter);
+        super(dispatcher, securityRegistrar, securityRepository, securityConverter);
     }
 
     @Override
-    protected AbstractTransaction parseRow(TableRow row) {
-        String operation = row.getStringCellValue(OPERATION).toLowerCase();
+    protected AbstractTransaction parseRow(TableRow row, String operation) {
         boolean isBuy;
         if (operation.contains("покупка")) {
             isBuy = true;
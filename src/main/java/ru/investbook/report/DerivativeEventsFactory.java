@@ -40,13 +40,14 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoField;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
-import java.util.Optional;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -64,28 +65,29 @@ public class DerivativeEventsFactory {
     private final SecurityEventCashFlowConverter securityEventCashFlowConverter;
     private final TransactionCashFlowConverter transactionCashFlowConverter;
 
+    /**
+     * Builds events in one pass over trade days having transactions or variation margin,
+     * days without events are not visited
+     */
     public DerivativeEvents getDerivativeEvents(Portfolio portfolio, Security contract, ViewFilter filter) {
         Deque<Transaction> transactions = getTransactions(portfolio, contract, filter);
         Map<LocalDate, SecurityEventCashFlow> securityEventCashFlows = getSecurityEventCashFlows(portfolio, contract, filter);
-
-        LocalDate firstEventDate = getContractFirstEventDate(transactions, securityEventCashFlows);
-        LocalDate lastEventDate = Optional.ofNullable(getContractLastEventDate(transactions, securityEventCashFlows))
-                .orElse(firstEventDate);
+        SortedMap<LocalDate, Deque<Transaction>> transactionsByTradeDay = groupByTradeDay(transactions);
+        SortedSet<LocalDate> eventDays = new TreeSet<>(transactionsByTradeDay.keySet());
+        eventDays.addAll(securityEventCashFlows.keySet());
 
         DerivativeEvents derivativeEvents = new DerivativeEvents();
         BigDecimal totalProfit = BigDecimal.ZERO;
         int currentPosition = 0;
-        LocalDate currentDay = firstEventDate;
-        while (currentDay != null && currentDay.compareTo(lastEventDate) <= 0) {
-            Deque<Transaction> dailyTransactions = getDailyTransactions(transactions, currentDay);
+        for (LocalDate currentDay : eventDays) {
+            Deque<Transaction> dailyTransactions = transactionsByTradeDay.get(currentDay);
             SecurityEventCashFlow cash = securityEventCashFlows.get(currentDay);
-            if ((dailyTransactions != null && !dailyTransactions.isEmpty())
-                    || (cash != null && !cash.getValue().equals(BigDecimal.ZERO))) {
-                currentPosition += Optional.ofNullable(dailyTransactions)
-                        .orElse(new LinkedList<>())
-                        .stream()
-                        .mapToInt(Transaction::getCount)
-                        .sum();
+            if (dailyTransactions != null || (cash != null && !cash.getValue().equals(BigDecimal.ZERO))) {
+                if (dailyTransactions != null) {
+                    for (Transaction transaction : dailyTransactions) {
+                        currentPosition += transaction.getCount();
+                    }
+                }
                 totalProfit = totalProfit.add((cash == null) ? BigDecimal.ZERO : cash.getValue());
 
                 derivativeEvents.getDerivativeDailyEvents().add(
@@ -96,7 +98,6 @@ public class DerivativeEventsFactory {
                                 .position(currentPosition)
                                 .build());
             }
-            currentDay = currentDay.plusDays(1);
         }
         return derivativeEvents;
     }
@@ -126,43 +127,18 @@ public class DerivativeEventsFactory {
                 .collect(Collectors.toMap(e -> getTradeDay(e.getTimestamp()), Function.identity()));
     }
 
-    private LocalDate getContractFirstEventDate(Deque<Transaction> transactions,
-                                                Map<LocalDate, SecurityEventCashFlow> securityEventCashFlows) {
-        LocalDate firstTransactionDate, firstEventDate;
-        firstEventDate = firstTransactionDate = Optional.ofNullable(transactions.peekFirst())
-                .map(t -> ZonedDateTime.ofInstant(t.getTimestamp(), MOEX_TIMEZONE).toLocalDate())
-                .orElse(null);
-        ArrayList<LocalDate> cashFlows = new ArrayList<>(securityEventCashFlows.keySet());
-        if (!cashFlows.isEmpty()) {
-            Collections.sort(cashFlows);
-            LocalDate firstCashFlowDate = cashFlows.get(0);
-            firstEventDate = (firstTransactionDate == null || firstCashFlowDate.compareTo(firstTransactionDate) < 0) ?
-                    firstCashFlowDate : firstTransactionDate;
-        }
-        return firstEventDate;
-    }
-
-    private LocalDate getContractLastEventDate(Deque<Transaction> transactions,
-                                               Map<LocalDate, SecurityEventCashFlow> securityEventCashFlows) {
-        LocalDate lastTransactionDate, lastEventDate;
-        lastEventDate = lastTransactionDate = Optional.ofNullable(transactions.peekLast())
-                .map(Transaction::getTimestamp)
-                .map(DerivativeEventsFactory::getTradeDay)
-                .orElse(null);
-        ArrayList<LocalDate> cashFlows = new ArrayList<>(securityEventCashFlows.keySet());
-        if (!cashFlows.isEmpty()) {
-            Collections.sort(cashFlows);
-            LocalDate lastCashFlowDate = cashFlows.get(cashFlows.size() - 1);
-            lastEventDate = (lastTransactionDate == null || lastCashFlowDate.compareTo(lastTransactionDate) > 0) ?
-                    lastCashFlowDate : lastTransactionDate;
+    /**
+     * @param transactions ordered by timestamp
+     * @return transactions grouped by trade day, each timestamp is converted to MOEX zone once
+     */
+    private static SortedMap<LocalDate, Deque<Transaction>> groupByTradeDay(Deque<Transaction> transactions) {
+        SortedMap<LocalDate, Deque<Transaction>> transactionsByTradeDay = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            transactionsByTradeDay
+                    .computeIfAbsent(getTradeDay(transaction.getTimestamp()), _ -> new LinkedList<>())
+                    .add(transaction);
         }
-        return lastEventDate;
-    }
-
-    private Deque<Transaction> getDailyTransactions(Deque<Transaction> transactions, LocalDate currentDay) {
-        return transactions.stream()
-                .filter(t -> getTradeDay(t.getTimestamp()).equals(currentDay))
-                .collect(Collectors.toCollection(LinkedList::new));
+        return transactionsByTradeDay;
     }
 
     /**
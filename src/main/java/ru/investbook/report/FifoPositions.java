@@ -18,22 +18,26 @@
 
 package ru.investbook.report;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.spacious_team.broker.pojo.CashFlowType;
 import org.spacious_team.broker.pojo.SecurityEventCashFlow;
 import org.spacious_team.broker.pojo.Transaction;
 import org.springframework.util.Assert;
+import ru.investbook.report.TransactionCashFlowMapFactory.VersionedTransactionCashFlowMap;
 
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.stream.Collectors;
 
 import static java.lang.Integer.min;
 import static java.lang.Integer.signum;
 import static java.lang.Math.abs;
+import static java.util.Collections.singletonList;
 
 @Getter
 @Slf4j
@@ -44,7 +48,13 @@ public class FifoPositions {
     private final Deque<PositionHistory> positionHistories = new LinkedList<>();
     private final Deque<OpenedPosition> openedPositions = new LinkedList<>();
     private final Deque<ClosedPosition> closedPositions = new LinkedList<>();
-    private final int currentOpenedPositionsCount;
+    private int currentOpenedPositionsCount;
+    /**
+     * Cache of {@link TransactionCashFlowMapFactory}, is not copied on append because transactions are changed
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private volatile VersionedTransactionCashFlowMap transactionCashFlows;
 
     public FifoPositions(Deque<Transaction> transactions, Deque<SecurityEventCashFlow> redemptions) {
         this.transactions = transactions;
@@ -52,12 +62,69 @@ public class FifoPositions {
         updateSecuritiesPastPositions(transactions);
         processTransactions(transactions);
         processRedemptions(redemptions);
+        updateCurrentOpenedPositionsCount();
+    }
+
+    /**
+     * Copy constructor. Opened positions are copied deeply because they are mutated while closing,
+     * other objects are immutable and shared.
+     */
+    private FifoPositions(FifoPositions positions) {
+        this.transactions = new LinkedList<>(positions.transactions);
+        this.redemptions = new LinkedList<>(positions.redemptions);
+        this.positionHistories.addAll(positions.positionHistories);
+        positions.openedPositions.forEach(opened ->
+                this.openedPositions.add(new OpenedPosition(opened.getOpenTransaction(), opened.getUnclosedPositions())));
+        this.closedPositions.addAll(positions.closedPositions);
+        this.currentOpenedPositionsCount = positions.currentOpenedPositionsCount;
+    }
+
+    /**
+     * Applies transaction to the copy of this positions. Object itself is not modified and may be read concurrently.
+     *
+     * @param order order of transactions used to build this positions
+     * @return new positions or empty if transaction is not the latest one (by {@code order}) or bond redemption
+     * is already processed, in that case positions should be built from scratch
+     */
+    Optional<FifoPositions> append(Transaction transaction, Comparator<Transaction> order) {
+        Transaction last = transactions.peekLast();
+        if (!redemptions.isEmpty() || (last != null && order.compare(last, transaction) >= 0)) {
+            return Optional.empty();
+        }
+        FifoPositions positions = new FifoPositions(this);
+        positions.transactions.add(transaction);
+        positions.updateSecuritiesPastPositions(singletonList(transaction));
+        positions.processTransactions(singletonList(transaction));
+        positions.updateCurrentOpenedPositionsCount();
+        return Optional.of(positions);
+    }
+
+    /**
+     * Applies bond redemption to the copy of this positions. Object itself is not modified and may be read concurrently.
+     *
+     * @return new positions or empty if redemption is not the latest one, in that case positions should be built from scratch
+     */
+    Optional<FifoPositions> append(SecurityEventCashFlow redemption) {
+        SecurityEventCashFlow last = redemptions.peekLast();
+        if (last != null && !last.getTimestamp().isBefore(redemption.getTimestamp())) {
+            return Optional.empty();
+        }
+        FifoPositions positions = new FifoPositions(this);
+        positions.redemptions.add(redemption);
+        Transaction redemptionTransaction = convertBondRedemptionToTransaction(redemption);
+        positions.updateSecuritiesPastPositions(singletonList(redemptionTransaction));
+        positions.closePositions(redemptionTransaction, CashFlowType.REDEMPTION);
+        positions.updateCurrentOpenedPositionsCount();
+        return Optional.of(positions);
+    }
+
+    private void updateCurrentOpenedPositionsCount() {
         this.currentOpenedPositionsCount = Optional.ofNullable(positionHistories.peekLast())
                 .map(PositionHistory::getOpenedPositions)
                 .orElse(0);
     }
 
-    private void processTransactions(Deque<Transaction> transactions) {
+    private void processTransactions(Iterable<Transaction> transactions) {
         for (Transaction transaction : transactions) {
             if (isIncreasePosition(transaction)) {
                 this.openedPositions.add(new OpenedPosition(transaction));
@@ -86,7 +153,7 @@ public class FifoPositions {
         }
     }
 
-    private void updateSecuritiesPastPositions(Queue<Transaction> transactions) {
+    private void updateSecuritiesPastPositions(Iterable<Transaction> transactions) {
         int openedPosition = (!this.positionHistories.isEmpty()) ? this.positionHistories.peekLast().getOpenedPositions() : 0;
         for (Transaction transaction : transactions) {
             openedPosition += transaction.getCount();
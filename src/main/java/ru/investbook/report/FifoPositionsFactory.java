@@ -26,6 +26,8 @@ import org.spacious_team.broker.pojo.SecurityEventCashFlow;
 import org.spacious_team.broker.pojo.SecurityType;
 import org.spacious_team.broker.pojo.Transaction;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import ru.investbook.InvestbookMetrics;
 import ru.investbook.converter.SecurityEventCashFlowConverter;
 import ru.investbook.converter.TransactionConverter;
 import ru.investbook.entity.SecurityEventCashFlowEntity;
@@ -34,6 +36,7 @@ import ru.investbook.repository.SecurityEventCashFlowRepository;
 import ru.investbook.repository.SecurityRepository;
 import ru.investbook.repository.TransactionRepository;
 
+import java.time.Instant;
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Comparator;
@@ -41,23 +44,48 @@ import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsFirst;
 import static org.spacious_team.broker.pojo.SecurityType.CURRENCY_PAIR;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
 
+/**
+ * Caches FIFO positions by security, portfolios and period. Cached positions are not dropped on each write,
+ * new transactions and bond redemptions are applied to cached positions incrementally (see {@link #add(Transaction)}
+ * and {@link #add(SecurityEventCashFlow)}), only back-dated, updated or deleted events lead to rebuild positions of
+ * the affected security.
+ */
 @Component
 @RequiredArgsConstructor
 public class FifoPositionsFactory {
 
-    private static final String ALL_PORTFOLIO_KEY = "all";
+    /**
+     * Same order as {@link TransactionRepository#findBySecurityIdAndTimestampBetweenOrderByTimestampAscTradeIdAsc}
+     */
+    private static final Comparator<Transaction> securityTransactionOrder = comparing(Transaction::getTimestamp)
+            .thenComparing(Transaction::getTradeId, nullsFirst(naturalOrder()));
+    /**
+     * Same order as {@link #create(String, FifoPositionsFilter)}
+     */
+    private static final Comparator<Transaction> currencyPairTransactionOrder = comparing(Transaction::getTimestamp)
+            .thenComparing(Transaction::getId, nullsFirst(naturalOrder()));
     private final TransactionRepository transactionRepository;
     private final SecurityEventCashFlowRepository securityEventCashFlowRepository;
     private final SecurityRepository securityRepository;
     private final TransactionConverter transactionConverter;
     private final SecurityEventCashFlowConverter securityEventCashFlowConverter;
-    // portfolios -> cache_key -> positions
-    private final Map<String, Map<String, FifoPositions>> positionsCache = new ConcurrentHashMap<>();
+    private final InvestbookMetrics metrics;
+    // security id or currency pair -> portfolios and period -> positions
+    private final Map<String, Map<CacheKey, FifoPositions>> positionsCache = new ConcurrentHashMap<>();
 
     public FifoPositions get(Security security, Portfolio portfolio) {
         return get(security, FifoPositionsFilter.of(portfolio));
@@ -71,9 +99,7 @@ public class FifoPositionsFactory {
      * @param currencyPair in USDRUB format
      */
     public FifoPositions getForCurrencyPair(String currencyPair, FifoPositionsFilter filter) {
-        return getPortfolioCache(filter).computeIfAbsent(
-                getCacheKey(currencyPair, filter),
-                k -> create(currencyPair, filter));
+        return getCached(currencyPair, filter, () -> create(currencyPair, filter));
     }
 
     public FifoPositions get(int securityId, SecurityType securityType, FifoPositionsFilter filter) {
@@ -82,32 +108,127 @@ public class FifoPositionsFactory {
                     .orElseThrow(() -> new IllegalArgumentException("Валютная пара не найдена по id = " + securityId));
             return getForCurrencyPair(currencyPair, filter);
         }
-        return getPortfolioCache(filter).computeIfAbsent(
-                getCacheKey(String.valueOf(securityId), filter),
-                k -> create(securityId, securityType, filter));
+        return getCached(String.valueOf(securityId), filter, () -> create(securityId, securityType, filter));
     }
 
-    private Map<String, FifoPositions> getPortfolioCache(FifoPositionsFilter filter) {
-        String key = filter.getPortfolios().stream().sorted().collect(Collectors.joining(","));
-        return positionsCache.computeIfAbsent(
-                key.isEmpty() ? ALL_PORTFOLIO_KEY : key,
-                k -> new ConcurrentHashMap<>());
+    private FifoPositions getCached(String security, FifoPositionsFilter filter, Supplier<FifoPositions> factory) {
+        Map<CacheKey, FifoPositions> cache = getSecurityCache(security);
+        CacheKey key = CacheKey.of(filter);
+        FifoPositions positions = cache.get(key);
+        metrics.countFifoPositionsCacheGet(positions != null);
+        return (positions != null) ? positions : cache.computeIfAbsent(key, k -> factory.get());
     }
 
-    private String getCacheKey(String currencyPair, FifoPositionsFilter filter) {
-        return currencyPair + filter.getFromDate().toString() + filter.getToDate().toString();
+    private Map<CacheKey, FifoPositions> getSecurityCache(String security) {
+        return positionsCache.computeIfAbsent(security, k -> new ConcurrentHashMap<>());
     }
 
     public void invalidateCache() {
         positionsCache.clear();
     }
 
+    /**
+     * Drops cached positions of the security, should be called after transaction or bond redemption update or delete.
+     */
+    public void invalidateCache(int securityId) {
+        afterCommit(() -> {
+            positionsCache.remove(String.valueOf(securityId));
+            getCachedCurrencyPair(securityId)
+                    .ifPresent(positionsCache::remove);
+        });
+    }
+
+    /**
+     * Applies new transaction to cached positions. Positions are rebuilt if transaction is back-dated.
+     * Should be called after transaction creation.
+     *
+     * @param transaction saved transaction with ID
+     */
+    public void add(Transaction transaction) {
+        afterCommit(() -> {
+            applyToCache(String.valueOf(transaction.getSecurity()), transaction, securityTransactionOrder);
+            getCachedCurrencyPair(transaction.getSecurity())
+                    .ifPresent(currencyPair -> applyToCache(currencyPair, transaction, currencyPairTransactionOrder));
+        });
+    }
+
+    /**
+     * Applies new bond redemption to cached positions. Positions are rebuilt if redemption is back-dated.
+     * Should be called after security event creation, events other than {@link CashFlowType#REDEMPTION} are ignored.
+     */
+    public void add(SecurityEventCashFlow event) {
+        if (event.getEventType() != CashFlowType.REDEMPTION) {
+            return;
+        }
+        afterCommit(() -> {
+            Map<CacheKey, FifoPositions> cache = positionsCache.get(String.valueOf(event.getSecurity()));
+            if (cache != null) {
+                cache.entrySet().removeIf(e -> e.getKey().isApplicable(event.getPortfolio(), event.getTimestamp()) &&
+                        !applyToCache(cache, e.getKey(), positions -> positions.append(event)));
+            }
+        });
+    }
+
+    private void applyToCache(String security, Transaction transaction, Comparator<Transaction> order) {
+        Map<CacheKey, FifoPositions> cache = positionsCache.get(security);
+        if (cache != null) {
+            cache.entrySet().removeIf(e -> e.getKey().isApplicable(transaction.getPortfolio(), transaction.getTimestamp()) &&
+                    !applyToCache(cache, e.getKey(), positions -> positions.append(transaction, order)));
+        }
+    }
+
+    /**
+     * @return false if positions can't be updated incrementally and should be removed from cache
+     */
+    private static boolean applyToCache(Map<CacheKey, FifoPositions> cache, CacheKey key,
+                                        Function<FifoPositions, Optional<FifoPositions>> updater) {
+        FifoPositions positions = cache.get(key);
+        if (positions == null) {
+            return true;
+        }
+        Optional<FifoPositions> updated = updater.apply(positions);
+        updated.ifPresent(newPositions -> cache.replace(key, positions, newPositions));
+        return updated.isPresent();
+    }
+
+    /**
+     * @return currency pair if security is a currency pair contract and positions for it are cached
+     */
+    private Optional<String> getCachedCurrencyPair(int securityId) {
+        boolean hasCachedCurrencyPairs = positionsCache.keySet()
+                .stream()
+                .anyMatch(FifoPositionsFactory::isCurrencyPair);
+        return hasCachedCurrencyPairs ?
+                securityRepository.findCurrencyPair(securityId) :
+                Optional.empty();
+    }
+
+    private static boolean isCurrencyPair(String cacheKey) {
+        return !cacheKey.isEmpty() && !Character.isDigit(cacheKey.charAt(0));
+    }
+
+    /**
+     * Runs action after DB transaction commit, so positions built concurrently from DB see the same state as cache.
+     */
+    private static void afterCommit(Runnable action) {
+        if (isSynchronizationActive()) {
+            registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     private FifoPositions create(String currencyPair, FifoPositionsFilter filter) {
         LinkedList<Transaction> transactions = getFxContracts(currencyPair, filter)
                 .stream()
                 .map(contract -> getTransactions(contract, filter))
                 .flatMap(Collection::stream)
-                .sorted(Comparator.comparing(Transaction::getTimestamp).thenComparing(Transaction::getId))
+                .sorted(currencyPairTransactionOrder)
                 .collect(Collectors.toCollection(LinkedList::new));
 
         return new FifoPositions(transactions, new ArrayDeque<>(0));
@@ -173,4 +294,20 @@ public class FifoPositionsFactory {
                 .map(securityEventCashFlowConverter::fromEntity)
                 .collect(Collectors.toCollection(LinkedList::new));
     }
+
+    /**
+     * @param portfolios empty for all portfolios
+     */
+    private record CacheKey(Set<String> portfolios, Instant fromDate, Instant toDate) {
+
+        static CacheKey of(FifoPositionsFilter filter) {
+            return new CacheKey(Set.copyOf(filter.getPortfolios()), filter.getFromDate(), filter.getToDate());
+        }
+
+        boolean isApplicable(String portfolio, Instant timestamp) {
+            return (portfolios.isEmpty() || portfolios.contains(portfolio)) &&
+                    !timestamp.isBefore(fromDate) &&
+                    !timestamp.isAfter(toDate);
+        }
+    }
 }
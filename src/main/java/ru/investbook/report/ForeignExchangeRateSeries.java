@@ -0,0 +1,92 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.report;
+
+import ru.investbook.entity.ForeignExchangeRateEntity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compact date-indexed exchange rate history of a currency pair. Dates are stored as sorted epoch days,
+ * rates - as unscaled values of fixed {@link #SCALE}, which is the same as DB column scale.
+ */
+class ForeignExchangeRateSeries {
+    private static final int SCALE = 6;
+    private final int[] epochDays;
+    private final long[] rates;
+
+    private ForeignExchangeRateSeries(int[] epochDays, long[] rates) {
+        this.epochDays = epochDays;
+        this.rates = rates;
+    }
+
+    static ForeignExchangeRateSeries of(Collection<ForeignExchangeRateEntity> entities) {
+        List<ForeignExchangeRateEntity> sorted = entities.stream()
+                .filter(entity -> entity.getRate() != null && entity.getRate().signum() > 0)
+                .sorted(Comparator.comparing(entity -> entity.getPk().getDate()))
+                .toList();
+        int[] epochDays = new int[sorted.size()];
+        long[] rates = new long[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            ForeignExchangeRateEntity entity = sorted.get(i);
+            epochDays[i] = Math.toIntExact(entity.getPk().getDate().toEpochDay());
+            rates[i] = entity.getRate()
+                    .setScale(SCALE, RoundingMode.HALF_UP)
+                    .unscaledValue()
+                    .longValueExact();
+        }
+        return new ForeignExchangeRateSeries(epochDays, rates);
+    }
+
+    /**
+     * @param maxLookbackDays if exchange rate at the date is unknown (weekend or holiday), searches the latest
+     *                        rate during this number of previous days, zero - only rate at the date is returned
+     * @return exchange rate or null if unknown
+     */
+    BigDecimal getRate(LocalDate date, int maxLookbackDays) {
+        int epochDay = Math.toIntExact(date.toEpochDay());
+        int index = Arrays.binarySearch(epochDays, epochDay);
+        if (index >= 0) {
+            return toBigDecimal(rates[index]);
+        }
+        int floorIndex = -index - 2; // the greatest date less than requested
+        if (floorIndex >= 0 && (epochDay - epochDays[floorIndex]) <= maxLookbackDays) {
+            return toBigDecimal(rates[floorIndex]);
+        }
+        return null;
+    }
+
+    /**
+     * @return the latest known exchange rate or null if unknown
+     */
+    BigDecimal getLastRate() {
+        return (rates.length == 0) ? null : toBigDecimal(rates[rates.length - 1]);
+    }
+
+    private static BigDecimal toBigDecimal(long rate) {
+        return BigDecimal.valueOf(rate, SCALE);
+    }
+}
@@ -25,7 +25,9 @@ import org.spacious_team.broker.pojo.SecurityQuote.SecurityQuoteBuilder;
 import org.spacious_team.broker.pojo.SecurityType;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import ru.investbook.entity.ForeignExchangeRateEntity;
+import org.springframework.transaction.support.TransactionSynchronization;
+import ru.investbook.InvestbookMetrics;
+import ru.investbook.InvestbookProperties;
 import ru.investbook.repository.ForeignExchangeRateRepository;
 
 import java.math.BigDecimal;
@@ -37,6 +39,11 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import static org.spacious_team.broker.pojo.SecurityType.*;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.bindResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.hasResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.unbindResourceIfPossible;
 
 
 @Service
@@ -51,10 +58,12 @@ public class ForeignExchangeRateService {
     private static final BigDecimal _120 = BigDecimal.valueOf(120);
     private static final BigDecimal _6000 = BigDecimal.valueOf(6000);
     private final ForeignExchangeRateRepository foreignExchangeRateRepository;
+    private final InvestbookProperties properties;
+    private final InvestbookMetrics metrics;
     // base-currency -> quote-currency -> exchange-rate
     private final Map<String, Map<String, BigDecimal>> cache = new ConcurrentHashMap<>();
-    // base-currency -> quote-currency -> local date -> exchange-rate
-    private final Map<String, Map<String, Map<LocalDate, BigDecimal>>> cacheByDate = new ConcurrentHashMap<>();
+    // currency-pair -> exchange-rate history
+    private final Map<String, ForeignExchangeRateSeries> rateSeries = new ConcurrentHashMap<>();
     @Value("${server.port}")
     private int serverPort;
 
@@ -95,12 +104,9 @@ public class ForeignExchangeRateService {
         if (currency.equalsIgnoreCase("rub")) {
             return BigDecimal.ONE;
         }
-        BigDecimal exchangeRate = foreignExchangeRateRepository
-                .findFirstByPkCurrencyPairOrderByPkDateDesc(currency.toUpperCase() + "RUB")
-                .map(ForeignExchangeRateEntity::getRate)
-                .orElse(BigDecimal.ZERO);
-
-        if (exchangeRate.equals(BigDecimal.ZERO)) {
+        BigDecimal exchangeRate = getRateSeries(currency.toUpperCase() + "RUB")
+                .getLastRate();
+        if (exchangeRate == null) {
             exchangeRate = getDefaultExchangeRate(currency);
         }
         cache(currency, "RUB", exchangeRate);
@@ -140,21 +146,15 @@ public class ForeignExchangeRateService {
     public BigDecimal getExchangeRate(String baseCurrency, String quoteCurrency, LocalDate atDate) {
         if (baseCurrency.equalsIgnoreCase(quoteCurrency)) {
             return BigDecimal.ONE;
-        }
-        BigDecimal exchangeRate = getFromCache(baseCurrency, quoteCurrency, atDate);
-        if (exchangeRate != null) {
-            return exchangeRate;
         } else if (baseCurrency.equalsIgnoreCase("RUB")) {
-            exchangeRate = BigDecimal.ONE.divide(getExchangeRateToRub(quoteCurrency, atDate), 20, RoundingMode.HALF_UP);
+            return BigDecimal.ONE.divide(getExchangeRateToRub(quoteCurrency, atDate), 20, RoundingMode.HALF_UP);
         } else if (quoteCurrency.equalsIgnoreCase("RUB")) {
-            exchangeRate = getExchangeRateToRub(baseCurrency, atDate);
+            return getExchangeRateToRub(baseCurrency, atDate);
         } else {
             BigDecimal baseToRub = getExchangeRateToRub(baseCurrency, atDate);
             BigDecimal quoteToRub = getExchangeRateToRub(quoteCurrency, atDate);
-            exchangeRate = baseToRub.divide(quoteToRub, 20, RoundingMode.HALF_UP);
+            return baseToRub.divide(quoteToRub, 20, RoundingMode.HALF_UP);
         }
-        cache(baseCurrency, quoteCurrency, atDate, exchangeRate);
-        return exchangeRate;
     }
 
     /**
@@ -177,6 +177,9 @@ public class ForeignExchangeRateService {
 
     /**
      * Возвращает котировку базовой валюты в цене котируемой валюты. Например, для USD/RUB базовая валюта - USD.
+     * <p>
+     * Если курс на заданную дату не известен (выходной или праздничный день), возвращает курс на ближайшую
+     * предыдущую дату, но не ранее чем {@link InvestbookProperties#getForeignExchangeRateMaxLookbackDays()} дней назад.
      *
      * @param currency базовая валюта
      * @param atDate   на заданную дату
@@ -187,22 +190,53 @@ public class ForeignExchangeRateService {
         if (currency.equalsIgnoreCase("rub")) {
             return BigDecimal.ONE;
         }
-        BigDecimal exchangeRate = foreignExchangeRateRepository
-                .findByPkCurrencyPairAndPkDate(currency.toUpperCase() + "RUB", atDate)
-                .map(ForeignExchangeRateEntity::getRate)
-                .orElse(BigDecimal.ZERO);
-
-        if (exchangeRate.equals(BigDecimal.ZERO)) {
+        BigDecimal exchangeRate = getRateSeries(currency.toUpperCase() + "RUB")
+                .getRate(atDate, properties.getForeignExchangeRateMaxLookbackDays());
+        if (exchangeRate == null) {
             throw new NoSuchElementException("Курс валюты " + currency.toUpperCase() + "RUB на дату " + atDate +
                     " не известен, загрузите значение курса с сайта ЦБ РФ (https://www.cbr.ru/currency_base/dynamics/) " +
                     " запросом POST http://localhost:" + serverPort + "/foreign-exchange-rates");
         }
-        cache(currency, "RUB", atDate, exchangeRate);
         return exchangeRate;
     }
 
+    /**
+     * Сбрасывает кеш курсов. Должен вызываться при любом изменении курсов в БД. Если вызван в транзакции БД,
+     * кеш сбрасывается только после ее фиксации, т.к. до фиксации другой поток загрузит в кеш старые курсы.
+     * Сброс регистрируется один раз на транзакцию, сколько бы курсов в ней ни было изменено.
+     */
     public void invalidateCache() {
+        if (isSynchronizationActive()) {
+            if (!hasResource(this)) {
+                bindResource(this, Boolean.TRUE);
+                registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        unbindResourceIfPossible(ForeignExchangeRateService.this);
+                        if (status == STATUS_COMMITTED) {
+                            clearCache();
+                        }
+                    }
+                });
+            }
+        } else {
+            clearCache();
+        }
+    }
+
+    private void clearCache() {
         this.cache.clear();
+        this.rateSeries.clear();
+    }
+
+    /**
+     * Cache miss metric means exchange rate history is loaded from DB
+     */
+    private ForeignExchangeRateSeries getRateSeries(String currencyPair) {
+        ForeignExchangeRateSeries series = rateSeries.get(currencyPair);
+        metrics.countForeignExchangeRateCacheGet(series != null);
+        return (series != null) ? series : rateSeries.computeIfAbsent(currencyPair, pair ->
+                ForeignExchangeRateSeries.of(foreignExchangeRateRepository.findByPkCurrencyPairOrderByPkDateDesc(pair)));
     }
 
     private void cache(String baseCurrency, String quoteCurrency, BigDecimal exchangeRate) {
@@ -210,24 +244,11 @@ public class ForeignExchangeRateService {
                 .putIfAbsent(quoteCurrency, exchangeRate);
     }
 
-    private void cache(String baseCurrency, String quoteCurrency, LocalDate localDate, BigDecimal exchangeRate) {
-        this.cacheByDate.computeIfAbsent(baseCurrency, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(quoteCurrency, k -> new ConcurrentHashMap<>())
-                .putIfAbsent(localDate, exchangeRate);
-    }
-
     private BigDecimal getFromCache(String baseCurrency, String quoteCurrency) {
         return this.cache.computeIfAbsent(baseCurrency, k -> new ConcurrentHashMap<>())
                 .get(quoteCurrency);
     }
 
-    private BigDecimal getFromCache(String baseCurrency, String quoteCurrency, LocalDate localDate) {
-        return this.cacheByDate.computeIfAbsent(baseCurrency, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(quoteCurrency, k -> new ConcurrentHashMap<>())
-                .get(localDate);
-
-    }
-
     private static BigDecimal getDefaultExchangeRate(String currency) {
         BigDecimal exchangeRate;
         exchangeRate = switch (currency) {
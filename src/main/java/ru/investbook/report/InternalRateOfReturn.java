@@ -26,11 +26,10 @@ import org.spacious_team.broker.pojo.Security;
 import org.spacious_team.broker.pojo.SecurityQuote;
 import org.spacious_team.broker.pojo.SecurityType;
 import org.spacious_team.broker.pojo.Transaction;
+import org.spacious_team.broker.pojo.TransactionCashFlow;
 import org.springframework.stereotype.Component;
 import ru.investbook.entity.SecurityEventCashFlowEntity;
-import ru.investbook.entity.TransactionCashFlowEntity;
 import ru.investbook.repository.SecurityEventCashFlowRepository;
-import ru.investbook.repository.TransactionCashFlowRepository;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -53,7 +52,7 @@ import static org.spacious_team.broker.pojo.SecurityType.DERIVATIVE;
 @Slf4j
 public class InternalRateOfReturn {
     private final FifoPositionsFactory positionsFactory;
-    private final TransactionCashFlowRepository transactionCashFlowRepository;
+    private final TransactionCashFlowMapFactory transactionCashFlowMapFactory;
     private final SecurityEventCashFlowRepository securityEventCashFlowRepository;
     private final ForeignExchangeRateService foreignExchangeRateService;
     private final ZoneId zoneId = ZoneId.systemDefault();
@@ -88,14 +87,15 @@ public class InternalRateOfReturn {
                 return null;
             }
 
-            String toCurrency = getTransactionCurrency(positions);
+            TransactionCashFlowMap cashFlows = transactionCashFlowMapFactory.get(positions);
+            String toCurrency = getTransactionCurrency(positions, cashFlows);
             Collection<org.decampo.xirr.Transaction> transactions = positions.getTransactions()
                     .stream()
-                    .map(transaction -> castToXirrTransaction(transaction, toCurrency))
+                    .map(transaction -> castToXirrTransaction(transaction, toCurrency, cashFlows))
                     .flatMap(Optional::stream)
                     .collect(Collectors.toList());
 
-            getSecurityEventCashFlowEntities(portfolios, security, paymentTypes)
+            getSecurityEventCashFlowEntities(portfolios, security, paymentTypes, fromDate, toDate)
                     .stream()
                     .map(cash -> castToXirrTransaction(cash, toCurrency))
                     .collect(toCollection(() -> transactions));
@@ -112,18 +112,19 @@ public class InternalRateOfReturn {
         }
     }
 
-    private String getTransactionCurrency(FifoPositions positions) {
+    private String getTransactionCurrency(FifoPositions positions, TransactionCashFlowMap cashFlows) {
         return positions.getTransactions()
                 .stream()
-                .map(t -> transactionCashFlowRepository.findByTransactionIdAndCashFlowType(t.getId(), PRICE))
+                .map(t -> cashFlows.get(t.getId(), PRICE))
                 .flatMap(Optional::stream)
-                .map(TransactionCashFlowEntity::getCurrency)
+                .map(TransactionCashFlow::getCurrency)
                 .findAny()
                 .orElseThrow(() -> new RuntimeException("Can't find any transaction payment currency"));
     }
 
-    private Optional<org.decampo.xirr.Transaction> castToXirrTransaction(Transaction transaction, String toCurrency) {
-        return getTransactionValue(transaction, toCurrency)
+    private Optional<org.decampo.xirr.Transaction> castToXirrTransaction(Transaction transaction, String toCurrency,
+                                                                         TransactionCashFlowMap cashFlows) {
+        return getTransactionValue(transaction, toCurrency, cashFlows)
                 .map(value -> new org.decampo.xirr.Transaction(
                         value.doubleValue(),
                         toLocalDate(transaction.getTimestamp())));
@@ -147,10 +148,11 @@ public class InternalRateOfReturn {
                         toLocalDate(quote.getTimestamp())));
     }
 
-    private Optional<BigDecimal> getTransactionValue(Transaction t, String toCurrency) {
+    private Optional<BigDecimal> getTransactionValue(Transaction t, String toCurrency, TransactionCashFlowMap cashFlows) {
         BigDecimal value = null;
         if (t.getId() != null) { // bond redemption, accounted by other way, skipping
-            value = transactionCashFlowRepository.findByTransactionId(t.getId())
+            value = cashFlows.get(t.getId())
+                    .values()
                     .stream()
                     .map(entity -> convertToCurrency(entity.getValue(), entity.getCurrency(), toCurrency))
                     .reduce(BigDecimal.ZERO, BigDecimal::add);
@@ -158,23 +160,25 @@ public class InternalRateOfReturn {
         return (BigDecimal.ZERO.equals(value)) ? empty() : ofNullable(value);
     }
 
-    public List<SecurityEventCashFlowEntity> getSecurityEventCashFlowEntities(Collection<String> portfolios,
-                                                                              Security security,
-                                                                              Set<Integer> cashFlowTypes) {
+    private List<SecurityEventCashFlowEntity> getSecurityEventCashFlowEntities(Collection<String> portfolios,
+                                                                               Security security,
+                                                                               Set<Integer> cashFlowTypes,
+                                                                               Instant fromDate,
+                                                                               Instant toDate) {
         return portfolios.isEmpty() ?
                 securityEventCashFlowRepository
                         .findBySecurityIdAndCashFlowTypeIdInAndTimestampBetweenOrderByTimestampAsc(
                                 security.getId(),
                                 cashFlowTypes,
-                                ViewFilter.get().getFromDate(),
-                                ViewFilter.get().getToDate()) :
+                                fromDate,
+                                toDate) :
                 securityEventCashFlowRepository
                         .findByPortfolioIdInAndSecurityIdAndCashFlowTypeIdInAndTimestampBetweenOrderByTimestampAsc(
                                 portfolios,
                                 security.getId(),
                                 cashFlowTypes,
-                                ViewFilter.get().getFromDate(),
-                                ViewFilter.get().getToDate());
+                                fromDate,
+                                toDate);
     }
 
     private BigDecimal convertToCurrency(BigDecimal value, String fromCurrency, String toCurrency) {
@@ -37,11 +37,12 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.Collections.singleton;
 import static org.spacious_team.broker.pojo.CashFlowType.*;
@@ -50,7 +51,9 @@ import static org.spacious_team.broker.pojo.CashFlowType.*;
 @RequiredArgsConstructor
 @Slf4j
 public class PaidInterestFactory {
-    private static final CashFlowType[] PAY_TYPES = new CashFlowType[]{COUPON, AMORTIZATION, DIVIDEND, TAX};
+    private static final Set<Integer> PAY_TYPE_IDS = Stream.of(COUPON, AMORTIZATION, DIVIDEND, TAX)
+            .map(CashFlowType::getId)
+            .collect(Collectors.toUnmodifiableSet());
     private final FifoPositionsFactory positionsFactory;
     private final SecurityEventCashFlowRepository securityEventCashFlowRepository;
     private final SecurityEventCashFlowConverter securityEventCashFlowConverter;
@@ -61,39 +64,31 @@ public class PaidInterestFactory {
         return create(portfolio.getId(), security, positions, fromDate, toDate);
     }
 
+    /**
+     * Loads payments of all types by one query, paid positions are searched by position interval index
+     */
     private PaidInterest create(
             String portfolio, Security security, FifoPositions positions, Instant fromDate, Instant toDate) {
 
-        PaidInterest paidInterest = new PaidInterest();
-        for (CashFlowType type : PAY_TYPES) {
-            paidInterest.get(type)
-                    .putAll(getPositionWithPayments(
-                            portfolio, security.getId(), positions, type, fromDate, toDate));
-        }
-        return paidInterest;
-    }
-
-    private Map<Position, List<SecurityEventCashFlow>> getPositionWithPayments(String portfolio,
-                                                                               Integer securityId,
-                                                                               FifoPositions positions,
-                                                                               CashFlowType event,
-                                                                               Instant fromDate,
-                                                                               Instant toDate) {
         List<SecurityEventCashFlowEntity> eventCashFlowEntities = securityEventCashFlowRepository
-                .findByPortfolioIdInAndSecurityIdAndCashFlowTypeIdAndTimestampBetweenOrderByTimestampAsc(
+                .findByPortfolioIdInAndSecurityIdAndCashFlowTypeIdInAndTimestampBetweenOrderByTimestampAsc(
                         singleton(portfolio),
-                        securityId,
-                        event.getId(),
+                        security.getId(),
+                        PAY_TYPE_IDS,
                         fromDate,
                         toDate);
-
-        Map<Position, List<SecurityEventCashFlow>> payments = new HashMap<>();
+        PaidInterest paidInterest = new PaidInterest();
+        if (eventCashFlowEntities.isEmpty()) {
+            return paidInterest;
+        }
+        PositionIntervalIndex positionIndex = new PositionIntervalIndex(positions);
+        List<PositionHistory> positionHistories = new ArrayList<>(positions.getPositionHistories());
         for (SecurityEventCashFlowEntity entity : eventCashFlowEntities) {
             SecurityEventCashFlow cash = securityEventCashFlowConverter.fromEntity(entity);
+            Map<Position, List<SecurityEventCashFlow>> payments = paidInterest.get(cash.getEventType());
             try {
-                Instant bookClosureDate = getBookClosureDate(positions.getPositionHistories(), entity);
-                Deque<Position> paidPositions = getPayedPositions(positions.getClosedPositions(), bookClosureDate);
-                paidPositions.addAll(getPayedPositions(positions.getOpenedPositions(), bookClosureDate));
+                Instant bookClosureDate = getBookClosureDate(positionHistories, entity);
+                Deque<Position> paidPositions = positionIndex.getPositionsOpenedAt(bookClosureDate);
 
                 // filter only positions was opened in 'filter' interval
                 paidPositions = paidPositions.stream()
@@ -111,26 +106,24 @@ public class PaidInterestFactory {
                         .add(cash);
             }
         }
-        return payments;
+        return paidInterest;
     }
 
     /**
-     * @param positionHistories securities position (date in the past -> securities count)
+     * @param positionHistories securities position (date in the past -> securities count), ordered by instant
      * @param payment           dividend or bonds accrued interest payment
      * @return shares book closure (bonds accrued interest paying) date
      */
-    private Instant getBookClosureDate(Deque<PositionHistory> positionHistories, SecurityEventCashFlowEntity payment) {
+    private Instant getBookClosureDate(List<PositionHistory> positionHistories, SecurityEventCashFlowEntity payment) {
         Instant payDate = payment.getTimestamp(); // дата перечисления дивидендов/купонов Брокером
         int payForSecurities = payment.getCount();
-        Iterator<PositionHistory> it = positionHistories.descendingIterator();
         // дата перечисления дивидендов/купонов Эмитентом (дата фиксации реестра акционеров)
         // с точностью до временного интервала между 2-мя соседними транзакции
         Instant bookClosureDate = null;
-        while (it.hasNext()) {
-            PositionHistory positionHistory = it.next();
-            Instant pastInstant = positionHistory.getInstant();
-            if (payDate.isAfter(pastInstant) && (payForSecurities == positionHistory.getOpenedPositions())) {
-                bookClosureDate = pastInstant.plusNanos(1);
+        for (int i = countHistoriesBefore(positionHistories, payDate) - 1; i >= 0; i--) {
+            PositionHistory positionHistory = positionHistories.get(i);
+            if (payForSecurities == positionHistory.getOpenedPositions()) {
+                bookClosureDate = positionHistory.getInstant().plusNanos(1);
                 break;
             }
         }
@@ -143,16 +136,20 @@ public class PaidInterestFactory {
         return bookClosureDate;
     }
 
-    private <T extends Position> Deque<Position> getPayedPositions(Deque<T> positions, Instant bookClosureDate) {
-        Iterator<? extends T> it = positions.descendingIterator();
-        Deque<Position> payedPositions = new LinkedList<>();
-        while (it.hasNext()) {
-            T position = it.next();
-            if (position.wasOpenedAtTheInstant(bookClosureDate)) {
-                payedPositions.addFirst(position);
+    /**
+     * @return count of position histories with instant before pay date
+     */
+    private static int countHistoriesBefore(List<PositionHistory> positionHistories, Instant payDate) {
+        int low = 0, high = positionHistories.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (payDate.isAfter(positionHistories.get(mid).getInstant())) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
-        return payedPositions;
+        return low;
     }
 
     private Map<Position, List<SecurityEventCashFlow>> getPayments(SecurityEventCashFlow cash, Deque<Position> paidPositions) {
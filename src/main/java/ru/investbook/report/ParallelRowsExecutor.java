@@ -0,0 +1,66 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.report;
+
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.springframework.stereotype.Component;
+import ru.investbook.InvestbookExecutors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Computes report rows in parallel, for example rows of each security of a sheet.
+ * Rows are computed by {@link InvestbookExecutors#getReportRowsExecutor()} pool, sheets are built by other pool,
+ * so tasks do not wait for each other.
+ */
+@Component
+@RequiredArgsConstructor
+public class ParallelRowsExecutor {
+    private final InvestbookExecutors executors;
+
+    /**
+     * @return mapped values in source order
+     */
+    @SneakyThrows
+    public <T, R> List<R> map(Collection<T> items, Function<? super T, ? extends R> mapper) {
+        if (items.size() <= 1) {
+            return items.stream()
+                    .<R>map(mapper)
+                    .toList();
+        }
+        Collection<Callable<R>> tasks = new ArrayList<>(items.size());
+        items.forEach(item -> tasks.add(() -> mapper.apply(item)));
+        List<R> result = new ArrayList<>(items.size());
+        try {
+            for (Future<R> future : executors.getReportRowsExecutor().invokeAll(tasks)) {
+                result.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+        return result;
+    }
+}
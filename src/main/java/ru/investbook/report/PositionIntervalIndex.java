@@ -0,0 +1,121 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.report;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Index of position holding intervals (open instant, close instant), answers which positions
+ * was opened at the instant in O(log(n) + k * log(n)) time, where k is a result size
+ */
+class PositionIntervalIndex {
+    private final OpenedPosition[] positions;
+    private final Instant[] openInstants;
+    /**
+     * Segment tree over positions ordered by open instant, node contains max close instant of its subtree
+     */
+    private final Instant[] maxCloseInstants;
+    private final int size;
+
+    PositionIntervalIndex(FifoPositions fifoPositions) {
+        List<OpenedPosition> all = new ArrayList<>(fifoPositions.getClosedPositions());
+        all.addAll(fifoPositions.getOpenedPositions());
+        all.sort(Comparator.comparing(PositionIntervalIndex::getOpenInstant));
+        this.size = all.size();
+        this.positions = all.toArray(new OpenedPosition[0]);
+        this.openInstants = new Instant[size];
+        for (int i = 0; i < size; i++) {
+            openInstants[i] = getOpenInstant(positions[i]);
+        }
+        this.maxCloseInstants = new Instant[Math.max(1, 4 * size)];
+        if (size > 0) {
+            build(1, 0, size - 1);
+        }
+    }
+
+    /**
+     * @return positions for which {@link Position#wasOpenedAtTheInstant(Instant)} is true, ordered by open instant
+     */
+    Deque<Position> getPositionsOpenedAt(Instant instant) {
+        Deque<Position> result = new LinkedList<>();
+        int openedBefore = countOpenedBefore(instant);
+        if (openedBefore > 0) {
+            collect(1, 0, size - 1, openedBefore - 1, instant, result);
+        }
+        return result;
+    }
+
+    private int countOpenedBefore(Instant instant) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (openInstants[mid].isBefore(instant)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void build(int node, int from, int to) {
+        if (from == to) {
+            maxCloseInstants[node] = getCloseInstant(positions[from]);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        build(2 * node, from, mid);
+        build(2 * node + 1, mid + 1, to);
+        Instant left = maxCloseInstants[2 * node];
+        Instant right = maxCloseInstants[2 * node + 1];
+        maxCloseInstants[node] = left.isAfter(right) ? left : right;
+    }
+
+    /**
+     * Collects positions from index interval [from, min(to, lastIndex)] having close instant after the instant
+     */
+    private void collect(int node, int from, int to, int lastIndex, Instant instant, Collection<Position> result) {
+        if (from > lastIndex || !maxCloseInstants[node].isAfter(instant)) {
+            return;
+        }
+        if (from == to) {
+            result.add(positions[from]);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        collect(2 * node, from, mid, lastIndex, instant, result);
+        collect(2 * node + 1, mid + 1, to, lastIndex, instant, result);
+    }
+
+    private static Instant getOpenInstant(OpenedPosition position) {
+        return position.getOpenTransaction().getTimestamp();
+    }
+
+    private static Instant getCloseInstant(OpenedPosition position) {
+        return (position instanceof ClosedPosition closedPosition) ?
+                closedPosition.getCloseTransaction().getTimestamp() :
+                Instant.MAX;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.report;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.investbook.InvestbookProperties;
+import ru.investbook.repository.DataVersion;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Keeps built report files on disk. Cache key includes report format, view filter, current date and
+ * {@link DataVersion}, so any data modification makes previously built reports unreachable.
+ * Least recently used reports are evicted when total size exceeds limit.
+ * Reports of previous application runs are deleted on start, because data version is not persisted.
+ */
+@Component
+@Slf4j
+public class ReportSnapshotCache {
+    private static final Pattern CACHED_FILE_NAME = Pattern.compile("[0-9a-f]{64}\\.\\w+(\\d*\\.tmp)?");
+    private final DataVersion dataVersion;
+    private final boolean isEnabled;
+    private final Path cachePath;
+    private final long maxSize;
+    /**
+     * Cached file name -> file size, in access order
+     */
+    private final Map<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize = 0;
+
+    public ReportSnapshotCache(DataVersion dataVersion, InvestbookProperties properties) {
+        this.dataVersion = dataVersion;
+        this.cachePath = properties.getReportCachePath();
+        this.maxSize = properties.getReportCacheMaxSize().toBytes();
+        this.isEnabled = properties.isReportCache() && init(cachePath);
+    }
+
+    private static boolean init(Path cachePath) {
+        try {
+            Files.createDirectories(cachePath);
+            try (Stream<Path> cachedFiles = Files.list(cachePath)) {
+                for (Path file : (Iterable<Path>) cachedFiles::iterator) {
+                    if (CACHED_FILE_NAME.matcher(file.getFileName().toString()).matches()) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("Кеш отчетов отключен, не могу создать директорию {}", cachePath, e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes cached report to output stream. If report is not cached, it is built by report writer,
+     * which writes to output stream and cache file simultaneously.
+     *
+     * @param format report file extension
+     * @return true if report is taken from cache
+     */
+    @SneakyThrows
+    public boolean writeTo(OutputStream out, String format, ViewFilter filter, ReportWriter reportWriter) {
+        if (!isEnabled) {
+            reportWriter.write(out);
+            return false;
+        }
+        long version = dataVersion.get();
+        String fileName = getFileName(format, filter, version);
+        if (copyCachedFile(fileName, out)) {
+            return true;
+        }
+        Path tmpFile = Files.createTempFile(cachePath, fileName, ".tmp");
+        try {
+            try (OutputStream fileOut = new BufferedOutputStream(Files.newOutputStream(tmpFile))) {
+                reportWriter.write(new TeeOutputStream(out, fileOut));
+            }
+            if (version == dataVersion.get()) { // data wasn't changed while report was built
+                put(fileName, tmpFile);
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+        return false;
+    }
+
+    private boolean copyCachedFile(String fileName, OutputStream out) throws IOException {
+        synchronized (files) {
+            if (files.get(fileName) == null) {
+                return false;
+            }
+        }
+        try {
+            Files.copy(cachePath.resolve(fileName), out);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false; // evicted concurrently
+        }
+    }
+
+    private void put(String fileName, Path tmpFile) throws IOException {
+        long size = Files.size(tmpFile);
+        if (size > maxSize) {
+            return;
+        }
+        synchronized (files) {
+            Files.move(tmpFile, cachePath.resolve(fileName), REPLACE_EXISTING);
+            Long previousSize = files.put(fileName, size);
+            totalSize += size - ((previousSize == null) ? 0 : previousSize);
+            evict();
+        }
+    }
+
+    private void evict() throws IOException {
+        Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator();
+        while (totalSize > maxSize && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            Files.deleteIfExists(cachePath.resolve(eldest.getKey()));
+            totalSize -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    @SneakyThrows
+    private static String getFileName(String format, ViewFilter filter, long version) {
+        String key = String.join("|",
+                String.valueOf(version),
+                LocalDate.now().toString(), // report depends on current date, for example for last quote and FX rate
+                String.valueOf(filter.getFromDate()),
+                String.valueOf(filter.getToDate()),
+                String.valueOf(new TreeSet<>(filter.getPortfolios())),
+                String.valueOf(filter.isShowDetails()));
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hash) + "." + format;
+    }
+
+    @FunctionalInterface
+    public interface ReportWriter {
+        void write(OutputStream out) throws Exception;
+    }
+
+    /**
+     * Writes to both streams, close() flushes streams, but doesn't close them
+     */
+    private static class TeeOutputStream extends FilterOutputStream {
+        private final OutputStream branch;
+
+        TeeOutputStream(OutputStream out, OutputStream branch) {
+            super(out);
+            this.branch = branch;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            branch.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            branch.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            branch.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -22,23 +22,23 @@ import org.spacious_team.broker.pojo.Portfolio;
 
 import java.util.Collection;
 
+/**
+ * Report table factory. Report context is passed explicitly, so implementations should not keep it in state
+ * and may be called by several threads concurrently.
+ */
 public interface TableFactory {
 
-    default Table create() {
-        throw new UnsupportedOperationException("Not implemented");
-    }
-
-    Table create(Portfolio portfolio);
+    Table create(Portfolio portfolio, ViewFilter filter);
 
-    default Table create(Collection<String> portfolioIds) {
+    default Table create(Collection<String> portfolioIds, ViewFilter filter) {
         throw new UnsupportedOperationException("Not implemented");
     }
 
-    default Table create(Collection<String> portfolioIds, String forCurrency) {
+    default Table create(Collection<String> portfolioIds, String forCurrency, ViewFilter filter) {
         throw new UnsupportedOperationException("Not implemented");
     }
 
-    default Table create(Portfolio portfolio, String forCurrency) {
+    default Table create(Portfolio portfolio, String forCurrency, ViewFilter filter) {
         throw new UnsupportedOperationException("Not implemented");
     }
 
@@ -0,0 +1,67 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.report;
+
+import org.spacious_team.broker.pojo.CashFlowType;
+import org.spacious_team.broker.pojo.TransactionCashFlow;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Transaction cash flows loaded in bulk, avoids SELECT per transaction while building reports.
+ */
+public class TransactionCashFlowMap {
+    // transaction id -> cash flow type -> cash flow
+    private final Map<Integer, Map<CashFlowType, TransactionCashFlow>> cashFlows = new HashMap<>();
+
+    TransactionCashFlowMap(Collection<TransactionCashFlow> cashFlows) {
+        for (TransactionCashFlow cashFlow : cashFlows) {
+            this.cashFlows.computeIfAbsent(cashFlow.getTransactionId(), k -> new EnumMap<>(CashFlowType.class))
+                    .put(cashFlow.getEventType(), cashFlow);
+        }
+    }
+
+    /**
+     * @param transactionId may be null for bond redemption
+     */
+    public Optional<TransactionCashFlow> get(Integer transactionId, CashFlowType type) {
+        return Optional.ofNullable(get(transactionId).get(type));
+    }
+
+    /**
+     * @param transactionId may be null for bond redemption
+     */
+    public Map<CashFlowType, TransactionCashFlow> get(Integer transactionId) {
+        Map<CashFlowType, TransactionCashFlow> value = (transactionId == null) ? null : cashFlows.get(transactionId);
+        return (value != null) ? value : Collections.emptyMap();
+    }
+
+    /**
+     * @return true if transaction has no cash flows (security deposit or withdrawal)
+     */
+    public boolean isDepositOrWithdrawal(int transactionId) {
+        return get(transactionId).isEmpty();
+    }
+}
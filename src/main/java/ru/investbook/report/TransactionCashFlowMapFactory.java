@@ -0,0 +1,79 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.report;
+
+import lombok.RequiredArgsConstructor;
+import org.spacious_team.broker.pojo.Transaction;
+import org.spacious_team.broker.pojo.TransactionCashFlow;
+import org.springframework.stereotype.Component;
+import ru.investbook.converter.TransactionCashFlowConverter;
+import ru.investbook.repository.DataVersion;
+import ru.investbook.repository.TransactionCashFlowRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+@Component
+@RequiredArgsConstructor
+public class TransactionCashFlowMapFactory {
+    private static final int MAX_IN_CLAUSE_SIZE = 1000;
+    private final TransactionCashFlowRepository transactionCashFlowRepository;
+    private final TransactionCashFlowConverter transactionCashFlowConverter;
+    private final DataVersion dataVersion;
+
+    /**
+     * Map is loaded once and shared by all calculations with the same positions (same security and filter)
+     * until any data modification.
+     */
+    public TransactionCashFlowMap get(FifoPositions positions) {
+        long version = dataVersion.get(); // read before loading, map loaded concurrently with modification is outdated
+        VersionedTransactionCashFlowMap cached = positions.getTransactionCashFlows();
+        if (cached != null && cached.dataVersion() == version) {
+            return cached.cashFlows();
+        }
+        TransactionCashFlowMap cashFlows = get(positions.getTransactions());
+        positions.setTransactionCashFlows(new VersionedTransactionCashFlowMap(version, cashFlows));
+        return cashFlows;
+    }
+
+    /**
+     * Loads cash flows of the transactions only
+     */
+    public TransactionCashFlowMap get(Collection<Transaction> transactions) {
+        List<Integer> transactionIds = transactions.stream()
+                .map(Transaction::getId)
+                .filter(Objects::nonNull) // bond redemption
+                .distinct()
+                .toList();
+        List<TransactionCashFlow> cashFlows = new ArrayList<>();
+        for (int i = 0; i < transactionIds.size(); i += MAX_IN_CLAUSE_SIZE) {
+            List<Integer> ids = transactionIds.subList(i, Math.min(i + MAX_IN_CLAUSE_SIZE, transactionIds.size()));
+            transactionCashFlowRepository.findByTransactionIdIn(ids)
+                    .stream()
+                    .map(transactionCashFlowConverter::fromEntity)
+                    .forEach(cashFlows::add);
+        }
+        return new TransactionCashFlowMap(cashFlows);
+    }
+
+    record VersionedTransactionCashFlowMap(long dataVersion, TransactionCashFlowMap cashFlows) {
+    }
+}
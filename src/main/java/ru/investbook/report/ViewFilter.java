@@ -33,11 +33,14 @@ import java.util.function.Supplier;
 
 import static java.time.ZoneId.systemDefault;
 
+/**
+ * Immutable report context. Passed to report table factories explicitly,
+ * so that the report may be computed by any number of threads.
+ */
 @Getter
 @Builder(toBuilder = true)
 @EqualsAndHashCode
 public class ViewFilter {
-    private static final ThreadLocal<ViewFilter> filters = ThreadLocal.withInitial(() -> null);
     public static final Instant defaultFromDate = Instant.ofEpochSecond(0);
     private static final Function<LocalDate, Instant> toInstant = date -> date.atStartOfDay(systemDefault()).toInstant();
 
@@ -53,7 +56,7 @@ public class ViewFilter {
         return ViewFilter.builder()
                 .fromDate(toInstant.apply(viewFilterModel.getFromDate()))
                 .toDate(toInstant.apply(viewFilterModel.getToDate()).plus(1, ChronoUnit.DAYS).minusSeconds(1))
-                .portfolios(portfolios)
+                .portfolios(Set.copyOf(portfolios))
                 .showDetails(viewFilterModel.isShowDetails())
                 .build();
     }
@@ -72,16 +75,4 @@ public class ViewFilter {
 
     @Builder.Default
     private final boolean showDetails = true;
-
-    public static void set(ViewFilter viewFilter) {
-        filters.set(viewFilter);
-    }
-
-    public static ViewFilter get() {
-        return filters.get();
-    }
-
-    public static void remove() {
-        filters.remove();
-    }
 }
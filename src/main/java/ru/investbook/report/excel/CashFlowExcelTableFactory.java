@@ -56,7 +56,7 @@ public class CashFlowExcelTableFactory implements TableFactory {
     private final AssetsAndCashService assetsAndCashService;
 
     @Override
-    public Table create(Portfolio portfolio) {
+    public Table create(Portfolio portfolio, ViewFilter filter) {
         Table table = new Table();
         List<EventCashFlow> cashFlows = eventCashFlowRepository
                 .findByPortfolioIdAndCashFlowTypeIdOrderByTimestamp(
@@ -79,7 +79,7 @@ public class CashFlowExcelTableFactory implements TableFactory {
         if (!cashFlows.isEmpty()) {
             addLiquidationValueRow(table);
         }
-        appendCurrencyInfo(portfolio, table);
+        appendCurrencyInfo(portfolio, table, filter);
         return table;
     }
 
@@ -93,13 +93,13 @@ public class CashFlowExcelTableFactory implements TableFactory {
         table.add(record);
     }
 
-    private void appendCurrencyInfo(Portfolio portfolio, Table table) {
+    private void appendCurrencyInfo(Portfolio portfolio, Table table, ViewFilter filter) {
         foreignExchangeRateTableFactory.appendExchangeRates(table, CURRENCY_NAME, EXCHANGE_RATE);
-        appendCashBalance(portfolio, table);
+        appendCashBalance(portfolio, table, filter);
     }
 
-    public void appendCashBalance(Portfolio portfolio, Table table) {
-        Map<String, BigDecimal> currencyToValues = getCashBalances(portfolio);
+    public void appendCashBalance(Portfolio portfolio, Table table, ViewFilter filter) {
+        Map<String, BigDecimal> currencyToValues = getCashBalances(portfolio, filter);
         Table.Record rubCashBalanceRecord = null;
         for (Table.Record record : table) {
             String currency = Optional.ofNullable((String) record.get(CURRENCY_NAME))
@@ -126,10 +126,10 @@ public class CashFlowExcelTableFactory implements TableFactory {
         }
     }
 
-    private Map<String, BigDecimal> getCashBalances(Portfolio portfolio) {
+    private Map<String, BigDecimal> getCashBalances(Portfolio portfolio, ViewFilter filter) {
         try {
             Instant now = Instant.now();
-            Instant toDate = ViewFilter.get().getToDate();
+            Instant toDate = filter.getToDate();
             Instant atTime = toDate.isBefore(now) ?  toDate : now;
             return assetsAndCashService.getPortfolioCash(Set.of(portfolio.getId()), atTime)
                     .stream()
@@ -45,14 +45,14 @@ public class CommissionExcelTableFactory implements TableFactory {
     private final EventCashFlowConverter eventCashFlowConverter;
 
     @Override
-    public Table create(Portfolio portfolio) {
+    public Table create(Portfolio portfolio, ViewFilter filter) {
         Table table = new Table();
         List<EventCashFlow> cashFlows = eventCashFlowRepository
                 .findByPortfolioIdInAndCashFlowTypeIdAndTimestampBetweenOrderByTimestamp(
                         singleton(portfolio.getId()),
                         CashFlowType.FEE.getId(),
-                        ViewFilter.get().getFromDate(),
-                        ViewFilter.get().getToDate())
+                        filter.getFromDate(),
+                        filter.getToDate())
                 .stream()
                 .map(eventCashFlowConverter::fromEntity)
                 .collect(Collectors.toCollection(ArrayList::new));
@@ -58,14 +58,14 @@ public class DerivativesMarketProfitExcelTableFactory implements TableFactory {
     private final SecurityConverter securityConverter;
     private final DerivativeEventsFactory derivativeEventsFactory;
 
-    public Table create(Portfolio portfolio) {
+    public Table create(Portfolio portfolio, ViewFilter filter) {
         Table profit = new Table();
-        for (SecurityEntity securityEntity : getDerivatives(portfolio)) {
+        for (SecurityEntity securityEntity : getDerivatives(portfolio, filter)) {
             Security contract = securityConverter.fromEntity(securityEntity);
             DerivativeEvents derivativeEvents = derivativeEventsFactory.getDerivativeEvents(
                     portfolio,
                     contract,
-                    ViewFilter.get());
+                    filter);
 
             profit.addEmptyRecord();
             profit.addAll(getContractProfit(contract, derivativeEvents));
@@ -73,11 +73,11 @@ public class DerivativesMarketProfitExcelTableFactory implements TableFactory {
         return profit;
     }
 
-    private Collection<SecurityEntity> getDerivatives(Portfolio portfolio) {
+    private Collection<SecurityEntity> getDerivatives(Portfolio portfolio, ViewFilter filter) {
         return transactionRepository.findDistinctDerivativeByPortfolioInAndTimestampBetweenOrderByTimestampDesc(
                         singleton(portfolio.getId()),
-                        ViewFilter.get().getFromDate(),
-                        ViewFilter.get().getToDate())
+                        filter.getFromDate(),
+                        filter.getToDate())
                 .stream()
                 .map(securityRepository::findById)
                 .flatMap(Optional::stream)
@@ -73,34 +73,34 @@ public class DerivativesMarketTotalProfitExcelTableFactory implements TableFacto
     private final MoexDerivativeCodeService moexDerivativeCodeService;
     private final SecurityProfitService securityProfitService;
 
-    public Table create(Portfolio portfolio) {
+    public Table create(Portfolio portfolio, ViewFilter filter) {
         throw new UnsupportedOperationException();
     }
 
-    public Table create(Portfolio portfolio, String forCurrency) {
-        return create(singleton(portfolio.getId()), forCurrency);
+    public Table create(Portfolio portfolio, String forCurrency, ViewFilter filter) {
+        return create(singleton(portfolio.getId()), forCurrency, filter);
     }
 
     /**
      * @param portfolios should be empty for display for all
      */
     @Override
-    public Table create(Collection<String> portfolios, String forCurrency) {
-        Collection<String> contractGroups = getContractGroups(portfolios, forCurrency);
-        return create(portfolios, contractGroups, forCurrency);
+    public Table create(Collection<String> portfolios, String forCurrency, ViewFilter filter) {
+        Collection<String> contractGroups = getContractGroups(portfolios, forCurrency, filter);
+        return create(portfolios, contractGroups, forCurrency, filter);
     }
 
-    private Table create(Collection<String> portfolios, Collection<String> contractGroups, String forCurrency) {
+    private Table create(Collection<String> portfolios, Collection<String> contractGroups, String forCurrency,
+                         ViewFilter filter) {
         return contractGroups.stream()
-                .map(group -> getSecurityStatus(portfolios, group, forCurrency))
+                .map(group -> getSecurityStatus(portfolios, group, forCurrency, filter))
                 .collect(toCollection(Table::new));
     }
 
-    private Collection<String> getContractGroups(Collection<String> portfolios, String currency) {
+    private Collection<String> getContractGroups(Collection<String> portfolios, String currency, ViewFilter filter) {
         if (!currency.equalsIgnoreCase("RUB")) {
             return emptyList();
         }
-        ViewFilter filter = ViewFilter.get();
         Collection<Integer> contracts = portfolios.isEmpty() ?
                 transactionRepository.findDistinctDerivativeByTimestampBetweenOrderByTimestampDesc(
                         filter.getFromDate(),
@@ -134,11 +134,12 @@ public class DerivativesMarketTotalProfitExcelTableFactory implements TableFacto
                 .orElse(false);
     }
 
-    private Table.Record getSecurityStatus(Collection<String> portfolios, String contractGroup, String toCurrency) {
+    private Table.Record getSecurityStatus(Collection<String> portfolios, String contractGroup, String toCurrency,
+                                           ViewFilter filter) {
         Table.Record row = new Table.Record();
         try {
             Set<Security> contracts = getContracts(contractGroup);
-            Deque<Transaction> transactions = getTransactions(portfolios, contracts);
+            Deque<Transaction> transactions = getTransactions(portfolios, contracts, filter);
 
             row.put(CONTRACT_GROUP, moexDerivativeCodeService.codePrefixToShortnamePrefix(contractGroup)
                     .orElse(contractGroup));
@@ -148,7 +149,7 @@ public class DerivativesMarketTotalProfitExcelTableFactory implements TableFacto
             row.put(LAST_TRANSACTION_DATE, ofNullable(transactions.peekLast())
                     .map(Transaction::getTimestamp)
                     .orElse(null));
-            row.put(LAST_EVENT_DATE, getLastEventDate(portfolios, contracts));
+            row.put(LAST_EVENT_DATE, getLastEventDate(portfolios, contracts, filter));
             row.put(BUY_COUNT, transactions
                     .stream()
                     .mapToInt(Transaction::getCount)
@@ -169,7 +170,7 @@ public class DerivativesMarketTotalProfitExcelTableFactory implements TableFacto
             if (openedPositions == 0) {
                 row.put(GROSS_PROFIT_PNT, securityProfitService.getTotal(transactions, DERIVATIVE_QUOTE, QUOTE_CURRENCY));
             }
-            row.put(GROSS_PROFIT, getGrossProfit(portfolios, contracts, toCurrency));
+            row.put(GROSS_PROFIT, getGrossProfit(portfolios, contracts, toCurrency, filter));
             row.put(PROFIT, PROFIT_FORMULA);
             row.put(PROFIT_PROPORTION, PROFIT_PROPORTION_FORMULA);
         } catch (Exception e) {
@@ -178,8 +179,7 @@ public class DerivativesMarketTotalProfitExcelTableFactory implements TableFacto
         return row;
     }
 
-    private Deque<Transaction> getTransactions(Collection<String> portfolios, Set<Security> contracts) {
-        ViewFilter filter = ViewFilter.get();
+    private Deque<Transaction> getTransactions(Collection<String> portfolios, Set<Security> contracts, ViewFilter filter) {
         FifoPositionsFilter pf = FifoPositionsFilter.of(portfolios, filter.getFromDate(), filter.getToDate());
         return contracts.stream()
                 .map(contract -> positionsFactory.getTransactions(contract.getId(), pf))
@@ -188,8 +188,7 @@ public class DerivativesMarketTotalProfitExcelTableFactory implements TableFacto
                 .collect(toCollection(LinkedList::new));
     }
 
-    private Instant getLastEventDate(Collection<String> portfolios, Collection<Security> contracts) {
-        ViewFilter filter = ViewFilter.get();
+    private Instant getLastEventDate(Collection<String> portfolios, Collection<Security> contracts, ViewFilter filter) {
         return contracts.stream()
                 .map(contract -> securityProfitService.getLastEventTimestamp(
                         portfolios, contract, paymentEvents, filter.getFromDate(), filter.getToDate()))
@@ -201,9 +200,11 @@ public class DerivativesMarketTotalProfitExcelTableFactory implements TableFacto
     /**
      * Суммарная вариационная маржа по всем контрактам
      */
-    private BigDecimal getGrossProfit(Collection<String> portfolios, Collection<Security> contracts, String toCurrency) {
+    private BigDecimal getGrossProfit(Collection<String> portfolios, Collection<Security> contracts, String toCurrency,
+                                      ViewFilter filter) {
         return contracts.stream()
-                .map(contract -> securityProfitService.sumPaymentsForType(portfolios, contract, DERIVATIVE_PROFIT, toCurrency))
+                .map(contract -> securityProfitService.sumPaymentsForType(
+                        portfolios, contract, DERIVATIVE_PROFIT, toCurrency, filter))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
@@ -81,16 +81,15 @@ public class DerivativesMarketTotalProfitExcelTableView extends ExcelTableView {
     }
 
     @Override
-    public Collection<ExcelTable> createExcelTables() {
-        Collection<ExcelTable> tables = new ArrayList<>(createExcelTablesByCurrencies());
-        if (!showOnlySummary(ViewFilter.get())) {
-            tables.addAll(super.createExcelTables());
+    public Collection<ExcelTable> createExcelTables(ViewFilter filter) {
+        Collection<ExcelTable> tables = new ArrayList<>(createExcelTablesByCurrencies(filter));
+        if (!showOnlySummary(filter)) {
+            tables.addAll(super.createExcelTables(filter));
         }
         return tables;
     }
 
-    private Collection<ExcelTable> createExcelTablesByCurrencies() {
-        ViewFilter filter = ViewFilter.get();
+    private Collection<ExcelTable> createExcelTablesByCurrencies(ViewFilter filter) {
         Collection<String> portfolios = filter.getPortfolios();
         if (showOnlySummary(filter) || isManyPortfolioRequested(portfolios)) {
             Collection<ExcelTable> tables = new ArrayList<>();
@@ -99,7 +98,7 @@ public class DerivativesMarketTotalProfitExcelTableView extends ExcelTableView {
                     transactionCashFlowRepository.findDistinctCurrencyByPortfolioInAndCashFlowTypeIn(portfolios, types);
             if (!currencies.contains(RUB)) currencies.add(RUB);
             for (String currency : currencies) {
-                Table table = tableFactory.create(portfolios, currency);
+                Table table = tableFactory.create(portfolios, currency, filter);
                 String sheetName = "Портфель трейдера (все) " + currency;
                 tables.add(ExcelTable.of(sheetName, table, this));
             }
@@ -117,17 +116,17 @@ public class DerivativesMarketTotalProfitExcelTableView extends ExcelTableView {
     }
 
     @Override
-    protected Collection<ExcelTable> createExcelTables(Portfolio portfolio, String sheetName) {
+    protected Collection<ExcelTable> createExcelTables(Portfolio portfolio, String sheetName, ViewFilter filter) {
         List<String> currencies = transactionCashFlowRepository.findDistinctCurrencyByPortfolioInAndCashFlowTypeIn(
                 singleton(portfolio.getId()), types);
         if (!currencies.contains(RUB)) currencies.add(RUB);
         return currencies.stream()
-                .map(currency -> createExcelTables(portfolio, sheetName, currency))
+                .map(currency -> createExcelTables(portfolio, sheetName, currency, filter))
                 .collect(toList());
     }
 
-    private ExcelTable createExcelTables(Portfolio portfolio, String sheetName, String currency) {
-        Table table = tableFactory.create(portfolio, currency);
+    private ExcelTable createExcelTables(Portfolio portfolio, String sheetName, String currency, ViewFilter filter) {
+        Table table = tableFactory.create(portfolio, currency, filter);
         String sheetNameWithCurrency = sheetName + " " + currency;
         return ExcelTable.of(portfolio, sheetNameWithCurrency, table, this);
     }
@@ -190,15 +189,16 @@ public class DerivativesMarketTotalProfitExcelTableView extends ExcelTableView {
         plotChart("Прибыль", sheet, DerivativesMarketTotalProfitExcelTableView::addPieChart);
     }
 
-    private static void addPieChart(String name, XSSFSheet sheet) {
+    private static void addPieChart(String name, Sheet sheet) {
         int rowCount = sheet.getLastRowNum();
+        XSSFSheet chartSheet = getChartSheet(sheet);
 
-        XDDFDataSource<String> securities = XDDFDataSourcesFactory.fromStringCellRange(sheet,
+        XDDFDataSource<String> securities = XDDFDataSourcesFactory.fromStringCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, CONTRACT_GROUP.ordinal(), CONTRACT_GROUP.ordinal()));
-        XDDFNumericalDataSource<Double> proportions = XDDFDataSourcesFactory.fromNumericCellRange(sheet,
+        XDDFNumericalDataSource<Double> proportions = XDDFDataSourcesFactory.fromNumericCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, PROFIT_PROPORTION.ordinal(), PROFIT_PROPORTION.ordinal()));
 
-        XSSFChart chart = createChart(sheet, name, 0, rowCount + 2, PROFIT_PROPORTION.ordinal() + 1, 30);
+        XSSFChart chart = createChart(chartSheet, name, 0, rowCount + 2, PROFIT_PROPORTION.ordinal() + 1, 30);
         XDDFChartData data = createPieChartData(chart);
         chart.getOrAddLegend().setPosition(LegendPosition.TOP);
 
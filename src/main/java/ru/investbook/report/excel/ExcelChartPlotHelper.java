@@ -37,6 +37,7 @@ import org.apache.poi.xddf.usermodel.chart.LegendPosition;
 import org.apache.poi.xddf.usermodel.chart.XDDFChartData;
 import org.apache.poi.xddf.usermodel.chart.XDDFChartLegend;
 import org.apache.poi.xddf.usermodel.chart.XDDFValueAxis;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFChart;
 import org.apache.poi.xssf.usermodel.XSSFDrawing;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
@@ -49,9 +50,9 @@ public class ExcelChartPlotHelper {
 
     private static String NO_VALUE_IN_CELL_RANGE = "No value in cell range";
 
-    static void plotChart(String name, Sheet sheet, BiConsumer<String, XSSFSheet> plotter) {
+    static void plotChart(String name, Sheet sheet, BiConsumer<String, Sheet> plotter) {
         try {
-            plotter.accept(name, (XSSFSheet) sheet);
+            plotter.accept(name, sheet);
         } catch (Exception e) {
             String message = "Не возможно построить график '{}' на вкладке '{}'";
             if (Objects.equals(e.getMessage(), NO_VALUE_IN_CELL_RANGE)) {
@@ -62,6 +63,19 @@ public class ExcelChartPlotHelper {
         }
     }
 
+    /**
+     * Returns sheet for chart drawing. Streaming sheet keeps only rows, so chart is drawn on its underlying
+     * template sheet, data sources should reference cells by range and row values should be read from streaming sheet.
+     */
+    static XSSFSheet getChartSheet(Sheet sheet) {
+        if (sheet instanceof SXSSFSheet streamingSheet) {
+            return streamingSheet.getWorkbook()
+                    .getXSSFWorkbook()
+                    .getSheet(sheet.getSheetName());
+        }
+        return (XSSFSheet) sheet;
+    }
+
     static XSSFChart createChart(XSSFSheet sheet, String name, int positionX, int positionY, int width, int height) {
         XSSFDrawing drawing = sheet.createDrawingPatriarch();
         ClientAnchor anchor = drawing.createAnchor(0, 0, 0, 0,
@@ -25,6 +25,7 @@ import org.apache.poi.ss.usermodel.PatternFormatting;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.SheetConditionalFormatting;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.apache.poi.xssf.usermodel.IndexedColorMap;
 import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
@@ -34,13 +35,11 @@ class ExcelConditionalFormatHelper {
     private static final byte[] borderRed = new byte[]{(byte) 255, (byte) 175, (byte) 175};
 
     static void highlightNegativeByRed(Sheet sheet, ExcelTableHeader column) {
-        if (!(sheet instanceof XSSFSheet)) {
+        IndexedColorMap indexedColors = getIndexedColors(sheet);
+        if (indexedColors == null) {
             return;
         }
         SheetConditionalFormatting sheetCF = sheet.getSheetConditionalFormatting();
-        IndexedColorMap indexedColors = ((XSSFSheet) sheet).getWorkbook()
-                .getStylesSource()
-                .getIndexedColors();
 
         CellRangeAddress range =
                 new CellRangeAddress(2, sheet.getLastRowNum(), column.ordinal(), column.ordinal());
@@ -66,4 +65,18 @@ class ExcelConditionalFormatHelper {
 
         sheetCF.addConditionalFormatting(new CellRangeAddress[]{range}, rule);
     }
+
+    private static IndexedColorMap getIndexedColors(Sheet sheet) {
+        if (sheet instanceof XSSFSheet xssfSheet) {
+            return xssfSheet.getWorkbook()
+                    .getStylesSource()
+                    .getIndexedColors();
+        } else if (sheet instanceof SXSSFSheet streamingSheet) {
+            return streamingSheet.getWorkbook()
+                    .getXSSFWorkbook()
+                    .getStylesSource()
+                    .getIndexedColors();
+        }
+        return null;
+    }
 }
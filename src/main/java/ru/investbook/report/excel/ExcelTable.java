@@ -45,7 +45,7 @@ public class ExcelTable {
         return new ExcelTable(portfolio, sheetName, table, creator);
     }
 
-    void writeTo(Workbook book, CellStyles cellStyles) {
+    public void writeTo(Workbook book, CellStyles cellStyles) {
         creator.createSheet(portfolio, book, sheetName, table, cellStyles);
     }
 }
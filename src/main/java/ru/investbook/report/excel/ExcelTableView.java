@@ -19,6 +19,7 @@
 package ru.investbook.report.excel;
 
 import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.poi.common.usermodel.HyperlinkType;
@@ -30,8 +31,12 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.spacious_team.broker.pojo.Portfolio;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.ClassUtils;
+import ru.investbook.InvestbookMetrics;
 import ru.investbook.converter.PortfolioConverter;
 import ru.investbook.entity.PortfolioEntity;
 import ru.investbook.report.Table;
@@ -65,19 +70,24 @@ public abstract class ExcelTableView {
     private final Pattern invalidExcelSheetNameChars = Pattern.compile("[^0-9a-zA-Zа-яА-Я\\s()]");
     @Value("${server.port}")
     private int serverPort;
+    @Autowired
+    private InvestbookMetrics metrics;
 
-    public Collection<ExcelTable> createExcelTables() {
+    public Collection<ExcelTable> createExcelTables(ViewFilter filter) {
         Collection<ExcelTable> tables = new ArrayList<>();
-        for (PortfolioEntity entity : getPortfolios(ViewFilter.get().getPortfolios())) {
+        for (PortfolioEntity entity : getPortfolios(filter.getPortfolios())) {
             Portfolio portfolio = portfolioConverter.fromEntity(entity);
             String sheetName = getSheetNameCreator().apply(portfolio.getId());
-            tables.addAll(createExcelTables(portfolio, sheetName));
+            long t0 = System.nanoTime();
+            tables.addAll(createExcelTables(portfolio, sheetName, filter));
+            metrics.recordSheetBuild(getViewName(), ClassUtils.getUserClass(tableFactory).getSimpleName(),
+                    Duration.ofNanos(System.nanoTime() - t0));
         }
         return tables;
     }
 
-    protected Collection<ExcelTable> createExcelTables(Portfolio portfolio, String sheetName) {
-        Table table = tableFactory.create(portfolio);
+    protected Collection<ExcelTable> createExcelTables(Portfolio portfolio, String sheetName, ViewFilter filter) {
+        Table table = tableFactory.create(portfolio, filter);
         return Collections.singleton(ExcelTable.of(portfolio, sheetName, table, this));
     }
 
@@ -92,6 +102,13 @@ public abstract class ExcelTableView {
         return portfolios;
     }
 
+    /**
+     * @return view name for metrics tag, doesn't depend on portfolio
+     */
+    private String getViewName() {
+        return ClassUtils.getUserClass(this).getSimpleName();
+    }
+
     protected abstract UnaryOperator<String> getSheetNameCreator();
 
     public abstract boolean isSummaryView();
@@ -166,7 +183,20 @@ public abstract class ExcelTableView {
                 }
             }
             sheetPostCreate(sheet, headerType, styles);
-            log.debug("Вкладка '{}' сохранена за {}", sheetName, Duration.ofNanos(System.nanoTime() - t0));
+            flushRows(sheet);
+            Duration duration = Duration.ofNanos(System.nanoTime() - t0);
+            metrics.recordSheetWrite(getViewName(), duration);
+            log.debug("Вкладка '{}' сохранена за {}", sheetName, duration);
+        }
+    }
+
+    /**
+     * Streaming sheet keeps all rows in memory until {@link #sheetPostCreate} finished, then rows are flushed to disk
+     */
+    @SneakyThrows
+    private static void flushRows(Sheet sheet) {
+        if (sheet instanceof SXSSFSheet streamingSheet) {
+            streamingSheet.flushRows();
         }
     }
 
@@ -20,9 +20,10 @@ package ru.investbook.report.excel;
 
 import lombok.SneakyThrows;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import ru.investbook.InvestbookExecutors;
 import ru.investbook.report.ViewFilter;
 
 import java.io.OutputStream;
@@ -31,62 +32,70 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import static java.lang.Math.min;
 import static java.util.Comparator.comparing;
 
 @Component
 public class ExcelView {
     private final List<ExcelTableView> excelTableViews;
+    private final ExecutorService reportExecutor;
 
-    public ExcelView(Collection<ExcelTableView> excelTableViews) {
+    public ExcelView(Collection<ExcelTableView> excelTableViews, InvestbookExecutors executors) {
+        this.reportExecutor = executors.getReportExecutor();
         this.excelTableViews = excelTableViews.stream()
                 .sorted(comparing(ExcelTableView::getSheetOrder))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Writes report by streaming workbook. Rows of each sheet are kept in memory only while the sheet is created
+     * (sheet post-processing restyles rows and plots charts), then rows are flushed to compressed temporary files.
+     * Peak heap usage is limited by the largest sheet instead of the whole report.
+     */
     @Transactional(readOnly = true)
     @SneakyThrows
     public void create(OutputStream out, ViewFilter filter) {
-        try (XSSFWorkbook book = new XSSFWorkbook()) {
+        SXSSFWorkbook book = new SXSSFWorkbook(-1); // rows are flushed by ExcelTableView.createSheet()
+        try (book) {
+            book.setCompressTempFiles(true);
             CellStyles styles = new CellStyles(book);
             writeTo(book, filter, styles);
             book.write(out);
+        } finally {
+            book.dispose();
         }
     }
 
     @Transactional(readOnly = true)
     public void writeTo(Workbook book, ViewFilter filter, CellStyles styles) throws InterruptedException, ExecutionException {
-        ExecutorService tableWriterExecutor = Executors.newSingleThreadExecutor();
-        Collection<Future<?>> sheetWriterFutures = new ArrayList<>();
-        int cpuCnt = Runtime.getRuntime().availableProcessors();
-        List<ExcelTableView> usedExcelTableViews = getExcelTableViews(filter);
-        for (int idx = 0, delta = 1; idx < usedExcelTableViews.size(); ) {
-            int fromIndex = idx;
-            idx += delta;
-            delta = cpuCnt;
-            int toIndex = min(idx, usedExcelTableViews.size());
-            List<ExcelTable> tables = usedExcelTableViews.subList(fromIndex, toIndex)
-                    .parallelStream()
-                    .map(excelTableView -> getExcelTables(excelTableView, filter))
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-            Future<?> future = tableWriterExecutor.submit(() -> writeExcelTables(tables, book, styles));
-            sheetWriterFutures.add(future);
-        }
-
-        for(Future<?> future : sheetWriterFutures) {
-            future.get();
-        }
-
+        writeTo(filter, table -> table.writeTo(book, styles));
         if (book.getNumberOfSheets() == 0) {
             book.createSheet("пустой отчет");
         }
     }
 
+    /**
+     * Builds report tables and passes them to writer one by one in sheet order.
+     * Tables are built by shared report thread pool, writer is called by current thread, while next tables are being built.
+     */
+    @Transactional(readOnly = true)
+    public void writeTo(ViewFilter filter, Consumer<ExcelTable> tableWriter) throws InterruptedException, ExecutionException {
+        Collection<Future<Collection<ExcelTable>>> futures = new ArrayList<>();
+        try {
+            for (ExcelTableView excelTableView : getExcelTableViews(filter)) {
+                futures.add(reportExecutor.submit(() -> excelTableView.createExcelTables(filter)));
+            }
+            for (Future<Collection<ExcelTable>> future : futures) {
+                future.get().forEach(tableWriter);
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
     private List<ExcelTableView> getExcelTableViews(ViewFilter filter) {
         if (filter.isShowDetails()) {
             return excelTableViews;
@@ -96,19 +105,4 @@ public class ExcelView {
                     .collect(Collectors.toList());
         }
     }
-
-    private static Collection<ExcelTable> getExcelTables(ExcelTableView excelTableView, ViewFilter filter) {
-        try {
-            ViewFilter.set(filter);
-            return excelTableView.createExcelTables();
-        } finally {
-            ViewFilter.remove();
-        }
-    }
-
-    private static void writeExcelTables(List<ExcelTable> tables, Workbook book, CellStyles styles) {
-        tables.stream()
-                .sorted(comparing(t -> t.getCreator().getSheetOrder()))
-                .forEach(table -> table.writeTo(book, styles));
-    }
 }
@@ -31,9 +31,10 @@ import ru.investbook.report.OpenedPosition;
 import ru.investbook.report.Position;
 import ru.investbook.report.Table;
 import ru.investbook.report.TableFactory;
+import ru.investbook.report.TransactionCashFlowMap;
+import ru.investbook.report.TransactionCashFlowMapFactory;
 import ru.investbook.report.ViewFilter;
 import ru.investbook.repository.SecurityRepository;
-import ru.investbook.repository.TransactionCashFlowRepository;
 import ru.investbook.repository.TransactionRepository;
 
 import java.math.BigDecimal;
@@ -50,24 +51,24 @@ import static ru.investbook.report.excel.ForeignMarketProfitExcelTableHeader.*;
 public class ForeignMarketProfitExcelTableFactory implements TableFactory {
     private final SecurityRepository securityRepository;
     private final TransactionRepository transactionRepository;
-    private final TransactionCashFlowRepository transactionCashFlowRepository;
+    private final TransactionCashFlowMapFactory transactionCashFlowMapFactory;
     private final FifoPositionsFactory positionsFactory;
 
-    public Table create(Portfolio portfolio) {
-        return create(portfolio, getCurrencyPairs(portfolio));
+    public Table create(Portfolio portfolio, ViewFilter filter) {
+        return create(portfolio, getCurrencyPairs(portfolio, filter), filter);
     }
 
-    public Table create(Portfolio portfolio, Collection<String> currencyPairs) {
-        ViewFilter f = ViewFilter.get();
+    public Table create(Portfolio portfolio, Collection<String> currencyPairs, ViewFilter f) {
         FifoPositionsFilter positionsFilter = FifoPositionsFilter.of(portfolio, f.getFromDate(), f.getToDate());
         Table openPositionsProfit = new Table();
         Table closedPositionsProfit = new Table();
         for (String currencyPair : currencyPairs) {
             FifoPositions positions = positionsFactory.getForCurrencyPair(currencyPair, positionsFilter);
+            TransactionCashFlowMap cashFlows = transactionCashFlowMapFactory.get(positions);
             openPositionsProfit.addAll(getPositionProfit(currencyPair, positions.getOpenedPositions(),
-                    this::getOpenedPositionProfit));
+                    position -> getOpenedPositionProfit(position, cashFlows)));
             closedPositionsProfit.addAll(getPositionProfit(currencyPair, positions.getClosedPositions(),
-                    this::getClosedPositionProfit));
+                    position -> getClosedPositionProfit(position, cashFlows)));
         }
         Table profit = new Table();
         profit.addAll(openPositionsProfit);
@@ -78,12 +79,12 @@ public class ForeignMarketProfitExcelTableFactory implements TableFactory {
     /**
      * Returns currency pairs, for example USDRUB, EURRUB
      */
-    private Collection<String> getCurrencyPairs(Portfolio portfolio) {
+    private Collection<String> getCurrencyPairs(Portfolio portfolio, ViewFilter filter) {
         Collection<Integer> fxContracts = transactionRepository
                 .findDistinctFxContractByPortfolioInAndTimestampBetweenOrderByTimestampDesc(
                         singleton(portfolio.getId()),
-                        ViewFilter.get().getFromDate(),
-                        ViewFilter.get().getToDate());
+                        filter.getFromDate(),
+                        filter.getToDate());
         return securityRepository.findDistinctCurrencyPair(fxContracts);
     }
 
@@ -99,34 +100,34 @@ public class ForeignMarketProfitExcelTableFactory implements TableFactory {
         return rows;
     }
 
-    private Table.Record getOpenedPositionProfit(OpenedPosition position) {
+    private Table.Record getOpenedPositionProfit(OpenedPosition position, TransactionCashFlowMap cashFlows) {
         Table.Record row = new Table.Record();
         Transaction transaction = position.getOpenTransaction();
         row.put(OPEN_DATE, transaction.getTimestamp());
         row.put(COUNT, Math.abs(position.getCount()) * Integer.signum(transaction.getCount()));
-        row.put(OPEN_PRICE, getTransactionCashFlow(transaction, CashFlowType.PRICE, 1d / transaction.getCount()));
+        row.put(OPEN_PRICE, getTransactionCashFlow(transaction, CashFlowType.PRICE, 1d / transaction.getCount(), cashFlows));
         double multiplier = Math.abs(1d * position.getCount() / transaction.getCount());
-        row.put(OPEN_AMOUNT, getTransactionCashFlow(transaction, CashFlowType.PRICE, multiplier));
-        row.put(OPEN_COMMISSION, getTransactionCashFlow(transaction, CashFlowType.FEE, multiplier));
+        row.put(OPEN_AMOUNT, getTransactionCashFlow(transaction, CashFlowType.PRICE, multiplier, cashFlows));
+        row.put(OPEN_COMMISSION, getTransactionCashFlow(transaction, CashFlowType.FEE, multiplier, cashFlows));
         return row;
     }
 
-    private Table.Record getClosedPositionProfit(ClosedPosition position) {
+    private Table.Record getClosedPositionProfit(ClosedPosition position, TransactionCashFlowMap cashFlows) {
         // open transaction info
-        Table.Record row = new Table.Record(getOpenedPositionProfit(position));
+        Table.Record row = new Table.Record(getOpenedPositionProfit(position, cashFlows));
         // close transaction info
         Transaction transaction = position.getCloseTransaction();
         double multiplier = Math.abs(1d * position.getCount() / transaction.getCount());
         row.put(CLOSE_DATE, transaction.getTimestamp());
         BigDecimal closeAmount;
         if (position.getClosingEvent() == CashFlowType.PRICE) {
-            closeAmount = getTransactionCashFlow(transaction, CashFlowType.PRICE, multiplier);
+            closeAmount = getTransactionCashFlow(transaction, CashFlowType.PRICE, multiplier, cashFlows);
         } else {
             throw new IllegalArgumentException("ЦБ " + transaction.getSecurity() +
                     " не может быть закрыта событием типа " + position.getClosingEvent());
         }
         row.put(CLOSE_AMOUNT, closeAmount);
-        row.put(CLOSE_COMMISSION, getTransactionCashFlow(transaction, CashFlowType.FEE, multiplier));
+        row.put(CLOSE_COMMISSION, getTransactionCashFlow(transaction, CashFlowType.FEE, multiplier, cashFlows));
         boolean isLongPosition = isLongPosition(position);
         row.put(FORECAST_TAX, getForecastTax(isLongPosition));
         row.put(PROFIT, getClosedPositionProfit(isLongPosition));
@@ -138,12 +139,12 @@ public class ForeignMarketProfitExcelTableFactory implements TableFactory {
         return position.getOpenTransaction().getCount() > 0;
     }
 
-    private BigDecimal getTransactionCashFlow(Transaction transaction, CashFlowType type, double multiplier) {
+    private BigDecimal getTransactionCashFlow(Transaction transaction, CashFlowType type, double multiplier,
+                                              TransactionCashFlowMap cashFlows) {
         if (transaction.getId() == null) {
             return null;
         }
-        return transactionCashFlowRepository
-                .findByTransactionIdAndCashFlowType(transaction.getId(), type)
+        return cashFlows.get(transaction.getId(), type)
                 .map(cash -> cash.getValue()
                         .multiply(BigDecimal.valueOf(multiplier))
                         .abs()
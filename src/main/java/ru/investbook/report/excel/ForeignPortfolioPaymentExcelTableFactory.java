@@ -60,18 +60,18 @@ public class ForeignPortfolioPaymentExcelTableFactory implements TableFactory {
     private final ForeignExchangeRateTableFactory foreignExchangeRateTableFactory;
 
     @Override
-    public Table create(Portfolio portfolio) {
-        List<EventCashFlow> cashFlows = getCashFlows(portfolio);
+    public Table create(Portfolio portfolio, ViewFilter filter) {
+        List<EventCashFlow> cashFlows = getCashFlows(portfolio, filter);
         return getTable(cashFlows);
     }
 
-    private ArrayList<EventCashFlow> getCashFlows(Portfolio portfolio) {
+    private ArrayList<EventCashFlow> getCashFlows(Portfolio portfolio, ViewFilter filter) {
         return eventCashFlowRepository
                 .findByPortfolioIdAndCashFlowTypeIdInAndTimestampBetweenOrderByTimestampDesc(
                         portfolio.getId(),
                         PAY_TYPES,
-                        ViewFilter.get().getFromDate(),
-                        ViewFilter.get().getToDate())
+                        filter.getFromDate(),
+                        filter.getToDate())
                 .stream()
                 .map(eventCashFlowConverter::fromEntity)
                 .collect(Collectors.toCollection(ArrayList::new));
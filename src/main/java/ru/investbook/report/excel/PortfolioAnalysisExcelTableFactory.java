@@ -31,6 +31,7 @@ import ru.investbook.converter.PortfolioPropertyConverter;
 import ru.investbook.entity.EventCashFlowEntity;
 import ru.investbook.entity.PortfolioCashEntity;
 import ru.investbook.entity.PortfolioPropertyEntity;
+import ru.investbook.entity.PortfolioValuationEntity;
 import ru.investbook.entity.StockMarketIndexEntity;
 import ru.investbook.report.ForeignExchangeRateService;
 import ru.investbook.report.Table;
@@ -40,6 +41,7 @@ import ru.investbook.repository.EventCashFlowRepository;
 import ru.investbook.repository.PortfolioCashRepository;
 import ru.investbook.repository.PortfolioPropertyRepository;
 import ru.investbook.repository.StockMarketIndexRepository;
+import ru.investbook.service.PortfolioValuationService;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -49,6 +51,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -84,29 +87,30 @@ public class PortfolioAnalysisExcelTableFactory implements TableFactory {
     private final ForeignExchangeRateTableFactory foreignExchangeRateTableFactory;
     private final ForeignExchangeRateService foreignExchangeRateService;
     private final StockMarketIndexRepository stockMarketIndexRepository;
+    private final PortfolioValuationService portfolioValuationService;
     private final TreeMap<Instant, BigDecimal> emptyTreeMap = new TreeMap<>();
     private final Set<String> totalAssetsProperty = Set.of(
             TOTAL_ASSETS_RUB.name(),
             TOTAL_ASSETS_USD.name());
 
     @Override
-    public Table create(Collection<String> portfolios) {
-        List<EventCashFlow> cashFlow = getCashFlow(portfolios);
+    public Table create(Collection<String> portfolios, ViewFilter filter) {
+        List<EventCashFlow> cashFlow = getCashFlow(portfolios, filter);
         return createTable(
                 cashFlow,
                 getCashBalance(portfolios),
-                getTotalAssets(portfolios, cashFlow),
-                getSp500Index());
+                getTotalAssets(portfolios, cashFlow, filter),
+                getSp500Index(filter));
     }
 
     @Override
-    public Table create(Portfolio portfolio) {
-        List<EventCashFlow> cashFlow = getCashFlow(singleton(portfolio.getId()));
+    public Table create(Portfolio portfolio, ViewFilter filter) {
+        List<EventCashFlow> cashFlow = getCashFlow(singleton(portfolio.getId()), filter);
         return createTable(
                 cashFlow,
                 getCashBalance(singleton(portfolio.getId())),
-                getTotalAssets(singleton(portfolio.getId()), cashFlow),
-                getSp500Index());
+                getTotalAssets(singleton(portfolio.getId()), cashFlow, filter),
+                getSp500Index(filter));
     }
 
     private Table createTable(List<EventCashFlow> cashFlows,
@@ -287,8 +291,7 @@ public class PortfolioAnalysisExcelTableFactory implements TableFactory {
                 });
     }
 
-    private List<EventCashFlow> getCashFlow(Collection<String> portfolios) {
-        ViewFilter viewFilter = ViewFilter.get();
+    private List<EventCashFlow> getCashFlow(Collection<String> portfolios, ViewFilter viewFilter) {
         List<EventCashFlowEntity> entities = portfolios.isEmpty() ?
                 eventCashFlowRepository
                         .findByCashFlowTypeIdAndTimestampBetweenOrderByTimestamp(
@@ -324,13 +327,54 @@ public class PortfolioAnalysisExcelTableFactory implements TableFactory {
     }
 
     private LinkedHashMap<Instant, BigDecimal> getTotalAssets(Collection<String> portfolios,
-                                                              List<EventCashFlow> cashFlows) {
-        List<PortfolioProperty> assets = getPortfolioProperty(portfolios, totalAssetsProperty);
+                                                              List<EventCashFlow> cashFlows,
+                                                              ViewFilter viewFilter) {
+        List<PortfolioProperty> assets = getPortfolioProperty(portfolios, totalAssetsProperty, viewFilter);
+        addPortfolioValuations(assets, portfolios, cashFlows, viewFilter);
         return getAllPortfolioTotalAssets(assets, cashFlows);
     }
 
-    private List<PortfolioProperty> getPortfolioProperty(Collection<String> portfolios, Collection<String> propertyTypes) {
-        ViewFilter viewFilter = ViewFilter.get();
+    /**
+     * Adds assets, estimated by daily portfolio valuation, for portfolios without broker provided total assets.
+     * Month end valuations and last day valuation are used only.
+     */
+    private void addPortfolioValuations(List<PortfolioProperty> assets,
+                                        Collection<String> portfolios,
+                                        List<EventCashFlow> cashFlows,
+                                        ViewFilter viewFilter) {
+        Set<String> portfoliosWithoutAssets = (portfolios.isEmpty() ?
+                cashFlows.stream().map(EventCashFlow::getPortfolio) :
+                portfolios.stream())
+                .collect(toCollection(HashSet::new));
+        assets.forEach(property -> portfoliosWithoutAssets.remove(property.getPortfolio()));
+        if (portfoliosWithoutAssets.isEmpty()) {
+            return;
+        }
+        ZoneId zoneId = ZoneId.systemDefault();
+        List<PortfolioValuationEntity> valuations = portfolioValuationService.getValuations(
+                portfoliosWithoutAssets,
+                LocalDate.ofInstant(viewFilter.getFromDate(), zoneId),
+                LocalDate.ofInstant(viewFilter.getToDate(), zoneId));
+        for (int i = 0; i < valuations.size(); i++) {
+            PortfolioValuationEntity valuation = valuations.get(i);
+            LocalDate date = valuation.getDate();
+            boolean isLastPortfolioValuation = (i == valuations.size() - 1) ||
+                    !valuations.get(i + 1).getPortfolio().equals(valuation.getPortfolio());
+            if ((isLastPortfolioValuation || date.getDayOfMonth() == date.lengthOfMonth()) &&
+                    valuation.getSecurities().signum() != 0) {
+                assets.add(PortfolioProperty.builder()
+                        .portfolio(valuation.getPortfolio())
+                        .timestamp(date.plusDays(1).atStartOfDay(zoneId).toInstant().minusSeconds(1))
+                        .property(TOTAL_ASSETS_RUB)
+                        .value(valuation.getTotal().toString())
+                        .build());
+            }
+        }
+    }
+
+    private List<PortfolioProperty> getPortfolioProperty(Collection<String> portfolios,
+                                                         Collection<String> propertyTypes,
+                                                         ViewFilter viewFilter) {
         List<PortfolioPropertyEntity> entities = portfolios.isEmpty() ?
                 portfolioPropertyRepository
                         .findByPropertyInAndTimestampBetweenOrderByTimestampAsc(
@@ -348,8 +392,7 @@ public class PortfolioAnalysisExcelTableFactory implements TableFactory {
                 .collect(Collectors.toCollection(ArrayList::new));
     }
 
-    private Map<LocalDate, BigDecimal> getSp500Index() {
-        ViewFilter viewFilter = ViewFilter.get();
+    private Map<LocalDate, BigDecimal> getSp500Index(ViewFilter viewFilter) {
         return stockMarketIndexRepository
                 .findByDateBetweenOrderByDate(
                         LocalDate.ofInstant(viewFilter.getFromDate(), ZoneId.systemDefault()),
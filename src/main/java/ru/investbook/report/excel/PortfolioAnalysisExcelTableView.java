@@ -65,16 +65,15 @@ public class PortfolioAnalysisExcelTableView extends ExcelTableView {
     }
 
     @Override
-    public Collection<ExcelTable> createExcelTables() {
+    public Collection<ExcelTable> createExcelTables(ViewFilter filter) {
         Collection<ExcelTable> tables = new ArrayList<>();
-        ViewFilter filter = ViewFilter.get();
         Collection<String> portfolios = filter.getPortfolios();
         if (showOnlySummary(filter) || isManyPortfolioRequested(portfolios)) {
-            Table table = tableFactory.create(portfolios);
+            Table table = tableFactory.create(portfolios, filter);
             tables.add(ExcelTable.of("Обзор (все)", table, this));
         }
         if (!showOnlySummary(filter)) {
-            tables.addAll(super.createExcelTables());
+            tables.addAll(super.createExcelTables(filter));
         }
         return tables;
     }
@@ -145,16 +144,16 @@ public class PortfolioAnalysisExcelTableView extends ExcelTableView {
 
     private static void addInvestmentAndAssetsGraph(String name, Sheet sheet) {
         int rowCount = sheet.getLastRowNum();
-        XSSFSheet _sheet = (XSSFSheet) sheet;
+        XSSFSheet chartSheet = getChartSheet(sheet);
 
-        XDDFDataSource<String> date = XDDFDataSourcesFactory.fromStringCellRange(_sheet,
+        XDDFDataSource<String> date = XDDFDataSourcesFactory.fromStringCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, DATE.ordinal(), DATE.ordinal()));
-        XDDFNumericalDataSource<Double> assetsUsd = XDDFDataSourcesFactory.fromNumericCellRange(_sheet,
+        XDDFNumericalDataSource<Double> assetsUsd = XDDFDataSourcesFactory.fromNumericCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, ASSETS_USD.ordinal(), ASSETS_USD.ordinal()));
-        XDDFNumericalDataSource<Double> investmentUsd = XDDFDataSourcesFactory.fromNumericCellRange(_sheet,
+        XDDFNumericalDataSource<Double> investmentUsd = XDDFDataSourcesFactory.fromNumericCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, TOTAL_INVESTMENT_USD.ordinal(), TOTAL_INVESTMENT_USD.ordinal()));
 
-        XSSFChart chart = createChart(_sheet, name, CURRENCY_NAME.ordinal(), 6, 8, 18);
+        XSSFChart chart = createChart(chartSheet, name, CURRENCY_NAME.ordinal(), 6, 8, 18);
         XDDFChartData chartData = createScatterChartData(chart);
 
         XDDFChartData.Series assetsGraph = chartData.addSeries(date, assetsUsd);
@@ -168,16 +167,16 @@ public class PortfolioAnalysisExcelTableView extends ExcelTableView {
 
     private static void addPortfolioGrowthGraph(String name, Sheet sheet) {
         int rowCount = sheet.getLastRowNum();
-        XSSFSheet _sheet = (XSSFSheet) sheet;
+        XSSFSheet chartSheet = getChartSheet(sheet);
 
-        XDDFDataSource<String> date = XDDFDataSourcesFactory.fromStringCellRange(_sheet,
+        XDDFDataSource<String> date = XDDFDataSourcesFactory.fromStringCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, DATE.ordinal(), DATE.ordinal()));
-        XDDFNumericalDataSource<Double> assetsGrowth = XDDFDataSourcesFactory.fromNumericCellRange(_sheet,
+        XDDFNumericalDataSource<Double> assetsGrowth = XDDFDataSourcesFactory.fromNumericCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, ASSETS_GROWTH.ordinal(), ASSETS_GROWTH.ordinal()));
-        XDDFNumericalDataSource<Double> sp500Growth = XDDFDataSourcesFactory.fromNumericCellRange(_sheet,
+        XDDFNumericalDataSource<Double> sp500Growth = XDDFDataSourcesFactory.fromNumericCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, SP500_GROWTH.ordinal(), SP500_GROWTH.ordinal()));
 
-        XSSFChart chart = createChart(_sheet, name, CURRENCY_NAME.ordinal(), 24, 8, 18);
+        XSSFChart chart = createChart(chartSheet, name, CURRENCY_NAME.ordinal(), 24, 8, 18);
         XDDFChartData chartData = createScatterChartData(chart);
 
         XDDFChartData.Series assetsGrowthGraph = chartData.addSeries(date, assetsGrowth);
@@ -191,14 +190,14 @@ public class PortfolioAnalysisExcelTableView extends ExcelTableView {
 
     private static void addCashBalanceGraph(String name, Sheet sheet) {
         int rowCount = sheet.getLastRowNum();
-        XSSFSheet _sheet = (XSSFSheet) sheet;
+        XSSFSheet chartSheet = getChartSheet(sheet);
 
-        XDDFDataSource<String> date = XDDFDataSourcesFactory.fromStringCellRange(_sheet,
+        XDDFDataSource<String> date = XDDFDataSourcesFactory.fromStringCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, DATE.ordinal(), DATE.ordinal()));
-        XDDFNumericalDataSource<Double> cashBalance = XDDFDataSourcesFactory.fromNumericCellRange(_sheet,
+        XDDFNumericalDataSource<Double> cashBalance = XDDFDataSourcesFactory.fromNumericCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, TOTAL_CASH_USD.ordinal(), TOTAL_CASH_USD.ordinal()));
 
-        XSSFChart chart = createChart(_sheet, name, CURRENCY_NAME.ordinal(), 42, 8, 18);
+        XSSFChart chart = createChart(chartSheet, name, CURRENCY_NAME.ordinal(), 42, 8, 18);
         XDDFChartData chartData = createScatterChartData(chart);
 
         chartData.addSeries(date, cashBalance);
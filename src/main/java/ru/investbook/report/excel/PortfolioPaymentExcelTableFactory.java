@@ -62,18 +62,18 @@ public class PortfolioPaymentExcelTableFactory implements TableFactory {
             TAX.getId());
 
     @Override
-    public Table create(Portfolio portfolio) {
-        List<SecurityEventCashFlow> cashFlows = getCashFlows(portfolio);
+    public Table create(Portfolio portfolio, ViewFilter filter) {
+        List<SecurityEventCashFlow> cashFlows = getCashFlows(portfolio, filter);
         return getTable(cashFlows);
     }
 
-    private ArrayList<SecurityEventCashFlow> getCashFlows(Portfolio portfolio) {
+    private ArrayList<SecurityEventCashFlow> getCashFlows(Portfolio portfolio, ViewFilter filter) {
         return securityEventCashFlowRepository
                 .findByPortfolioIdAndCashFlowTypeIdInAndTimestampBetweenOrderByTimestampDesc(
                         portfolio.getId(),
                         paymentTypes,
-                        ViewFilter.get().getFromDate(),
-                        ViewFilter.get().getToDate())
+                        filter.getFromDate(),
+                        filter.getToDate())
                 .stream()
                 .map(securityEventCashFlowConverter::fromEntity)
                 .collect(Collectors.toCollection(ArrayList::new));
@@ -31,10 +31,12 @@ import org.spacious_team.broker.pojo.Transaction;
 import org.springframework.stereotype.Component;
 import ru.investbook.converter.PortfolioPropertyConverter;
 import ru.investbook.converter.SecurityConverter;
+import ru.investbook.entity.SecurityEntity;
 import ru.investbook.report.FifoPositions;
 import ru.investbook.report.FifoPositionsFactory;
 import ru.investbook.report.FifoPositionsFilter;
 import ru.investbook.report.InternalRateOfReturn;
+import ru.investbook.report.ParallelRowsExecutor;
 import ru.investbook.report.PositionHistory;
 import ru.investbook.report.Table;
 import ru.investbook.report.TableFactory;
@@ -42,6 +44,7 @@ import ru.investbook.report.ViewFilter;
 import ru.investbook.repository.SecurityRepository;
 import ru.investbook.repository.TransactionRepository;
 import ru.investbook.service.AssetsAndCashService;
+import ru.investbook.service.SecurityEventCashFlowSummary;
 import ru.investbook.service.SecurityProfitService;
 
 import java.math.BigDecimal;
@@ -51,9 +54,13 @@ import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.singleton;
@@ -79,6 +86,7 @@ public class PortfolioStatusExcelTableFactory implements TableFactory {
     private final SecurityProfitService securityProfitService;
     private final AssetsAndCashService assetsAndCashService;
     private final InternalRateOfReturn internalRateOfReturn;
+    private final ParallelRowsExecutor parallelRowsExecutor;
     private final Instant instantOf2000_01_01 = LocalDate.of(2000, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant();
     private final Set<Integer> paymentEvents = Set.of(
             CashFlowType.AMORTIZATION.getId(),
@@ -86,37 +94,57 @@ public class PortfolioStatusExcelTableFactory implements TableFactory {
             CashFlowType.COUPON.getId(),
             CashFlowType.DIVIDEND.getId(),
             CashFlowType.DERIVATIVE_PROFIT.getId());
+    private final Set<CashFlowType> summedPayments = Set.of(
+            CashFlowType.COUPON,
+            CashFlowType.AMORTIZATION,
+            CashFlowType.DIVIDEND,
+            CashFlowType.TAX);
 
-    public Table create(Portfolio portfolio) {
+    public Table create(Portfolio portfolio, ViewFilter filter) {
         throw new UnsupportedOperationException();
     }
 
-    public Table create(Portfolio portfolio, String forCurrency) {
-        return create(singleton(portfolio.getId()), forCurrency);
+    public Table create(Portfolio portfolio, String forCurrency, ViewFilter filter) {
+        return create(singleton(portfolio.getId()), forCurrency, filter);
     }
 
     /**
      * @param portfolios should be empty for display for all
      */
     @Override
-    public Table create(Collection<String> portfolios, String forCurrency) {
-        Collection<Security> securities = getSecurities(portfolios, forCurrency);
-        Table table = create(portfolios, securities, forCurrency);
-        table.add(getCashRow(portfolios, forCurrency));
+    public Table create(Collection<String> portfolios, String forCurrency, ViewFilter filter) {
+        Collection<Security> securities = getSecurities(portfolios, forCurrency, filter);
+        Table table = create(portfolios, securities, forCurrency, filter);
+        table.add(getCashRow(portfolios, forCurrency, filter));
         setInvestmentProportionFormula(table);
         setCurrentProportionFormula(table);
         return table;
     }
 
-    private Table create(Collection<String> portfolios, Collection<Security> securities, String forCurrency) {
-        return securities.stream()
-                .map(security -> getSecurityStatus(portfolios, security, forCurrency))
-                .collect(Collectors.toCollection(Table::new));
+    /**
+     * Выплаты и котировки выбираются для всех бумаг сразу, а не отдельными запросами для каждой бумаги.
+     * Строки бумаг рассчитываются параллельно, порядок строк сохраняется.
+     */
+    private Table create(Collection<String> portfolios, Collection<Security> securities, String forCurrency,
+                         ViewFilter filter) {
+        Collection<Integer> securityIds = securities.stream()
+                .map(Security::getId)
+                .toList();
+        Map<Integer, SecurityEventCashFlowSummary> payments = securityProfitService.getSecurityEventCashFlowSummaries(
+                portfolios, securityIds, summedPayments, paymentEvents, forCurrency, filter.getFromDate(), filter.getToDate());
+        Map<Integer, SecurityQuote> quotes = securityProfitService.getSecurityQuotes(
+                securities, forCurrency, filter.getToDate());
+        List<Table.Record> rows = parallelRowsExecutor.map(securities,
+                security -> getSecurityStatus(portfolios, security, forCurrency, filter,
+                        payments.getOrDefault(security.getId(), SecurityEventCashFlowSummary.EMPTY),
+                        quotes.get(security.getId())));
+        Table table = new Table();
+        table.addAll(rows);
+        return table;
     }
 
-    private Collection<Security> getSecurities(Collection<String> portfolios, String currency) {
+    private Collection<Security> getSecurities(Collection<String> portfolios, String currency, ViewFilter filter) {
         Collection<Integer> securityIds = new ArrayList<>();
-        ViewFilter filter = ViewFilter.get();
         if (portfolios.isEmpty()) {
             securityIds.addAll(
                     transactionRepository.findDistinctSecurityByCurrencyAndTimestampBetweenOrderByTimestampDesc(
@@ -159,17 +187,21 @@ public class PortfolioStatusExcelTableFactory implements TableFactory {
                                 filter.getToDate()));
             }
         }
+        Map<Integer, SecurityEntity> entities = securityRepository.findAllById(new LinkedHashSet<>(securityIds))
+                .stream()
+                .collect(Collectors.toMap(SecurityEntity::getId, Function.identity()));
         return securityIds.stream()
-                .map(securityRepository::findById)
-                .flatMap(Optional::stream)
+                .distinct()
+                .map(entities::get)
+                .filter(Objects::nonNull)
                 .map(securityConverter::fromEntity)
                 .collect(Collectors.toList());
     }
 
-    protected Table.Record getCashRow(Collection<String> portfolios, String forCurrency) {
+    protected Table.Record getCashRow(Collection<String> portfolios, String forCurrency, ViewFilter filter) {
         Table.Record row = new Table.Record();
         Instant atTime = Instant.ofEpochSecond(Math.min(
-                ViewFilter.get().getToDate().getEpochSecond(),
+                filter.getToDate().getEpochSecond(),
                 Instant.now().getEpochSecond()));
         row.put(SECURITY, CASH_BALANCE + ", " + forCurrency.toLowerCase());
         Collection<PortfolioCash> portfolioCashes = assetsAndCashService.getPortfolioCash(portfolios, atTime);
@@ -182,7 +214,7 @@ public class PortfolioStatusExcelTableFactory implements TableFactory {
                 .map(PortfolioCash::getValue)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
         row.put(LAST_PRICE, portfolioCash);
-        if (ViewFilter.get().getFromDate().isBefore(instantOf2000_01_01) &&
+        if (filter.getFromDate().isBefore(instantOf2000_01_01) &&
                 portfolioCash.floatValue() >= 0.01) { // fix div by zero in proportion column when all position closed and money = 0
             // режим отображения по умолчанию, скорее всего отображаем портфель с начала открытия счета,
             // учитываем остаток денежных средств в Доле портфеля (%)
@@ -191,7 +223,9 @@ public class PortfolioStatusExcelTableFactory implements TableFactory {
         return row;
     }
 
-    private Table.Record getSecurityStatus(Collection<String> portfolios, Security security, String toCurrency) {
+    private Table.Record getSecurityStatus(Collection<String> portfolios, Security security, String toCurrency,
+                                           ViewFilter filter, SecurityEventCashFlowSummary payments,
+                                           SecurityQuote lastQuote) {
         Table.Record row = new Table.Record();
         SecurityType securityType = security.getType();
         row.put(SECURITY,
@@ -202,7 +236,6 @@ public class PortfolioStatusExcelTableFactory implements TableFactory {
                                 .orElse(security.getIsin()));
         row.put(TYPE, securityType.getDescription());
         try {
-            ViewFilter filter = ViewFilter.get();
             FifoPositionsFilter pf = FifoPositionsFilter.of(portfolios, filter.getFromDate(), filter.getToDate());
             FifoPositions positions = positionsFactory.get(security, pf);
             row.put(FIRST_TRANSACTION_DATE, Optional.ofNullable(positions.getPositionHistories().peekFirst())
@@ -212,10 +245,7 @@ public class PortfolioStatusExcelTableFactory implements TableFactory {
                     .map(PositionHistory::getInstant)
                     .orElse(null));
             if (securityType != CURRENCY_PAIR) {
-                row.put(LAST_EVENT_DATE,
-                        securityProfitService.getLastEventTimestamp(
-                                        portfolios, security, paymentEvents, filter.getFromDate(), filter.getToDate())
-                                .orElse(null));
+                row.put(LAST_EVENT_DATE, payments.getLastEventTimestamp().orElse(null));
             }
             row.put(BUY_COUNT, positions.getTransactions()
                     .stream()
@@ -236,7 +266,7 @@ public class PortfolioStatusExcelTableFactory implements TableFactory {
             int count = positions.getCurrentOpenedPositionsCount();
             row.put(COUNT, count);
             if (count == 0) {
-                row.put(GROSS_PROFIT, "=" + securityProfitService.getGrossProfit(portfolios, security, positions, toCurrency) +
+                row.put(GROSS_PROFIT, "=" + securityProfitService.getGrossProfit(portfolios, security, positions, toCurrency, filter) +
                         (securityType.isBond() ? ("+" + AMORTIZATION.getCellAddr()) : ""));
             } else {
                 row.put(AVERAGE_PRICE, securityProfitService.getPurchaseCost(security, positions, toCurrency)
@@ -244,7 +274,9 @@ public class PortfolioStatusExcelTableFactory implements TableFactory {
                 row.put(AVERAGE_ACCRUED_INTEREST, securityProfitService.getPurchaseAccruedInterest(security, positions, toCurrency)
                         .divide(BigDecimal.valueOf(-count), 6, RoundingMode.CEILING));
 
-                quote = securityProfitService.getSecurityQuote(security, toCurrency, filter.getToDate());
+                quote = (securityType == CURRENCY_PAIR) ?
+                        securityProfitService.getSecurityQuote(security, toCurrency, filter.getToDate()) :
+                        lastQuote;
 
                 if (quote != null) {
                     row.put(LAST_PRICE, quote.getCleanPriceInCurrency(securityType == DERIVATIVE));
@@ -252,21 +284,21 @@ public class PortfolioStatusExcelTableFactory implements TableFactory {
                 }
 
                 if (securityType == DERIVATIVE) {
-                    row.put(GROSS_PROFIT, securityProfitService.getGrossProfit(portfolios, security, positions, toCurrency));
+                    row.put(GROSS_PROFIT, securityProfitService.getGrossProfit(portfolios, security, positions, toCurrency, filter));
                 } else {
                     row.put(GROSS_PROFIT, STOCK_OR_BOND_GROSS_PROFIT_FORMULA);
                 }
             }
-            row.put(COMMISSION, securityProfitService.getTotal(positions.getTransactions(), CashFlowType.FEE, toCurrency).abs());
+            row.put(COMMISSION, securityProfitService.getTotal(positions, CashFlowType.FEE, toCurrency).abs());
             if (securityType.isBond()) {
-                row.put(COUPON, securityProfitService.sumPaymentsForType(portfolios, security, CashFlowType.COUPON, toCurrency));
-                row.put(AMORTIZATION, securityProfitService.sumPaymentsForType(portfolios, security, CashFlowType.AMORTIZATION, toCurrency));
+                row.put(COUPON, payments.sum(CashFlowType.COUPON));
+                row.put(AMORTIZATION, payments.sum(CashFlowType.AMORTIZATION));
             }
             if (securityType.isStock()) {
-                row.put(DIVIDEND, securityProfitService.sumPaymentsForType(portfolios, security, CashFlowType.DIVIDEND, toCurrency));
+                row.put(DIVIDEND, payments.sum(CashFlowType.DIVIDEND));
             }
             if (securityType != DERIVATIVE && securityType != CURRENCY_PAIR) {
-                row.put(TAX, securityProfitService.sumPaymentsForType(portfolios, security, CashFlowType.TAX, toCurrency).abs());
+                row.put(TAX, payments.sum(CashFlowType.TAX).abs());
             }
             row.put(PROFIT, PROFIT_FORMULA);
             row.put(INTERNAL_RATE_OF_RETURN, internalRateOfReturn.calc(
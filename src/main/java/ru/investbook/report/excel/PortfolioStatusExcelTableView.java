@@ -79,16 +79,15 @@ public class PortfolioStatusExcelTableView extends ExcelTableView {
     }
 
     @Override
-    public Collection<ExcelTable> createExcelTables() {
-        Collection<ExcelTable> tables = new ArrayList<>(createExcelTablesByCurrencies());
-        if (!showOnlySummary(ViewFilter.get())) {
-            tables.addAll(super.createExcelTables());
+    public Collection<ExcelTable> createExcelTables(ViewFilter filter) {
+        Collection<ExcelTable> tables = new ArrayList<>(createExcelTablesByCurrencies(filter));
+        if (!showOnlySummary(filter)) {
+            tables.addAll(super.createExcelTables(filter));
         }
         return tables;
     }
 
-    private Collection<ExcelTable> createExcelTablesByCurrencies() {
-        ViewFilter filter = ViewFilter.get();
+    private Collection<ExcelTable> createExcelTablesByCurrencies(ViewFilter filter) {
         Collection<String> portfolios = filter.getPortfolios();
         if (showOnlySummary(filter) || isManyPortfolioRequested(portfolios)) {
             Collection<ExcelTable> tables = new ArrayList<>();
@@ -96,7 +95,7 @@ public class PortfolioStatusExcelTableView extends ExcelTableView {
                     transactionCashFlowRepository.findDistinctCurrencyByCashFlowTypeIn(types) :
                     transactionCashFlowRepository.findDistinctCurrencyByPortfolioInAndCashFlowTypeIn(portfolios, types);
             for (String currency : currencies) {
-                Table table = tableFactory.create(portfolios, currency);
+                Table table = tableFactory.create(portfolios, currency, filter);
                 String sheetName = "Портфель (все) " + currency;
                 tables.add(ExcelTable.of(sheetName, table, this));
             }
@@ -114,16 +113,16 @@ public class PortfolioStatusExcelTableView extends ExcelTableView {
     }
 
     @Override
-    protected Collection<ExcelTable> createExcelTables(Portfolio portfolio, String sheetName) {
+    protected Collection<ExcelTable> createExcelTables(Portfolio portfolio, String sheetName, ViewFilter filter) {
         List<String> currencies = transactionCashFlowRepository.findDistinctCurrencyByPortfolioInAndCashFlowTypeIn(
                 singleton(portfolio.getId()), types);
         return currencies.stream()
-                .map(currency -> createExcelTables(portfolio, sheetName, currency))
+                .map(currency -> createExcelTables(portfolio, sheetName, currency, filter))
                 .collect(toList());
     }
 
-    private ExcelTable createExcelTables(Portfolio portfolio, String sheetName, String currency) {
-        Table table = tableFactory.create(portfolio, currency);
+    private ExcelTable createExcelTables(Portfolio portfolio, String sheetName, String currency, ViewFilter filter) {
+        Table table = tableFactory.create(portfolio, currency, filter);
         String sheetNameWithCurrency = sheetName + " " + currency;
         return ExcelTable.of(portfolio, sheetNameWithCurrency, table, this);
     }
@@ -227,15 +226,16 @@ public class PortfolioStatusExcelTableView extends ExcelTableView {
         plotChart("Состав портфеля", sheet, PortfolioStatusExcelTableView::addPieChart);
     }
 
-    private static void addPieChart(String name, XSSFSheet sheet) {
+    private static void addPieChart(String name, Sheet sheet) {
         int rowCount = sheet.getLastRowNum();
+        XSSFSheet chartSheet = getChartSheet(sheet);
 
-        XDDFDataSource<String> securities = XDDFDataSourcesFactory.fromStringCellRange(sheet,
+        XDDFDataSource<String> securities = XDDFDataSourcesFactory.fromStringCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, SECURITY.ordinal(), SECURITY.ordinal()));
-        XDDFNumericalDataSource<Double> proportions = XDDFDataSourcesFactory.fromNumericCellRange(sheet,
+        XDDFNumericalDataSource<Double> proportions = XDDFDataSourcesFactory.fromNumericCellRange(chartSheet,
                 nonEmptyCellRangeAddress(sheet,2, rowCount, PROPORTION.ordinal(), PROPORTION.ordinal()));
 
-        XSSFChart chart = createChart(sheet, name, 0, rowCount + 2, PROPORTION.ordinal() + 1, 36);
+        XSSFChart chart = createChart(chartSheet, name, 0, rowCount + 2, PROPORTION.ordinal() + 1, 36);
         XDDFChartData data = createPieChartData(chart);
 
         data.addSeries(securities, proportions);
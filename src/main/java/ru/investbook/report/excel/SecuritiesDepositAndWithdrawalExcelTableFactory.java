@@ -41,9 +41,8 @@ public class SecuritiesDepositAndWithdrawalExcelTableFactory implements TableFac
 
     @Transactional(readOnly = true)
     @Override
-    public Table create(Portfolio portfolio) {
+    public Table create(Portfolio portfolio, ViewFilter viewFilter) {
         Table table = new Table();
-        ViewFilter viewFilter = ViewFilter.get();
         for (TransactionEntity transactionEntity :
                 transactionRepository.findByPortfolioAndTimestampBetweenDepositAndWithdrawalTransactions(
                         portfolio, viewFilter.getFromDate(), viewFilter.getToDate())) {
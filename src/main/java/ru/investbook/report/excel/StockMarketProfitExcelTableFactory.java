@@ -24,10 +24,10 @@ import org.spacious_team.broker.pojo.Portfolio;
 import org.spacious_team.broker.pojo.Security;
 import org.spacious_team.broker.pojo.SecurityEventCashFlow;
 import org.spacious_team.broker.pojo.Transaction;
+import org.spacious_team.broker.pojo.TransactionCashFlow;
 import org.springframework.stereotype.Component;
 import ru.investbook.converter.SecurityConverter;
 import ru.investbook.entity.SecurityEventCashFlowEntity;
-import ru.investbook.entity.TransactionCashFlowEntity;
 import ru.investbook.report.ClosedPosition;
 import ru.investbook.report.FifoPositions;
 import ru.investbook.report.FifoPositionsFactory;
@@ -36,13 +36,15 @@ import ru.investbook.report.ForeignExchangeRateService;
 import ru.investbook.report.OpenedPosition;
 import ru.investbook.report.PaidInterest;
 import ru.investbook.report.PaidInterestFactory;
+import ru.investbook.report.ParallelRowsExecutor;
 import ru.investbook.report.Position;
 import ru.investbook.report.Table;
 import ru.investbook.report.TableFactory;
+import ru.investbook.report.TransactionCashFlowMap;
+import ru.investbook.report.TransactionCashFlowMapFactory;
 import ru.investbook.report.ViewFilter;
 import ru.investbook.repository.SecurityEventCashFlowRepository;
 import ru.investbook.repository.SecurityRepository;
-import ru.investbook.repository.TransactionCashFlowRepository;
 import ru.investbook.repository.TransactionRepository;
 
 import java.math.BigDecimal;
@@ -65,28 +67,29 @@ public class StockMarketProfitExcelTableFactory implements TableFactory {
     private static final String TAX_LIABILITY_FORMULA = getTaxLiabilityFormula();
     private final TransactionRepository transactionRepository;
     private final SecurityRepository securityRepository;
-    private final TransactionCashFlowRepository transactionCashFlowRepository;
+    private final TransactionCashFlowMapFactory transactionCashFlowMapFactory;
     private final SecurityConverter securityConverter;
     private final PaidInterestFactory paidInterestFactory;
     private final SecurityEventCashFlowRepository securityEventCashFlowRepository;
     private final ForeignExchangeRateService foreignExchangeRateService;
     private final FifoPositionsFactory positionsFactory;
+    private final ParallelRowsExecutor parallelRowsExecutor;
 
-    public Table create(Portfolio portfolio) {
+    public Table create(Portfolio portfolio, ViewFilter filter) {
         throw new UnsupportedOperationException();
     }
 
-    public Table create(Portfolio portfolio, String forCurrency) {
-        Collection<Security> securities = getSecurities(portfolio, forCurrency);
-        return create(portfolio, securities, forCurrency);
+    public Table create(Portfolio portfolio, String forCurrency, ViewFilter filter) {
+        Collection<Security> securities = getSecurities(portfolio, forCurrency, filter);
+        return create(portfolio, securities, forCurrency, filter);
     }
 
-    private Collection<Security> getSecurities(Portfolio portfolio, String currency) {
+    private Collection<Security> getSecurities(Portfolio portfolio, String currency, ViewFilter filter) {
         return transactionRepository.findDistinctSecurityByPortfolioInAndCurrencyAndTimestampBetweenOrderByTimestampDesc(
                         singleton(portfolio.getId()),
                         currency,
-                        ViewFilter.get().getFromDate(),
-                        ViewFilter.get().getToDate())
+                        filter.getFromDate(),
+                        filter.getToDate())
                 .stream()
                 .map(securityRepository::findById)
                 .flatMap(Optional::stream)
@@ -94,39 +97,47 @@ public class StockMarketProfitExcelTableFactory implements TableFactory {
                 .toList();
     }
 
-    public Table create(Portfolio portfolio, Collection<Security> securities, String toCurrency) {
-        Table openPositionsProfit = new Table();
-        Table closedPositionsProfit = new Table();
-        securities.forEach(security ->
-                getRowsForSecurity(security, portfolio, openPositionsProfit, closedPositionsProfit, toCurrency));
+    /**
+     * Rows of each security are computed in parallel, rows order is the same as securities order
+     */
+    public Table create(Portfolio portfolio, Collection<Security> securities, String toCurrency, ViewFilter filter) {
+        List<SecurityRows> securityRows = parallelRowsExecutor.map(securities,
+                security -> getRowsForSecurity(security, portfolio, toCurrency, filter));
         Table profit = new Table();
-        profit.addAll(openPositionsProfit);
-        profit.addAll(closedPositionsProfit);
+        securityRows.forEach(rows -> profit.addAll(rows.openPositionsProfit()));
+        securityRows.forEach(rows -> profit.addAll(rows.closedPositionsProfit()));
         return profit;
     }
 
-    private void getRowsForSecurity(Security security, Portfolio portfolio, Table openPositionsProfit,
-                                    Table closedPositionsProfit, String toCurrency) {
-        ViewFilter filter = ViewFilter.get();
+    private SecurityRows getRowsForSecurity(Security security, Portfolio portfolio, String toCurrency,
+                                            ViewFilter filter) {
+        Table openPositionsProfit = new Table();
+        Table closedPositionsProfit = new Table();
         FifoPositionsFilter pf = FifoPositionsFilter.of(portfolio, filter.getFromDate(), filter.getToDate());
         FifoPositions positions = positionsFactory.get(security, pf);
         PaidInterest paidInterest = paidInterestFactory.get(portfolio, security, filter.getFromDate(), filter.getToDate());
-        openPositionsProfit.addAll(getPositionProfit(security, positions.getOpenedPositions(),
-                paidInterest, this::getOpenedPositionProfit, toCurrency));
-        closedPositionsProfit.addAll(getPositionProfit(security, positions.getClosedPositions(),
-                paidInterest, this::getClosedPositionProfit, toCurrency));
-        openPositionsProfit.addAll(getPositionProfit(security, paidInterest.getFictitiousPositions(),
-                paidInterest, this::getOpenedPositionProfit, toCurrency));
+        TransactionCashFlowMap cashFlows = transactionCashFlowMapFactory.get(positions);
+        openPositionsProfit.addAll(getPositionProfit(security, positions.getOpenedPositions(), paidInterest, cashFlows,
+                (position, currency) -> getOpenedPositionProfit(position, currency, cashFlows), toCurrency));
+        closedPositionsProfit.addAll(getPositionProfit(security, positions.getClosedPositions(), paidInterest, cashFlows,
+                (position, currency) -> getClosedPositionProfit(position, currency, cashFlows, filter), toCurrency));
+        openPositionsProfit.addAll(getPositionProfit(security, paidInterest.getFictitiousPositions(), paidInterest, cashFlows,
+                (position, currency) -> getOpenedPositionProfit(position, currency, cashFlows), toCurrency));
+        return new SecurityRows(openPositionsProfit, closedPositionsProfit);
+    }
+
+    private record SecurityRows(Table openPositionsProfit, Table closedPositionsProfit) {
     }
 
     private <T extends OpenedPosition> Table getPositionProfit(Security security,
                                                                Deque<T> positions,
                                                                PaidInterest paidInterest,
+                                                               TransactionCashFlowMap cashFlows,
                                                                BiFunction<T, String, Table.Record> profitBuilder,
                                                                String toCurrency) {
         Table rows = new Table();
         for (T position : positions) {
-            String openTransactionCurrency = getTransactionCurrency(position.getOpenTransaction(), toCurrency);
+            String openTransactionCurrency = getTransactionCurrency(position.getOpenTransaction(), toCurrency, cashFlows);
             if (openTransactionCurrency.equalsIgnoreCase(toCurrency)) {
                 Table.Record record = profitBuilder.apply(position, toCurrency);
                 record.putAll(getPaidInterestProfit(position, paidInterest, toCurrency));
@@ -141,48 +152,50 @@ public class StockMarketProfitExcelTableFactory implements TableFactory {
         return rows;
     }
 
-    private <T extends OpenedPosition> Table.Record getOpenedPositionProfit(T position, String toCurrency) {
+    private <T extends OpenedPosition> Table.Record getOpenedPositionProfit(T position, String toCurrency,
+                                                                            TransactionCashFlowMap cashFlows) {
         Table.Record row = new Table.Record();
         Transaction transaction = position.getOpenTransaction();
         row.put(OPEN_DATE, transaction.getTimestamp());
         row.put(COUNT, Math.abs(position.getCount()) * Integer.signum(transaction.getCount()));
-        String openPrice = getTransactionCashFlow(transaction, CashFlowType.PRICE, 1d / transaction.getCount(), toCurrency);
+        String openPrice = getTransactionCashFlow(transaction, CashFlowType.PRICE, 1d / transaction.getCount(), toCurrency, cashFlows);
         if (openPrice == null && (position instanceof ClosedPosition)) {
             // ЦБ введены, а не куплены, принимаем цену покупки = цене продажи, чтобы не было финансового результата
             Transaction closeTransaction = ((ClosedPosition) position).getCloseTransaction();
-            openPrice = getTransactionCashFlow(closeTransaction, CashFlowType.PRICE, 1d / closeTransaction.getCount(), toCurrency);
+            openPrice = getTransactionCashFlow(closeTransaction, CashFlowType.PRICE, 1d / closeTransaction.getCount(), toCurrency, cashFlows);
         }
         row.put(OPEN_PRICE, openPrice);
         if (openPrice != null) {
             row.put(OPEN_AMOUNT, "=ABS(" + OPEN_PRICE.getCellAddr() + "*" + COUNT.getCellAddr() + ")");
         }
         double multiplier = Math.abs(1d * position.getCount() / transaction.getCount());
-        row.put(OPEN_ACCRUED_INTEREST, getTransactionCashFlow(transaction, CashFlowType.ACCRUED_INTEREST, multiplier, toCurrency));
-        row.put(OPEN_COMMISSION, getTransactionCashFlow(transaction, CashFlowType.FEE, multiplier, toCurrency));
+        row.put(OPEN_ACCRUED_INTEREST, getTransactionCashFlow(transaction, CashFlowType.ACCRUED_INTEREST, multiplier, toCurrency, cashFlows));
+        row.put(OPEN_COMMISSION, getTransactionCashFlow(transaction, CashFlowType.FEE, multiplier, toCurrency, cashFlows));
         return row;
     }
 
-    private Table.Record getClosedPositionProfit(ClosedPosition position, String toCurrency) {
+    private Table.Record getClosedPositionProfit(ClosedPosition position, String toCurrency, TransactionCashFlowMap cashFlows,
+                                                ViewFilter filter) {
         // open transaction info
-        Table.Record row = new Table.Record(getOpenedPositionProfit(position, toCurrency));
+        Table.Record row = new Table.Record(getOpenedPositionProfit(position, toCurrency, cashFlows));
         // close transaction info
         Transaction transaction = position.getCloseTransaction();
         double multiplier = Math.abs(1d * position.getCount() / transaction.getCount());
         row.put(CLOSE_DATE, transaction.getTimestamp());
         String closeAmount = switch (position.getClosingEvent()) {
-            case PRICE -> getTransactionCashFlow(transaction, CashFlowType.PRICE, multiplier, toCurrency);
-            case REDEMPTION -> getRedemptionCashFlow(transaction.getPortfolio(), transaction.getSecurity(), multiplier, toCurrency);
+            case PRICE -> getTransactionCashFlow(transaction, CashFlowType.PRICE, multiplier, toCurrency, cashFlows);
+            case REDEMPTION -> getRedemptionCashFlow(transaction.getPortfolio(), transaction.getSecurity(), multiplier, toCurrency, filter);
             default -> throw new IllegalArgumentException("ЦБ " + transaction.getSecurity() +
                     " не может быть закрыта событием типа " + position.getClosingEvent());
         };
         if (closeAmount == null) {
             // ЦБ выведены со счета, а не проданы, принимаем цену продажи = цене покупки, чтобы не было финансового результата
             double withdrawalMultiplier = Math.abs(1d * position.getCount() / position.getOpenTransaction().getCount());
-            closeAmount = getTransactionCashFlow(position.getOpenTransaction(), CashFlowType.PRICE, withdrawalMultiplier, toCurrency);
+            closeAmount = getTransactionCashFlow(position.getOpenTransaction(), CashFlowType.PRICE, withdrawalMultiplier, toCurrency, cashFlows);
         }
         row.put(CLOSE_AMOUNT, closeAmount);
-        row.put(CLOSE_ACCRUED_INTEREST, getTransactionCashFlow(transaction, CashFlowType.ACCRUED_INTEREST, multiplier, toCurrency));
-        row.put(CLOSE_COMMISSION, getTransactionCashFlow(transaction, CashFlowType.FEE, multiplier, toCurrency));
+        row.put(CLOSE_ACCRUED_INTEREST, getTransactionCashFlow(transaction, CashFlowType.ACCRUED_INTEREST, multiplier, toCurrency, cashFlows));
+        row.put(CLOSE_COMMISSION, getTransactionCashFlow(transaction, CashFlowType.FEE, multiplier, toCurrency, cashFlows));
         boolean isLongPosition = isLongPosition(position);
         row.put(FORECAST_TAX, getForecastTax(isLongPosition));
         row.put(PROFIT, getClosedPositionProfit(isLongPosition));
@@ -208,12 +221,12 @@ public class StockMarketProfitExcelTableFactory implements TableFactory {
         return info;
     }
 
-    private String getTransactionCashFlow(Transaction transaction, CashFlowType type, double multiplier, String toCurrency) {
+    private String getTransactionCashFlow(Transaction transaction, CashFlowType type, double multiplier, String toCurrency,
+                                          TransactionCashFlowMap cashFlows) {
         if (PaidInterest.isFictitiousPositionTransaction(transaction)) {
             return null;
         }
-        return transactionCashFlowRepository
-                .findByTransactionIdAndCashFlowType(transaction.getId(), type)
+        return cashFlows.get(transaction.getId(), type)
                 .map(cash -> {
                     BigDecimal value = cash.getValue()
                             .multiply(BigDecimal.valueOf(multiplier))
@@ -224,14 +237,15 @@ public class StockMarketProfitExcelTableFactory implements TableFactory {
                 .orElse(null);
     }
 
-    private String getRedemptionCashFlow(String portfolio, Integer securityId, double multiplier, String toCurrency) {
+    private String getRedemptionCashFlow(String portfolio, Integer securityId, double multiplier, String toCurrency,
+                                         ViewFilter filter) {
         List<SecurityEventCashFlowEntity> cashFlows = securityEventCashFlowRepository
                 .findByPortfolioIdInAndSecurityIdAndCashFlowTypeIdAndTimestampBetweenOrderByTimestampAsc(
                         singleton(portfolio),
                         securityId,
                         CashFlowType.REDEMPTION.getId(),
-                        ViewFilter.get().getFromDate(),
-                        ViewFilter.get().getToDate());
+                        filter.getFromDate(),
+                        filter.getToDate());
         if (cashFlows.isEmpty()) {
             return null;
         } else if (cashFlows.size() > 1) {
@@ -249,13 +263,12 @@ public class StockMarketProfitExcelTableFactory implements TableFactory {
     /**
      * @return transaction {@link CashFlowType#PRICE} currency
      */
-    private String getTransactionCurrency(Transaction transaction, String fallbackCurrency) {
+    private String getTransactionCurrency(Transaction transaction, String fallbackCurrency, TransactionCashFlowMap cashFlows) {
         if (PaidInterest.isFictitiousPositionTransaction(transaction)) {
             return fallbackCurrency;
         }
-        return transactionCashFlowRepository
-                .findByTransactionIdAndCashFlowType(transaction.getId(), CashFlowType.PRICE)
-                .map(TransactionCashFlowEntity::getCurrency)
+        return cashFlows.get(transaction.getId(), CashFlowType.PRICE)
+                .map(TransactionCashFlow::getCurrency)
                 .orElse(fallbackCurrency);
     }
 
@@ -30,6 +30,7 @@ import org.springframework.stereotype.Component;
 import ru.investbook.converter.PortfolioConverter;
 import ru.investbook.report.Table;
 import ru.investbook.report.TableHeader;
+import ru.investbook.report.ViewFilter;
 import ru.investbook.repository.PortfolioRepository;
 import ru.investbook.repository.TransactionCashFlowRepository;
 
@@ -63,11 +64,11 @@ public class StockMarketProfitExcelTableView extends ExcelTableView {
     }
 
     @Override
-    protected Collection<ExcelTable> createExcelTables(Portfolio portfolio, String sheetName) {
+    protected Collection<ExcelTable> createExcelTables(Portfolio portfolio, String sheetName, ViewFilter filter) {
         List<String> currencies = getCurrencies(portfolio);
         Collection<ExcelTable> tables = new ArrayList<>(currencies.size());
         for (String currency : currencies) {
-            Table table = tableFactory.create(portfolio, currency);
+            Table table = tableFactory.create(portfolio, currency, filter);
             String sheetNameWithCurrency = sheetName + " " + currency;
             tables.add(ExcelTable.of(portfolio, sheetNameWithCurrency, table, this));
         }
@@ -19,20 +19,20 @@
 package ru.investbook.report.html;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.formula.eval.NotImplementedException;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.springframework.util.Assert;
 
 @Slf4j
 class ExcelFormulaEvaluatorHelper {
 
-    static void evaluateFormulaCells(HSSFWorkbook workbook) {
-        HSSFFormulaEvaluator evaluator = new HSSFFormulaEvaluator(workbook);
+    static void evaluateFormulaCells(Workbook workbook) {
+        FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
         for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
             Sheet sheet = workbook.getSheetAt(i);
             for (Row r : sheet) {
@@ -45,7 +45,7 @@ class ExcelFormulaEvaluatorHelper {
         }
     }
 
-    private static void evaluate(Cell c, HSSFFormulaEvaluator evaluator) {
+    private static void evaluate(Cell c, FormulaEvaluator evaluator) {
         try {
             evaluator.evaluateFormulaCell(c);
         } catch (NotImplementedException e) {
@@ -60,7 +60,7 @@ class ExcelFormulaEvaluatorHelper {
     /**
      * Если формула соответствует шаблону '{A}IFERROR({B},{default-value}){C}', то будет попытка вычислить значение '{A}{default-value}{C}'
      */
-    private static boolean handleNotImplementedException(Cell c, HSSFFormulaEvaluator evaluator) {
+    private static boolean handleNotImplementedException(Cell c, FormulaEvaluator evaluator) {
         try {
             String formula = c.getCellFormula();
             int ifErrorFuncStartPos = formula.toUpperCase().indexOf("IFERROR(");
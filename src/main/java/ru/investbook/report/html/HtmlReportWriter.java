@@ -0,0 +1,136 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.report.html;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.web.util.HtmlUtils.htmlEscape;
+
+/**
+ * Writes report sheets to html page row by row, without building document in memory
+ */
+class HtmlReportWriter implements Closeable {
+    private final Writer writer;
+    private final DataFormatter dataFormatter = new DataFormatter();
+
+    HtmlReportWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+        this.dataFormatter.setUseCachedValuesForFormulaCells(true);
+    }
+
+    void writeHead(String title, String css) throws IOException {
+        writer.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n<title>");
+        writer.write(htmlEscape(title));
+        writer.write("</title>\n<style>\n");
+        writer.write(css);
+        writer.write("</style>\n</head>\n<body>\n");
+    }
+
+    void write(String html) throws IOException {
+        writer.write(html);
+    }
+
+    /**
+     * Formula cells should be evaluated before call
+     */
+    void writeSheets(Workbook workbook) throws IOException {
+        for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+            writeSheet(workbook.getSheetAt(i));
+        }
+    }
+
+    private void writeSheet(Sheet sheet) throws IOException {
+        writer.write("<h2>");
+        writer.write(htmlEscape(sheet.getSheetName()));
+        writer.write("</h2>\n<table>\n");
+        int columnCount = getColumnCount(sheet);
+        writer.write("<colgroup>");
+        for (int i = 0; i < columnCount; i++) {
+            writer.write("<col width=\"" + Math.round(sheet.getColumnWidthInPixels(i)) + "\">");
+        }
+        writer.write("</colgroup>\n");
+        Map<Short, String> cssClasses = new HashMap<>();
+        for (Row row : sheet) {
+            writer.write("<tr>");
+            for (int i = 0; i < columnCount; i++) {
+                Cell cell = row.getCell(i);
+                if (cell == null) {
+                    writer.write("<td></td>");
+                } else {
+                    String cssClass = cssClasses.computeIfAbsent(cell.getCellStyle().getIndex(),
+                            $ -> getCssClass(sheet.getWorkbook(), cell.getCellStyle()));
+                    writer.write("<td class=\"");
+                    writer.write(cssClass);
+                    writer.write("\">");
+                    writer.write(htmlEscape(dataFormatter.formatCellValue(cell)));
+                    writer.write("</td>");
+                }
+            }
+            writer.write("</tr>\n");
+        }
+        writer.write("</table>\n");
+    }
+
+    private static int getColumnCount(Sheet sheet) {
+        int columnCount = 0;
+        for (Row row : sheet) {
+            columnCount = Math.max(columnCount, row.getLastCellNum());
+        }
+        return columnCount;
+    }
+
+    private static String getCssClass(Workbook workbook, CellStyle style) {
+        String cssClass = switch (style.getAlignment()) {
+            case LEFT -> "l";
+            case RIGHT -> "r";
+            default -> "c";
+        };
+        Font font = workbook.getFontAt(style.getFontIndex());
+        if (font.getBold()) {
+            cssClass += " b";
+        }
+        if (font.getItalic()) {
+            cssClass += " i";
+        }
+        return cssClass;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.write("</body>\n</html>\n");
+        writer.flush();
+    }
+}
@@ -20,29 +20,22 @@ package ru.investbook.report.html;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.hpsf.SummaryInformation;
-import org.apache.poi.hssf.converter.ExcelToHtmlConverter;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import ru.investbook.report.ViewFilter;
+import ru.investbook.report.excel.ExcelTable;
 import ru.investbook.report.excel.ExcelView;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.util.concurrent.ExecutionException;
+import java.io.UncheckedIOException;
 
 import static ru.investbook.report.html.ExcelFormulaEvaluatorHelper.evaluateFormulaCells;
 
+/**
+ * Renders report tables to html one by one. Each table is written to its own small workbook for formulas evaluation,
+ * then it is streamed to output as html table and discarded.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
@@ -50,102 +43,48 @@ public class HtmlView {
     private static final String EXCEL_REPORT_LINK = "/portfolio/report?format=excel";
     private static final String PDF_REPORT_LINK = "window.print()";
     private static final String DOC_LINK = "/user-guide/investbook-report.html";
+    // @page for A4 landscape proportion when printing by ctrl+P
+    private static final String CSS_STYLE = """
+            @page { size: 1980px 1400px landscape; }
+            body { font-family: Calibri, Arial, sans-serif; font-size: 11pt; }
+            table { border-collapse: collapse; table-layout: fixed; }
+            tr { border-bottom: 1pt solid #eee; }
+            td { padding: 1pt 2pt; vertical-align: middle; word-wrap: break-word; }
+            .l { text-align: left; }
+            .c { text-align: center; }
+            .r { text-align: right; }
+            .b { font-weight: bold; }
+            .i { font-style: italic; }
+            """;
     private final ExcelView excelView;
 
     public void create(OutputStream out, ViewFilter filter) throws Exception {
-        try (HSSFWorkbook workbook = createWorkbook(filter)) {
-            Document htmlDocument = buildHtmlDocument(workbook);
-            addCssStyle(htmlDocument);
-            addReportFileDownloadLink(htmlDocument);
-            addHomeLink(htmlDocument);
-            write(htmlDocument, out);
+        try (HtmlReportWriter writer = new HtmlReportWriter(out)) {
+            writer.writeHead("Отчет", CSS_STYLE);
+            writer.write(getLinks());
+            excelView.writeTo(filter, table -> write(table, writer));
         }
     }
 
-    private HSSFWorkbook createWorkbook(ViewFilter filter) throws InterruptedException, ExecutionException {
-        HSSFWorkbook workbook = new HSSFWorkbook();
-        excelView.writeTo(workbook, filter, new HtmlCellStyles(workbook));
-        evaluateFormulaCells(workbook);
-        setTitleAndAuthor(workbook);
-        return workbook;
-    }
-
-    private void setTitleAndAuthor(HSSFWorkbook workbook) {
-        workbook.createInformationProperties();
-        SummaryInformation info = workbook.getSummaryInformation();
-        info.setTitle("Отчет");
-        info.setLastAuthor("Investbook");
-    }
-
-    private Document buildHtmlDocument(HSSFWorkbook workbook) throws ParserConfigurationException {
-        Document doc = DocumentBuilderFactory.newInstance()
-                .newDocumentBuilder()
-                .newDocument();
-        ExcelToHtmlConverter excelToHtmlConverter = new ExcelToHtmlConverter(doc);
-        excelToHtmlConverter.setOutputColumnHeaders(false);
-        excelToHtmlConverter.setOutputRowNumbers(false);
-        excelToHtmlConverter.processWorkbook(workbook);
-        return excelToHtmlConverter.getDocument();
-    }
-
-    private void addCssStyle(Document htmlDocument) {
-        Element style = htmlDocument.createElement("style");
-        // @page for A4 landscape proportion when printing by ctrl+P
-        style.setTextContent("""
-                @page { size: 1980px 1400px landscape; }
-                tr { border-bottom: 1pt solid #eee; }
-                """);
-        htmlDocument.getFirstChild() // html
-                .getFirstChild()     // head
-                .appendChild(style);
-    }
-
-    private void addReportFileDownloadLink(Document htmlDocument) {
-        Node body = htmlDocument.getFirstChild() // html
-                .getLastChild(); // body
-
-        Element div = htmlDocument.createElement("div");
-        div.setAttribute("style", "float: right");
-        body.insertBefore(div, body.getFirstChild());
-
+    private static String getLinks() {
         String linkStyle = "text-decoration: none; margin-right: 1em;";
-        Element link = htmlDocument.createElement("a");
-        link.setTextContent("Сохранить в xlsx \uD83D\uDCE5");
-        link.setAttribute("href", EXCEL_REPORT_LINK);
-        link.setAttribute("style", linkStyle);
-        div.appendChild(link);
-
-        link = htmlDocument.createElement("a");
-        link.setTextContent("Сохранить в pdf \uD83D\uDCE5");
-        link.setAttribute("href", "#");
-        link.setAttribute("onclick", PDF_REPORT_LINK);
-        link.setAttribute("style", linkStyle);
-        div.appendChild(link);
-    }
-
-    private void addHomeLink(Document htmlDocument) {
-        Node body = htmlDocument.getFirstChild() // html
-                .getLastChild(); // body
-
-        Element doc = htmlDocument.createElement("a");
-        doc.setTextContent("[Описание таблиц]");
-        doc.setAttribute("href", DOC_LINK);
-        body.insertBefore(doc, body.getFirstChild());
-
-        Element link = htmlDocument.createElement("a");
-        link.setTextContent("[На главную]");
-        link.setAttribute("href", "/");
-        link.setAttribute("style", "margin-right: 1em");
-        body.insertBefore(link, body.getFirstChild());
+        return """
+                <a href="/" style="margin-right: 1em">[На главную]</a>
+                <a href="%s">[Описание таблиц]</a>
+                <div style="float: right">
+                <a href="%s" style="%s">Сохранить в xlsx \uD83D\uDCE5</a>
+                <a href="#" onclick="%s" style="%s">Сохранить в pdf \uD83D\uDCE5</a>
+                </div>
+                """.formatted(DOC_LINK, EXCEL_REPORT_LINK, linkStyle, PDF_REPORT_LINK, linkStyle);
     }
 
-    private void write(Document htmlDocument, OutputStream out) throws TransformerException {
-        DOMSource domSource = new DOMSource(htmlDocument);
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer serializer = tf.newTransformer();
-        serializer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-        serializer.setOutputProperty(OutputKeys.INDENT, "yes");
-        serializer.setOutputProperty(OutputKeys.METHOD, "html");
-        serializer.transform(domSource, new StreamResult(out));
+    private static void write(ExcelTable table, HtmlReportWriter writer) {
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            table.writeTo(workbook, new HtmlCellStyles(workbook));
+            evaluateFormulaCells(workbook);
+            writer.writeSheets(workbook);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не могу записать таблицу '" + table.getSheetName() + "'", e);
+        }
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.repository;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.transaction.support.TransactionSynchronizationManager.bindResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.hasResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.unbindResourceIfPossible;
+
+/**
+ * Monotonically increasing version of DB data, it is changed by any data modification.
+ * Version starts from application start time, so versions of different application runs are not equal.
+ */
+@Component
+public class DataVersion {
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long get() {
+        return version.get();
+    }
+
+    /**
+     * Should be called on data modification. If called in transaction, version is incremented twice:
+     * immediately and after transaction completion, so data read by concurrent transaction
+     * before modification commit will not be assigned to the new version.
+     * Transaction completion callback is registered once per transaction.
+     */
+    public void increment() {
+        version.incrementAndGet();
+        if (isSynchronizationActive() && !hasResource(this)) {
+            bindResource(this, Boolean.TRUE);
+            registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    unbindResourceIfPossible(DataVersion.this);
+                    version.incrementAndGet();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import ru.investbook.entity.MoexMarketCacheEntity;
+import ru.investbook.entity.MoexSecidCacheEntity;
+import ru.investbook.entity.PortfolioValuationEntity;
+
+/**
+ * Increments {@link DataVersion} on entity modifications made by JPA repositories directly
+ * (web forms, quote and exchange rate updaters), bypassing {@link ru.investbook.api.AbstractEntityRepositoryService}
+ */
+@Component
+@RequiredArgsConstructor
+class DataVersionHibernateListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+    private final EntityManagerFactory entityManagerFactory;
+    private final DataVersion dataVersion;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        incrementIfNotDerived(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        incrementIfNotDerived(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        incrementIfNotDerived(event.getEntity());
+    }
+
+    private void incrementIfNotDerived(Object entity) {
+        if (!isDerived(entity)) {
+            dataVersion.increment();
+        }
+    }
+
+    /**
+     * Valuations are derived from other tables, MOEX boards and codes are used for quote update only,
+     * their modification doesn't change report data version
+     */
+    private static boolean isDerived(Object entity) {
+        return entity instanceof PortfolioValuationEntity ||
+                entity instanceof MoexSecidCacheEntity ||
+                entity instanceof MoexMarketCacheEntity;
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import ru.investbook.entity.PortfolioValuationEntity;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Transactional(readOnly = true)
+public interface PortfolioValuationRepository extends JpaRepository<PortfolioValuationEntity, Integer> {
+
+    Optional<PortfolioValuationEntity> findFirstByPortfolioOrderByDateDesc(String portfolio);
+
+    List<PortfolioValuationEntity> findByPortfolioInAndDateBetweenOrderByPortfolioAscDateAsc(
+            Collection<String> portfolios,
+            LocalDate fromDate,
+            LocalDate toDate);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PortfolioValuationEntity WHERE portfolio = :portfolio AND date >= :fromDate")
+    void deleteByPortfolioAndDateGreaterThanEqual(String portfolio, LocalDate fromDate);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PortfolioValuationEntity WHERE portfolio = :portfolio")
+    void deleteByPortfolio(String portfolio);
+}
@@ -0,0 +1,117 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.SneakyThrows;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts keyset scroll position to opaque continuation token and back.
+ * Token contains sort key values of the row to continue from, so the next page is selected by index range scan
+ * instead of OFFSET. Key value types are preserved to be bound to query parameters.
+ */
+public class ScrollPositionHelper {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @SneakyThrows
+    public static String toToken(KeysetScrollPosition position) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        position.getKeys().forEach((key, value) -> keys.put(key, toTypedValue(value)));
+        Map<String, Object> token = Map.of(
+                "d", position.scrollsForward() ? "f" : "b",
+                "k", keys);
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(objectMapper.writeValueAsBytes(token));
+    }
+
+    /**
+     * @return initial position for empty token
+     * @throws IllegalArgumentException if token is malformed
+     */
+    public static KeysetScrollPosition fromToken(@Nullable String token) {
+        if (!StringUtils.hasText(token)) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            JsonNode node = objectMapper.readTree(Base64.getUrlDecoder().decode(token));
+            Map<String, Object> keys = new LinkedHashMap<>();
+            node.required("k")
+                    .properties()
+                    .forEach(e -> keys.put(e.getKey(), fromTypedValue(e.getValue())));
+            return node.required("d").asText().equals("f") ?
+                    ScrollPosition.forward(keys) :
+                    ScrollPosition.backward(keys);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Неверный курсор постраничного вывода: " + token, e);
+        }
+    }
+
+    /**
+     * Used by web forms, where cursor is taken from page link and malformed cursor should not be an error.
+     *
+     * @return initial position for empty or malformed token
+     */
+    public static KeysetScrollPosition fromTokenOrInitial(@Nullable String token) {
+        try {
+            return fromToken(token);
+        } catch (IllegalArgumentException e) {
+            return ScrollPosition.keyset();
+        }
+    }
+
+    private static List<String> toTypedValue(Object value) {
+        String type = switch (value) {
+            case String _ -> "s";
+            case Integer _ -> "i";
+            case Long _ -> "l";
+            case Instant _ -> "t";
+            case LocalDate _ -> "d";
+            case BigDecimal _ -> "n";
+            case null, default -> throw new IllegalArgumentException("Тип ключа сортировки не поддерживается: " + value);
+        };
+        return List.of(type, value.toString());
+    }
+
+    private static Object fromTypedValue(JsonNode node) {
+        String value = node.required(1).asText();
+        return switch (node.required(0).asText()) {
+            case "s" -> value;
+            case "i" -> Integer.valueOf(value);
+            case "l" -> Long.valueOf(value);
+            case "t" -> Instant.parse(value);
+            case "d" -> LocalDate.parse(value);
+            case "n" -> new BigDecimal(value);
+            default -> throw new IllegalArgumentException("Неизвестный тип ключа сортировки");
+        };
+    }
+}
@@ -18,6 +18,8 @@
 
 package ru.investbook.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.transaction.annotation.Transactional;
@@ -38,6 +40,10 @@ public interface SecurityEventCashFlowRepository extends
 
     List<SecurityEventCashFlowEntity> findByCashFlowTypeId(int type);
 
+    Slice<SecurityEventCashFlowEntity> findByCashFlowTypeId(int type, Pageable pageable);
+
+    Slice<SecurityEventCashFlowEntity> findByCashFlowTypeIdNotIn(Set<Integer> types, Pageable pageable);
+
     Optional<SecurityEventCashFlowEntity> findByPortfolioIdAndSecurityIdAndCashFlowTypeIdAndTimestampAndCount(
             String portfolio,
             Integer securityId,
@@ -71,6 +77,19 @@ public interface SecurityEventCashFlowRepository extends
             Instant fromDate,
             Instant toDate);
 
+    List<SecurityEventCashFlowEntity> findByPortfolioIdInAndSecurityIdInAndCashFlowTypeIdInAndTimestampBetween(
+            Collection<String> portfolios,
+            Collection<Integer> securityIds,
+            Set<Integer> cashFlowType,
+            Instant fromDate,
+            Instant toDate);
+
+    List<SecurityEventCashFlowEntity> findBySecurityIdInAndCashFlowTypeIdInAndTimestampBetween(
+            Collection<Integer> securityIds,
+            Set<Integer> cashFlowType,
+            Instant fromDate,
+            Instant toDate);
+
     /**
      * Return all portfolio payments, between date-time interval
      */
@@ -0,0 +1,259 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import ru.investbook.entity.SecurityEntity;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+
+/**
+ * In-memory index of security ISIN, ticker and name to security ID. Thread safe.
+ * Index is loaded from DB on first usage, new and updated securities are indexed after transaction commit,
+ * deleted securities are removed from index. Securities absent in index are searched in DB,
+ * not found keys are remembered and not searched in DB again until security with such key is saved.
+ */
+@Component
+@RequiredArgsConstructor
+public class SecurityIdentityIndex implements
+        PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+    private final EntityManagerFactory entityManagerFactory;
+    private final SecurityRepository securityRepository;
+    private volatile Index index;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    public Optional<Integer> findByIsin(String isin) {
+        return find(isin, Index::getIsins, securityRepository::findByIsin);
+    }
+
+    public Optional<Integer> findByTicker(String ticker) {
+        return find(ticker, Index::getTickers, securityRepository::findByTicker);
+    }
+
+    public Optional<Integer> findByName(String name) {
+        return find(name, Index::getNames, securityRepository::findByName);
+    }
+
+    /**
+     * Should be called after security is saved. Security ISIN, ticker and name are not remembered as absent anymore.
+     * If called in transaction, security is indexed after commit, otherwise immediately.
+     */
+    public void add(SecurityEntity security) {
+        Index index = this.index;
+        if (index != null) {
+            index.removeMissed(security);
+            if (!isSynchronizationActive()) {
+                index.add(security);
+            } // else security is indexed by post commit insert event
+        }
+    }
+
+    /**
+     * Should be called if securities are modified bypassing Hibernate (SQL script), index is loaded again on next usage
+     */
+    public synchronized void invalidate() { // synchronized to wait for concurrent index loading
+        index = null;
+    }
+
+    private Optional<Integer> find(String key,
+                                   Function<Index, KeyIndex> keyIndexGetter,
+                                   Function<String, Optional<SecurityEntity>> dbSearch) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        Index index = getIndex();
+        KeyIndex keyIndex = keyIndexGetter.apply(index);
+        Integer securityId = keyIndex.ids().get(key);
+        if (securityId != null) {
+            return Optional.of(securityId);
+        } else if (keyIndex.missed().contains(key)) {
+            return Optional.empty();
+        }
+        // security may be saved by not committed yet transaction
+        long version = index.getVersion();
+        Optional<SecurityEntity> security = dbSearch.apply(key);
+        security.ifPresentOrElse(index::add, () -> index.addMissed(keyIndex, key, version));
+        return security.map(SecurityEntity::getId);
+    }
+
+    private Index getIndex() {
+        Index index = this.index;
+        if (index == null) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null) {
+                    index = new Index();
+                    securityRepository.findAll().forEach(index::add);
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Index index = this.index;
+        if (index != null && event.getEntity() instanceof SecurityEntity security) {
+            index.add(security);
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Index index = this.index;
+        if (index != null && event.getEntity() instanceof SecurityEntity security) {
+            index.replace(security);
+        }
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Index index = this.index;
+        if (index != null && event.getEntity() instanceof SecurityEntity security) {
+            index.remove(security.getId());
+        }
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.getMappedClass() == SecurityEntity.class;
+    }
+
+    /**
+     * Modifications are synchronized to not remember key as absent, if security is added concurrently with DB search
+     */
+    @Getter
+    private static class Index {
+        private final KeyIndex isins = new KeyIndex();
+        private final KeyIndex tickers = new KeyIndex();
+        private final KeyIndex names = new KeyIndex();
+        @Getter(AccessLevel.NONE)
+        private long version = 0;
+
+        synchronized long getVersion() {
+            return version;
+        }
+
+        synchronized void add(SecurityEntity security) {
+            Integer id = security.getId();
+            isins.put(security.getIsin(), id);
+            tickers.put(security.getTicker(), id);
+            names.put(security.getName(), id);
+            version++;
+        }
+
+        /**
+         * Old ISIN, ticker and name of updated security are unknown, so they are found by security ID
+         */
+        synchronized void replace(SecurityEntity security) {
+            remove(security.getId());
+            add(security);
+        }
+
+        synchronized void remove(Integer id) {
+            isins.remove(id);
+            tickers.remove(id);
+            names.remove(id);
+            version++;
+        }
+
+        synchronized void removeMissed(SecurityEntity security) {
+            isins.removeMissed(security.getIsin());
+            tickers.removeMissed(security.getTicker());
+            names.removeMissed(security.getName());
+            version++;
+        }
+
+        /**
+         * @param searchVersion index version before DB search
+         */
+        synchronized void addMissed(KeyIndex keyIndex, String key, long searchVersion) {
+            if (version == searchVersion) {
+                keyIndex.missed().add(key);
+            }
+        }
+    }
+
+    private record KeyIndex(Map<String, Integer> ids, Set<String> missed) {
+
+        KeyIndex() {
+            this(new ConcurrentHashMap<>(), ConcurrentHashMap.newKeySet());
+        }
+
+        void put(String key, Integer id) {
+            if (key != null) {
+                ids.put(key, id);
+                missed.remove(key);
+            }
+        }
+
+        void remove(Integer id) {
+            ids.values().removeIf(id::equals);
+        }
+
+        void removeMissed(String key) {
+            if (key != null) {
+                missed.remove(key);
+            }
+        }
+    }
+}
@@ -20,10 +20,14 @@ package ru.investbook.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 import ru.investbook.entity.SecurityQuoteEntity;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Transactional(readOnly = true)
@@ -35,5 +39,29 @@ public interface SecurityQuoteRepository extends
             Integer securityId,
             Instant date);
 
+    /**
+     * Return last quote before date-time for each security
+     */
+    @Query(nativeQuery = true, value = """
+            SELECT q.* FROM security_quote q
+            JOIN (SELECT security, MAX(timestamp) AS timestamp
+                    FROM security_quote
+                    WHERE security IN (:securityIds) AND timestamp < :date
+                    GROUP BY security) last_quote
+                ON q.security = last_quote.security AND q.timestamp = last_quote.timestamp
+            """)
+    List<SecurityQuoteEntity> findLastBySecurityIdInAndTimestampLessThan(
+            @Param("securityIds") Collection<Integer> securityIds,
+            @Param("date") Instant date);
+
+    List<SecurityQuoteEntity> findBySecurityIdInAndTimestampBetweenOrderByTimestampAsc(
+            Collection<Integer> securityIds,
+            Instant fromDate,
+            Instant toDate);
+
+    List<SecurityQuoteEntity> findBySecurityIdInAndTimestampIn(
+            Collection<Integer> securityIds,
+            Collection<Instant> timestamps);
+
     Optional<SecurityQuoteEntity> findFirstByOrderByTimestampDesc();
 }
@@ -0,0 +1,193 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.spacious_team.broker.pojo.Transaction;
+import org.spacious_team.broker.pojo.TransactionCashFlow;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Inserts transactions and transaction cash flows by JDBC batches, rows which are already exist in DB are skipped.
+ * Should be called in transaction.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TransactionBatchRepository {
+    private static final String H2_TRANSACTION_INSERT = """
+            MERGE INTO `transaction` t
+            USING (VALUES (?, ?, ?, ?, ?)) AS s(`trade_id`, `portfolio`, `security`, `timestamp`, `count`)
+                ON t.`trade_id` = s.`trade_id` AND t.`portfolio` = s.`portfolio`
+            WHEN NOT MATCHED THEN
+                INSERT (`trade_id`, `portfolio`, `security`, `timestamp`, `count`)
+                VALUES (s.`trade_id`, s.`portfolio`, s.`security`, s.`timestamp`, s.`count`)
+            """;
+    private static final String MARIADB_TRANSACTION_INSERT = """
+            INSERT INTO `transaction` (`trade_id`, `portfolio`, `security`, `timestamp`, `count`)
+            VALUES (?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE `id` = `id`
+            """;
+    private static final String H2_CASH_FLOW_INSERT = """
+            MERGE INTO `transaction_cash_flow` t
+            USING (VALUES (?, ?, ?, ?)) AS s(`transaction_id`, `type`, `value`, `currency`)
+                ON t.`transaction_id` = s.`transaction_id` AND t.`type` = s.`type`
+            WHEN NOT MATCHED THEN
+                INSERT (`transaction_id`, `type`, `value`, `currency`)
+                VALUES (s.`transaction_id`, s.`type`, s.`value`, s.`currency`)
+            """;
+    private static final String MARIADB_CASH_FLOW_INSERT = """
+            INSERT INTO `transaction_cash_flow` (`transaction_id`, `type`, `value`, `currency`)
+            VALUES (?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE `id` = `id`
+            """;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final DataVersion dataVersion;
+    private volatile Boolean isH2;
+
+    /**
+     * Inserts transactions without ID, existing transactions (by trade ID and portfolio) are skipped.
+     * Batch update counts are not used to find out inserted rows, because MariaDB driver returns found rows count
+     * for existing rows. Concurrent insert of the same transaction is not expected, reports of a portfolio
+     * are imported one by one.
+     *
+     * @return inserted transactions, without ID
+     */
+    public List<Transaction> insertIfAbsent(List<Transaction> transactions) {
+        Set<TradeKey> existingTransactions = new HashSet<>(getIds(transactions).keySet());
+        List<Transaction> insertedTransactions = transactions.stream()
+                .filter(transaction -> existingTransactions.add(TradeKey.of(transaction))) // also skips batch duplicates
+                .toList();
+        if (insertedTransactions.isEmpty()) {
+            return insertedTransactions;
+        }
+        dataVersion.increment();
+        jdbcTemplate.batchUpdate(isH2() ? H2_TRANSACTION_INSERT : MARIADB_TRANSACTION_INSERT,
+                insertedTransactions,
+                insertedTransactions.size(),
+                (ps, transaction) -> {
+                    ps.setString(1, transaction.getTradeId());
+                    ps.setString(2, transaction.getPortfolio());
+                    ps.setInt(3, transaction.getSecurity());
+                    ps.setTimestamp(4, Timestamp.from(transaction.getTimestamp()));
+                    ps.setInt(5, transaction.getCount());
+                });
+        return insertedTransactions;
+    }
+
+    /**
+     * @return transaction IDs by portfolio and trade ID, for both inserted and previously existing transactions
+     */
+    public Map<TradeKey, Integer> getIds(Collection<Transaction> transactions) {
+        Map<String, Collection<String>> tradeIdsByPortfolio = transactions.stream()
+                .collect(groupingBy(Transaction::getPortfolio, mapping(Transaction::getTradeId, toSet())));
+        Map<TradeKey, Integer> ids = new HashMap<>();
+        tradeIdsByPortfolio.forEach((portfolio, tradeIds) -> namedParameterJdbcTemplate.query("""
+                        SELECT `id`, `trade_id` FROM `transaction`
+                        WHERE `portfolio` = :portfolio AND `trade_id` IN (:tradeIds)
+                        """,
+                Map.of("portfolio", portfolio, "tradeIds", tradeIds),
+                rs -> {
+                    ids.put(new TradeKey(portfolio, rs.getString("trade_id")), rs.getInt("id"));
+                }));
+        return ids;
+    }
+
+    /**
+     * Inserts cash flows without ID, existing cash flows (by transaction ID and type) are skipped
+     *
+     * @return inserted cash flows
+     */
+    public List<TransactionCashFlow> insertCashFlowsIfAbsent(List<TransactionCashFlow> cashFlows) {
+        Set<CashFlowKey> existingCashFlows = new HashSet<>(getExistingCashFlows(cashFlows));
+        List<TransactionCashFlow> insertedCashFlows = cashFlows.stream()
+                .filter(cash -> existingCashFlows.add(CashFlowKey.of(cash)))
+                .toList();
+        if (insertedCashFlows.isEmpty()) {
+            return insertedCashFlows;
+        }
+        dataVersion.increment();
+        jdbcTemplate.batchUpdate(isH2() ? H2_CASH_FLOW_INSERT : MARIADB_CASH_FLOW_INSERT,
+                insertedCashFlows,
+                insertedCashFlows.size(),
+                (ps, cash) -> {
+                    ps.setInt(1, cash.getTransactionId());
+                    ps.setInt(2, cash.getEventType().getId());
+                    ps.setBigDecimal(3, cash.getValue());
+                    ps.setString(4, Objects.requireNonNullElse(cash.getCurrency(), "RUR"));
+                });
+        return insertedCashFlows;
+    }
+
+    private Collection<CashFlowKey> getExistingCashFlows(Collection<TransactionCashFlow> cashFlows) {
+        Set<Integer> transactionIds = cashFlows.stream()
+                .map(TransactionCashFlow::getTransactionId)
+                .collect(toSet());
+        if (transactionIds.isEmpty()) {
+            return List.of();
+        }
+        return namedParameterJdbcTemplate.query("""
+                        SELECT `transaction_id`, `type` FROM `transaction_cash_flow`
+                        WHERE `transaction_id` IN (:transactionIds)
+                        """,
+                Map.of("transactionIds", transactionIds),
+                (rs, _) -> new CashFlowKey(rs.getInt("transaction_id"), rs.getInt("type")));
+    }
+
+    private boolean isH2() {
+        Boolean isH2 = this.isH2;
+        if (isH2 == null) {
+            String databaseName = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            this.isH2 = isH2 = "H2".equalsIgnoreCase(databaseName);
+        }
+        return isH2;
+    }
+
+    public record TradeKey(String portfolio, String tradeId) {
+
+        public static TradeKey of(Transaction transaction) {
+            return new TradeKey(transaction.getPortfolio(), transaction.getTradeId());
+        }
+    }
+
+    private record CashFlowKey(int transactionId, int type) {
+
+        static CashFlowKey of(TransactionCashFlow cash) {
+            return new CashFlowKey(cash.getTransactionId(), cash.getEventType().getId());
+        }
+    }
+}
@@ -40,6 +40,11 @@ public interface TransactionCashFlowRepository extends JpaRepository<Transaction
 
     List<TransactionCashFlowEntity> findByTransactionId(int transactionId);
 
+    /**
+     * Returns cash flows of all transactions, used to avoid SELECT per transaction
+     */
+    List<TransactionCashFlowEntity> findByTransactionIdIn(Collection<Integer> transactionIds);
+
     @Query(nativeQuery = true, value = """
             SELECT * FROM transaction_cash_flow
             WHERE transaction_id = :transactionId AND type = :#{#cashFlowType.id}
@@ -54,6 +59,13 @@ public interface TransactionCashFlowRepository extends JpaRepository<Transaction
     List<TransactionCashFlowEntity> findByTransactionIdAndCashFlowTypeIn(int transactionId,
                                                                          Set<Integer> cashFlowTypes);
 
+    @Query(nativeQuery = true, value = """
+            SELECT * FROM transaction_cash_flow
+            WHERE transaction_id IN (:#{#transactionIds}) AND type in (:#{#cashFlowTypes})
+            """)
+    List<TransactionCashFlowEntity> findByTransactionIdInAndCashFlowTypeIn(Collection<Integer> transactionIds,
+                                                                           Set<Integer> cashFlowTypes);
+
     @Query(nativeQuery = true, value = """
             SELECT distinct c.currency
             FROM transaction t JOIN transaction_cash_flow c
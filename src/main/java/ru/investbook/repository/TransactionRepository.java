@@ -20,6 +20,7 @@ package ru.investbook.repository;
 
 import org.spacious_team.broker.pojo.Portfolio;
 import org.spacious_team.broker.pojo.Security;
+import org.spacious_team.broker.pojo.SecurityType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -258,6 +259,11 @@ public interface TransactionRepository extends
             Instant fromDate,
             Instant toDate);
 
+    List<TransactionEntity> findByPortfolioAndSecurityTypeInAndTimestampLessThanOrderByTimestampAsc(
+            String portfolio,
+            Collection<SecurityType> securityTypes,
+            Instant toDate);
+
     /**
      * Return first security transaction
      */
@@ -22,18 +22,15 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.spacious_team.broker.pojo.PortfolioCash;
 import org.spacious_team.broker.pojo.PortfolioPropertyType;
-import org.spacious_team.broker.pojo.SecurityType;
 import org.springframework.stereotype.Service;
 import ru.investbook.converter.PortfolioCashConverter;
-import ru.investbook.converter.SecurityConverter;
 import ru.investbook.entity.PortfolioCashEntity;
 import ru.investbook.entity.PortfolioPropertyEntity;
-import ru.investbook.report.FifoPositionsFilter;
+import ru.investbook.entity.PortfolioValuationEntity;
 import ru.investbook.report.ForeignExchangeRateService;
 import ru.investbook.repository.PortfolioCashRepository;
 import ru.investbook.repository.PortfolioPropertyRepository;
 import ru.investbook.repository.PortfolioRepository;
-import ru.investbook.repository.SecurityRepository;
 import ru.investbook.web.ControllerHelper;
 
 import java.math.BigDecimal;
@@ -43,7 +40,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
@@ -51,20 +47,16 @@ import java.util.TreeMap;
 import static java.lang.System.nanoTime;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
-import static org.spacious_team.broker.pojo.SecurityType.*;
 import static ru.investbook.report.ForeignExchangeRateService.RUB;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AssetsAndCashServiceImpl implements AssetsAndCashService {
-    private final Set<SecurityType> stockBondAndAssetTypes = Set.of(STOCK, BOND, ASSET);
     private final PortfolioPropertyRepository portfolioPropertyRepository;
     private final ForeignExchangeRateService foreignExchangeRateService;
-    private final InvestmentProportionService investmentProportionService;
+    private final PortfolioValuationService portfolioValuationService;
     private final PortfolioRepository portfolioRepository;
-    private final SecurityRepository securityRepository;
-    private final SecurityConverter securityConverter;
     private final PortfolioCashRepository portfolioCashRepository;
     private final PortfolioCashConverter portfolioCashConverter;
 
@@ -130,23 +122,17 @@ public class AssetsAndCashServiceImpl implements AssetsAndCashService {
         }
     }
 
+    /**
+     * @return securities (by quotes or last transaction prices) and cash value by precomputed daily valuation
+     */
     private Optional<BigDecimal> getTotalAssetsByCurrentOrLastTransactionQuoteEstimationInRub(String portfolio) {
         try {
             long t0 = nanoTime();
-            FifoPositionsFilter filter = FifoPositionsFilter.of(portfolio);
-            BigDecimal assetsInRub = securityRepository.findByTypeIn(stockBondAndAssetTypes)
-                    .stream()
-                    .map(securityConverter::fromEntity)
-                    .map(security -> investmentProportionService
-                            .getOpenedPositionsCostByCurrentOrLastTransactionQuoteInRub(security, filter))
-                    .flatMap(Optional::stream)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            assetsInRub = Objects.equals(assetsInRub, BigDecimal.ZERO) ? null : assetsInRub;
+            Optional<BigDecimal> assetsInRub = portfolioValuationService.getLastValuation(portfolio)
+                    .filter(valuation -> valuation.getSecurities().signum() != 0)
+                    .map(PortfolioValuationEntity::getTotal);
             log.debug("Оценена стоимость активов по котировкам за {}", Duration.ofNanos(nanoTime() - t0));
-            return Optional.ofNullable(assetsInRub)
-                    .map(openedPositionCost -> openedPositionCost.add(
-                            getTotalCashInRub(Set.of(portfolio))
-                                    .orElse(BigDecimal.ZERO)));
+            return assetsInRub;
         } catch (Exception e) {
             String message = "Ошибка оценки стоимости активов по котировкам";
             log.error(message, e);
@@ -23,6 +23,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.spacious_team.broker.pojo.Security;
 import org.spacious_team.broker.pojo.SecurityType;
 import org.springframework.stereotype.Service;
+import ru.investbook.InvestbookMetrics;
 import ru.investbook.converter.SecurityConverter;
 import ru.investbook.entity.SecurityDescriptionEntity;
 import ru.investbook.report.FifoPositionsFactory;
@@ -54,6 +55,7 @@ public class InvestmentProportionService {
     private final SecurityDescriptionRepository securityDescriptionRepository;
     private final FifoPositionsFactory fifoPositionsFactory;
     private final SecurityProfitService securityProfitService;
+    private final InvestbookMetrics metrics;
 
     /**
      * Sector name -> value in rub
@@ -65,7 +67,9 @@ public class InvestmentProportionService {
             Map<String, Float> result = getSecurityInvestmentStream(filter)
                     .collect(groupingBy(this::getEconomicSector,
                             mapping(SecurityInvestment::getInvestment, reducing(0f, Float::sum))));
-            log.info("Рассчитаны объемы инвестиций в сектора экономики за {}", Duration.ofNanos(nanoTime() - t0));
+            Duration duration = Duration.ofNanos(nanoTime() - t0);
+            metrics.recordInvestmentProportion("sector", duration);
+            log.info("Рассчитаны объемы инвестиций в сектора экономики за {}", duration);
             return result;
         } catch (Exception e) {
             String message = "Ошибка при расчете объемов инвестиций в сектора экономики";
@@ -83,7 +87,9 @@ public class InvestmentProportionService {
             FifoPositionsFilter filter = FifoPositionsFilter.of(portfolios);
             Map<String, Float> result = getSecurityInvestmentStream(filter)
                     .collect(toMap(this::getSecurityDescription, SecurityInvestment::getInvestment));
-            log.info("Рассчитаны объемы инвестиций в бумаги за {}", Duration.ofNanos(nanoTime() - t0));
+            Duration duration = Duration.ofNanos(nanoTime() - t0);
+            metrics.recordInvestmentProportion("security", duration);
+            log.info("Рассчитаны объемы инвестиций в бумаги за {}", duration);
             return result;
         } catch (Exception e) {
             String message = "Ошибка при расчете объемов инвестиций в бумаги";
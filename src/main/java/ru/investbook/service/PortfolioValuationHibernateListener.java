@@ -0,0 +1,115 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.spacious_team.broker.pojo.CashFlowType;
+import org.springframework.stereotype.Component;
+import ru.investbook.entity.ForeignExchangeRateEntity;
+import ru.investbook.entity.PortfolioCashEntity;
+import ru.investbook.entity.SecurityEventCashFlowEntity;
+import ru.investbook.entity.SecurityQuoteEntity;
+import ru.investbook.entity.TransactionEntity;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Invalidates portfolio valuations on modification of transactions, bond redemptions, cash balances,
+ * quotes and exchange rates. Events are fired before transaction commit, invalidation is applied
+ * after commit by {@link PortfolioValuationService#invalidate(String, LocalDate)}.
+ */
+@Component
+@RequiredArgsConstructor
+class PortfolioValuationHibernateListener
+        implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+    private final EntityManagerFactory entityManagerFactory;
+    private final PortfolioValuationService portfolioValuationService;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        invalidate(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+        invalidate(entity);
+        // entity date may be changed, old date should be invalidated too
+        int timestampIndex = Arrays.asList(event.getPersister().getPropertyNames()).indexOf("timestamp");
+        if (timestampIndex != -1 && event.getOldState() != null &&
+                event.getOldState()[timestampIndex] instanceof Instant oldTimestamp) {
+            String portfolio = switch (entity) {
+                case TransactionEntity e -> e.getPortfolio();
+                case SecurityEventCashFlowEntity e -> e.getPortfolio().getId();
+                case PortfolioCashEntity e -> e.getPortfolio();
+                default -> null;
+            };
+            if (portfolio != null || entity instanceof SecurityQuoteEntity) {
+                portfolioValuationService.invalidate(portfolio, oldTimestamp);
+            }
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        invalidate(event.getEntity());
+    }
+
+    private void invalidate(Object entity) {
+        switch (entity) {
+            case TransactionEntity e -> portfolioValuationService.invalidate(e.getPortfolio(), e.getTimestamp());
+            case SecurityEventCashFlowEntity e when e.getCashFlowType().getId() == CashFlowType.REDEMPTION.getId() ->
+                    portfolioValuationService.invalidate(e.getPortfolio().getId(), e.getTimestamp());
+            case PortfolioCashEntity e -> portfolioValuationService.invalidate(e.getPortfolio(), e.getTimestamp());
+            case SecurityQuoteEntity e -> portfolioValuationService.invalidate((String) null, e.getTimestamp());
+            case ForeignExchangeRateEntity e -> portfolioValuationService.invalidate(null, e.getPk().getDate());
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+}
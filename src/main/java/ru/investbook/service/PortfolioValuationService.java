@@ -0,0 +1,442 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.spacious_team.broker.pojo.CashFlowType;
+import org.spacious_team.broker.pojo.SecurityQuote;
+import org.spacious_team.broker.pojo.SecurityType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.investbook.InvestbookProperties;
+import ru.investbook.converter.SecurityQuoteConverter;
+import ru.investbook.entity.PortfolioCashEntity;
+import ru.investbook.entity.PortfolioValuationEntity;
+import ru.investbook.entity.SecurityEventCashFlowEntity;
+import ru.investbook.entity.SecurityQuoteEntity;
+import ru.investbook.entity.TransactionCashFlowEntity;
+import ru.investbook.entity.TransactionEntity;
+import ru.investbook.report.ForeignExchangeRateService;
+import ru.investbook.repository.DataVersion;
+import ru.investbook.repository.PortfolioCashRepository;
+import ru.investbook.repository.PortfolioValuationRepository;
+import ru.investbook.repository.SecurityEventCashFlowRepository;
+import ru.investbook.repository.SecurityQuoteRepository;
+import ru.investbook.repository.TransactionCashFlowRepository;
+import ru.investbook.repository.TransactionRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.lang.System.nanoTime;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+import static org.spacious_team.broker.pojo.SecurityType.*;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.bindResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.getResource;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.unbindResourceIfPossible;
+import static ru.investbook.report.ForeignExchangeRateService.RUB;
+
+/**
+ * Maintains daily portfolio valuation (securities by quotes plus cash) in portfolio_valuation table.
+ * Valuation is computed incrementally from the last computed day. Days starting from a modified transaction,
+ * quote, exchange rate or cash balance date are recomputed (see {@link #invalidate(String, LocalDate)}).
+ * Modifications made while application is stopped are not tracked, so valuations are recomputed from the first
+ * portfolio event once per application run (see {@link InvestbookProperties#isPortfolioValuationRebuildOnStart()})
+ * or after {@link #rebuildAll()} call.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PortfolioValuationService {
+    private static final Set<SecurityType> VALUED_SECURITY_TYPES = Set.of(STOCK, BOND, STOCK_OR_BOND, ASSET);
+    private static final Set<Integer> REDEMPTION_TYPE = Set.of(CashFlowType.REDEMPTION.getId());
+    private static final Set<Integer> PRICE_TYPES = Set.of(CashFlowType.PRICE.getId(), CashFlowType.ACCRUED_INTEREST.getId());
+    private static final int MAX_IN_CLAUSE_SIZE = 1000;
+    private static final String ALL_PORTFOLIOS = "";
+    private final ZoneId zoneId = ZoneId.systemDefault();
+    private final PortfolioValuationRepository portfolioValuationRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionCashFlowRepository transactionCashFlowRepository;
+    private final SecurityEventCashFlowRepository securityEventCashFlowRepository;
+    private final SecurityQuoteRepository securityQuoteRepository;
+    private final SecurityQuoteConverter securityQuoteConverter;
+    private final PortfolioCashRepository portfolioCashRepository;
+    private final ForeignExchangeRateService foreignExchangeRateService;
+    private final DataVersion dataVersion;
+    private final TransactionTemplate transactionTemplate;
+    private final InvestbookProperties properties;
+    // portfolio -> first day to recompute
+    private final Map<String, LocalDate> invalidFrom = new ConcurrentHashMap<>();
+    // portfolio -> data version of last computation
+    private final Map<String, Long> computedVersions = new ConcurrentHashMap<>();
+    // first day to recompute for portfolios which are not computed yet by this application run
+    private final AtomicReference<LocalDate> notComputedPortfoliosInvalidFrom = new AtomicReference<>();
+    // portfolios computed from the first event after full rebuild request
+    private final Set<String> rebuiltPortfolios = ConcurrentHashMap.newKeySet();
+    private volatile boolean isRebuildRequired;
+
+    @PostConstruct
+    void init() {
+        isRebuildRequired = properties.isPortfolioValuationRebuildOnStart();
+    }
+
+    /**
+     * @return last day valuation, updated up to today
+     */
+    public Optional<PortfolioValuationEntity> getLastValuation(String portfolio) {
+        update(portfolio);
+        return portfolioValuationRepository.findFirstByPortfolioOrderByDateDesc(portfolio);
+    }
+
+    /**
+     * @return daily valuations, updated up to today
+     */
+    public List<PortfolioValuationEntity> getValuations(Collection<String> portfolios, LocalDate fromDate, LocalDate toDate) {
+        portfolios.forEach(this::update);
+        return portfolioValuationRepository.findByPortfolioInAndDateBetweenOrderByPortfolioAscDateAsc(portfolios, fromDate, toDate);
+    }
+
+    /**
+     * Marks portfolio valuations starting from the date as outdated. If called in transaction, valuations are marked
+     * after transaction commit, otherwise concurrent computation may not see uncommitted data and save outdated
+     * valuations as actual.
+     *
+     * @param portfolio portfolio or null, if all portfolios are affected (quote or exchange rate is modified)
+     */
+    public void invalidate(String portfolio, LocalDate fromDate) {
+        if (isSynchronizationActive()) {
+            getPendingInvalidations()
+                    .merge(Objects.requireNonNullElse(portfolio, ALL_PORTFOLIOS), fromDate, PortfolioValuationService::min);
+        } else {
+            invalidateNow(portfolio, fromDate);
+        }
+    }
+
+    public void invalidate(String portfolio, Instant from) {
+        invalidate(portfolio, LocalDate.ofInstant(from, zoneId));
+    }
+
+    /**
+     * Recomputes valuations of all portfolios from the first portfolio event on next request.
+     * Should be called if data is modified bypassing application, for example by SQL script.
+     */
+    public void rebuildAll() {
+        rebuiltPortfolios.clear();
+        isRebuildRequired = true;
+    }
+
+    /**
+     * @return portfolio (empty string for all portfolios) -> first day to recompute, applied after transaction commit
+     */
+    private Map<String, LocalDate> getPendingInvalidations() {
+        @SuppressWarnings("unchecked")
+        Map<String, LocalDate> pending = (Map<String, LocalDate>) getResource(this);
+        if (pending == null) {
+            Map<String, LocalDate> newPending = new HashMap<>();
+            bindResource(this, newPending);
+            registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    newPending.forEach((portfolio, fromDate) ->
+                            invalidateNow(portfolio.equals(ALL_PORTFOLIOS) ? null : portfolio, fromDate));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    unbindResourceIfPossible(PortfolioValuationService.this);
+                }
+            });
+            pending = newPending;
+        }
+        return pending;
+    }
+
+    private void invalidateNow(String portfolio, LocalDate fromDate) {
+        if (portfolio == null) {
+            computedVersions.keySet().forEach(p -> invalidFrom.merge(p, fromDate, PortfolioValuationService::min));
+        } else {
+            invalidFrom.merge(portfolio, fromDate, PortfolioValuationService::min);
+        }
+        notComputedPortfoliosInvalidFrom.accumulateAndGet(fromDate, PortfolioValuationService::min);
+    }
+
+    private synchronized void update(String portfolio) {
+        long version = dataVersion.get();
+        Long computedVersion = computedVersions.get(portfolio);
+        LocalDate invalidFrom = this.invalidFrom.remove(portfolio);
+        boolean isFullRebuild = isRebuildRequired && !rebuiltPortfolios.contains(portfolio);
+        if (computedVersion == null) {
+            invalidFrom = min(invalidFrom, notComputedPortfoliosInvalidFrom.get());
+        } else if (invalidFrom == null && computedVersion == version && !isFullRebuild) {
+            return;
+        }
+        try {
+            long t0 = nanoTime();
+            LocalDate today = LocalDate.now(zoneId);
+            LocalDate fromDate = null; // from first portfolio event
+            if (!isFullRebuild) {
+                fromDate = portfolioValuationRepository.findFirstByPortfolioOrderByDateDesc(portfolio)
+                        .map(PortfolioValuationEntity::getDate)
+                        .map(lastDate -> min(lastDate.plusDays(1), today))
+                        .orElse(null);
+            }
+            if (fromDate != null) {
+                fromDate = min(fromDate, invalidFrom);
+            }
+            int days = compute(portfolio, fromDate, today);
+            computedVersions.put(portfolio, version);
+            if (isFullRebuild) {
+                rebuiltPortfolios.add(portfolio);
+            }
+            log.debug("Рассчитана стоимость портфеля {} за {} дней за {}", portfolio, days, Duration.ofNanos(nanoTime() - t0));
+        } catch (Exception e) {
+            if (invalidFrom != null) {
+                this.invalidFrom.merge(portfolio, invalidFrom, PortfolioValuationService::min);
+            }
+            log.error("Ошибка расчета ежедневной стоимости портфеля {}", portfolio, e);
+        }
+    }
+
+    /**
+     * @param fromDate first day to compute or null for computing all days from first portfolio event
+     * @return number of computed days
+     */
+    private int compute(String portfolio, LocalDate fromDate, LocalDate toDate) {
+        boolean isAllDays = (fromDate == null);
+        Instant toInstant = toDate.plusDays(1).atStartOfDay(zoneId).toInstant();
+        List<PositionChange> positionChanges = getPositionChanges(portfolio, toInstant);
+        TreeMap<Instant, List<PortfolioCashEntity>> cashBalances = portfolioCashRepository.findByPortfolioIn(Set.of(portfolio))
+                .stream()
+                .collect(groupingBy(PortfolioCashEntity::getTimestamp, TreeMap::new, toList()));
+        if (isAllDays) {
+            fromDate = getFirstEventDate(positionChanges, cashBalances);
+            if (fromDate == null) {
+                transactionTemplate.executeWithoutResult(_ -> portfolioValuationRepository.deleteByPortfolio(portfolio));
+                return 0;
+            }
+        }
+        Instant fromInstant = fromDate.atStartOfDay(zoneId).toInstant();
+        Collection<Integer> securityIds = positionChanges.stream()
+                .map(PositionChange::security)
+                .distinct()
+                .toList();
+        Map<Integer, SecurityQuote> lastQuotes = new HashMap<>();
+        List<SecurityQuoteEntity> quotes = List.of();
+        if (!securityIds.isEmpty()) {
+            securityQuoteRepository.findLastBySecurityIdInAndTimestampLessThan(securityIds, fromInstant)
+                    .forEach(quote -> lastQuotes.put(quote.getSecurity().getId(), securityQuoteConverter.fromEntity(quote)));
+            quotes = securityQuoteRepository
+                    .findBySecurityIdInAndTimestampBetweenOrderByTimestampAsc(securityIds, fromInstant, toInstant);
+        }
+        Map<Integer, List<UnitPrice>> tradePrices = getTradePrices(positionChanges, fromInstant);
+
+        List<PortfolioValuationEntity> valuations = new ArrayList<>();
+        Map<Integer, Integer> positions = new HashMap<>();
+        Map<Integer, List<UnitPrice>> lastTradePrices = new HashMap<>();
+        int positionChangeIdx = 0, quoteIdx = 0;
+        for (LocalDate day = fromDate; !day.isAfter(toDate); day = day.plusDays(1)) {
+            Instant dayEnd = day.plusDays(1).atStartOfDay(zoneId).toInstant();
+            for (; positionChangeIdx < positionChanges.size(); positionChangeIdx++) {
+                PositionChange change = positionChanges.get(positionChangeIdx);
+                if (!change.timestamp().isBefore(dayEnd)) {
+                    break;
+                }
+                positions.merge(change.security(), change.count(), Integer::sum);
+                Optional.ofNullable(change.transactionId())
+                        .map(tradePrices::get)
+                        .ifPresent(price -> lastTradePrices.put(change.security(), price));
+            }
+            for (; quoteIdx < quotes.size() && quotes.get(quoteIdx).getTimestamp().isBefore(dayEnd); quoteIdx++) {
+                SecurityQuote quote = securityQuoteConverter.fromEntity(quotes.get(quoteIdx));
+                lastQuotes.put(quote.getSecurity(), quote);
+            }
+            BigDecimal securitiesValue = BigDecimal.ZERO;
+            for (Map.Entry<Integer, Integer> position : positions.entrySet()) {
+                int count = position.getValue();
+                if (count != 0) {
+                    int security = position.getKey();
+                    BigDecimal price = getPriceInRub(lastQuotes.get(security), lastTradePrices.get(security), day);
+                    securitiesValue = securitiesValue.add(price.multiply(BigDecimal.valueOf(count)));
+                }
+            }
+            BigDecimal cashValue = BigDecimal.ZERO;
+            Map.Entry<Instant, List<PortfolioCashEntity>> cashBalance = cashBalances.lowerEntry(dayEnd);
+            if (cashBalance != null) {
+                for (PortfolioCashEntity cash : cashBalance.getValue()) {
+                    cashValue = cashValue.add(toRub(cash.getValue(), cash.getCurrency(), day));
+                }
+            }
+            PortfolioValuationEntity valuation = new PortfolioValuationEntity();
+            valuation.setPortfolio(portfolio);
+            valuation.setDate(day);
+            valuation.setSecurities(securitiesValue);
+            valuation.setCash(cashValue);
+            valuation.setTotal(securitiesValue.add(cashValue));
+            valuations.add(valuation);
+        }
+        LocalDate deleteFromDate = fromDate;
+        transactionTemplate.executeWithoutResult(_ -> {
+            if (isAllDays) {
+                portfolioValuationRepository.deleteByPortfolio(portfolio); // first event may be moved later
+            } else {
+                portfolioValuationRepository.deleteByPortfolioAndDateGreaterThanEqual(portfolio, deleteFromDate);
+            }
+            portfolioValuationRepository.saveAll(valuations);
+        });
+        return valuations.size();
+    }
+
+    /**
+     * @return transactions and bond redemptions ordered by timestamp
+     */
+    private List<PositionChange> getPositionChanges(String portfolio, Instant toInstant) {
+        List<PositionChange> positionChanges = new ArrayList<>();
+        for (TransactionEntity t : transactionRepository
+                .findByPortfolioAndSecurityTypeInAndTimestampLessThanOrderByTimestampAsc(
+                        portfolio, VALUED_SECURITY_TYPES, toInstant)) {
+            positionChanges.add(new PositionChange(t.getTimestamp(), t.getSecurity().getId(), t.getCount(), t.getId()));
+        }
+        for (SecurityEventCashFlowEntity redemption : securityEventCashFlowRepository
+                .findByPortfolioIdAndCashFlowTypeIdInAndTimestampBetweenOrderByTimestampDesc(
+                        portfolio, REDEMPTION_TYPE, Instant.EPOCH, toInstant)) {
+            positionChanges.add(new PositionChange(
+                    redemption.getTimestamp(), redemption.getSecurity().getId(), -redemption.getCount(), null));
+        }
+        positionChanges.sort(Comparator.comparing(PositionChange::timestamp)); // stable sort
+        return positionChanges;
+    }
+
+    private static LocalDate getFirstEventDate(List<PositionChange> positionChanges,
+                                               TreeMap<Instant, List<PortfolioCashEntity>> cashBalances) {
+        Instant first = positionChanges.isEmpty() ? null : positionChanges.getFirst().timestamp();
+        if (!cashBalances.isEmpty() && (first == null || cashBalances.firstKey().isBefore(first))) {
+            first = cashBalances.firstKey();
+        }
+        return (first == null) ? null : LocalDate.ofInstant(first, ZoneId.systemDefault());
+    }
+
+    /**
+     * Loads trade prices of transactions, which may be used as price estimation on or after from date:
+     * last transaction of each security before from date and all later transactions.
+     *
+     * @return transaction ID -> price and accrued interest of one security
+     */
+    private Map<Integer, List<UnitPrice>> getTradePrices(List<PositionChange> positionChanges, Instant fromInstant) {
+        Map<Integer, Integer> lastTransactionsBefore = new HashMap<>(); // security -> transaction ID
+        Map<Integer, Integer> transactionCounts = new HashMap<>(); // transaction ID -> count
+        List<Integer> transactionIds = new ArrayList<>();
+        for (PositionChange change : positionChanges) {
+            if (change.transactionId() == null || change.count() == 0) {
+                continue;
+            }
+            transactionCounts.put(change.transactionId(), Math.abs(change.count()));
+            if (change.timestamp().isBefore(fromInstant)) {
+                lastTransactionsBefore.put(change.security(), change.transactionId());
+            } else {
+                transactionIds.add(change.transactionId());
+            }
+        }
+        transactionIds.addAll(lastTransactionsBefore.values());
+        Map<Integer, List<UnitPrice>> tradePrices = new HashMap<>();
+        for (int i = 0; i < transactionIds.size(); i += MAX_IN_CLAUSE_SIZE) {
+            List<Integer> ids = transactionIds.subList(i, Math.min(i + MAX_IN_CLAUSE_SIZE, transactionIds.size()));
+            for (TransactionCashFlowEntity cash : transactionCashFlowRepository.findByTransactionIdInAndCashFlowTypeIn(ids, PRICE_TYPES)) {
+                BigDecimal count = BigDecimal.valueOf(transactionCounts.get(cash.getTransactionId()));
+                tradePrices.computeIfAbsent(cash.getTransactionId(), _ -> new ArrayList<>())
+                        .add(new UnitPrice(cash.getValue().abs().divide(count, 6, RoundingMode.HALF_UP), cash.getCurrency()));
+            }
+        }
+        return tradePrices;
+    }
+
+    /**
+     * @return price (with accrued interest) by quote or, if quote is unknown, by last transaction
+     */
+    private BigDecimal getPriceInRub(SecurityQuote quote, List<UnitPrice> lastTradePrice, LocalDate day) {
+        BigDecimal price = (quote == null) ? null : quote.getDirtyPriceInCurrency(false);
+        if (price != null) {
+            String currency = Optional.ofNullable(quote.getCurrency())
+                    .or(() -> Optional.ofNullable(lastTradePrice)
+                            .filter(prices -> !prices.isEmpty())
+                            .map(prices -> prices.getFirst().currency()))
+                    .orElse(RUB);
+            return toRub(price, currency, day);
+        } else if (lastTradePrice != null) {
+            BigDecimal tradePrice = BigDecimal.ZERO;
+            for (UnitPrice unitPrice : lastTradePrice) {
+                tradePrice = tradePrice.add(toRub(unitPrice.value(), unitPrice.currency(), day));
+            }
+            return tradePrice;
+        }
+        return BigDecimal.ZERO;
+    }
+
+    private BigDecimal toRub(BigDecimal value, String currency, LocalDate day) {
+        if (currency == null || currency.equalsIgnoreCase(RUB) || currency.equalsIgnoreCase("RUR")) {
+            return value;
+        }
+        try {
+            return value.multiply(foreignExchangeRateService.getExchangeRateToRub(currency, day));
+        } catch (NoSuchElementException e) {
+            return value.multiply(foreignExchangeRateService.getExchangeRateToRub(currency));
+        }
+    }
+
+    private static LocalDate min(LocalDate date1, LocalDate date2) {
+        if (date1 == null) {
+            return date2;
+        } else if (date2 == null) {
+            return date1;
+        }
+        return date1.isBefore(date2) ? date1 : date2;
+    }
+
+    /**
+     * @param count         positive for buy, negative for sell or redemption
+     * @param transactionId null for bond redemption
+     */
+    private record PositionChange(Instant timestamp, int security, int count, Integer transactionId) {
+    }
+
+    private record UnitPrice(BigDecimal value, String currency) {
+    }
+}
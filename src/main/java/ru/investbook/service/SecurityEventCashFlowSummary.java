@@ -0,0 +1,57 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.service;
+
+import org.spacious_team.broker.pojo.CashFlowType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Суммы выплат по ценной бумаге в разрезе типов выплат, пересчитанные в одну валюту
+ */
+public class SecurityEventCashFlowSummary {
+    public static final SecurityEventCashFlowSummary EMPTY = new SecurityEventCashFlowSummary();
+    private final Map<CashFlowType, BigDecimal> sums = new EnumMap<>(CashFlowType.class);
+    private Instant lastEventTimestamp;
+
+    void add(CashFlowType type, BigDecimal value) {
+        sums.merge(type, value, BigDecimal::add);
+    }
+
+    void updateLastEventTimestamp(Instant timestamp) {
+        if (lastEventTimestamp == null || timestamp.isAfter(lastEventTimestamp)) {
+            lastEventTimestamp = timestamp;
+        }
+    }
+
+    public BigDecimal sum(CashFlowType type) {
+        return sums.getOrDefault(type, BigDecimal.ZERO);
+    }
+
+    /**
+     * @return время последнего события из заданного при агрегации набора
+     */
+    public Optional<Instant> getLastEventTimestamp() {
+        return Optional.ofNullable(lastEventTimestamp);
+    }
+}
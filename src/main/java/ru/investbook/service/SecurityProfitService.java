@@ -23,11 +23,13 @@ import org.spacious_team.broker.pojo.Security;
 import org.spacious_team.broker.pojo.SecurityQuote;
 import org.spacious_team.broker.pojo.Transaction;
 import ru.investbook.report.FifoPositions;
+import ru.investbook.report.ViewFilter;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -39,8 +41,8 @@ public interface SecurityProfitService {
     /**
      * Курсовой доход с купли-продажи (для деривативов - суммарная вариационная маржа)
      */
-    BigDecimal getGrossProfit(
-            Collection<String> portfolios, Security security, FifoPositions positions, String toCurrency);
+    BigDecimal getGrossProfit(Collection<String> portfolios, Security security, FifoPositions positions,
+                              String toCurrency, ViewFilter filter);
 
     /**
      * Разница доходов с продажи и расходов на покупку
@@ -52,13 +54,39 @@ public interface SecurityProfitService {
      */
     BigDecimal getPurchaseAccruedInterest(Security security, FifoPositions positions, String toCurrency);
 
+    /**
+     * Same as {@link #getTotal(Deque, CashFlowType, String)}, but cash flows are shared with other calculations
+     * for the same positions
+     */
+    BigDecimal getTotal(FifoPositions positions, CashFlowType type, String toCurrency);
+
     BigDecimal getTotal(Deque<Transaction> transactions, CashFlowType type, String toCurrency);
 
-    BigDecimal sumPaymentsForType(
-            Collection<String> portfolios, Security security, CashFlowType cashFlowType, String toCurrency);
+    /**
+     * Суммирует выплаты за период отчета
+     */
+    BigDecimal sumPaymentsForType(Collection<String> portfolios, Security security, CashFlowType cashFlowType,
+                                  String toCurrency, ViewFilter filter);
+
+    /**
+     * Агрегирует выплаты по всем бумагам одним запросом
+     *
+     * @param lastEventTypes типы выплат, по которым определяется {@link SecurityEventCashFlowSummary#getLastEventTimestamp()}
+     * @return суммы выплат, ключ - идентификатор бумаги
+     */
+    Map<Integer, SecurityEventCashFlowSummary> getSecurityEventCashFlowSummaries(
+            Collection<String> portfolios, Collection<Integer> securityIds, Set<CashFlowType> cashFlowTypes,
+            Set<Integer> lastEventTypes, String toCurrency, Instant from, Instant to);
 
     SecurityQuote getSecurityQuote(Security security, String toCurrency, Instant to);
 
+    /**
+     * Возвращает последние котировки всех бумаг, выбранные одним запросом (кроме валютных пар)
+     *
+     * @return котировки, ключ - идентификатор бумаги
+     */
+    Map<Integer, SecurityQuote> getSecurityQuotes(Collection<Security> securities, String toCurrency, Instant to);
+
     /**
      * Возвращает котировку по последней сделке
      */
@@ -22,15 +22,18 @@ import lombok.RequiredArgsConstructor;
 import org.spacious_team.broker.pojo.CashFlowType;
 import org.spacious_team.broker.pojo.Security;
 import org.spacious_team.broker.pojo.SecurityQuote;
+import org.spacious_team.broker.pojo.SecurityType;
 import org.spacious_team.broker.pojo.Transaction;
 import org.springframework.stereotype.Service;
 import ru.investbook.converter.SecurityQuoteConverter;
 import ru.investbook.entity.SecurityEventCashFlowEntity;
-import ru.investbook.entity.TransactionEntity;
+import ru.investbook.entity.SecurityQuoteEntity;
 import ru.investbook.report.ClosedPosition;
 import ru.investbook.report.FifoPositions;
 import ru.investbook.report.ForeignExchangeRateService;
 import ru.investbook.report.OpenedPosition;
+import ru.investbook.report.TransactionCashFlowMap;
+import ru.investbook.report.TransactionCashFlowMapFactory;
 import ru.investbook.report.ViewFilter;
 import ru.investbook.repository.SecurityEventCashFlowRepository;
 import ru.investbook.repository.SecurityQuoteRepository;
@@ -42,16 +45,19 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
 import static java.lang.Math.signum;
+import static java.util.stream.Collectors.toMap;
 import static org.spacious_team.broker.pojo.SecurityType.CURRENCY_PAIR;
 import static org.springframework.util.StringUtils.hasLength;
 
@@ -67,6 +73,7 @@ public class SecurityProfitServiceImpl implements SecurityProfitService {
     private final SecurityEventCashFlowRepository securityEventCashFlowRepository;
     private final SecurityQuoteRepository securityQuoteRepository;
     private final SecurityQuoteConverter securityQuoteConverter;
+    private final TransactionCashFlowMapFactory transactionCashFlowMapFactory;
     private final ForeignExchangeRateService foreignExchangeRateService;
 
     @Override
@@ -84,11 +91,12 @@ public class SecurityProfitServiceImpl implements SecurityProfitService {
     }
 
     @Override
-    public BigDecimal getGrossProfit(Collection<String> portfolios, Security security, FifoPositions positions, String toCurrency) {
+    public BigDecimal getGrossProfit(Collection<String> portfolios, Security security, FifoPositions positions,
+                                     String toCurrency, ViewFilter filter) {
         return switch (security.getType()) {
             case STOCK, BOND, STOCK_OR_BOND, ASSET -> getPurchaseCost(security, positions, toCurrency)
                     .add(getPurchaseAccruedInterest(security, positions, toCurrency));
-            case DERIVATIVE -> sumPaymentsForType(portfolios, security, CashFlowType.DERIVATIVE_PROFIT, toCurrency);
+            case DERIVATIVE -> sumPaymentsForType(portfolios, security, CashFlowType.DERIVATIVE_PROFIT, toCurrency, filter);
             case CURRENCY_PAIR -> getPurchaseCost(security, positions, toCurrency);
         };
     }
@@ -97,8 +105,8 @@ public class SecurityProfitServiceImpl implements SecurityProfitService {
     public BigDecimal getPurchaseCost(Security security, FifoPositions positions, String toCurrency) {
         return switch (security.getType()) {
             case STOCK, BOND, STOCK_OR_BOND, ASSET -> getStockOrBondPurchaseCost(positions, toCurrency);
-            case DERIVATIVE -> getTotal(positions.getTransactions(), CashFlowType.DERIVATIVE_PRICE, toCurrency);
-            case CURRENCY_PAIR -> getTotal(positions.getTransactions(), CashFlowType.PRICE, toCurrency);
+            case DERIVATIVE -> getTotal(positions, CashFlowType.DERIVATIVE_PRICE, toCurrency);
+            case CURRENCY_PAIR -> getTotal(positions, CashFlowType.PRICE, toCurrency);
         };
     }
 
@@ -108,17 +116,18 @@ public class SecurityProfitServiceImpl implements SecurityProfitService {
      * в этом случае цены открытия позиции учитываются).
      */
     private BigDecimal getStockOrBondPurchaseCost(FifoPositions positions, String toCurrency) {
+        TransactionCashFlowMap cashFlows = transactionCashFlowMapFactory.get(positions);
         BigDecimal purchaseCost = positions.getOpenedPositions()
                 .stream()
-                .map(openPosition -> getTransactionValue(openPosition.getOpenTransaction(), CashFlowType.PRICE, toCurrency)
+                .map(openPosition -> getTransactionValue(openPosition.getOpenTransaction(), CashFlowType.PRICE, toCurrency, cashFlows)
                         .map(value -> getOpenAmount(value, openPosition)))
                 .flatMap(Optional::stream)
                 .reduce(BigDecimal.ZERO, BigDecimal::add); // если ценная бумага не вводилась на счет, а была куплена (есть цена покупки)
         for (ClosedPosition closedPosition : positions.getClosedPositions()) {
-            BigDecimal openAmount = getTransactionValue(closedPosition.getOpenTransaction(), CashFlowType.PRICE, toCurrency)
+            BigDecimal openAmount = getTransactionValue(closedPosition.getOpenTransaction(), CashFlowType.PRICE, toCurrency, cashFlows)
                     .map(value -> getOpenAmount(value, closedPosition))
                     .orElse(null);
-            BigDecimal closeAmount = getTransactionValue(closedPosition.getCloseTransaction(), CashFlowType.PRICE, toCurrency)
+            BigDecimal closeAmount = getTransactionValue(closedPosition.getCloseTransaction(), CashFlowType.PRICE, toCurrency, cashFlows)
                     .map(value -> getClosedAmount(value, closedPosition))
                     .orElse(null);
             if (openAmount != null && closeAmount != null) {
@@ -129,7 +138,7 @@ public class SecurityProfitServiceImpl implements SecurityProfitService {
                 // Событие погашения не имеет цену закрытия (нет события CashFlowType.PRICE), учитываем цену открытия,
                 // цена закрытия будет учтена ниже из объектов 'SecurityEventCashFlow'
                 purchaseCost = purchaseCost.add(openAmount);
-            } else if (openAmount != null && isStockSplit(closedPosition.getCloseTransaction())) {
+            } else if (openAmount != null && isStockSplit(closedPosition.getCloseTransaction(), positions, cashFlows)) {
                 // Сплит акций, акции не выводятся, нужно учитывать цену покупки
                 purchaseCost = purchaseCost.add(openAmount);
             }
@@ -141,18 +150,20 @@ public class SecurityProfitServiceImpl implements SecurityProfitService {
                 .reduce(purchaseCost, BigDecimal::add);
     }
 
-    private boolean isStockSplit(Transaction transaction) {
-        if (!transactionCashFlowRepository.isDepositOrWithdrawal(transaction.getId())) {
+    /**
+     * Searches opposite deposit or withdrawal of the same security in the same portfolio during the transaction day
+     * among positions transactions
+     */
+    private boolean isStockSplit(Transaction transaction, FifoPositions positions, TransactionCashFlowMap cashFlows) {
+        if (transaction.getId() == null || !cashFlows.isDepositOrWithdrawal(transaction.getId())) {
             return false;
         }
         LocalDate transactionDay = LocalDate.ofInstant(transaction.getTimestamp(), zoneId);
-        Collection<TransactionEntity> depositAndWithdrawalDuringTheDay =
-                transactionRepository.findByPortfolioAndSecurityIdAndTimestampBetweenDepositAndWithdrawalTransactions(
-                        transaction.getPortfolio(),
-                        transaction.getSecurity(),
-                        transactionDay.atStartOfDay(zoneId).toInstant(),
-                        transactionDay.atTime(LocalTime.MAX).atZone(zoneId).toInstant());
-        long oppositeDepositOrWithdrawalEventsDuringTheDay = depositAndWithdrawalDuringTheDay.stream()
+        long oppositeDepositOrWithdrawalEventsDuringTheDay = positions.getTransactions()
+                .stream()
+                .filter(t -> t.getId() != null && cashFlows.isDepositOrWithdrawal(t.getId()))
+                .filter(t -> Objects.equals(t.getPortfolio(), transaction.getPortfolio()))
+                .filter(t -> LocalDate.ofInstant(t.getTimestamp(), zoneId).equals(transactionDay))
                 .filter(t -> signum(t.getCount()) != signum(transaction.getCount()))
                 .count();
         return oppositeDepositOrWithdrawalEventsDuringTheDay > 0;
@@ -161,28 +172,36 @@ public class SecurityProfitServiceImpl implements SecurityProfitService {
     @Override
     public BigDecimal getPurchaseAccruedInterest(Security security, FifoPositions positions, String toCurrency) {
         if (security.getType().isBond()) {
-            return getTotal(positions.getTransactions(), CashFlowType.ACCRUED_INTEREST, toCurrency);
+            return getTotal(positions, CashFlowType.ACCRUED_INTEREST, toCurrency);
         }
         return BigDecimal.ZERO;
     }
 
+    @Override
+    public BigDecimal getTotal(FifoPositions positions, CashFlowType type, String toCurrency) {
+        return getTotal(positions.getTransactions(), type, toCurrency, transactionCashFlowMapFactory.get(positions));
+    }
+
     @Override
     public BigDecimal getTotal(Deque<Transaction> transactions, CashFlowType type, String toCurrency) {
+        return getTotal(transactions, type, toCurrency, transactionCashFlowMapFactory.get(transactions));
+    }
+
+    private BigDecimal getTotal(Deque<Transaction> transactions, CashFlowType type, String toCurrency,
+                                TransactionCashFlowMap cashFlows) {
         return transactions.stream()
                 .filter(t -> t.getId() != null && t.getCount() != 0)
-                .map(t -> getTransactionValue(t, type, toCurrency))
+                .map(t -> getTransactionValue(t, type, toCurrency, cashFlows))
                 .filter(Optional::isPresent)
                 .map(Optional::get)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
-    private Optional<BigDecimal> getTransactionValue(Transaction t, CashFlowType type, String toCurrency) {
-        if (t.getId() == null) { // redemption
-            return Optional.empty();
-        }
-        return transactionCashFlowRepository
-                .findByTransactionIdAndCashFlowType(t.getId(), type)
-                .map(entity -> convertToCurrency(entity.getValue(), entity.getCurrency(), toCurrency));
+    private Optional<BigDecimal> getTransactionValue(Transaction t, CashFlowType type, String toCurrency,
+                                                     TransactionCashFlowMap cashFlows) {
+        // redemption has no ID
+        return cashFlows.get(t.getId(), type)
+                .map(cash -> convertToCurrency(cash.getValue(), cash.getCurrency(), toCurrency));
     }
 
     private BigDecimal getOpenAmount(BigDecimal openingValue, OpenedPosition openedPosition) {
@@ -210,8 +229,9 @@ public class SecurityProfitServiceImpl implements SecurityProfitService {
     }
 
     @Override
-    public BigDecimal sumPaymentsForType(Collection<String> portfolios, Security security, CashFlowType cashFlowType, String toCurrency) {
-        return getSecurityEventCashFlowEntities(portfolios, security, cashFlowType)
+    public BigDecimal sumPaymentsForType(Collection<String> portfolios, Security security, CashFlowType cashFlowType,
+                                         String toCurrency, ViewFilter filter) {
+        return getSecurityEventCashFlowEntities(portfolios, security, cashFlowType, filter)
                 .stream()
                 .map(entity -> convertToCurrency(entity.getValue(), entity.getCurrency(), toCurrency))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
@@ -219,21 +239,53 @@ public class SecurityProfitServiceImpl implements SecurityProfitService {
 
     private List<SecurityEventCashFlowEntity> getSecurityEventCashFlowEntities(Collection<String> portfolios,
                                                                                Security security,
-                                                                               CashFlowType cashFlowType) {
+                                                                               CashFlowType cashFlowType,
+                                                                               ViewFilter filter) {
         return portfolios.isEmpty() ?
                 securityEventCashFlowRepository
                         .findBySecurityIdAndCashFlowTypeIdAndTimestampBetweenOrderByTimestampAsc(
                                 security.getId(),
                                 cashFlowType.getId(),
-                                ViewFilter.get().getFromDate(),
-                                ViewFilter.get().getToDate()) :
+                                filter.getFromDate(),
+                                filter.getToDate()) :
                 securityEventCashFlowRepository
                         .findByPortfolioIdInAndSecurityIdAndCashFlowTypeIdAndTimestampBetweenOrderByTimestampAsc(
                                 portfolios,
                                 security.getId(),
                                 cashFlowType.getId(),
-                                ViewFilter.get().getFromDate(),
-                                ViewFilter.get().getToDate());
+                                filter.getFromDate(),
+                                filter.getToDate());
+    }
+
+    @Override
+    public Map<Integer, SecurityEventCashFlowSummary> getSecurityEventCashFlowSummaries(
+            Collection<String> portfolios, Collection<Integer> securityIds, Set<CashFlowType> cashFlowTypes,
+            Set<Integer> lastEventTypes, String toCurrency, Instant from, Instant to) {
+        if (securityIds.isEmpty()) {
+            return Map.of();
+        }
+        Set<Integer> types = new HashSet<>(lastEventTypes);
+        cashFlowTypes.forEach(type -> types.add(type.getId()));
+        List<SecurityEventCashFlowEntity> entities = portfolios.isEmpty() ?
+                securityEventCashFlowRepository
+                        .findBySecurityIdInAndCashFlowTypeIdInAndTimestampBetween(securityIds, types, from, to) :
+                securityEventCashFlowRepository
+                        .findByPortfolioIdInAndSecurityIdInAndCashFlowTypeIdInAndTimestampBetween(
+                                portfolios, securityIds, types, from, to);
+        Map<Integer, SecurityEventCashFlowSummary> summaries = new HashMap<>();
+        for (SecurityEventCashFlowEntity entity : entities) {
+            SecurityEventCashFlowSummary summary = summaries.computeIfAbsent(
+                    entity.getSecurity().getId(), _ -> new SecurityEventCashFlowSummary());
+            int typeId = entity.getCashFlowType().getId();
+            CashFlowType type = CashFlowType.valueOf(typeId);
+            if (cashFlowTypes.contains(type)) {
+                summary.add(type, convertToCurrency(entity.getValue(), entity.getCurrency(), toCurrency));
+            }
+            if (lastEventTypes.contains(typeId)) {
+                summary.updateLastEventTimestamp(entity.getTimestamp());
+            }
+        }
+        return summaries;
     }
 
     @Override
@@ -262,6 +314,30 @@ public class SecurityProfitServiceImpl implements SecurityProfitService {
                 .orElse(null);
     }
 
+    @Override
+    public Map<Integer, SecurityQuote> getSecurityQuotes(Collection<Security> securities, String toCurrency, Instant to) {
+        Map<Integer, SecurityType> securityTypes = securities.stream()
+                .filter(security -> security.getType() != CURRENCY_PAIR)
+                .collect(toMap(Security::getId, Security::getType, (a, _) -> a));
+        if (securityTypes.isEmpty()) {
+            return Map.of();
+        }
+        Map<Integer, SecurityQuote> quotes = new HashMap<>();
+        for (SecurityQuoteEntity entity : securityQuoteRepository
+                .findLastBySecurityIdInAndTimestampLessThan(securityTypes.keySet(), to)) {
+            SecurityQuote quote = securityQuoteConverter.fromEntity(entity);
+            quote = foreignExchangeRateService.convertQuoteToCurrency(
+                    quote, toCurrency, securityTypes.get(quote.getSecurity()));
+            if (!hasLength(quote.getCurrency())) {
+                quote = quote.toBuilder()
+                        .currency(toCurrency) // Не известно точно в какой валюте котируется инструмент,
+                        .build();             // делаем предположение, что в валюте сделки
+            }
+            quotes.put(quote.getSecurity(), quote);
+        }
+        return quotes;
+    }
+
     @Override
     public Optional<BigDecimal> getSecurityQuoteFromLastTransaction(Security security, String toCurrency) {
         return transactionRepository.findFirstBySecurityIdOrderByTimestampDesc(security.getId())
@@ -24,6 +24,7 @@ import org.spacious_team.broker.pojo.SecurityDescription;
 import org.spacious_team.broker.pojo.SecurityType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.investbook.InvestbookMetrics;
 import ru.investbook.converter.SecurityDescriptionConverter;
 import ru.investbook.entity.SecurityEntity;
 import ru.investbook.repository.SecurityDescriptionRepository;
@@ -58,6 +59,7 @@ public class SecuritySectorService {
     private final SecurityDescriptionConverter securityDescriptionConverter;
     private final SmartlabShareSectors smartlabShareSectors;
     private final MoexIssClient moexIssClient;
+    private final InvestbookMetrics metrics;
     private final Set<SecurityType> stockAndBonds = Set.of(STOCK, BOND, STOCK_OR_BOND);
 
     @Transactional
@@ -66,7 +68,9 @@ public class SecuritySectorService {
             long t0 = nanoTime();
             List<SecurityEntity> securities = securityRepository.findAll();
             updateSecuritySectors(securities, forceUpdate);
-            log.info("Справочник секторов экономики обновлен за {}", Duration.ofNanos(nanoTime() - t0));
+            Duration duration = Duration.ofNanos(nanoTime() - t0);
+            metrics.recordExternalUpdate("smartlab", duration);
+            log.info("Справочник секторов экономики обновлен за {}", duration);
         } catch (Exception e) {
             log.error("Ошибка обновления информации о секторах экономики", e);
             throw new RuntimeException("Ошибка обновления информации о секторах экономики", e);
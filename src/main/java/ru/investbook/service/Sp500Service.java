@@ -32,6 +32,7 @@ import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
+import ru.investbook.InvestbookMetrics;
 import ru.investbook.entity.StockMarketIndexEntity;
 import ru.investbook.repository.StockMarketIndexRepository;
 
@@ -56,6 +57,7 @@ public class Sp500Service {
             .toUri();
     private final StockMarketIndexRepository stockMarketIndexRepository;
     private final RestTemplate restTemplate;
+    private final InvestbookMetrics metrics;
 
     @Transactional
     public void update() {
@@ -63,7 +65,9 @@ public class Sp500Service {
             long t0 = System.nanoTime();
             Resource resource = restTemplate.getForObject(uri, Resource.class);
             updateBy(resource);
-            log.info("Индекс S&P 500 обновлен за {}", Duration.ofNanos(System.nanoTime() - t0));
+            Duration duration = Duration.ofNanos(System.nanoTime() - t0);
+            metrics.recordExternalUpdate("sp500", duration);
+            log.info("Индекс S&P 500 обновлен за {}", duration);
         } catch (Exception e) {
             throw new RuntimeException("Не смог обновить значения индекса S&P 500", e);
         }
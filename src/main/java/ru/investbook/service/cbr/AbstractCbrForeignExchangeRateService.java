@@ -22,7 +22,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.spacious_team.broker.pojo.ForeignExchangeRate;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
+import ru.investbook.InvestbookExecutors;
+import ru.investbook.InvestbookMetrics;
 import ru.investbook.converter.ForeignExchangeRateConverter;
 import ru.investbook.entity.ForeignExchangeRateEntity;
 import ru.investbook.report.ForeignExchangeRateService;
@@ -30,8 +33,11 @@ import ru.investbook.repository.ForeignExchangeRateRepository;
 
 import java.time.Duration;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @RequiredArgsConstructor
 @Slf4j
@@ -44,19 +50,31 @@ public abstract class AbstractCbrForeignExchangeRateService implements CbrForeig
             "CHF", "R01775");
     private final ForeignExchangeRateRepository foreignExchangeRateRepository;
     private final ForeignExchangeRateConverter foreignExchangeRateConverter;
+    private final ForeignExchangeRateService foreignExchangeRateService;
+    @Autowired
+    private InvestbookExecutors executors;
+    @Autowired
+    private InvestbookMetrics metrics;
 
     @Override
     @Transactional
     @SneakyThrows
     public void updateFrom(LocalDate fromDate) {
         long t0 = System.nanoTime();
-        try (ForkJoinPool pool = new ForkJoinPool(currencyParamValues.size())) {
-            pool.submit(() -> currencyParamValues.entrySet()
-                            .parallelStream()
-                            .forEach(e -> updateCurrencyRate(fromDate, e)))
-                    .get();
+        try {
+            List<Callable<Object>> tasks = currencyParamValues.entrySet()
+                    .stream()
+                    .map(e -> Executors.callable(() -> updateCurrencyRate(fromDate, e)))
+                    .toList();
+            for (Future<?> future : executors.getIoExecutor().invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            foreignExchangeRateService.invalidateCache();
         }
-        log.info("Курсы валют обновлены за {}", Duration.ofNanos(System.nanoTime() - t0));
+        Duration duration = Duration.ofNanos(System.nanoTime() - t0);
+        metrics.recordExternalUpdate("cbr", duration);
+        log.info("Курсы валют обновлены за {}", duration);
     }
 
     private void updateCurrencyRate(LocalDate fromDate, Map.Entry<String, String> e) {
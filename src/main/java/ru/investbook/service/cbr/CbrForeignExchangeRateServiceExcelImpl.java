@@ -32,6 +32,7 @@ import org.spacious_team.table_wrapper.excel.ExcelSheet;
 import org.springframework.core.io.Resource;
 import org.springframework.web.client.RestTemplate;
 import ru.investbook.converter.ForeignExchangeRateConverter;
+import ru.investbook.report.ForeignExchangeRateService;
 import ru.investbook.repository.ForeignExchangeRateRepository;
 
 import java.io.IOException;
@@ -52,8 +53,9 @@ public class CbrForeignExchangeRateServiceExcelImpl extends AbstractCbrForeignEx
 
     public CbrForeignExchangeRateServiceExcelImpl(ForeignExchangeRateRepository foreignExchangeRateRepository,
                                                   ForeignExchangeRateConverter foreignExchangeRateConverter,
+                                                  ForeignExchangeRateService foreignExchangeRateService,
                                                   RestTemplate restTemplate) {
-        super(foreignExchangeRateRepository, foreignExchangeRateConverter);
+        super(foreignExchangeRateRepository, foreignExchangeRateConverter, foreignExchangeRateService);
         this.restTemplate = restTemplate;
     }
 
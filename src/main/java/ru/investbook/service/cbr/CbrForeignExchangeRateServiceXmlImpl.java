@@ -26,6 +26,7 @@ import org.spacious_team.broker.pojo.ForeignExchangeRate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.UriComponentsBuilder;
 import ru.investbook.converter.ForeignExchangeRateConverter;
+import ru.investbook.report.ForeignExchangeRateService;
 import ru.investbook.repository.ForeignExchangeRateRepository;
 
 import java.io.IOException;
@@ -48,8 +49,9 @@ public class CbrForeignExchangeRateServiceXmlImpl extends AbstractCbrForeignExch
     private final DateTimeFormatter resultDateFormatter = DateTimeFormatter.ofPattern("dd.MM.yyyy");
 
     public CbrForeignExchangeRateServiceXmlImpl(ForeignExchangeRateRepository foreignExchangeRateRepository,
-                                                ForeignExchangeRateConverter foreignExchangeRateConverter) {
-        super(foreignExchangeRateRepository, foreignExchangeRateConverter);
+                                                ForeignExchangeRateConverter foreignExchangeRateConverter,
+                                                ForeignExchangeRateService foreignExchangeRateService) {
+        super(foreignExchangeRateRepository, foreignExchangeRateConverter, foreignExchangeRateService);
     }
 
     @Override
@@ -0,0 +1,157 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.service.moex;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.spacious_team.broker.pojo.SecurityQuote;
+import org.spacious_team.broker.pojo.SecurityType;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Component;
+import ru.investbook.InvestbookProperties;
+import ru.investbook.entity.MoexMarketCacheEntity;
+import ru.investbook.entity.MoexSecidCacheEntity;
+import ru.investbook.entity.MoexSecidCacheEntityPk;
+import ru.investbook.repository.MoexMarketCacheRepository;
+import ru.investbook.repository.MoexSecidCacheRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Saves to DB results of MOEX secid and primary board requests, including not found results.
+ * Saved results expire after {@link InvestbookProperties#getMoexResolutionCacheTtl()},
+ * not found results - after {@link InvestbookProperties#getMoexResolutionNegativeCacheTtl()}.
+ * Failed requests are not saved.
+ */
+@Primary
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class CachingMoexIssClient implements MoexIssClient {
+    private static final int MAX_QUERY_LENGTH = 128;
+
+    private final MoexIssClientImpl moexClient;
+    private final MoexSecidCacheRepository secidCacheRepository;
+    private final MoexMarketCacheRepository marketCacheRepository;
+    private final InvestbookProperties properties;
+
+    @Override
+    public Optional<String> getSecId(String isinOrContractName, SecurityType securityType) {
+        if (isinOrContractName.length() > MAX_QUERY_LENGTH) {
+            return moexClient.getSecId(isinOrContractName, securityType);
+        }
+        MoexSecidCacheEntityPk pk = new MoexSecidCacheEntityPk();
+        pk.setQuery(isinOrContractName);
+        pk.setSecurityType(String.valueOf(securityType));
+        Optional<MoexSecidCacheEntity> cached = secidCacheRepository.findById(pk)
+                .filter(entity -> isNotExpired(entity.getResolvedAt(), entity.getSecid() != null));
+        if (cached.isPresent()) {
+            return cached.map(MoexSecidCacheEntity::getSecid);
+        }
+        Optional<String> secid = moexClient.getSecId(isinOrContractName, securityType);
+        MoexSecidCacheEntity entity = new MoexSecidCacheEntity();
+        entity.setPk(pk);
+        entity.setSecid(secid.orElse(null));
+        entity.setResolvedAt(Instant.now());
+        save(secidCacheRepository, entity);
+        return secid;
+    }
+
+    @Override
+    public Optional<String> getIsin(String secId) {
+        return moexClient.getIsin(secId);
+    }
+
+    @Override
+    public Optional<MoexMarketDescription> getMarket(String moexSecId) {
+        Optional<MoexMarketCacheEntity> cached = marketCacheRepository.findById(moexSecId)
+                .filter(entity -> isNotExpired(entity.getResolvedAt(), entity.getBoard() != null));
+        if (cached.isPresent()) {
+            return cached.filter(entity -> entity.getBoard() != null)
+                    .map(entity -> new MoexMarketDescription(
+                            entity.getEngine(), entity.getMarket(), entity.getBoard(), entity.getCurrency()));
+        }
+        Optional<MoexMarketDescription> market = moexClient.getMarket(moexSecId);
+        MoexMarketCacheEntity entity = new MoexMarketCacheEntity();
+        entity.setSecid(moexSecId);
+        market.ifPresent(m -> {
+            entity.setEngine(m.getEngine());
+            entity.setMarket(m.getMarket());
+            entity.setBoard(m.getBoard());
+            entity.setCurrency(m.getCurrency());
+        });
+        entity.setResolvedAt(Instant.now());
+        save(marketCacheRepository, entity);
+        return market;
+    }
+
+    @Override
+    public Optional<SecurityQuote> getQuote(String moexSecId, MoexMarketDescription market) {
+        return moexClient.getQuote(moexSecId, market);
+    }
+
+    @Override
+    public Map<String, SecurityQuote> getQuotes(Collection<String> moexSecIds, MoexMarketDescription market) {
+        return moexClient.getQuotes(moexSecIds, market);
+    }
+
+    @Override
+    public boolean isDerivativeAndExpired(String shortnameOrSecid, SecurityType securityType) {
+        return moexClient.isDerivativeAndExpired(shortnameOrSecid, securityType);
+    }
+
+    @Override
+    public Optional<String> getOptionUnderlingFutures(String contract) {
+        return moexClient.getOptionUnderlingFutures(contract);
+    }
+
+    @Override
+    public Optional<String> getOptionShortname(String contract) {
+        return moexClient.getOptionShortname(contract);
+    }
+
+    /**
+     * Removes saved MOEX secids and boards
+     */
+    public void purge() {
+        secidCacheRepository.deleteAllInBatch();
+        marketCacheRepository.deleteAllInBatch();
+        log.info("Сохраненные коды и режимы торгов инструментов МосБиржи удалены");
+    }
+
+    private boolean isNotExpired(Instant resolvedAt, boolean isFound) {
+        Duration ttl = isFound ?
+                properties.getMoexResolutionCacheTtl() :
+                properties.getMoexResolutionNegativeCacheTtl();
+        return resolvedAt.plus(ttl).isAfter(Instant.now());
+    }
+
+    private static <T> void save(JpaRepository<T, ?> repository, T entity) {
+        try {
+            repository.save(entity);
+        } catch (Exception e) {
+            log.debug("Не удалось сохранить ответ МосБиржи {}", entity, e); // may be saved concurrently
+        }
+    }
+}
@@ -21,6 +21,8 @@ package ru.investbook.service.moex;
 import org.spacious_team.broker.pojo.SecurityQuote;
 import org.spacious_team.broker.pojo.SecurityType;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 public interface MoexIssClient {
@@ -33,6 +35,14 @@ public interface MoexIssClient {
 
     Optional<SecurityQuote> getQuote(String moexSecId, MoexMarketDescription market);
 
+    /**
+     * Requests quotes of several securities of the same board by one request.
+     * Option quotes are returned without {@link SecurityQuote#getPrice()}, use {@link #getQuote(String, MoexMarketDescription)}.
+     *
+     * @return quotes by moex secid, securities without quote are absent
+     */
+    Map<String, SecurityQuote> getQuotes(Collection<String> moexSecIds, MoexMarketDescription market);
+
     /**
      * May be false negative (return false in case of no quotes on moex iss)
      *
@@ -25,6 +25,7 @@ import org.spacious_team.broker.pojo.SecurityQuote.SecurityQuoteBuilder;
 import org.spacious_team.broker.pojo.SecurityType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
+import ru.investbook.InvestbookProperties;
 
 import java.math.RoundingMode;
 import java.time.LocalDate;
@@ -59,36 +60,47 @@ import static org.spacious_team.broker.pojo.SecurityType.*;
  * http://iss.moex.com/iss/engines/futures/markets/forts/boards/RFUD/securities/SiM1.json?iss.meta=off&iss.only=securities&securities.columns=SECID,PREVDATE,PREVSETTLEPRICE,MINSTEP,STEPPRICE
  * http://iss.moex.com/iss/engines/currency/markets/selt/boards/CETS/securities/USD000UTSTOM.json?iss.meta=off&iss.only=securities&securities.columns=SECID,PREVDATE,PREVPRICE
  *
+ *   or quotes of several securities of the same board by one request
+ *
+ * http://iss.moex.com/iss/engines/stock/markets/shares/boards/TQBR/securities.json?iss.meta=off&iss.only=securities&securities=SBER,GAZP&securities.columns=SECID,PREVDATE,PREVADMITTEDQUOTE
+ *
  *   -> Parse json with quote
  *      Columns description available on page http://iss.moex.com/iss/engines/{engine}/markets/{market}
  *
  * </pre>
+ * ISS server URL is configured by {@link InvestbookProperties#getMoexIssUrl()}.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class MoexIssClientImpl implements MoexIssClient {
 
-    private static final String securitiesUri = "http://iss.moex.com/iss/securities.json?" +
+    private static final String securitiesUri = "/iss/securities.json?" +
             "iss.meta=off&" +
             "securities.columns=secid,shortname,isin&" +
             "start=0&" +
             "limit=10&" +
             "q={query}";
-    private static final String securityBoardsUri = "http://iss.moex.com/iss/securities/{secId}.json?" +
+    private static final String securityBoardsUri = "/iss/securities/{secId}.json?" +
             "iss.only=boards&" +
             "boards.columns=is_primary,engine,market,boardid,currencyid";
-    private static final String securityDescriptionUri = "http://iss.moex.com/iss/securities/{secId}.json?" +
+    private static final String securityDescriptionUri = "/iss/securities/{secId}.json?" +
             "iss.only=description&" +
             "iss.meta=off";
-    private static final String quoteUri = "http://iss.moex.com/iss/engines/{engine}/markets/{market}/boards/{board}/securities/{secId}.json?" +
+    private static final String quoteUri = "/iss/engines/{engine}/markets/{market}/boards/{board}/securities/{secId}.json?" +
+            "iss.meta=off&" +
+            "iss.only=securities&" +
+            "securities.columns=SECID,PREVDATE,PREVADMITTEDQUOTE,PREVSETTLEPRICE,PREVPRICE,ACCRUEDINT,LOTSIZE,LOTVALUE,MINSTEP,STEPPRICE";
+    private static final String boardQuotesUri = "/iss/engines/{engine}/markets/{market}/boards/{board}/securities.json?" +
             "iss.meta=off&" +
             "iss.only=securities&" +
+            "securities={secIds}&" +
             "securities.columns=SECID,PREVDATE,PREVADMITTEDQUOTE,PREVSETTLEPRICE,PREVPRICE,ACCRUEDINT,LOTSIZE,LOTVALUE,MINSTEP,STEPPRICE";
-    private static final String contractDescription = "http://iss.moex.com/iss/securities/{secId}.json?" +
+    private static final String contractDescription = "/iss/securities/{secId}.json?" +
             "iss.meta=off&iss.only=description&description.columns=name,value";
     private final MoexDerivativeCodeService moexDerivativeCodeService;
     private final RestTemplate restTemplate;
+    private final InvestbookProperties properties;
     private int currentYear = getCurrentYear();
     private long fastCoarseDayCounter = getFastCoarseDayCounter();
     private final Map<String, Optional<String>> optionCodeToShortNames = new ConcurrentHashMap<>();
@@ -106,7 +118,7 @@ public class MoexIssClientImpl implements MoexIssClient {
         }
         // Moex couldn't find contract  (shortname=USDRUB_TOM) by USDRUB_TOM, but finds it by USDRUB
         String query = (securityType == CURRENCY_PAIR) ? getCurrencyPair(isinOrContractName) : isinOrContractName;
-        return Optional.ofNullable(restTemplate.getForObject(securitiesUri, Map.class, query))
+        return Optional.ofNullable(restTemplate.getForObject(url(securitiesUri), Map.class, query))
                 .map(MoexJsonResponseParser::convertFromIntObjectMap)
                 .stream()
                 .flatMap(Collection::stream)
@@ -121,7 +133,7 @@ public class MoexIssClientImpl implements MoexIssClient {
 
     @Override
     public Optional<String> getIsin(String secId) {
-        return Optional.ofNullable(restTemplate.getForObject(securityDescriptionUri, Map.class, secId))
+        return Optional.ofNullable(restTemplate.getForObject(url(securityDescriptionUri), Map.class, secId))
                 .map(MoexJsonResponseParser::convertFromIntObjectMap)
                 .stream()
                 .flatMap(Collection::stream)
@@ -134,7 +146,7 @@ public class MoexIssClientImpl implements MoexIssClient {
 
     @Override
     public Optional<MoexMarketDescription> getMarket(String moexSecId) {
-        return Optional.ofNullable(restTemplate.getForObject(securityBoardsUri, Map.class, moexSecId))
+        return Optional.ofNullable(restTemplate.getForObject(url(securityBoardsUri), Map.class, moexSecId))
                 .map(MoexJsonResponseParser::convertFromIntObjectMap)
                 .stream()
                 .flatMap(Collection::stream)
@@ -146,7 +158,7 @@ public class MoexIssClientImpl implements MoexIssClient {
     public Optional<SecurityQuote> getQuote(String moexSecId, MoexMarketDescription market) {
         Map<String, String> variables = new HashMap<>(market.toMap());
         variables.put("secId", moexSecId);
-        Optional<SecurityQuote> quote = Optional.ofNullable(restTemplate.getForObject(quoteUri, Map.class, variables))
+        Optional<SecurityQuote> quote = Optional.ofNullable(restTemplate.getForObject(url(quoteUri), Map.class, variables))
                 .map(MoexJsonResponseParser::convertFromIntObjectMap)
                 .stream()
                 .flatMap(Collection::stream)
@@ -173,6 +185,26 @@ public class MoexIssClientImpl implements MoexIssClient {
         return quote;
     }
 
+    @Override
+    public Map<String, SecurityQuote> getQuotes(Collection<String> moexSecIds, MoexMarketDescription market) {
+        if (moexSecIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> variables = new HashMap<>(market.toMap());
+        variables.put("secIds", String.join(",", moexSecIds));
+        Map<String, SecurityQuote> quotes = new HashMap<>();
+        Optional.ofNullable(restTemplate.getForObject(url(boardQuotesUri), Map.class, variables))
+                .map(MoexJsonResponseParser::convertFromIntObjectMap)
+                .stream()
+                .flatMap(Collection::stream)
+                .filter(row -> row.get("SECID") != null)
+                .forEach(row -> MoexSecurityQuoteHelper.parse(row)
+                        .map(quoteBuilder -> quoteBuilder.currency(market.getCurrency()))
+                        .map(SecurityQuoteBuilder::build)
+                        .ifPresent(quote -> quotes.put(valueOf(row.get("SECID")), quote)));
+        return quotes;
+    }
+
     public boolean isDerivativeAndExpired(String shortnameOrSecid, SecurityType securityType) {
         try {
             if (securityType == DERIVATIVE && shortnameOrSecid != null) {
@@ -205,6 +237,10 @@ public class MoexIssClientImpl implements MoexIssClient {
         return false;
     }
 
+    private String url(String uriTemplate) {
+        return properties.getMoexIssUrl() + uriTemplate;
+    }
+
     private int getCurrentYear() {
         if (fastCoarseDayCounter != getFastCoarseDayCounter()) {
             fastCoarseDayCounter = getFastCoarseDayCounter();
@@ -241,7 +277,7 @@ public class MoexIssClientImpl implements MoexIssClient {
 
     private Optional<String> getContractDescriptionFromMoex(String contract, String key) {
         try {
-            return Optional.ofNullable(restTemplate.getForObject(contractDescription, Map.class, contract))
+            return Optional.ofNullable(restTemplate.getForObject(url(contractDescription), Map.class, contract))
                     .map(MoexJsonResponseParser::convertFromIntObjectMap)
                     .flatMap(response -> response.stream()
                             .filter(record -> Objects.equals(record.get("name"), key))
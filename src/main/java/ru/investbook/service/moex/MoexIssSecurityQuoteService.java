@@ -23,12 +23,30 @@ import lombok.extern.slf4j.Slf4j;
 import org.spacious_team.broker.pojo.SecurityQuote;
 import org.spacious_team.broker.pojo.SecurityType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.investbook.InvestbookExecutors;
 import ru.investbook.converter.SecurityQuoteConverter;
 import ru.investbook.entity.SecurityEntity;
+import ru.investbook.entity.SecurityQuoteEntity;
 import ru.investbook.repository.SecurityQuoteRepository;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static org.spacious_team.broker.pojo.SecurityType.ASSET;
 import static org.spacious_team.broker.pojo.SecurityType.CURRENCY_PAIR;
 import static ru.investbook.repository.RepositoryHelper.isUniqIndexViolationException;
@@ -37,26 +55,22 @@ import static ru.investbook.repository.RepositoryHelper.isUniqIndexViolationExce
 @Slf4j
 @RequiredArgsConstructor
 public class MoexIssSecurityQuoteService {
+    private static final int MAX_SECURITIES_PER_REQUEST = 100;
 
     private final MoexIssClient moexClient;
+    private final MoexDerivativeCodeService moexDerivativeCodeService;
     private final SecurityQuoteConverter securityQuoteConverter;
     private final SecurityQuoteRepository securityQuoteRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final InvestbookExecutors executors;
 
     public void updateQuote(SecurityEntity security) {
         try {
             Integer securityId = security.getId();
-            SecurityType securityType = security.getType();
-            if (securityType == CURRENCY_PAIR) {
-                return; // currency pair quote derived from foreign exchange rate, use CbrForeignExchangeRateService
-            } else if (securityType == ASSET) {
-                return; // moex has no quotes for arbitrary assets
-            } else if (moexClient.isDerivativeAndExpired(security.getTicker(), securityType)) {
+            if (!isQuoteUpdatable(security)) {
                 return;
             }
-            String isinOrContractName = Optional.ofNullable(security.getIsin())
-                    .or(() -> Optional.ofNullable(security.getTicker()))
-                    .orElseThrow();
-            moexClient.getSecId(isinOrContractName, securityType)
+            moexClient.getSecId(getIsinOrContractName(security), security.getType())
                     .flatMap(this::getSecurityQuote)
                     .ifPresentOrElse(
                             quote -> saveQuote(securityId, quote),
@@ -66,11 +80,160 @@ public class MoexIssSecurityQuoteService {
         }
     }
 
+    /**
+     * Requests quotes of securities of the same MOEX board by one request, options are requested one by one.
+     * Security MOEX secid and board are saved to DB by MOEX client. Quotes are saved to DB by one batch.
+     *
+     * @implNote Uses IO executor, should not be called from IO executor thread
+     */
+    public void updateQuotes(Collection<SecurityEntity> securities) throws InterruptedException, ExecutionException {
+        List<SecurityEntity> updatableSecurities = securities.stream()
+                .filter(this::isQuoteUpdatable)
+                .toList();
+        Collection<SecurityBoard> boards = getBoards(updatableSecurities);
+
+        Collection<SecurityQuote> quotes = new ConcurrentLinkedQueue<>();
+        List<Callable<Object>> tasks = new ArrayList<>();
+        Map<MoexMarketDescription, List<SecurityBoard>> securitiesByMarket = boards.stream()
+                .filter(board -> !moexDerivativeCodeService.isOptionCode(board.secid()))
+                .collect(groupingBy(SecurityBoard::market));
+        securitiesByMarket.forEach((market, marketBoards) -> {
+            for (int i = 0; i < marketBoards.size(); i += MAX_SECURITIES_PER_REQUEST) {
+                List<SecurityBoard> chunk =
+                        marketBoards.subList(i, Math.min(i + MAX_SECURITIES_PER_REQUEST, marketBoards.size()));
+                tasks.add(Executors.callable(() -> quotes.addAll(getSecurityQuotes(chunk, market))));
+            }
+        });
+        // option quote price is calculated by underlying futures quote
+        boards.stream()
+                .filter(board -> moexDerivativeCodeService.isOptionCode(board.secid()))
+                .forEach(board -> tasks.add(Executors.callable(() -> getOptionQuote(board).ifPresent(quotes::add))));
+        for (Future<?> future : executors.getIoExecutor().invokeAll(tasks)) {
+            future.get();
+        }
+        saveQuotes(quotes);
+    }
+
+    private boolean isQuoteUpdatable(SecurityEntity security) {
+        SecurityType securityType = security.getType();
+        if (securityType == CURRENCY_PAIR) {
+            return false; // currency pair quote derived from foreign exchange rate, use CbrForeignExchangeRateService
+        } else if (securityType == ASSET) {
+            return false; // moex has no quotes for arbitrary assets
+        }
+        return !moexClient.isDerivativeAndExpired(security.getTicker(), securityType);
+    }
+
+    private static String getIsinOrContractName(SecurityEntity security) {
+        return Optional.ofNullable(security.getIsin())
+                .or(() -> Optional.ofNullable(security.getTicker()))
+                .orElseThrow();
+    }
+
     private Optional<SecurityQuote> getSecurityQuote(String moexSecId) {
         return moexClient.getMarket(moexSecId)
                 .flatMap(market -> moexClient.getQuote(moexSecId, market));
     }
 
+    /**
+     * @return MOEX boards of securities, requested in parallel. MOEX client saves secids and boards to DB
+     * with expiration, so only unknown or expired secids and boards are requested from MOEX
+     */
+    private Collection<SecurityBoard> getBoards(Collection<SecurityEntity> securities)
+            throws InterruptedException, ExecutionException {
+        Collection<SecurityBoard> boards = new ConcurrentLinkedQueue<>();
+        List<Callable<Object>> tasks = securities.stream()
+                .map(security -> Executors.callable(() -> getBoard(security).ifPresent(boards::add)))
+                .toList();
+        for (Future<?> future : executors.getIoExecutor().invokeAll(tasks)) {
+            future.get();
+        }
+        return boards;
+    }
+
+    private Optional<SecurityBoard> getBoard(SecurityEntity security) {
+        try {
+            return moexClient.getSecId(getIsinOrContractName(security), security.getType())
+                    .flatMap(secid -> moexClient.getMarket(secid)
+                            .map(market -> new SecurityBoard(security.getId(), secid, market)));
+        } catch (Exception e) {
+            log.debug("Не удалось определить режим торгов МосБиржи для {}", security, e);
+            return Optional.empty();
+        }
+    }
+
+    private Collection<SecurityQuote> getSecurityQuotes(List<SecurityBoard> boards, MoexMarketDescription market) {
+        try {
+            Map<String, List<Integer>> securitiesBySecid = boards.stream()
+                    .collect(groupingBy(SecurityBoard::secid,
+                            mapping(SecurityBoard::security, toList())));
+            Map<String, SecurityQuote> quotes = moexClient.getQuotes(securitiesBySecid.keySet(), market);
+            Collection<SecurityQuote> result = new ArrayList<>();
+            securitiesBySecid.forEach((secid, securityIds) -> {
+                SecurityQuote quote = quotes.get(secid);
+                if (quote == null) {
+                    log.debug("Котировка не обновлена. На сайте МосБиржи отсутствует котировка {}", securityIds);
+                    return;
+                }
+                securityIds.forEach(securityId -> result.add(quote.toBuilder()
+                        .security(securityId)
+                        .build()));
+            });
+            return result;
+        } catch (Exception e) {
+            log.debug("Котировки не обновлены для режима торгов {}", market, e);
+            return List.of();
+        }
+    }
+
+    private Optional<SecurityQuote> getOptionQuote(SecurityBoard board) {
+        try {
+            return moexClient.getQuote(board.secid(), board.market())
+                    .map(quote -> quote.toBuilder()
+                            .security(board.security())
+                            .build());
+        } catch (Exception e) {
+            log.debug("Котировка не обновлена для {}", board.security(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Saves quotes by one batch, saves one by one if batch failed
+     */
+    private void saveQuotes(Collection<SecurityQuote> quotes) {
+        if (quotes.isEmpty()) {
+            return;
+        }
+        Set<Integer> securityIds = quotes.stream()
+                .map(SecurityQuote::getSecurity)
+                .collect(toSet());
+        Set<Instant> timestamps = quotes.stream()
+                .map(SecurityQuote::getTimestamp)
+                .collect(toSet());
+        Set<QuoteKey> existingQuotes = securityQuoteRepository.findBySecurityIdInAndTimestampIn(securityIds, timestamps)
+                .stream()
+                .map(entity -> new QuoteKey(entity.getSecurity().getId(), entity.getTimestamp()))
+                .collect(toSet());
+        List<SecurityQuote> newQuotes = quotes.stream()
+                .filter(quote -> !existingQuotes.contains(new QuoteKey(quote.getSecurity(), quote.getTimestamp())))
+                .toList();
+        if (newQuotes.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(_ -> {
+                List<SecurityQuoteEntity> entities = newQuotes.stream()
+                        .map(securityQuoteConverter::toEntity)
+                        .toList();
+                securityQuoteRepository.saveAll(entities);
+            });
+        } catch (Exception e) {
+            log.debug("Не удалось сохранить котировки одним пакетом, сохраняю по одной", e);
+            newQuotes.forEach(quote -> saveQuote(quote.getSecurity(), quote));
+        }
+    }
+
     private void saveQuote(Integer securityId, SecurityQuote quote) {
         try {
             quote = quote.toBuilder()
@@ -86,4 +249,10 @@ public class MoexIssSecurityQuoteService {
             }
         }
     }
+
+    private record QuoteKey(Integer security, Instant timestamp) {
+    }
+
+    private record SecurityBoard(Integer security, String secid, MoexMarketDescription market) {
+    }
 }
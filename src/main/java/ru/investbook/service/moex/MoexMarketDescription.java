@@ -21,6 +21,7 @@ package ru.investbook.service.moex;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.ToString;
 
 import java.util.Map;
 
@@ -28,13 +29,14 @@ import static java.lang.String.valueOf;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
 
+@Getter
+@ToString
 @EqualsAndHashCode
 @RequiredArgsConstructor
 class MoexMarketDescription {
     private final String engine;
     private final String market;
     private final String board;
-    @Getter
     private final String currency; // may be null (exactly null for futures, options, currency pairs)
 
     static MoexMarketDescription of(Map<String, Object> description) {
@@ -24,6 +24,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import ru.investbook.InvestbookProperties;
+import ru.investbook.repository.SecurityIdentityIndex;
+import ru.investbook.service.PortfolioValuationService;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -36,6 +38,8 @@ import java.time.Instant;
 public class SqlDataImporter {
     private final InvestbookProperties properties;
     private final JdbcTemplate jdbcTemplate;
+    private final PortfolioValuationService portfolioValuationService;
+    private final SecurityIdentityIndex securityIdentityIndex;
 
     @PostConstruct
     public void init() {
@@ -47,6 +51,8 @@ public class SqlDataImporter {
         if (Files.exists(path)) {
             boolean isSuccess = importSqlData(path);
             if (isSuccess) {
+                portfolioValuationService.rebuildAll();
+                securityIdentityIndex.invalidate();
                 renameExportFile(path);
             }
         }
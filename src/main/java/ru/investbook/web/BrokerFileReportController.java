@@ -28,17 +28,17 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
-import ru.investbook.parser.BrokerReportParserService;
+import ru.investbook.parser.BrokerReportUploadQueue;
+import ru.investbook.parser.BrokerReportUploadQueue.ReportFile;
+import ru.investbook.parser.ReportUploadStatus;
 
-import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
-import static org.springframework.util.StringUtils.hasLength;
 import static ru.investbook.web.ReportControllerHelper.errorPage;
 import static ru.investbook.web.ReportControllerHelper.getBrokerNames;
 
@@ -49,7 +49,7 @@ import static ru.investbook.web.ReportControllerHelper.getBrokerNames;
 public class BrokerFileReportController {
 
     private final List<BrokerReportFactory> brokerReportFactories;
-    private final BrokerReportParserService brokerReportParserService;
+    private final BrokerReportUploadQueue uploadQueue;
 
 
     @GetMapping
@@ -61,33 +61,29 @@ public class BrokerFileReportController {
     @PostMapping
     public ResponseEntity<String> uploadBrokerReports(@RequestParam("reports") MultipartFile[] reports,
                                                       @RequestParam(name = "broker", required = false) String broker) {
-        Collection<Exception> exceptions = new ConcurrentLinkedQueue<>();
-        Arrays.stream(reports)
-                .parallel()
-                .filter(Objects::nonNull)
-                .filter(report -> !report.isEmpty())
-                .forEach(report -> {
-                    uploadReport(report, broker, exceptions);
-                });
-        if (exceptions.isEmpty()) {
+        try {
+            Collection<ReportFile> files = Arrays.stream(reports)
+                    .filter(Objects::nonNull)
+                    .filter(report -> !report.isEmpty())
+                    .map(report -> new ReportFile(report.getOriginalFilename(), report.getSize(), report))
+                    .toList();
+            uploadQueue.submit(files, broker);
             return ok();
-        } else {
-            return errorPage(hasLength(broker) ? "" : "Попробуйте повторить загрузку, указав Брокера", exceptions);
+        } catch (Exception e) {
+            return errorPage("", List.of(e));
         }
     }
 
-    private void uploadReport(MultipartFile report, String broker, Collection<Exception> exceptions) {
-        try (InputStream inputStream = report.getInputStream()) { // creates new input stream
-            brokerReportParserService.parseReport(inputStream, report.getOriginalFilename(), broker);
-        } catch (Exception e) {
-            exceptions.add(e);
-        }
+    @GetMapping("status")
+    @ResponseBody
+    public Collection<ReportUploadStatus> getUploadStatus() {
+        return uploadQueue.getStatuses();
     }
 
     private ResponseEntity<String> ok() {
         return ResponseEntity.ok("""
-                Отчеты загружены <a href="/">[ok]</a>
-                <script type="text/javascript">document.location.href="/"</script>
+                Отчеты поставлены в очередь загрузки <a href="/">[ok]</a>
+                <a href="/broker-file-reports/status">[статус загрузки]</a>
                 """);
     }
-}
\ No newline at end of file
+}
@@ -28,19 +28,20 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import ru.investbook.InvestbookMetrics;
+import ru.investbook.report.ReportSnapshotCache;
 import ru.investbook.report.ViewFilter;
 import ru.investbook.report.excel.ExcelView;
 import ru.investbook.report.html.HtmlView;
 import ru.investbook.repository.PortfolioRepository;
 import ru.investbook.web.model.ViewFilterModel;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import static java.time.ZoneId.systemDefault;
 import static ru.investbook.web.ControllerHelper.getActivePortfolios;
@@ -59,6 +60,8 @@ public class InvestbookReportController {
     private final PortfolioRepository portfolioRepository;
     private final ExcelView excelView;
     private final HtmlView htmlView;
+    private final ReportSnapshotCache reportSnapshotCache;
+    private final InvestbookMetrics metrics;
 
     @GetMapping("select-period")
     public String getPage(Model model, @ModelAttribute("viewFilter") ViewFilterModel viewFilter) {
@@ -84,33 +87,44 @@ public class InvestbookReportController {
 
     private void buildReport(String format, HttpServletResponse response, ViewFilter filter) throws Exception {
         if ("html".equals(format)) {
-            htmlView.create(response.getOutputStream(), filter);
+            long t0 = System.nanoTime();
+            boolean cached = reportSnapshotCache.writeTo(response.getOutputStream(), "html", filter,
+                    out -> htmlView.create(out, filter));
+            metrics.recordReportBuild("html", cached, Duration.ofNanos(System.nanoTime() - t0));
         } else {
             String fileName = getReportName(filter, "xlsx");
-            sendFileOrShowErrorPage(fileName, out -> excelView.create(out, filter), response);
+            sendFileOrShowErrorPage(fileName,
+                    out -> reportSnapshotCache.writeTo(out, "xlsx", filter, o -> excelView.create(o, filter)),
+                    response);
         }
     }
 
+    /**
+     * @param fileWriter writes file to output stream, returns true if file is taken from cache
+     */
     private void sendFileOrShowErrorPage(String fileName,
-                                         Consumer<OutputStream> fileWriter,
+                                         Predicate<OutputStream> fileWriter,
                                          HttpServletResponse response) throws IOException {
         try {
             long t0 = System.nanoTime();
-            sendFile(fileName, fileWriter, response);
-            log.info("Отчет '{}' сформирован за {}", fileName, Duration.ofNanos(System.nanoTime() - t0));
+            boolean cached = sendFile(fileName, fileWriter, response);
+            Duration duration = Duration.ofNanos(System.nanoTime() - t0);
+            metrics.recordReportBuild("xlsx", cached, duration);
+            log.info(cached ? "Отчет '{}' взят из кэша за {}" : "Отчет '{}' сформирован за {}", fileName, duration);
         } catch (Exception e) {
             log.error("Ошибка сборки отчета", e);
-            sendErrorPage(response, e);
+            if (!response.isCommitted()) { // otherwise part of file is already sent, error page can't be shown
+                response.reset();
+                sendErrorPage(response, e);
+            }
         }
         response.flushBuffer();
     }
 
-    private void sendFile(String fileName, Consumer<OutputStream> fileWriter, HttpServletResponse response)
+    private boolean sendFile(String fileName, Predicate<OutputStream> fileWriter, HttpServletResponse response)
             throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        fileWriter.accept(outputStream);
         sendSuccessHeader(response, fileName, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
-        outputStream.writeTo(response.getOutputStream());
+        return fileWriter.test(response.getOutputStream());
     }
 
     private String getReportName(ViewFilter filter, String extention) {
@@ -19,7 +19,7 @@
 package ru.investbook.web.forms.controller;
 
 import jakarta.validation.Valid;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -28,13 +28,12 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
-import ru.investbook.report.FifoPositionsFactory;
 import ru.investbook.repository.PortfolioRepository;
 import ru.investbook.repository.SecurityRepository;
 import ru.investbook.web.ControllerHelper;
-import ru.investbook.web.forms.model.PageableWrapperModel;
 import ru.investbook.web.forms.model.SplitModel;
 import ru.investbook.web.forms.model.TransactionModel;
+import ru.investbook.web.forms.model.WindowWrapperModel;
 import ru.investbook.web.forms.model.filter.TransactionFormFilterModel;
 import ru.investbook.web.forms.service.TransactionFormsService;
 
@@ -43,16 +42,15 @@ import ru.investbook.web.forms.service.TransactionFormsService;
 public class SecurityDepositController extends TransactionController {
 
     public SecurityDepositController(TransactionFormsService transactionFormsService,
-                                     PortfolioRepository portfolioRepository, SecurityRepository securityRepository,
-                                     FifoPositionsFactory fifoPositionsFactory) {
-        super(transactionFormsService, portfolioRepository, securityRepository, fifoPositionsFactory);
+                                     PortfolioRepository portfolioRepository, SecurityRepository securityRepository) {
+        super(transactionFormsService, portfolioRepository, securityRepository);
     }
 
     @GetMapping
     public String get(@ModelAttribute("filter") TransactionFormFilterModel filter, Model model) {
-        Page<TransactionModel> page = transactionFormsService.getSecurityDepositPage(filter);
+        Window<TransactionModel> page = transactionFormsService.getSecurityDepositPage(filter);
         portfolios = ControllerHelper.getPortfolios(portfolioRepository); // update portfolios for filter
-        model.addAttribute("page", new PageableWrapperModel<>(page));
+        model.addAttribute("page", new WindowWrapperModel<>(page, filter.getCursor()));
         model.addAttribute("portfolios", portfolios);
 
         return "security-deposit/table";
@@ -95,7 +93,6 @@ public class SecurityDepositController extends TransactionController {
     public String postSplit(@Valid @ModelAttribute("split") SplitModel splitModel) {
         selectedPortfolio = splitModel.getPortfolio();
         transactionFormsService.save(splitModel);
-        fifoPositionsFactory.invalidateCache();
         return "security-deposit/view-split";
     }
 
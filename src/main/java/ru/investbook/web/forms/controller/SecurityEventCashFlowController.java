@@ -30,7 +30,6 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
-import ru.investbook.report.FifoPositionsFactory;
 import ru.investbook.repository.PortfolioRepository;
 import ru.investbook.repository.SecurityRepository;
 import ru.investbook.web.ControllerHelper;
@@ -48,7 +47,6 @@ public class SecurityEventCashFlowController {
     private final SecurityEventCashFlowFormsService securityEventCashFlowFormsService;
     private final PortfolioRepository portfolioRepository;
     private final SecurityRepository securityRepository;
-    private final FifoPositionsFactory fifoPositionsFactory;
     private volatile Collection<String> securities;
     private volatile Collection<String> portfolios;
     private volatile String selectedPortfolio;
@@ -99,14 +97,12 @@ public class SecurityEventCashFlowController {
     public String postSecurityEventCashFlow(@Valid @ModelAttribute("event") SecurityEventCashFlowModel event) {
         selectedPortfolio = event.getPortfolio();
         securityEventCashFlowFormsService.save(event);
-        fifoPositionsFactory.invalidateCache();
         return "security-events/view-single";
     }
 
     @GetMapping("/delete")
     public String delete(@RequestParam(name = "id") Integer id, Model model) {
         securityEventCashFlowFormsService.delete(id);
-        fifoPositionsFactory.invalidateCache();
         model.addAttribute("message", "Запись удалена");
         model.addAttribute("backLink", "/security-events");
         return "success";
@@ -22,7 +22,7 @@ import jakarta.annotation.PostConstruct;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -31,13 +31,17 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import ru.investbook.InvestbookExecutors;
+import ru.investbook.InvestbookMetrics;
+import ru.investbook.InvestbookProperties;
 import ru.investbook.entity.SecurityQuoteEntity;
 import ru.investbook.repository.SecurityQuoteRepository;
 import ru.investbook.repository.SecurityRepository;
+import ru.investbook.service.moex.CachingMoexIssClient;
 import ru.investbook.service.moex.MoexIssSecurityQuoteService;
 import ru.investbook.web.ControllerHelper;
-import ru.investbook.web.forms.model.PageableWrapperModel;
 import ru.investbook.web.forms.model.SecurityQuoteModel;
+import ru.investbook.web.forms.model.WindowWrapperModel;
 import ru.investbook.web.forms.model.filter.SecurityQuoteFormFilterModel;
 import ru.investbook.web.forms.service.SecurityQuoteFormsService;
 
@@ -45,8 +49,11 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Controller
 @RequestMapping("/security-quotes")
@@ -55,8 +62,12 @@ import java.util.concurrent.ForkJoinPool;
 public class SecurityQuoteController {
     private final SecurityQuoteFormsService securityQuoteFormsService;
     private final MoexIssSecurityQuoteService moexIssSecurityQuoteService;
+    private final CachingMoexIssClient cachingMoexIssClient;
     private final SecurityRepository securityRepository;
     private final SecurityQuoteRepository securityQuoteRepository;
+    private final InvestbookExecutors executors;
+    private final InvestbookMetrics metrics;
+    private final InvestbookProperties properties;
     private volatile Collection<String> securities;
 
     @PostConstruct
@@ -66,8 +77,8 @@ public class SecurityQuoteController {
 
     @GetMapping
     public String get(@ModelAttribute("filter") SecurityQuoteFormFilterModel filter, Model model) {
-        Page<SecurityQuoteModel> data = securityQuoteFormsService.getPage(filter);
-        model.addAttribute("page", new PageableWrapperModel<>(data));
+        Window<SecurityQuoteModel> data = securityQuoteFormsService.getPage(filter);
+        model.addAttribute("page", new WindowWrapperModel<>(data, filter.getCursor()));
 
         return "security-quotes/table";
     }
@@ -110,21 +121,36 @@ public class SecurityQuoteController {
 
     public String updateQuoteFromMoexIssApi() throws InterruptedException, ExecutionException {
         long t0 = System.nanoTime();
-        try (ForkJoinPool pool = new ForkJoinPool(4 * Runtime.getRuntime().availableProcessors())) {
-            pool.submit(() -> securityRepository.findAll()
-                            .parallelStream()
-                            .forEach(moexIssSecurityQuoteService::updateQuote))
-                    .get();
+        if (properties.isMoexBulkQuoteUpdate()) {
+            moexIssSecurityQuoteService.updateQuotes(securityRepository.findAll());
+        } else {
+            List<Callable<Object>> tasks = securityRepository.findAll()
+                    .stream()
+                    .map(security -> Executors.callable(() -> moexIssSecurityQuoteService.updateQuote(security)))
+                    .toList();
+            for (Future<?> future : executors.getIoExecutor().invokeAll(tasks)) {
+                future.get();
+            }
         }
         String message = securityQuoteRepository.findFirstByOrderByTimestampDesc()
                 .map(SecurityQuoteEntity::getTimestamp)
                 .map(instant -> LocalDate.ofInstant(instant, ZoneId.systemDefault()))
                 .map(latestQuoteDate -> "Котировки обновлены по " + latestQuoteDate + " включительно")
                 .orElse("Запрос выполнен, но МосБиржа не вернула котировок");
-        log.info(message + " за " + Duration.ofNanos(System.nanoTime() - t0));
+        Duration duration = Duration.ofNanos(System.nanoTime() - t0);
+        metrics.recordExternalUpdate("moex", duration);
+        log.info(message + " за " + duration);
         return message;
     }
 
+    @GetMapping("/purge-moex-cache")
+    public String purgeMoexCache(Model model) {
+        cachingMoexIssClient.purge();
+        model.addAttribute("message", "Сохраненные коды и режимы торгов инструментов МосБиржи удалены");
+        model.addAttribute("backLink", "/security-quotes");
+        return "success";
+    }
+
     @GetMapping("/delete")
     public String delete(@RequestParam(name = "id") Integer id, Model model) {
         securityQuoteFormsService.delete(id);
@@ -21,7 +21,7 @@ package ru.investbook.web.forms.controller;
 import jakarta.annotation.PostConstruct;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -30,12 +30,11 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
-import ru.investbook.report.FifoPositionsFactory;
 import ru.investbook.repository.PortfolioRepository;
 import ru.investbook.repository.SecurityRepository;
 import ru.investbook.web.ControllerHelper;
-import ru.investbook.web.forms.model.PageableWrapperModel;
 import ru.investbook.web.forms.model.TransactionModel;
+import ru.investbook.web.forms.model.WindowWrapperModel;
 import ru.investbook.web.forms.model.filter.TransactionFormFilterModel;
 import ru.investbook.web.forms.service.TransactionFormsService;
 
@@ -48,7 +47,6 @@ public class TransactionController {
     protected final TransactionFormsService transactionFormsService;
     protected final PortfolioRepository portfolioRepository;
     private final SecurityRepository securityRepository;
-    protected final FifoPositionsFactory fifoPositionsFactory;
     protected volatile Collection<String> securities;
     protected volatile Collection<String> portfolios;
     protected volatile String selectedPortfolio;
@@ -61,9 +59,9 @@ public class TransactionController {
 
     @GetMapping
     public String get(@ModelAttribute("filter") TransactionFormFilterModel filter, Model model) {
-        Page<TransactionModel> data = transactionFormsService.getTransactionPage(filter);
+        Window<TransactionModel> data = transactionFormsService.getTransactionPage(filter);
         portfolios = ControllerHelper.getPortfolios(portfolioRepository); // update portfolios for filter
-        model.addAttribute("page", new PageableWrapperModel<>(data));
+        model.addAttribute("page", new WindowWrapperModel<>(data, filter.getCursor()));
         model.addAttribute("portfolios", portfolios);
 
         return "transactions/table";
@@ -103,7 +101,6 @@ public class TransactionController {
     public String postTransaction(@Valid @ModelAttribute("transaction") TransactionModel transaction) {
         selectedPortfolio = transaction.getPortfolio();
         transactionFormsService.save(transaction);
-        fifoPositionsFactory.invalidateCache();
         return "transactions/view-single";
     }
 
@@ -117,6 +114,5 @@ public class TransactionController {
 
     protected void doDelete(int id) {
         transactionFormsService.delete(id);
-        fifoPositionsFactory.invalidateCache();
     }
 }
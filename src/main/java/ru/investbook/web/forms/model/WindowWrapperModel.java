@@ -0,0 +1,80 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.web.forms.model;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.lang.Nullable;
+import ru.investbook.repository.ScrollPositionHelper;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page of keyset scrolling, navigates by continuation tokens, total pages count is unknown
+ */
+public class WindowWrapperModel<T> {
+    private final Window<T> window;
+    private final KeysetScrollPosition position;
+
+    /**
+     * @param cursor continuation token used to select window
+     */
+    public WindowWrapperModel(Window<T> window, @Nullable String cursor) {
+        this.window = window;
+        this.position = ScrollPositionHelper.fromTokenOrInitial(cursor);
+    }
+
+    public List<T> getContent() {
+        return window.getContent();
+    }
+
+    /**
+     * @return continuation token of next page or null if page is last
+     */
+    @Nullable
+    public String getNext() {
+        boolean hasNext = position.scrollsForward() ? window.hasNext() : !window.isEmpty();
+        return hasNext ?
+                ScrollPositionHelper.toToken(ScrollPosition.forward(getKeysAt(window.size() - 1))) :
+                null;
+    }
+
+    /**
+     * @return continuation token of previous page or null if page is first
+     */
+    @Nullable
+    public String getPrevious() {
+        if (position.scrollsForward()) {
+            if (position.isInitial()) {
+                return null;
+            }
+            Map<String, ?> keys = window.isEmpty() ? position.getKeys() : getKeysAt(0);
+            return ScrollPositionHelper.toToken(ScrollPosition.backward(keys));
+        }
+        return window.hasNext() ?
+                ScrollPositionHelper.toToken(ScrollPosition.backward(getKeysAt(0))) :
+                null;
+    }
+
+    private Map<String, ?> getKeysAt(int index) {
+        return ((KeysetScrollPosition) window.positionAt(index)).getKeys();
+    }
+}
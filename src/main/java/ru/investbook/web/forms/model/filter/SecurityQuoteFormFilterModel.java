@@ -31,4 +31,5 @@ public class SecurityQuoteFormFilterModel extends AbstractFormFilterModel {
     private String currency;
     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
     private LocalDate date;
+    private String cursor; // continuation token, used instead of page number
 }
@@ -33,4 +33,5 @@ public class TransactionFormFilterModel extends AbstractFormFilterModel {
     private LocalDate dateFrom;
     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
     private LocalDate dateTo;
+    private String cursor; // continuation token, used instead of page number
 }
@@ -33,6 +33,7 @@ import ru.investbook.converter.SecurityEventCashFlowConverter;
 import ru.investbook.entity.SecurityEntity;
 import ru.investbook.entity.SecurityEventCashFlowEntity;
 import ru.investbook.entity.SecurityEventCashFlowEntity_;
+import ru.investbook.report.FifoPositionsFactory;
 import ru.investbook.repository.PortfolioRepository;
 import ru.investbook.repository.SecurityEventCashFlowRepository;
 import ru.investbook.repository.specs.SecurityEventCashFlowEntitySearchSpecification;
@@ -57,6 +58,7 @@ public class SecurityEventCashFlowFormsService {
     private final SecurityEventCashFlowConverter securityEventCashFlowConverter;
     private final PortfolioConverter portfolioConverter;
     private final SecurityRepositoryHelper securityRepositoryHelper;
+    private final FifoPositionsFactory fifoPositionsFactory;
 
     @Transactional(readOnly = true)
     public Optional<SecurityEventCashFlowModel> getById(Integer id) {
@@ -79,6 +81,9 @@ public class SecurityEventCashFlowFormsService {
 
     @Transactional
     public void save(SecurityEventCashFlowModel e) {
+        Optional<SecurityEventCashFlowEntity> oldEntity = ofNullable(e.getId())
+                .flatMap(securityEventCashFlowRepository::findById);
+        oldEntity.ifPresent(this::invalidatePositionsIfRedemption);
         savePortfolio(e.getPortfolio());
         int savedSecurityId = securityRepositoryHelper.saveSecurity(e);
         SecurityEventCashFlowBuilder builder = SecurityEventCashFlow.builder()
@@ -86,14 +91,22 @@ public class SecurityEventCashFlowFormsService {
                 .timestamp(e.getDate().atTime(e.getTime()).atZone(zoneId).toInstant())
                 .security(savedSecurityId)
                 .count(e.getCount());
+        SecurityEventCashFlow event = builder
+                .id(e.getId())
+                .eventType(e.getType())
+                .value(e.getValue())
+                .currency(e.getValueCurrency())
+                .build();
         SecurityEventCashFlowEntity entity = securityEventCashFlowRepository.save(
-                securityEventCashFlowConverter.toEntity(builder
-                        .id(e.getId())
-                        .eventType(e.getType())
-                        .value(e.getValue())
-                        .currency(e.getValueCurrency())
-                        .build()));
+                securityEventCashFlowConverter.toEntity(event));
         e.setId(entity.getId()); // used in view
+        if (oldEntity.isPresent()) {
+            invalidatePositionsIfRedemption(entity);
+        } else {
+            fifoPositionsFactory.add(event.toBuilder()
+                    .id(entity.getId())
+                    .build());
+        }
         if (e.getTax() != null && e.getTax().floatValue() > 0.001) {
             entity = securityEventCashFlowRepository.save(securityEventCashFlowConverter.toEntity(
                     builder
@@ -109,6 +122,12 @@ public class SecurityEventCashFlowFormsService {
         securityEventCashFlowRepository.flush();
     }
 
+    private void invalidatePositionsIfRedemption(SecurityEventCashFlowEntity entity) {
+        if (entity.getCashFlowType().getId() == CashFlowType.REDEMPTION.getId()) {
+            fifoPositionsFactory.invalidateCache(entity.getSecurity().getId());
+        }
+    }
+
     private void savePortfolio(String portfolio) {
         if (!portfolioRepository.existsById(portfolio)) {
             portfolioRepository.save(
@@ -154,6 +173,8 @@ public class SecurityEventCashFlowFormsService {
 
     @Transactional
     public void delete(Integer id) {
+        securityEventCashFlowRepository.findById(id)
+                .ifPresent(this::invalidatePositionsIfRedemption);
         getById(id).map(SecurityEventCashFlowModel::getTaxId)
                 .ifPresent(securityEventCashFlowRepository::deleteById);
         securityEventCashFlowRepository.deleteById(id);
@@ -20,9 +20,9 @@ package ru.investbook.web.forms.service;
 
 import lombok.RequiredArgsConstructor;
 import org.spacious_team.broker.pojo.SecurityQuote;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.investbook.converter.SecurityQuoteConverter;
@@ -30,6 +30,7 @@ import ru.investbook.entity.SecurityEntity;
 import ru.investbook.entity.SecurityQuoteEntity;
 import ru.investbook.entity.SecurityQuoteEntity_;
 import ru.investbook.repository.SecurityQuoteRepository;
+import ru.investbook.repository.ScrollPositionHelper;
 import ru.investbook.repository.specs.SecurityQuoteSearchSpecification;
 import ru.investbook.web.forms.model.SecurityQuoteModel;
 import ru.investbook.web.forms.model.SecurityType;
@@ -55,15 +56,22 @@ public class SecurityQuoteFormsService {
                 .map(this::toSecurityQuoteModel);
     }
 
+    /**
+     * Keyset scrolling, sort order is backed by index
+     */
     @Transactional(readOnly = true)
-    public Page<SecurityQuoteModel> getPage(SecurityQuoteFormFilterModel filter) {
+    public Window<SecurityQuoteModel> getPage(SecurityQuoteFormFilterModel filter) {
         SecurityQuoteSearchSpecification spec = SecurityQuoteSearchSpecification.of(
                 filter.getSecurity(), filter.getCurrency(), filter.getDate());
 
-        Sort sort = Sort.by(desc(SecurityQuoteEntity_.TIMESTAMP), asc("security.name"));
-        PageRequest page = PageRequest.of(filter.getPage(), filter.getPageSize(), sort);
+        // security name is nullable and can't be a keyset scrolling key
+        Sort sort = Sort.by(desc(SecurityQuoteEntity_.TIMESTAMP), asc("security.id"), asc(SecurityQuoteEntity_.ID));
+        KeysetScrollPosition position = ScrollPositionHelper.fromTokenOrInitial(filter.getCursor());
 
-        return securityQuoteRepository.findAll(spec, page)
+        return securityQuoteRepository.findBy(spec, query -> query
+                        .sortBy(sort)
+                        .limit(filter.getPageSize())
+                        .scroll(position))
                 .map(this::toSecurityQuoteModel);
     }
 
@@ -26,9 +26,9 @@ import org.spacious_team.broker.report_parser.api.AbstractTransaction.AbstractTr
 import org.spacious_team.broker.report_parser.api.DerivativeTransaction;
 import org.spacious_team.broker.report_parser.api.ForeignExchangeTransaction;
 import org.spacious_team.broker.report_parser.api.SecurityTransaction;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
@@ -45,6 +45,7 @@ import ru.investbook.report.FifoPositions;
 import ru.investbook.report.FifoPositionsFactory;
 import ru.investbook.report.FifoPositionsFilter;
 import ru.investbook.repository.PortfolioRepository;
+import ru.investbook.repository.ScrollPositionHelper;
 import ru.investbook.repository.TransactionCashFlowRepository;
 import ru.investbook.repository.TransactionRepository;
 import ru.investbook.repository.specs.SecurityDepositSearchSpecification;
@@ -95,7 +96,7 @@ public class TransactionFormsService {
     }
 
     @Transactional(readOnly = true)
-    public Page<TransactionModel> getTransactionPage(TransactionFormFilterModel filter) {
+    public Window<TransactionModel> getTransactionPage(TransactionFormFilterModel filter) {
         TransactionSearchSpecification spec = TransactionSearchSpecification.of(
                 filter.getPortfolio(), filter.getSecurity(), filter.getDateFrom(), filter.getDateTo());
 
@@ -103,25 +104,35 @@ public class TransactionFormsService {
     }
 
     @Transactional(readOnly = true)
-    public Page<TransactionModel> getSecurityDepositPage(TransactionFormFilterModel filter) {
+    public Window<TransactionModel> getSecurityDepositPage(TransactionFormFilterModel filter) {
         SecurityDepositSearchSpecification spec = SecurityDepositSearchSpecification.of(
                 filter.getPortfolio(), filter.getSecurity(), filter.getDateFrom(), filter.getDateTo());
 
         return getTransactionModels(spec, filter);
     }
 
+    /**
+     * Keyset scrolling, sort order is backed by index
+     */
     @NonNull
-    private Page<TransactionModel> getTransactionModels(Specification<TransactionEntity> spec,
-                                                        TransactionFormFilterModel filter) {
-        Sort sort = Sort.by(asc(TransactionEntity_.PORTFOLIO), desc(TransactionEntity_.TIMESTAMP), asc("security.id"));
-        PageRequest page = PageRequest.of(filter.getPage(), filter.getPageSize(), sort);
+    private Window<TransactionModel> getTransactionModels(Specification<TransactionEntity> spec,
+                                                          TransactionFormFilterModel filter) {
+        Sort sort = Sort.by(asc(TransactionEntity_.PORTFOLIO), desc(TransactionEntity_.TIMESTAMP), asc("security.id"),
+                asc(TransactionEntity_.ID));
+        KeysetScrollPosition position = ScrollPositionHelper.fromTokenOrInitial(filter.getCursor());
 
-        return transactionRepository.findAll(spec, page)
+        return transactionRepository.findBy(spec, query -> query
+                        .sortBy(sort)
+                        .limit(filter.getPageSize())
+                        .scroll(position))
                 .map(this::toTransactionModel);
     }
 
     @Transactional
     public void save(TransactionModel tr) {
+        Optional<Integer> oldSecurityId = ofNullable(tr.getId())
+                .flatMap(transactionRepository::findById)
+                .map(e -> e.getSecurity().getId());
         int savedSecurityId = securityRepositoryHelper.saveSecurity(tr);
         int direction = ((tr.getAction() == TransactionModel.Action.BUY) ? 1 : -1);
         BigDecimal multiplier = BigDecimal.valueOf(-direction * tr.getCount());
@@ -179,6 +190,17 @@ public class TransactionFormsService {
         savePortfolio(tr.getPortfolio());
         int transactionId = saveTransaction(transaction);
         tr.setId(transactionId); // used by view
+        oldSecurityId.ifPresentOrElse(securityId -> {
+            fifoPositionsFactory.invalidateCache(securityId);
+            fifoPositionsFactory.invalidateCache(savedSecurityId);
+        }, () -> addToPositions(transaction, transactionId));
+    }
+
+    private void addToPositions(AbstractTransaction transaction, int transactionId) {
+        fifoPositionsFactory.add(transaction.getTransaction()
+                .toBuilder()
+                .id(transactionId)
+                .build());
     }
 
     /**
@@ -221,14 +243,16 @@ public class TransactionFormsService {
                 .security(savedSecurityId);
 
         savePortfolio(split.getPortfolio());
-        saveTransaction(builder
+        SecurityTransaction withdrawal = builder
                 .tradeId(split.getTradeId(savedSecurityId) + "w")
                 .count(-Math.abs(split.getWithdrawalCount()))
-                .build());
-        saveTransaction(builder
+                .build();
+        addToPositions(withdrawal, saveTransaction(withdrawal));
+        SecurityTransaction deposit = builder
                 .tradeId(split.getTradeId(savedSecurityId) + "d")
                 .count(Math.abs(split.getDepositCount()))
-                .build());
+                .build();
+        addToPositions(deposit, saveTransaction(deposit));
     }
 
     private void checkWithdrawalCount(SplitModel split, int savedSecurityId, Instant splitInstant) {
@@ -301,6 +325,8 @@ public class TransactionFormsService {
 
     @Transactional
     public void delete(int transactionId) {
+        transactionRepository.findById(transactionId)
+                .ifPresent(e -> fifoPositionsFactory.invalidateCache(e.getSecurity().getId()));
         transactionRepository.deleteById(transactionId);
         transactionRepository.flush();
     }
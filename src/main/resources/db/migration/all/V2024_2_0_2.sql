@@ -0,0 +1,35 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+CREATE TABLE `moex_secid_cache` (
+    `query`         VARCHAR(128) NOT NULL COMMENT 'ISIN или наименование контракта',
+    `security_type` VARCHAR(32)  NOT NULL COMMENT 'Тип ценной бумаги',
+    `secid`         VARCHAR(64)  NULL COMMENT 'Код инструмента на МосБирже, NULL - инструмент не найден',
+    `resolved_at`   TIMESTAMP    NOT NULL COMMENT 'Время запроса к МосБирже',
+    PRIMARY KEY (`query`, `security_type`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='Кэш кодов инструментов МосБиржи';
+
+CREATE TABLE `moex_market_cache` (
+    `secid`       VARCHAR(64) NOT NULL COMMENT 'Код инструмента на МосБирже',
+    `engine`      VARCHAR(32) NULL COMMENT 'Торговая система МосБиржи, NULL - режим торгов не найден',
+    `market`      VARCHAR(32) NULL COMMENT 'Рынок МосБиржи',
+    `board`       VARCHAR(32) NULL COMMENT 'Основной режим торгов',
+    `currency`    VARCHAR(4)  NULL COMMENT 'Валюта котировки',
+    `resolved_at` TIMESTAMP   NOT NULL COMMENT 'Время запроса к МосБирже',
+    PRIMARY KEY (`secid`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='Кэш основных режимов торгов инструментов МосБиржи';
@@ -0,0 +1,22 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+-- направления столбцов индексов совпадают с сортировкой страниц сделок и котировок (по убыванию времени),
+-- иначе индекс не может быть использован для постраничного обхода по ключу
+ALTER TABLE `transaction` ADD KEY `transaction_portfolio_timestamp_security_id_ix` (`portfolio`, `timestamp` DESC, `security`, `id`);
+ALTER TABLE `security_quote` ADD KEY `security_quote_timestamp_security_id_ix` (`timestamp` DESC, `security`, `id`);
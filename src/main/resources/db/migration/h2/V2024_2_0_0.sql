@@ -0,0 +1,29 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+CREATE TABLE `portfolio_valuation` (
+    `id`         INT(10)        NOT NULL AUTO_INCREMENT,
+    `portfolio`  VARCHAR(32)    NOT NULL COMMENT 'Идентификатор портфеля',
+    `date`       DATE           NOT NULL COMMENT 'Дата оценки, на конец дня',
+    `securities` DECIMAL(19, 6) NOT NULL COMMENT 'Стоимость ценных бумаг по котировкам, руб',
+    `cash`       DECIMAL(19, 6) NOT NULL COMMENT 'Остаток денежных средств, руб',
+    `total`      DECIMAL(19, 6) NOT NULL COMMENT 'Стоимость портфеля, руб',
+    PRIMARY KEY (`id`),
+    UNIQUE INDEX `portfolio_valuation_portfolio_date_uniq_ix` (`portfolio`, `date`),
+    CONSTRAINT `portfolio_valuation_portfolio_fkey` FOREIGN KEY (`portfolio`) REFERENCES `portfolio` (`id`) ON UPDATE CASCADE ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='Ежедневная оценка стоимости портфеля';
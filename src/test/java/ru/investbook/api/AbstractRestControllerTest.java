@@ -0,0 +1,223 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.investbook.api.BatchItemResult.Status;
+import ru.investbook.entity.ForeignExchangeRateEntity;
+import ru.investbook.entity.ForeignExchangeRateEntityPk;
+import ru.investbook.report.ForeignExchangeRateService;
+import ru.investbook.repository.ForeignExchangeRateRepository;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+import static ru.investbook.api.BatchItemResult.Status.CONFLICT;
+import static ru.investbook.api.BatchItemResult.Status.CREATED;
+import static ru.investbook.api.BatchItemResult.Status.ERROR;
+
+/**
+ * Tests {@link AbstractRestController#postBatch(java.io.InputStream)} by foreign exchange rates,
+ * each test uses own currency pair
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:testdb;mode=mysql;non_keywords=value")
+class AbstractRestControllerTest {
+
+    @Autowired
+    private ForeignExchangeRateRestController controller;
+    @Autowired
+    private ForeignExchangeRateRepository foreignExchangeRateRepository;
+    @Autowired
+    private ForeignExchangeRateService foreignExchangeRateService;
+
+    @Test
+    void jsonArray() {
+        List<BatchItemResult<ForeignExchangeRateEntityPk>> results = postBatch("""
+                [
+                    {"date": "2024-01-10", "currencyPair": "AAARUB", "rate": 1.5},
+                    {"date": "2024-01-11", "currencyPair": "AAARUB", "rate": 1.6}
+                ]
+                """);
+
+        assertEquals(getStatuses(results), List.of(CREATED, CREATED));
+        assertEquals(results.get(0).index(), 0);
+        assertEquals(results.get(1).index(), 1);
+        assertEquals(results.get(1).id(), getId("AAARUB", "2024-01-11"));
+        assertEquals(getRates("AAARUB"), List.of(new BigDecimal("1.6"), new BigDecimal("1.5")));
+    }
+
+    @Test
+    void ndjson() {
+        List<BatchItemResult<ForeignExchangeRateEntityPk>> results = postBatch("""
+                {"date": "2024-01-10", "currencyPair": "AABRUB", "rate": 1.5}
+                {"date": "2024-01-11", "currencyPair": "AABRUB", "rate": 1.6}
+                """);
+
+        assertEquals(getStatuses(results), List.of(CREATED, CREATED));
+        assertEquals(results.get(0).id(), getId("AABRUB", "2024-01-10"));
+        assertEquals(getRates("AABRUB"), List.of(new BigDecimal("1.6"), new BigDecimal("1.5")));
+    }
+
+    @Test
+    void existingObjectIsConflict() {
+        postBatch("""
+                {"date": "2024-01-10", "currencyPair": "AACRUB", "rate": 1.5}
+                """);
+
+        List<BatchItemResult<ForeignExchangeRateEntityPk>> results = postBatch("""
+                {"date": "2024-01-10", "currencyPair": "AACRUB", "rate": 2.5}
+                {"date": "2024-01-11", "currencyPair": "AACRUB", "rate": 1.6}
+                {"date": "2024-01-11", "currencyPair": "AACRUB", "rate": 2.6}
+                """);
+
+        assertEquals(getStatuses(results), List.of(CONFLICT, CREATED, CONFLICT));
+        assertEquals(results.get(0).id(), getId("AACRUB", "2024-01-10"));
+        assertEquals(results.get(2).id(), getId("AACRUB", "2024-01-11"));
+        // existing objects are not updated
+        assertEquals(getRates("AACRUB"), List.of(new BigDecimal("1.6"), new BigDecimal("1.5")));
+    }
+
+    @Test
+    void invalidObjectIsError() {
+        List<BatchItemResult<ForeignExchangeRateEntityPk>> results = postBatch("""
+                [
+                    {"date": "2024-01-10", "currencyPair": "AADRUB", "rate": 1.5},
+                    {"date": "2024-01-11", "currencyPair": "AADRUB"},
+                    null,
+                    {"date": "2024-01-12", "currencyPair": "AADRUB", "rate": 1.7}
+                ]
+                """);
+
+        assertEquals(getStatuses(results), List.of(CREATED, ERROR, ERROR, CREATED));
+        assertNull(results.get(1).id());
+        assertTrue(Objects.requireNonNull(results.get(1).error()).contains("rate"));
+        assertNotNull(results.get(2).error());
+        assertEquals(getRates("AADRUB"), List.of(new BigDecimal("1.7"), new BigDecimal("1.5")));
+    }
+
+    @Test
+    void malformedObjectStopsReading() {
+        List<BatchItemResult<ForeignExchangeRateEntityPk>> results = postBatch("""
+                {"date": "2024-01-10", "currencyPair": "AAERUB", "rate": 1.5}
+                {"date": "not a date", "currencyPair": "AAERUB", "rate": 1.6}
+                {"date": "2024-01-12", "currencyPair": "AAERUB", "rate": 1.7}
+                """);
+
+        assertEquals(getStatuses(results), List.of(CREATED, ERROR));
+        assertEquals(results.get(1).index(), 1);
+        assertNotNull(results.get(1).error());
+        assertEquals(getRates("AAERUB"), List.of(new BigDecimal("1.5")));
+    }
+
+    @Test
+    void chunkIsSavedOneByOneIfFailed() {
+        List<BatchItemResult<ForeignExchangeRateEntityPk>> results = postBatch("""
+                {"date": "2024-01-10", "currencyPair": "AAFRUB", "rate": 1.5}
+                {"date": "2024-01-11", "currencyPair": "AAFRUB", "rate": 1000000000000}
+                {"date": "2024-01-12", "currencyPair": "AAFRUB", "rate": 1.7}
+                """);
+
+        // rate exceeds DB column precision, chunk transaction is failed
+        assertEquals(getStatuses(results), List.of(CREATED, ERROR, CREATED));
+        assertNotNull(results.get(1).error());
+        assertEquals(getRates("AAFRUB"), List.of(new BigDecimal("1.7"), new BigDecimal("1.5")));
+    }
+
+    @Test
+    void exchangeRateCacheIsInvalidated() {
+        LocalDate date = LocalDate.parse("2024-01-10");
+        assertThrows(NoSuchElementException.class, () -> foreignExchangeRateService.getExchangeRateToRub("AAG", date));
+
+        postBatch("""
+                {"date": "2024-01-10", "currencyPair": "AAGRUB", "rate": 1.5}
+                """);
+
+        assertEquals(foreignExchangeRateService.getExchangeRateToRub("AAG", date).compareTo(new BigDecimal("1.5")), 0);
+    }
+
+    @Test
+    void exchangeRateCacheIsNotInvalidatedByConflict() {
+        LocalDate date = LocalDate.parse("2024-01-10");
+        postBatch("""
+                {"date": "2024-01-10", "currencyPair": "AAHRUB", "rate": 1.5}
+                """);
+        assertEquals(foreignExchangeRateService.getExchangeRateToRub("AAH", date).compareTo(new BigDecimal("1.5")), 0);
+        ForeignExchangeRateEntityPk pk = new ForeignExchangeRateEntityPk();
+        pk.setCurrencyPair("AAHRUB");
+        pk.setDate(date);
+        ForeignExchangeRateEntity entity = foreignExchangeRateRepository.findById(pk).orElseThrow();
+        entity.setRate(new BigDecimal("2")); // modified bypassing cache
+        foreignExchangeRateRepository.save(entity);
+
+        List<BatchItemResult<ForeignExchangeRateEntityPk>> conflict = postBatch("""
+                {"date": "2024-01-10", "currencyPair": "AAHRUB", "rate": 1.5}
+                """);
+
+        assertEquals(getStatuses(conflict), List.of(CONFLICT));
+        assertEquals(foreignExchangeRateService.getExchangeRateToRub("AAH", date).compareTo(new BigDecimal("1.5")), 0);
+
+        postBatch("""
+                {"date": "2024-01-11", "currencyPair": "AAHRUB", "rate": 3}
+                """);
+
+        assertEquals(foreignExchangeRateService.getExchangeRateToRub("AAH", date).compareTo(new BigDecimal("2")), 0);
+    }
+
+    private List<BatchItemResult<ForeignExchangeRateEntityPk>> postBatch(String body) {
+        return controller.postBatch(new ByteArrayInputStream(body.getBytes(UTF_8)))
+                .getBody();
+    }
+
+    private static List<Status> getStatuses(List<BatchItemResult<ForeignExchangeRateEntityPk>> results) {
+        return results.stream()
+                .map(BatchItemResult::status)
+                .toList();
+    }
+
+    /**
+     * @return rates in date descending order
+     */
+    private List<BigDecimal> getRates(String currencyPair) {
+        return foreignExchangeRateRepository.findByPkCurrencyPairOrderByPkDateDesc(currencyPair)
+                .stream()
+                .map(ForeignExchangeRateEntity::getRate)
+                .map(BigDecimal::stripTrailingZeros)
+                .toList();
+    }
+
+    private static ForeignExchangeRateEntityPk getId(String currencyPair, String date) {
+        ForeignExchangeRateEntityPk pk = new ForeignExchangeRateEntityPk();
+        pk.setCurrencyPair(currencyPair);
+        pk.setDate(LocalDate.parse(date));
+        return pk;
+    }
+}
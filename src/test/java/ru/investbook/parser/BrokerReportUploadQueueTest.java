@@ -0,0 +1,265 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.parser;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.util.unit.DataSize;
+import ru.investbook.InvestbookExecutors;
+import ru.investbook.InvestbookProperties;
+import ru.investbook.parser.BrokerReportParserService.OpenedReport;
+import ru.investbook.parser.BrokerReportParserService.ReportDescription;
+import ru.investbook.parser.BrokerReportUploadQueue.ReportFile;
+import ru.investbook.parser.ReportUploadStatus.State;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+class BrokerReportUploadQueueTest {
+    private static final Instant DATE = Instant.parse("2024-01-01T00:00:00Z");
+    private final TestBrokerReportParserService parserService = new TestBrokerReportParserService();
+    private final InvestbookProperties properties = new InvestbookProperties();
+    private InvestbookExecutors executors;
+
+    @BeforeEach
+    void setUp() {
+        properties.setReportUploadThreads(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executors.getReportUploadExecutor().shutdownNow();
+    }
+
+    @Test
+    void reportsOfBatchAreImportedInDateOrder() throws Exception {
+        BrokerReportUploadQueue queue = createQueue(DataSize.ofMegabytes(1));
+        parserService.describe("a", "P", 3);
+        parserService.describe("b", "P", 1);
+        parserService.describe("c", "P", 2);
+        parserService.describe("x", "Q", 1);
+
+        awaitFinished(queue.submit(List.of(file("a", 1), file("b", 1), file("c", 1), file("x", 1)), null));
+
+        assertEquals(parserService.getImported("P"), List.of("b", "c", "a"));
+        assertEquals(parserService.getImported("Q"), List.of("x"));
+    }
+
+    @Test
+    void reportIsOpenedOnce() throws Exception {
+        BrokerReportUploadQueue queue = createQueue(DataSize.ofMegabytes(1));
+        parserService.describe("a", "P", 2);
+        parserService.describe("b", "P", 1);
+
+        Collection<ReportUploadStatus> statuses = queue.submit(List.of(file("a", 1), file("b", 1)), null);
+        awaitFinished(statuses);
+
+        assertTrue(statuses.stream().allMatch(status -> status.getState() == State.DONE));
+        assertEquals(parserService.opens.get("a").get(), 1);
+        assertEquals(parserService.opens.get("b").get(), 1);
+        assertEquals(parserService.closed.get(), 2);
+    }
+
+    /**
+     * Budget of 4 KiB splits files to batches [x1, x2], [c], [d]: "c" is admitted after "x1" import,
+     * "d" is admitted after "x2" import, which waits for "c" opening. Batch [c] is opened until "d" is opened,
+     * but "d" is imported after "c".
+     */
+    @Test
+    void batchesAreImportedInUploadOrder() throws Exception {
+        BrokerReportUploadQueue queue = createQueue(DataSize.ofKilobytes(4));
+        parserService.describe("x1", "Q", 1);
+        parserService.describe("x2", "Q", 2);
+        parserService.describe("c", "P", 2);
+        parserService.describe("d", "P", 1); // earlier than "c", but it is in the next batch
+        CountDownLatch cOpening = new CountDownLatch(1);
+        CountDownLatch dOpened = new CountDownLatch(1);
+        parserService.beforeParse.put("x2", () -> assertTrue(cOpening.await(10, TimeUnit.SECONDS)));
+        parserService.beforeOpen.put("c", () -> {
+            cOpening.countDown();
+            assertTrue(dOpened.await(10, TimeUnit.SECONDS));
+        });
+        parserService.beforeOpen.put("d", dOpened::countDown);
+
+        awaitFinished(queue.submit(List.of(file("x1", 2), file("x2", 2), file("c", 2), file("d", 2)), null));
+
+        assertEquals(parserService.getImported("P"), List.of("c", "d"));
+        assertEquals(parserService.getImported("Q"), List.of("x1", "x2"));
+    }
+
+    @Test
+    void notDescribedReportsAreImported() throws Exception {
+        BrokerReportUploadQueue queue = createQueue(DataSize.ofMegabytes(1));
+        parserService.describe("a", "P", 1);
+        parserService.describe("multi-portfolio", null, 1);
+        parserService.beforeOpen.put("broken", () -> {
+            throw new IllegalArgumentException("Неизвестный формат отчета");
+        });
+
+        Collection<ReportUploadStatus> statuses =
+                queue.submit(List.of(file("a", 1), file("multi-portfolio", 1), file("broken", 1)), null);
+        awaitFinished(statuses);
+
+        assertEquals(getState(statuses, "a"), State.DONE);
+        assertEquals(getState(statuses, "multi-portfolio"), State.DONE);
+        assertEquals(getState(statuses, "broken"), State.FAILED);
+        assertEquals(parserService.getImported(null), List.of("multi-portfolio"));
+        assertEquals(parserService.opens.get("broken").get(), 1);
+    }
+
+    @Test
+    void errorDoesNotStopPortfolioQueue() throws Exception {
+        BrokerReportUploadQueue queue = createQueue(DataSize.ofKilobytes(4));
+        parserService.describe("a", "P", 1);
+        parserService.describe("b", "P", 2);
+        parserService.describe("c", "P", 3);
+        parserService.beforeParse.put("a", () -> {
+            throw new OutOfMemoryError("Java heap space");
+        });
+
+        Collection<ReportUploadStatus> statuses =
+                queue.submit(List.of(file("a", 2), file("b", 2), file("c", 2)), null);
+        awaitFinished(statuses);
+
+        assertEquals(getState(statuses, "a"), State.FAILED);
+        assertEquals(getState(statuses, "b"), State.DONE);
+        assertEquals(getState(statuses, "c"), State.DONE);
+        assertEquals(parserService.getImported("P"), List.of("b", "c"));
+        assertEquals(parserService.closed.get(), 3);
+    }
+
+    private BrokerReportUploadQueue createQueue(DataSize budget) {
+        properties.setReportUploadMaxBytesInFlight(budget);
+        executors = new InvestbookExecutors(properties, new SimpleMeterRegistry());
+        return new BrokerReportUploadQueue(parserService, properties, executors);
+    }
+
+    private static ReportFile file(String fileName, int sizeKiB) {
+        byte[] content = new byte[sizeKiB * 1024];
+        return new ReportFile(fileName, content.length, new ByteArrayResource(content));
+    }
+
+    private static State getState(Collection<ReportUploadStatus> statuses, String fileName) {
+        return statuses.stream()
+                .filter(status -> status.getFileName().equals(fileName))
+                .findAny()
+                .orElseThrow()
+                .getState();
+    }
+
+    private static void awaitFinished(Collection<ReportUploadStatus> statuses) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!statuses.stream().allMatch(status -> status.getState() == State.DONE || status.getState() == State.FAILED)) {
+            assertTrue(System.nanoTime() < deadline, "Отчеты не загружены");
+            Thread.sleep(10);
+        }
+    }
+
+    private static class TestBrokerReportParserService implements BrokerReportParserService {
+        private final Map<String, ReportDescription> descriptions = new ConcurrentHashMap<>();
+        private final Map<String, Action> beforeOpen = new ConcurrentHashMap<>();
+        private final Map<String, Action> beforeParse = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> opens = new ConcurrentHashMap<>();
+        private final AtomicInteger closed = new AtomicInteger();
+        private final List<ReportDescription> imported = new ArrayList<>(); // guarded by itself
+
+        void describe(String fileName, String portfolio, int day) {
+            descriptions.put(fileName, new ReportDescription(portfolio, DATE.plusSeconds(day * 86400L)));
+        }
+
+        List<String> getImported(String portfolio) {
+            synchronized (imported) {
+                return imported.stream()
+                        .filter(description -> Objects.equals(description.portfolio(), portfolio))
+                        .map(this::getFileName)
+                        .toList();
+            }
+        }
+
+        private String getFileName(ReportDescription description) {
+            return descriptions.entrySet()
+                    .stream()
+                    .filter(e -> e.getValue() == description)
+                    .findAny()
+                    .orElseThrow()
+                    .getKey();
+        }
+
+        @Override
+        public void parseReport(InputStream inputStream, String fileName, String providedByBroker) {
+            throw new AssertionError("Отчет должен быть загружен через openReport()");
+        }
+
+        @Override
+        public OpenedReport openReport(InputStream inputStream, String fileName, String providedByBroker) {
+            opens.computeIfAbsent(fileName, _ -> new AtomicInteger()).incrementAndGet();
+            run(beforeOpen.get(fileName));
+            ReportDescription description = descriptions.get(fileName);
+            return new OpenedReport() {
+                @Override
+                public Optional<ReportDescription> getDescription() {
+                    return Optional.ofNullable(description)
+                            .filter(d -> d.portfolio() != null);
+                }
+
+                @Override
+                public void parse() {
+                    run(beforeParse.get(fileName));
+                    synchronized (imported) {
+                        imported.add(description);
+                    }
+                }
+
+                @Override
+                public void close() {
+                    closed.incrementAndGet();
+                }
+            };
+        }
+    }
+
+    @SneakyThrows
+    private static void run(Action action) {
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+}
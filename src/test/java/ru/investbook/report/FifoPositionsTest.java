@@ -0,0 +1,168 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.report;
+
+import org.junit.jupiter.api.Test;
+import org.spacious_team.broker.pojo.CashFlowType;
+import org.spacious_team.broker.pojo.SecurityEventCashFlow;
+import org.spacious_team.broker.pojo.Transaction;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static java.util.Comparator.comparing;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static ru.investbook.report.FifoPositionsTestFixture.START;
+import static ru.investbook.report.FifoPositionsTestFixture.randomTransactions;
+import static ru.investbook.report.FifoPositionsTestFixture.redemption;
+import static ru.investbook.report.FifoPositionsTestFixture.transaction;
+
+class FifoPositionsTest {
+    private static final Comparator<Transaction> order = comparing(Transaction::getTimestamp)
+            .thenComparing(Transaction::getTradeId);
+
+    @Test
+    void appendEqualsToRebuildOnRandomTransactions() {
+        for (int seed = 0; seed < 200; seed++) {
+            Random random = new Random(seed);
+            Deque<Transaction> transactions = new LinkedList<>();
+            FifoPositions positions = new FifoPositions(new LinkedList<>(), new LinkedList<>());
+            for (Transaction transaction : randomTransactions(random, random.nextInt(1, 50))) {
+                transactions.add(transaction);
+
+                positions = positions.append(transaction, order).orElseThrow();
+                assertSamePositions(positions, new FifoPositions(new LinkedList<>(transactions), new LinkedList<>()));
+            }
+            int count = positions.getCurrentOpenedPositionsCount();
+            if (count > 0) {
+                Instant instant = transactions.getLast().getTimestamp();
+                SecurityEventCashFlow redemption = redemption(instant.plusSeconds(3600), count);
+                positions = positions.append(redemption).orElseThrow();
+                assertSamePositions(positions, new FifoPositions(transactions, new LinkedList<>(List.of(redemption))));
+                assertEquals(positions.getCurrentOpenedPositionsCount(), 0);
+            }
+        }
+    }
+
+    @Test
+    void appendFlipsLongPositionToShort() {
+        Transaction buy = transaction(1, START, 10);
+        Transaction sell = transaction(2, START.plusSeconds(3600), -15);
+        FifoPositions positions = new FifoPositions(new LinkedList<>(List.of(buy)), new LinkedList<>());
+
+        FifoPositions appended = positions.append(sell, order).orElseThrow();
+
+        assertSamePositions(appended, new FifoPositions(new LinkedList<>(List.of(buy, sell)), new LinkedList<>()));
+        assertEquals(appended.getClosedPositions().size(), 1);
+        assertEquals(appended.getClosedPositions().getFirst().getCount(), 10);
+        assertEquals(appended.getOpenedPositions().size(), 1);
+        assertEquals(appended.getOpenedPositions().getFirst().getOpenTransaction(), sell);
+        assertEquals(appended.getOpenedPositions().getFirst().getUnclosedPositions(), -5);
+        assertEquals(appended.getCurrentOpenedPositionsCount(), -5);
+    }
+
+    @Test
+    void appendRedemptionAfterTransactions() {
+        Deque<Transaction> transactions = new LinkedList<>(List.of(
+                transaction(1, START, 10),
+                transaction(2, START.plusSeconds(3600), -3),
+                transaction(3, START.plusSeconds(7200), 5)));
+        SecurityEventCashFlow redemption = redemption(START.plusSeconds(10800), 12);
+        FifoPositions positions = new FifoPositions(transactions, new LinkedList<>());
+
+        FifoPositions appended = positions.append(redemption).orElseThrow();
+
+        assertSamePositions(appended, new FifoPositions(transactions, new LinkedList<>(List.of(redemption))));
+        assertTrue(appended.getOpenedPositions().isEmpty());
+        assertEquals(appended.getClosedPositions().size(), 3);
+        assertEquals(appended.getClosedPositions().getLast().getClosingEvent(), CashFlowType.REDEMPTION);
+        assertEquals(appended.getCurrentOpenedPositionsCount(), 0);
+    }
+
+    @Test
+    void appendDoesNotModifyPositions() {
+        Deque<Transaction> transactions = new LinkedList<>(List.of(transaction(1, START, 10)));
+        FifoPositions positions = new FifoPositions(transactions, new LinkedList<>());
+        FifoPositions expected = new FifoPositions(new LinkedList<>(transactions), new LinkedList<>());
+
+        positions.append(transaction(2, START.plusSeconds(3600), -4), order).orElseThrow();
+        positions.append(redemption(START.plusSeconds(7200), 10)).orElseThrow();
+
+        assertSamePositions(positions, expected);
+    }
+
+    @Test
+    void backDatedTransactionIsNotAppended() {
+        FifoPositions positions = new FifoPositions(
+                new LinkedList<>(List.of(transaction(1, START, 10), transaction(5, START.plusSeconds(3600), 10))),
+                new LinkedList<>());
+
+        assertFalse(positions.append(transaction(2, START, 1), order).isPresent());
+        assertFalse(positions.append(transaction(4, START.plusSeconds(3600), 1), order).isPresent());
+        assertFalse(positions.append(transaction(5, START.plusSeconds(3600), 1), order).isPresent());
+        assertTrue(positions.append(transaction(6, START.plusSeconds(3600), 1), order).isPresent());
+    }
+
+    @Test
+    void transactionIsNotAppendedAfterRedemption() {
+        FifoPositions positions = new FifoPositions(
+                new LinkedList<>(List.of(transaction(1, START, 10))),
+                new LinkedList<>(List.of(redemption(START.plusSeconds(3600), 10))));
+
+        Optional<FifoPositions> appended = positions.append(transaction(2, START.plusSeconds(7200), 1), order);
+
+        assertFalse(appended.isPresent());
+    }
+
+    @Test
+    void backDatedRedemptionIsNotAppended() {
+        FifoPositions positions = new FifoPositions(
+                new LinkedList<>(List.of(transaction(1, START, 10))),
+                new LinkedList<>(List.of(redemption(START.plusSeconds(7200), 5))));
+
+        assertFalse(positions.append(redemption(START.plusSeconds(3600), 5)).isPresent());
+        assertFalse(positions.append(redemption(START.plusSeconds(7200), 5)).isPresent());
+        assertTrue(positions.append(redemption(START.plusSeconds(10800), 5)).isPresent());
+    }
+
+    private static void assertSamePositions(FifoPositions actual, FifoPositions expected) {
+        assertEquals(new ArrayList<>(actual.getTransactions()), new ArrayList<>(expected.getTransactions()));
+        assertEquals(new ArrayList<>(actual.getRedemptions()), new ArrayList<>(expected.getRedemptions()));
+        assertEquals(new ArrayList<>(actual.getOpenedPositions()), new ArrayList<>(expected.getOpenedPositions()));
+        assertEquals(new ArrayList<>(actual.getClosedPositions()), new ArrayList<>(expected.getClosedPositions()));
+        assertEquals(getPositionHistories(actual), getPositionHistories(expected));
+        assertEquals(actual.getCurrentOpenedPositionsCount(), expected.getCurrentOpenedPositionsCount());
+    }
+
+    private static List<String> getPositionHistories(FifoPositions positions) {
+        return positions.getPositionHistories()
+                .stream()
+                .map(history -> history.getInstant() + " -> " + history.getOpenedPositions())
+                .toList();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.report;
+
+import org.spacious_team.broker.pojo.CashFlowType;
+import org.spacious_team.broker.pojo.SecurityEventCashFlow;
+import org.spacious_team.broker.pojo.Transaction;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.Random;
+
+/**
+ * Transactions and redemptions of one security in one portfolio for FIFO positions tests
+ */
+final class FifoPositionsTestFixture {
+    static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private FifoPositionsTestFixture() {
+    }
+
+    /**
+     * @return transactions with long and short positions, several transactions may have equal instant
+     */
+    static Deque<Transaction> randomTransactions(Random random, int count) {
+        Deque<Transaction> transactions = new LinkedList<>();
+        Instant instant = START;
+        for (int i = 0; i < count; i++) {
+            instant = instant.plusSeconds(random.nextInt(3) * 3600L);
+            int sign = random.nextBoolean() ? 1 : -1;
+            transactions.add(transaction(i, instant, sign * random.nextInt(1, 20)));
+        }
+        return transactions;
+    }
+
+    /**
+     * @return transactions which don't open short position and leave opened position, several transactions may have equal instant
+     */
+    static Deque<Transaction> randomLongTransactions(Random random, int count) {
+        Deque<Transaction> transactions = new LinkedList<>();
+        Instant instant = START;
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            instant = instant.plusSeconds(random.nextInt(3) * 3600L);
+            int transactionCount = (position > 0 && random.nextBoolean()) ?
+                    -random.nextInt(1, position + 1) :
+                    random.nextInt(1, 20);
+            position += transactionCount;
+            transactions.add(transaction(i, instant, transactionCount));
+        }
+        if (position == 0) {
+            transactions.add(transaction(count, instant, 1)); // redemption of nonzero position
+        }
+        return transactions;
+    }
+
+    /**
+     * @param id also used as trade ID, trade IDs are ordered as IDs
+     */
+    static Transaction transaction(int id, Instant timestamp, int count) {
+        return Transaction.builder()
+                .id(id)
+                .tradeId(String.format("%05d", id))
+                .portfolio("1")
+                .security(1)
+                .timestamp(timestamp)
+                .count(count)
+                .build();
+    }
+
+    static SecurityEventCashFlow redemption(Instant timestamp, int count) {
+        return SecurityEventCashFlow.builder()
+                .portfolio("1")
+                .security(1)
+                .timestamp(timestamp)
+                .count(count)
+                .eventType(CashFlowType.REDEMPTION)
+                .value(BigDecimal.valueOf(1000L * count))
+                .currency("RUB")
+                .build();
+    }
+}
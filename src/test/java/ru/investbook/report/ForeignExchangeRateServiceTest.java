@@ -0,0 +1,123 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.report;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import ru.investbook.InvestbookMetrics;
+import ru.investbook.InvestbookProperties;
+import ru.investbook.repository.ForeignExchangeRateRepository;
+
+import java.util.List;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.transaction.support.TransactionSynchronization.STATUS_COMMITTED;
+import static org.springframework.transaction.support.TransactionSynchronization.STATUS_ROLLED_BACK;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.clearSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.getSynchronizations;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.initSynchronization;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive;
+import static org.testng.Assert.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+class ForeignExchangeRateServiceTest {
+    private static final String USDRUB = "USDRUB";
+    @Mock
+    private ForeignExchangeRateRepository repository;
+    private ForeignExchangeRateService service;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findByPkCurrencyPairOrderByPkDateDesc(USDRUB)).thenReturn(List.of());
+        service = new ForeignExchangeRateService(repository, new InvestbookProperties(),
+                new InvestbookMetrics(new SimpleMeterRegistry()));
+        service.getExchangeRateToRub("USD"); // loads cache
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (isSynchronizationActive()) {
+            clearSynchronization();
+        }
+    }
+
+    @Test
+    void cacheIsInvalidatedImmediatelyWithoutTransaction() {
+        service.invalidateCache();
+        service.getExchangeRateToRub("USD");
+
+        verify(repository, times(2)).findByPkCurrencyPairOrderByPkDateDesc(USDRUB);
+    }
+
+    @Test
+    void cacheIsInvalidatedOnceAfterCommit() {
+        initSynchronization();
+        service.invalidateCache();
+        service.invalidateCache();
+        service.invalidateCache();
+        List<TransactionSynchronization> synchronizations = getSynchronizations();
+        service.getExchangeRateToRub("USD");
+
+        assertEquals(synchronizations.size(), 1);
+        verify(repository, times(1)).findByPkCurrencyPairOrderByPkDateDesc(USDRUB); // not invalidated before commit
+
+        synchronizations.forEach(s -> s.afterCompletion(STATUS_COMMITTED));
+        clearSynchronization();
+        service.getExchangeRateToRub("USD");
+
+        verify(repository, times(2)).findByPkCurrencyPairOrderByPkDateDesc(USDRUB);
+    }
+
+    @Test
+    void cacheIsNotInvalidatedAfterRollback() {
+        initSynchronization();
+        service.invalidateCache();
+        List<TransactionSynchronization> synchronizations = getSynchronizations();
+
+        synchronizations.forEach(s -> s.afterCompletion(STATUS_ROLLED_BACK));
+        clearSynchronization();
+        service.getExchangeRateToRub("USD");
+
+        verify(repository, times(1)).findByPkCurrencyPairOrderByPkDateDesc(USDRUB);
+    }
+
+    @Test
+    void nextTransactionInvalidatesCacheAgain() {
+        for (int i = 0; i < 2; i++) {
+            initSynchronization();
+            service.invalidateCache();
+            List<TransactionSynchronization> synchronizations = getSynchronizations();
+            assertEquals(synchronizations.size(), 1);
+            synchronizations.forEach(s -> s.afterCompletion(STATUS_COMMITTED));
+            clearSynchronization();
+            service.getExchangeRateToRub("USD");
+        }
+
+        verify(repository, times(3)).findByPkCurrencyPairOrderByPkDateDesc(USDRUB);
+    }
+}
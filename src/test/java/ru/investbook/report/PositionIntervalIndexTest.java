@@ -0,0 +1,134 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.report;
+
+import org.junit.jupiter.api.Test;
+import org.spacious_team.broker.pojo.SecurityEventCashFlow;
+import org.spacious_team.broker.pojo.Transaction;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static ru.investbook.report.FifoPositionsTestFixture.START;
+import static ru.investbook.report.FifoPositionsTestFixture.randomLongTransactions;
+import static ru.investbook.report.FifoPositionsTestFixture.randomTransactions;
+import static ru.investbook.report.FifoPositionsTestFixture.redemption;
+import static ru.investbook.report.FifoPositionsTestFixture.transaction;
+
+class PositionIntervalIndexTest {
+    @Test
+    void equalsToPositionFilterOnRandomIntervals() {
+        for (int seed = 0; seed < 500; seed++) {
+            Random random = new Random(seed);
+            Deque<Transaction> transactions = randomTransactions(random, random.nextInt(1, 50));
+            FifoPositions positions = new FifoPositions(transactions, new LinkedList<>());
+            assertIndexEqualsToFilter(positions, "seed " + seed);
+        }
+    }
+
+    @Test
+    void equalsToPositionFilterIfRedemptionIsAppended() {
+        for (int seed = 0; seed < 500; seed++) {
+            Random random = new Random(seed);
+            Deque<Transaction> transactions = randomLongTransactions(random, random.nextInt(1, 50));
+            int count = transactions.stream().mapToInt(Transaction::getCount).sum();
+            Instant redemptionInstant = transactions.getLast().getTimestamp().plusSeconds(random.nextInt(2) * 3600L);
+            Deque<SecurityEventCashFlow> redemptions = new LinkedList<>(List.of(redemption(redemptionInstant, count)));
+
+            FifoPositions positions = new FifoPositions(transactions, redemptions);
+            assertIndexEqualsToFilter(positions, "seed " + seed);
+
+            FifoPositions appended = new FifoPositions(transactions, new LinkedList<>())
+                    .append(redemptions.getFirst())
+                    .orElseThrow();
+            assertIndexEqualsToFilter(appended, "appended, seed " + seed);
+        }
+    }
+
+    @Test
+    void positionIsNotOpenedAtOpenAndCloseInstants() {
+        Instant instant = START.plusSeconds(3600);
+        Deque<Transaction> transactions = new LinkedList<>(List.of(
+                transaction(1, START, 10),
+                transaction(2, instant, 5),
+                transaction(3, instant, -10)));
+        FifoPositions positions = new FifoPositions(transactions, new LinkedList<>());
+        PositionIntervalIndex index = new PositionIntervalIndex(positions);
+
+        assertTrue(index.getPositionsOpenedAt(START).isEmpty());
+        assertEquals(index.getPositionsOpenedAt(START.plusNanos(1)).size(), 1);
+        assertTrue(index.getPositionsOpenedAt(instant).isEmpty());
+        assertEquals(index.getPositionsOpenedAt(instant.plusNanos(1)).size(), 1); // still opened 5
+        assertIndexEqualsToFilter(positions, "equal instants");
+    }
+
+    @Test
+    void emptyPositions() {
+        FifoPositions positions = new FifoPositions(new LinkedList<>(), new LinkedList<>());
+        PositionIntervalIndex index = new PositionIntervalIndex(positions);
+
+        assertTrue(index.getPositionsOpenedAt(START).isEmpty());
+    }
+
+    private static void assertIndexEqualsToFilter(FifoPositions positions, String message) {
+        PositionIntervalIndex index = new PositionIntervalIndex(positions);
+        for (Instant instant : getTestInstants(positions)) {
+            Collection<Position> actual = index.getPositionsOpenedAt(instant);
+            List<Position> expected = Stream.concat(
+                            positions.getClosedPositions().stream(),
+                            positions.getOpenedPositions().stream())
+                    .filter(position -> position.wasOpenedAtTheInstant(instant))
+                    .map(Position.class::cast)
+                    .toList();
+            assertEquals(actual.size(), expected.size(), message + ", instant " + instant);
+            expected.forEach(position -> assertTrue(actual.stream().anyMatch(p -> p == position),
+                    message + ", instant " + instant + ", position " + position));
+            assertOrderedByOpenInstant(actual, message);
+        }
+    }
+
+    private static Collection<Instant> getTestInstants(FifoPositions positions) {
+        Collection<Instant> instants = new ArrayList<>();
+        instants.add(START.minusSeconds(1));
+        for (PositionHistory history : positions.getPositionHistories()) {
+            instants.add(history.getInstant().minusNanos(1));
+            instants.add(history.getInstant());
+            instants.add(history.getInstant().plusNanos(1));
+        }
+        return instants;
+    }
+
+    private static void assertOrderedByOpenInstant(Collection<Position> positions, String message) {
+        Instant previous = Instant.MIN;
+        for (Position position : positions) {
+            Instant openInstant = ((OpenedPosition) position).getOpenTransaction().getTimestamp();
+            assertTrue(!openInstant.isBefore(previous), message);
+            previous = openInstant;
+        }
+    }
+}
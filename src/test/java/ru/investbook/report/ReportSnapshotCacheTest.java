@@ -0,0 +1,193 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.report;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.investbook.InvestbookProperties;
+import ru.investbook.repository.DataVersion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+class ReportSnapshotCacheTest {
+    private static final String FORMAT = "xlsx";
+    private final DataVersion dataVersion = new DataVersion();
+    private final AtomicInteger builds = new AtomicInteger();
+    @TempDir
+    Path cachePath;
+
+    @Test
+    void reportIsCached() throws IOException {
+        ReportSnapshotCache cache = createCache(DataSize.ofMegabytes(1));
+        ViewFilter filter = filter("1");
+
+        assertEquals(write(cache, filter, "report"), "report");
+        assertEquals(write(cache, filter, "other"), "report");
+        assertEquals(builds.get(), 1);
+        assertEquals(getCachedFiles().size(), 1);
+    }
+
+    @Test
+    void dataVersionIncrementInvalidatesReport() throws IOException {
+        ReportSnapshotCache cache = createCache(DataSize.ofMegabytes(1));
+        ViewFilter filter = filter("1");
+        write(cache, filter, "report");
+
+        dataVersion.increment();
+
+        assertEquals(write(cache, filter, "updated report"), "updated report");
+        assertEquals(write(cache, filter, "other"), "updated report");
+        assertEquals(builds.get(), 2);
+    }
+
+    @Test
+    void reportIsNotCachedIfDataIsChangedWhileBuilding() throws IOException {
+        ReportSnapshotCache cache = createCache(DataSize.ofMegabytes(1));
+        ViewFilter filter = filter("1");
+
+        cache.writeTo(new ByteArrayOutputStream(), FORMAT, filter, out -> {
+            out.write(1);
+            dataVersion.increment();
+        });
+
+        assertTrue(getCachedFiles().isEmpty());
+        assertEquals(write(cache, filter, "report"), "report");
+        assertEquals(builds.get(), 1);
+    }
+
+    @Test
+    void leastRecentlyUsedReportIsEvicted() throws IOException {
+        ReportSnapshotCache cache = createCache(DataSize.ofBytes(25));
+        ViewFilter filter1 = filter("1");
+        ViewFilter filter2 = filter("2");
+        ViewFilter filter3 = filter("3");
+        write(cache, filter1, "report 1..."); // 11 bytes
+        write(cache, filter2, "report 2...");
+        write(cache, filter1, "not used"); // report 1 is used recently
+
+        write(cache, filter3, "report 3...");
+
+        assertEquals(builds.get(), 3);
+        assertEquals(getCachedFiles().size(), 2);
+        assertEquals(write(cache, filter1, "not used"), "report 1...");
+        assertEquals(write(cache, filter3, "not used"), "report 3...");
+        assertEquals(write(cache, filter2, "report 2 rebuilt"), "report 2 rebuilt");
+        assertEquals(builds.get(), 4);
+    }
+
+    @Test
+    void tooLargeReportIsNotCached() throws IOException {
+        ReportSnapshotCache cache = createCache(DataSize.ofBytes(5));
+
+        write(cache, filter("1"), "large report");
+
+        assertTrue(getCachedFiles().isEmpty());
+    }
+
+    @Test
+    void partiallyWrittenReportIsRemoved() throws IOException {
+        ReportSnapshotCache cache = createCache(DataSize.ofMegabytes(1));
+        ViewFilter filter = filter("1");
+
+        assertThrows(IllegalStateException.class, () -> cache.writeTo(new ByteArrayOutputStream(), FORMAT, filter, out -> {
+            out.write("partial".getBytes());
+            throw new IllegalStateException("Ошибка построения отчета");
+        }));
+
+        assertTrue(getCachedFiles().isEmpty());
+        assertEquals(write(cache, filter, "report"), "report");
+        assertEquals(builds.get(), 1);
+    }
+
+    @Test
+    void previousRunReportsAreRemovedOnStart() throws IOException {
+        ReportSnapshotCache cache = createCache(DataSize.ofMegabytes(1));
+        write(cache, filter("1"), "report");
+        Path userFile = Files.writeString(cachePath.resolve("readme.txt"), "not a cached report");
+
+        createCache(DataSize.ofMegabytes(1));
+
+        assertEquals(getCachedFiles(), List.of(userFile));
+    }
+
+    @Test
+    void disabledCacheDoesNotCreateFiles() throws IOException {
+        InvestbookProperties properties = new InvestbookProperties();
+        properties.setReportCache(false);
+        properties.setReportCachePath(cachePath);
+        ReportSnapshotCache cache = new ReportSnapshotCache(dataVersion, properties);
+
+        assertEquals(write(cache, filter("1"), "report"), "report");
+        assertEquals(write(cache, filter("1"), "report"), "report");
+        assertEquals(builds.get(), 2);
+        assertTrue(getCachedFiles().isEmpty());
+    }
+
+    @Test
+    void defaultCachePathIsInDataPath() {
+        InvestbookProperties properties = new InvestbookProperties();
+        properties.setDataPath(cachePath);
+
+        assertEquals(properties.getReportCachePath(), cachePath.resolve("report-cache"));
+    }
+
+    private ReportSnapshotCache createCache(DataSize maxSize) {
+        InvestbookProperties properties = new InvestbookProperties();
+        properties.setReportCachePath(cachePath);
+        properties.setReportCacheMaxSize(maxSize);
+        return new ReportSnapshotCache(dataVersion, properties);
+    }
+
+    private String write(ReportSnapshotCache cache, ViewFilter filter, String report) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.writeTo(out, FORMAT, filter, reportOut -> {
+            builds.incrementAndGet();
+            reportOut.write(report.getBytes());
+        });
+        return out.toString();
+    }
+
+    private List<Path> getCachedFiles() throws IOException {
+        try (Stream<Path> files = Files.list(cachePath)) {
+            return files.toList();
+        }
+    }
+
+    private static ViewFilter filter(String portfolio) {
+        return ViewFilter.builder()
+                .toDate(Instant.parse("2024-01-01T00:00:00Z"))
+                .portfolios(Set.of(portfolio))
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ru.investbook.report;
+
+import org.junit.jupiter.api.Test;
+import org.spacious_team.broker.pojo.CashFlowType;
+import org.spacious_team.broker.pojo.Transaction;
+import org.spacious_team.broker.pojo.TransactionCashFlow;
+import ru.investbook.converter.TransactionCashFlowConverter;
+import ru.investbook.entity.TransactionCashFlowEntity;
+import ru.investbook.repository.DataVersion;
+import ru.investbook.repository.TransactionCashFlowRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static ru.investbook.report.FifoPositionsTestFixture.START;
+import static ru.investbook.report.FifoPositionsTestFixture.transaction;
+
+class TransactionCashFlowMapFactoryTest {
+    private final TransactionCashFlowRepository repository = mock(TransactionCashFlowRepository.class);
+    private final TransactionCashFlowConverter converter = mock(TransactionCashFlowConverter.class);
+    private final DataVersion dataVersion = new DataVersion();
+    private final TransactionCashFlowMapFactory factory = new TransactionCashFlowMapFactory(repository, converter, dataVersion);
+
+    @Test
+    void cashFlowsOfPositionTransactionsAreLoaded() {
+        TransactionCashFlowEntity entity = new TransactionCashFlowEntity();
+        TransactionCashFlow cash = TransactionCashFlow.builder()
+                .transactionId(1)
+                .eventType(CashFlowType.PRICE)
+                .value(BigDecimal.valueOf(-100))
+                .currency("RUB")
+                .build();
+        when(repository.findByTransactionIdIn(List.of(1, 2))).thenReturn(List.of(entity));
+        when(converter.fromEntity(entity)).thenReturn(cash);
+
+        TransactionCashFlowMap cashFlows = factory.get(positions(1, 2));
+
+        assertEquals(cashFlows.get(1, CashFlowType.PRICE).orElseThrow(), cash);
+        assertTrue(cashFlows.isDepositOrWithdrawal(2));
+    }
+
+    @Test
+    void cashFlowsAreSharedForSamePositions() {
+        FifoPositions positions = positions(1, 2);
+        when(repository.findByTransactionIdIn(any())).thenReturn(List.of());
+
+        TransactionCashFlowMap cashFlows = factory.get(positions);
+
+        assertSame(factory.get(positions), cashFlows);
+        verify(repository, times(1)).findByTransactionIdIn(any());
+    }
+
+    @Test
+    void cashFlowsAreReloadedAfterDataModification() {
+        FifoPositions positions = positions(1, 2);
+        when(repository.findByTransactionIdIn(any())).thenReturn(List.of());
+        factory.get(positions);
+
+        dataVersion.increment();
+        factory.get(positions);
+        factory.get(positions);
+
+        verify(repository, times(2)).findByTransactionIdIn(any());
+    }
+
+    private static FifoPositions positions(int... transactionIds) {
+        LinkedList<Transaction> transactions = new LinkedList<>();
+        for (int id : transactionIds) {
+            transactions.add(transaction(id, START.plusSeconds(id), 1));
+        }
+        return new FifoPositions(transactions, new ArrayDeque<>(0));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+class ScrollPositionHelperTest {
+
+    @Test
+    void forwardRoundTrip() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("portfolio", "123-abc");
+        keys.put("timestamp", Instant.parse("2024-05-17T10:15:30.123456Z"));
+        keys.put("security.id", 42);
+        keys.put("id", 100_000_000_000L);
+        keys.put("date", LocalDate.parse("2024-05-17"));
+        keys.put("quote", new BigDecimal("123.4500"));
+
+        KeysetScrollPosition position = ScrollPositionHelper.fromToken(
+                ScrollPositionHelper.toToken(ScrollPosition.forward(keys)));
+
+        assertTrue(position.scrollsForward());
+        assertEquals(position.getKeys(), keys);
+        assertEquals(position.getKeys().keySet().stream().toList(), keys.keySet().stream().toList()); // order is kept
+        assertEquals(((BigDecimal) position.getKeys().get("quote")).scale(), 4);
+    }
+
+    @Test
+    void backwardRoundTrip() {
+        Map<String, Object> keys = Map.of("id", 1);
+
+        KeysetScrollPosition position = ScrollPositionHelper.fromToken(
+                ScrollPositionHelper.toToken(ScrollPosition.backward(keys)));
+
+        assertTrue(position.scrollsBackward());
+        assertEquals(position.getKeys(), keys);
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = ScrollPositionHelper.toToken(ScrollPosition.forward(Map.of("name", "?&/+= ~~~ñ")));
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void emptyTokenIsInitialPosition() {
+        assertTrue(ScrollPositionHelper.fromToken(null).isInitial());
+        assertTrue(ScrollPositionHelper.fromToken("").isInitial());
+        assertTrue(ScrollPositionHelper.fromToken(" ").isInitial());
+        assertTrue(ScrollPositionHelper.fromToken(null).scrollsForward());
+    }
+
+    @Test
+    void unsupportedKeyTypeIsNotConverted() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ScrollPositionHelper.toToken(ScrollPosition.forward(Map.of("rate", 1.5))));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "not a base64 token!",
+            "bm90IGEganNvbg", // "not a json"
+            "W10", // []
+    })
+    void malformedTokenIsRejected(String token) {
+        assertThrows(IllegalArgumentException.class, () -> ScrollPositionHelper.fromToken(token));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "not a base64 token!",
+            "W10", // []
+    })
+    void malformedTokenIsInitialPositionForWebForms(String token) {
+        KeysetScrollPosition position = ScrollPositionHelper.fromTokenOrInitial(token);
+
+        assertTrue(position.isInitial());
+        assertTrue(position.scrollsForward());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"k\":{\"id\":[\"i\",\"1\"]}}", // no direction
+            "{\"d\":\"f\"}", // no keys
+            "{\"d\":\"f\",\"k\":{\"id\":[\"x\",\"1\"]}}", // unknown key type
+            "{\"d\":\"f\",\"k\":{\"id\":[\"i\",\"one\"]}}", // value doesn't match type
+            "{\"d\":\"f\",\"k\":{\"id\":[\"i\"]}}", // no value
+            "{\"d\":\"f\",\"k\":{\"timestamp\":[\"t\",\"2024-13-01\"]}}",
+            "{\"d\":\"f\",\"k\":{\"id\":1}}", // untyped value
+    })
+    void tamperedTokenIsRejected(String json) {
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(UTF_8));
+
+        assertThrows(IllegalArgumentException.class, () -> ScrollPositionHelper.fromToken(token));
+    }
+
+    @Test
+    void tamperedValueOfKnownTypeIsAccepted() {
+        String json = "{\"d\":\"b\",\"k\":{\"id\":[\"i\",\"7\"]}}";
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(UTF_8));
+
+        KeysetScrollPosition position = ScrollPositionHelper.fromToken(token);
+
+        // token is not signed, it is only a query position, any well-formed position is allowed
+        assertFalse(position.scrollsForward());
+        assertEquals(position.getKeys(), Map.of("id", 7));
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.spacious_team.broker.pojo.SecurityType;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.investbook.entity.SecurityEntity;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+class SecurityIdentityIndexTest {
+    private static final SecurityEntity SBER = security(1, "RU0009029540", "SBER", "Сбербанк");
+    private static final SecurityEntity GAZP = security(2, "RU0007661625", "GAZP", "Газпром");
+
+    @Mock
+    EntityManagerFactory entityManagerFactory;
+    @Mock
+    SecurityRepository securityRepository;
+    SecurityIdentityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(securityRepository.findAll()).thenReturn(List.of(SBER, GAZP));
+        index = new SecurityIdentityIndex(entityManagerFactory, securityRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void indexHitIsNotSearchedInDb() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(index.findByIsin("RU0009029540"), Optional.of(1));
+            assertEquals(index.findByTicker("GAZP"), Optional.of(2));
+            assertEquals(index.findByName("Сбербанк"), Optional.of(1));
+        }
+        verify(securityRepository, times(1)).findAll();
+        verify(securityRepository, never()).findByIsin(anyString());
+        verify(securityRepository, never()).findByTicker(anyString());
+        verify(securityRepository, never()).findByName(anyString());
+    }
+
+    @Test
+    void indexMissIsSearchedInDbOnce() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(index.findByIsin("RU000UNKNOWN"), Optional.empty());
+            assertEquals(index.findByTicker("UNKN"), Optional.empty());
+            assertEquals(index.findByName("Неизвестная"), Optional.empty());
+        }
+        verify(securityRepository, times(1)).findByIsin("RU000UNKNOWN");
+        verify(securityRepository, times(1)).findByTicker("UNKN");
+        verify(securityRepository, times(1)).findByName("Неизвестная");
+    }
+
+    @Test
+    void nullKeyIsNotSearched() {
+        assertEquals(index.findByIsin(null), Optional.empty());
+        verify(securityRepository, never()).findAll();
+        verify(securityRepository, never()).findByIsin(null);
+    }
+
+    @Test
+    void indexMissFoundInDbIsIndexed() {
+        SecurityEntity lkoh = security(3, "RU0009024277", "LKOH", "Лукойл");
+        when(securityRepository.findByIsin("RU0009024277")).thenReturn(Optional.of(lkoh));
+
+        assertEquals(index.findByIsin("RU0009024277"), Optional.of(3));
+        assertEquals(index.findByIsin("RU0009024277"), Optional.of(3));
+        assertEquals(index.findByTicker("LKOH"), Optional.of(3));
+        assertEquals(index.findByName("Лукойл"), Optional.of(3));
+        verify(securityRepository, times(1)).findByIsin("RU0009024277");
+        verify(securityRepository, never()).findByTicker(anyString());
+        verify(securityRepository, never()).findByName(anyString());
+    }
+
+    @Test
+    void addedSecurityIsNotRememberedAsAbsent() {
+        SecurityEntity lkoh = security(3, "RU0009024277", "LKOH", "Лукойл");
+        assertEquals(index.findByIsin("RU0009024277"), Optional.empty());
+        assertEquals(index.findByTicker("LKOH"), Optional.empty());
+
+        index.add(lkoh);
+
+        assertEquals(index.findByIsin("RU0009024277"), Optional.of(3));
+        assertEquals(index.findByTicker("LKOH"), Optional.of(3));
+        assertEquals(index.findByName("Лукойл"), Optional.of(3));
+        verify(securityRepository, times(1)).findByIsin("RU0009024277");
+        verify(securityRepository, times(1)).findByTicker("LKOH");
+        verify(securityRepository, never()).findByName(anyString());
+    }
+
+    @Test
+    void securityAddedInTransactionIsSearchedInDb() {
+        SecurityEntity lkoh = security(3, "RU0009024277", "LKOH", "Лукойл");
+        assertEquals(index.findByIsin("RU0009024277"), Optional.empty());
+        TransactionSynchronizationManager.initSynchronization();
+        when(securityRepository.findByIsin("RU0009024277")).thenReturn(Optional.of(lkoh));
+
+        index.add(lkoh); // not committed yet
+
+        assertEquals(index.findByIsin("RU0009024277"), Optional.of(3));
+        verify(securityRepository, times(2)).findByIsin("RU0009024277");
+    }
+
+    @Test
+    void updatedSecurityIsReindexed() {
+        assertEquals(index.findByIsin("RU0009029540"), Optional.of(1));
+        SecurityEntity updated = security(1, "RU0009029540", "SBERP", "Сбербанк-п");
+        PostUpdateEvent event = mock(PostUpdateEvent.class);
+        when(event.getEntity()).thenReturn(updated);
+
+        index.onPostUpdate(event);
+
+        assertEquals(index.findByIsin("RU0009029540"), Optional.of(1));
+        assertEquals(index.findByTicker("SBERP"), Optional.of(1));
+        assertEquals(index.findByTicker("SBER"), Optional.empty());
+        assertEquals(index.findByName("Сбербанк"), Optional.empty());
+        assertEquals(index.findByTicker("GAZP"), Optional.of(2));
+        verify(securityRepository, times(1)).findAll();
+        verify(securityRepository, times(1)).findByTicker("SBER");
+        verify(securityRepository, times(1)).findByName("Сбербанк");
+        verify(securityRepository, never()).findByTicker("SBERP");
+    }
+
+    @Test
+    void deletedSecurityIsRemoved() {
+        assertEquals(index.findByIsin("RU0009029540"), Optional.of(1));
+        PostDeleteEvent event = mock(PostDeleteEvent.class);
+        when(event.getEntity()).thenReturn(SBER);
+
+        index.onPostDelete(event);
+
+        assertEquals(index.findByIsin("RU0009029540"), Optional.empty());
+        assertEquals(index.findByIsin("RU0007661625"), Optional.of(2));
+        verify(securityRepository, times(1)).findAll();
+        verify(securityRepository, times(1)).findByIsin("RU0009029540");
+    }
+
+    @Test
+    void invalidatedIndexIsLoadedAgain() {
+        assertEquals(index.findByIsin("RU0009029540"), Optional.of(1));
+        assertEquals(index.findByIsin("RU000UNKNOWN"), Optional.empty());
+
+        index.invalidate();
+
+        assertEquals(index.findByIsin("RU0009029540"), Optional.of(1));
+        assertEquals(index.findByIsin("RU000UNKNOWN"), Optional.empty());
+        verify(securityRepository, times(2)).findAll();
+        verify(securityRepository, times(2)).findByIsin("RU000UNKNOWN");
+    }
+
+    private static SecurityEntity security(int id, String isin, String ticker, String name) {
+        SecurityEntity security = new SecurityEntity();
+        security.setId(id);
+        security.setType(SecurityType.STOCK);
+        security.setIsin(isin);
+        security.setTicker(ticker);
+        security.setName(name);
+        return security;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.spacious_team.broker.pojo.SecurityType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.investbook.InvestbookProperties;
+import ru.investbook.converter.SecurityQuoteConverter;
+import ru.investbook.entity.PortfolioValuationEntity;
+import ru.investbook.entity.SecurityEntity;
+import ru.investbook.entity.SecurityQuoteEntity;
+import ru.investbook.entity.TransactionEntity;
+import ru.investbook.report.ForeignExchangeRateService;
+import ru.investbook.repository.DataVersion;
+import ru.investbook.repository.PortfolioCashRepository;
+import ru.investbook.repository.PortfolioValuationRepository;
+import ru.investbook.repository.SecurityEventCashFlowRepository;
+import ru.investbook.repository.SecurityQuoteRepository;
+import ru.investbook.repository.SecurityRepository;
+import ru.investbook.repository.TransactionCashFlowRepository;
+import ru.investbook.repository.TransactionRepository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PortfolioValuationServiceTest {
+    private static final String PORTFOLIO = "1";
+    private final ZoneId zoneId = ZoneId.systemDefault();
+    private final LocalDate today = LocalDate.now(zoneId);
+    private final SecurityEntity security = new SecurityEntity();
+
+    @Mock
+    PortfolioValuationRepository portfolioValuationRepository;
+    @Mock
+    TransactionRepository transactionRepository;
+    @Mock
+    TransactionCashFlowRepository transactionCashFlowRepository;
+    @Mock
+    SecurityEventCashFlowRepository securityEventCashFlowRepository;
+    @Mock
+    SecurityQuoteRepository securityQuoteRepository;
+    @Mock
+    SecurityRepository securityRepository;
+    @Mock
+    PortfolioCashRepository portfolioCashRepository;
+    @Mock
+    ForeignExchangeRateService foreignExchangeRateService;
+    @Mock
+    PlatformTransactionManager transactionManager;
+    // DB state, visible to service
+    final List<PortfolioValuationEntity> valuations = new ArrayList<>();
+    final List<TransactionEntity> transactions = new ArrayList<>();
+    final List<SecurityQuoteEntity> quotes = new ArrayList<>();
+    final InvestbookProperties properties = new InvestbookProperties();
+    final DataVersion dataVersion = new DataVersion();
+    PortfolioValuationService service;
+
+    @BeforeEach
+    void setUp() {
+        security.setId(1);
+        security.setType(SecurityType.STOCK);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(portfolioValuationRepository.findFirstByPortfolioOrderByDateDesc(PORTFOLIO))
+                .thenAnswer(_ -> valuations.stream().max(Comparator.comparing(PortfolioValuationEntity::getDate)));
+        when(portfolioValuationRepository.saveAll(anyCollection())).thenAnswer(invocation -> {
+            valuations.addAll(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        doAnswer(invocation -> valuations.removeIf(v -> !v.getDate().isBefore(invocation.getArgument(1))))
+                .when(portfolioValuationRepository).deleteByPortfolioAndDateGreaterThanEqual(eq(PORTFOLIO), any());
+        doAnswer(_ -> {
+            valuations.clear();
+            return null;
+        }).when(portfolioValuationRepository).deleteByPortfolio(PORTFOLIO);
+        when(transactionRepository.findByPortfolioAndSecurityTypeInAndTimestampLessThanOrderByTimestampAsc(
+                eq(PORTFOLIO), anyCollection(), any()))
+                .thenAnswer(invocation -> transactions.stream()
+                        .filter(t -> t.getTimestamp().isBefore(invocation.getArgument(2)))
+                        .sorted(Comparator.comparing(TransactionEntity::getTimestamp))
+                        .toList());
+        when(securityQuoteRepository.findBySecurityIdInAndTimestampBetweenOrderByTimestampAsc(anyCollection(), any(), any()))
+                .thenAnswer(invocation -> quotes.stream()
+                        .filter(q -> !q.getTimestamp().isBefore(invocation.getArgument(1)))
+                        .filter(q -> !q.getTimestamp().isAfter(invocation.getArgument(2)))
+                        .toList());
+        when(securityQuoteRepository.findLastBySecurityIdInAndTimestampLessThan(anyCollection(), any()))
+                .thenAnswer(invocation -> quotes.stream()
+                        .filter(q -> q.getTimestamp().isBefore(invocation.getArgument(1)))
+                        .max(Comparator.comparing(SecurityQuoteEntity::getTimestamp))
+                        .stream()
+                        .toList());
+        createService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private void createService() {
+        service = new PortfolioValuationService(portfolioValuationRepository, transactionRepository,
+                transactionCashFlowRepository, securityEventCashFlowRepository, securityQuoteRepository,
+                new SecurityQuoteConverter(securityRepository), portfolioCashRepository, foreignExchangeRateService,
+                dataVersion, new TransactionTemplate(transactionManager), properties);
+        service.init();
+    }
+
+    @Test
+    void fullComputationFromFirstEvent() {
+        addTransaction(today.minusDays(5), 10);
+        addQuote(today.minusDays(5), 100);
+
+        Optional<PortfolioValuationEntity> last = service.getLastValuation(PORTFOLIO);
+
+        assertTrue(last.isPresent());
+        assertEquals(last.get().getDate(), today);
+        assertEquals(last.get().getTotal().compareTo(BigDecimal.valueOf(1000)), 0);
+        assertEquals(valuations.size(), 6);
+        verify(portfolioValuationRepository).deleteByPortfolio(PORTFOLIO);
+    }
+
+    @Test
+    void incrementalComputationFromLastDay() {
+        properties.setPortfolioValuationRebuildOnStart(false);
+        createService();
+        addTransaction(today.minusDays(5), 10);
+        addQuote(today.minusDays(5), 100);
+        service.getLastValuation(PORTFOLIO);
+
+        dataVersion.increment(); // not related to portfolio valuation data modification
+        service.getLastValuation(PORTFOLIO);
+
+        verify(portfolioValuationRepository).deleteByPortfolioAndDateGreaterThanEqual(PORTFOLIO, today);
+        assertEquals(valuations.size(), 6);
+    }
+
+    @Test
+    void notModifiedDataIsNotRecomputed() {
+        addTransaction(today.minusDays(5), 10);
+        addQuote(today.minusDays(5), 100);
+        service.getLastValuation(PORTFOLIO);
+
+        service.getLastValuation(PORTFOLIO);
+
+        verify(portfolioValuationRepository).saveAll(anyCollection());
+    }
+
+    @Test
+    void backDatedInsertRecomputedAfterCommit() {
+        addTransaction(today.minusDays(5), 10);
+        addQuote(today.minusDays(5), 100);
+        service.getLastValuation(PORTFOLIO);
+
+        // back-dated transaction is inserted, valuation is requested concurrently before insert commit
+        TransactionSynchronizationManager.initSynchronization();
+        Instant backDate = today.minusDays(3).atStartOfDay(zoneId).toInstant();
+        service.invalidate(PORTFOLIO, backDate);
+        service.getLastValuation(PORTFOLIO);
+        assertEquals(getTotal(today.minusDays(3)), 1000);
+        // commit
+        addTransaction(today.minusDays(3), 5);
+        dataVersion.increment();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        service.getLastValuation(PORTFOLIO);
+
+        assertEquals(getTotal(today.minusDays(4)), 1000);
+        assertEquals(getTotal(today.minusDays(3)), 1500);
+        assertEquals(getTotal(today), 1500);
+        assertEquals(valuations.size(), 6);
+    }
+
+    @Test
+    void backDatedQuoteRecomputesAllPortfolios() {
+        properties.setPortfolioValuationRebuildOnStart(false);
+        createService();
+        addTransaction(today.minusDays(5), 10);
+        addQuote(today.minusDays(5), 100);
+        service.getLastValuation(PORTFOLIO);
+
+        addQuote(today.minusDays(2), 110);
+        service.invalidate((String) null, today.minusDays(2));
+        service.getLastValuation(PORTFOLIO);
+
+        verify(portfolioValuationRepository).deleteByPortfolioAndDateGreaterThanEqual(PORTFOLIO, today.minusDays(2));
+        assertEquals(getTotal(today.minusDays(3)), 1000);
+        assertEquals(getTotal(today.minusDays(2)), 1100);
+        assertEquals(getTotal(today), 1100);
+    }
+
+    @Test
+    void rebuildAllAfterDataModificationBypassingApplication() {
+        properties.setPortfolioValuationRebuildOnStart(false);
+        createService();
+        addTransaction(today.minusDays(5), 10);
+        addQuote(today.minusDays(5), 100);
+        service.getLastValuation(PORTFOLIO);
+        service.getLastValuation(PORTFOLIO);
+        verify(portfolioValuationRepository, times(1)).deleteByPortfolio(PORTFOLIO); // first computation only
+
+        transactions.clear(); // modified by SQL script
+        transactions.add(createTransaction(today.minusDays(2), 1));
+        service.rebuildAll();
+        service.getLastValuation(PORTFOLIO);
+
+        verify(portfolioValuationRepository, times(2)).deleteByPortfolio(PORTFOLIO);
+        assertEquals(valuations.size(), 3);
+        assertEquals(getTotal(today), 100);
+    }
+
+    private long getTotal(LocalDate date) {
+        return valuations.stream()
+                .filter(v -> v.getDate().equals(date))
+                .findAny()
+                .orElseThrow()
+                .getTotal()
+                .longValue();
+    }
+
+    private void addTransaction(LocalDate date, int count) {
+        transactions.add(createTransaction(date, count));
+    }
+
+    private TransactionEntity createTransaction(LocalDate date, int count) {
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setId(transactions.size() + 1);
+        transaction.setPortfolio(PORTFOLIO);
+        transaction.setSecurity(security);
+        transaction.setTimestamp(date.atTime(12, 0).atZone(zoneId).toInstant());
+        transaction.setCount(count);
+        return transaction;
+    }
+
+    private void addQuote(LocalDate date, int price) {
+        SecurityQuoteEntity quote = new SecurityQuoteEntity();
+        quote.setId(quotes.size() + 1);
+        quote.setSecurity(security);
+        quote.setTimestamp(date.atTime(18, 0).atZone(zoneId).toInstant());
+        quote.setQuote(BigDecimal.valueOf(price));
+        quote.setPrice(BigDecimal.valueOf(price));
+        quote.setAccruedInterest(BigDecimal.ZERO);
+        quote.setCurrency("RUB");
+        quotes.add(quote);
+    }
+}
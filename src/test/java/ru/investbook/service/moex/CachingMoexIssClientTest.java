@@ -0,0 +1,230 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.service.moex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.spacious_team.broker.pojo.SecurityType;
+import ru.investbook.InvestbookProperties;
+import ru.investbook.entity.MoexMarketCacheEntity;
+import ru.investbook.entity.MoexSecidCacheEntity;
+import ru.investbook.entity.MoexSecidCacheEntityPk;
+import ru.investbook.repository.MoexMarketCacheRepository;
+import ru.investbook.repository.MoexSecidCacheRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+@ExtendWith(MockitoExtension.class)
+class CachingMoexIssClientTest {
+    private static final String ISIN = "RU0009029540";
+    private static final MoexMarketDescription MARKET = new MoexMarketDescription("stock", "shares", "TQBR", "SUR");
+
+    @Mock
+    MoexIssClientImpl moexClient;
+    @Mock
+    MoexSecidCacheRepository secidCacheRepository;
+    @Mock
+    MoexMarketCacheRepository marketCacheRepository;
+    final InvestbookProperties properties = new InvestbookProperties();
+    CachingMoexIssClient client;
+
+    @BeforeEach
+    void setUp() {
+        properties.setMoexResolutionCacheTtl(Duration.ofDays(30));
+        properties.setMoexResolutionNegativeCacheTtl(Duration.ofDays(1));
+        client = new CachingMoexIssClient(moexClient, secidCacheRepository, marketCacheRepository, properties);
+    }
+
+    @Test
+    void secidIsNotRequestedBeforeExpiration() {
+        when(secidCacheRepository.findById(any()))
+                .thenReturn(Optional.of(secid("SBER", Instant.now().minus(Duration.ofDays(29)))));
+
+        assertEquals(client.getSecId(ISIN, SecurityType.STOCK), Optional.of("SBER"));
+        verifyNoInteractions(moexClient);
+        verify(secidCacheRepository, never()).save(any());
+    }
+
+    @Test
+    void expiredSecidIsRequestedAgain() {
+        when(secidCacheRepository.findById(any()))
+                .thenReturn(Optional.of(secid("OLD", Instant.now().minus(Duration.ofDays(31)))));
+        when(moexClient.getSecId(ISIN, SecurityType.STOCK)).thenReturn(Optional.of("SBER"));
+
+        assertEquals(client.getSecId(ISIN, SecurityType.STOCK), Optional.of("SBER"));
+        MoexSecidCacheEntity saved = getSavedSecid();
+        assertEquals(saved.getPk().getQuery(), ISIN);
+        assertEquals(saved.getPk().getSecurityType(), "STOCK");
+        assertEquals(saved.getSecid(), "SBER");
+        assertTrue(saved.getResolvedAt().isAfter(Instant.now().minusSeconds(60)));
+    }
+
+    @Test
+    void notFoundSecidIsSaved() {
+        when(secidCacheRepository.findById(any())).thenReturn(Optional.empty());
+        when(moexClient.getSecId(ISIN, SecurityType.STOCK)).thenReturn(Optional.empty());
+
+        assertEquals(client.getSecId(ISIN, SecurityType.STOCK), Optional.empty());
+        assertNull(getSavedSecid().getSecid());
+    }
+
+    @Test
+    void notFoundSecidIsNotRequestedBeforeNegativeCacheExpiration() {
+        when(secidCacheRepository.findById(any()))
+                .thenReturn(Optional.of(secid(null, Instant.now().minus(Duration.ofHours(23)))));
+
+        assertEquals(client.getSecId(ISIN, SecurityType.STOCK), Optional.empty());
+        verifyNoInteractions(moexClient);
+    }
+
+    @Test
+    void notFoundSecidIsRequestedAfterNegativeCacheExpiration() {
+        when(secidCacheRepository.findById(any()))
+                .thenReturn(Optional.of(secid(null, Instant.now().minus(Duration.ofHours(25)))));
+        when(moexClient.getSecId(ISIN, SecurityType.STOCK)).thenReturn(Optional.of("SBER"));
+
+        assertEquals(client.getSecId(ISIN, SecurityType.STOCK), Optional.of("SBER"));
+        assertEquals(getSavedSecid().getSecid(), "SBER");
+    }
+
+    @Test
+    void failedSecidRequestIsNotSaved() {
+        when(secidCacheRepository.findById(any())).thenReturn(Optional.empty());
+        when(moexClient.getSecId(ISIN, SecurityType.STOCK)).thenThrow(new RuntimeException());
+
+        assertThrows(RuntimeException.class, () -> client.getSecId(ISIN, SecurityType.STOCK));
+        verify(secidCacheRepository, never()).save(any());
+    }
+
+    @Test
+    void tooLongQueryIsNotSaved() {
+        String contract = "X".repeat(129);
+        when(moexClient.getSecId(contract, SecurityType.DERIVATIVE)).thenReturn(Optional.empty());
+
+        assertEquals(client.getSecId(contract, SecurityType.DERIVATIVE), Optional.empty());
+        verifyNoInteractions(secidCacheRepository);
+    }
+
+    @Test
+    void marketIsNotRequestedBeforeExpiration() {
+        when(marketCacheRepository.findById("SBER"))
+                .thenReturn(Optional.of(market(MARKET, Instant.now().minus(Duration.ofDays(29)))));
+
+        assertEquals(client.getMarket("SBER"), Optional.of(MARKET));
+        verifyNoInteractions(moexClient);
+    }
+
+    @Test
+    void expiredMarketIsRequestedAgain() {
+        MoexMarketDescription newMarket = new MoexMarketDescription("stock", "shares", "SMAL", "SUR");
+        when(marketCacheRepository.findById("SBER"))
+                .thenReturn(Optional.of(market(MARKET, Instant.now().minus(Duration.ofDays(31)))));
+        when(moexClient.getMarket("SBER")).thenReturn(Optional.of(newMarket));
+
+        assertEquals(client.getMarket("SBER"), Optional.of(newMarket));
+        MoexMarketCacheEntity saved = getSavedMarket();
+        assertEquals(saved.getSecid(), "SBER");
+        assertEquals(saved.getBoard(), "SMAL");
+        assertTrue(saved.getResolvedAt().isAfter(Instant.now().minusSeconds(60)));
+    }
+
+    @Test
+    void notFoundMarketIsNotRequestedBeforeNegativeCacheExpiration() {
+        when(marketCacheRepository.findById("SBER"))
+                .thenReturn(Optional.of(market(null, Instant.now().minus(Duration.ofHours(23)))));
+
+        assertEquals(client.getMarket("SBER"), Optional.empty());
+        verifyNoInteractions(moexClient);
+    }
+
+    @Test
+    void notFoundMarketIsRequestedAfterNegativeCacheExpiration() {
+        when(marketCacheRepository.findById("SBER"))
+                .thenReturn(Optional.of(market(null, Instant.now().minus(Duration.ofHours(25)))));
+        when(moexClient.getMarket("SBER")).thenReturn(Optional.empty());
+
+        assertEquals(client.getMarket("SBER"), Optional.empty());
+        MoexMarketCacheEntity saved = getSavedMarket();
+        assertNull(saved.getBoard());
+        assertTrue(saved.getResolvedAt().isAfter(Instant.now().minusSeconds(60)));
+    }
+
+    @Test
+    void failedMarketRequestIsNotSaved() {
+        when(marketCacheRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(moexClient.getMarket("SBER")).thenThrow(new RuntimeException());
+
+        assertThrows(RuntimeException.class, () -> client.getMarket("SBER"));
+        verify(marketCacheRepository, never()).save(any());
+    }
+
+    private MoexSecidCacheEntity getSavedSecid() {
+        ArgumentCaptor<MoexSecidCacheEntity> captor = ArgumentCaptor.forClass(MoexSecidCacheEntity.class);
+        verify(secidCacheRepository).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private MoexMarketCacheEntity getSavedMarket() {
+        ArgumentCaptor<MoexMarketCacheEntity> captor = ArgumentCaptor.forClass(MoexMarketCacheEntity.class);
+        verify(marketCacheRepository).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private static MoexSecidCacheEntity secid(String secid, Instant resolvedAt) {
+        MoexSecidCacheEntityPk pk = new MoexSecidCacheEntityPk();
+        pk.setQuery(ISIN);
+        pk.setSecurityType(String.valueOf(SecurityType.STOCK));
+        MoexSecidCacheEntity entity = new MoexSecidCacheEntity();
+        entity.setPk(pk);
+        entity.setSecid(secid);
+        entity.setResolvedAt(resolvedAt);
+        return entity;
+    }
+
+    private static MoexMarketCacheEntity market(MoexMarketDescription market, Instant resolvedAt) {
+        MoexMarketCacheEntity entity = new MoexMarketCacheEntity();
+        entity.setSecid("SBER");
+        if (market != null) {
+            entity.setEngine(market.getEngine());
+            entity.setMarket(market.getMarket());
+            entity.setBoard(market.getBoard());
+            entity.setCurrency(market.getCurrency());
+        }
+        entity.setResolvedAt(resolvedAt);
+        return entity;
+    }
+}
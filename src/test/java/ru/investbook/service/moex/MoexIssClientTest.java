@@ -28,6 +28,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.spacious_team.broker.pojo.SecurityQuote;
 import org.springframework.web.client.RestTemplate;
+import ru.investbook.InvestbookProperties;
 
 import java.util.Optional;
 
@@ -42,7 +43,7 @@ public class MoexIssClientTest {
 
     @BeforeEach
     public void setUp() {
-        moexIssClient = new MoexIssClientImpl(moexDerivativeCodeService, restTemplate);
+        moexIssClient = new MoexIssClientImpl(moexDerivativeCodeService, restTemplate, new InvestbookProperties());
     }
 
     @ParameterizedTest
@@ -0,0 +1,265 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.service.moex;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.spacious_team.broker.pojo.SecurityType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestTemplate;
+import ru.investbook.InvestbookExecutors;
+import ru.investbook.InvestbookProperties;
+import ru.investbook.converter.SecurityQuoteConverter;
+import ru.investbook.entity.SecurityEntity;
+import ru.investbook.entity.SecurityQuoteEntity;
+import ru.investbook.repository.SecurityQuoteRepository;
+import ru.investbook.repository.SecurityRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests bulk quote update against local stub MOEX ISS server
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MoexIssSecurityQuoteServiceTest {
+    private static final String SEARCH_RESPONSE = """
+            {"securities": {
+                "columns": ["secid", "shortname", "isin"],
+                "data": [
+                    ["SBER", "Сбербанк", "RU0009029540"],
+                    ["GAZP", "ГАЗПРОМ ао", "RU0007661625"],
+                    ["LKOH", "ЛУКОЙЛ", "RU0009024277"],
+                    ["UNKN", "Без котировки", "RU000UNKNOWN"],
+                    ["SU26238RMFS4", "ОФЗ 26238", "RU000A0JXQ93"]
+                ]}}
+            """;
+    private static final String BOARDS_RESPONSE = """
+            {"boards": {
+                "columns": ["is_primary", "engine", "market", "boardid", "currencyid"],
+                "data": [
+                    [0, "stock", "shares", "SMAL", "SUR"],
+                    [1, "stock", "shares", "TQBR", "SUR"]
+                ]}}
+            """;
+    private static final String BOND_BOARDS_RESPONSE = """
+            {"boards": {
+                "columns": ["is_primary", "engine", "market", "boardid", "currencyid"],
+                "data": [
+                    [1, "stock", "bonds", "TQOB", "SUR"]
+                ]}}
+            """;
+    private static final String SHARES_QUOTES_RESPONSE = """
+            {"securities": {
+                "columns": ["SECID", "PREVDATE", "PREVADMITTEDQUOTE", "PREVPRICE"],
+                "data": [
+                    ["SBER", "2024-05-17", 250.5, 251],
+                    ["GAZP", "2024-05-17", 160.1, 160],
+                    ["LKOH", "2024-05-17", 7000, 7001]
+                ]}}
+            """;
+    private static final String BONDS_QUOTES_RESPONSE = """
+            {"securities": {
+                "columns": ["SECID", "PREVDATE", "PREVADMITTEDQUOTE", "PREVPRICE", "ACCRUEDINT", "LOTSIZE", "LOTVALUE"],
+                "data": [
+                    ["SU26238RMFS4", "2024-05-17", 98.5, 98.4, 12.3, 1, 1000]
+                ]}}
+            """;
+    private static final String SHARES_PATH = "/iss/engines/stock/markets/shares/boards/TQBR/securities.json";
+    private static final String BONDS_PATH = "/iss/engines/stock/markets/bonds/boards/TQOB/securities.json";
+
+    @Mock
+    MoexDerivativeCodeService moexDerivativeCodeService;
+    @Mock
+    SecurityRepository securityRepository;
+    @Mock
+    SecurityQuoteRepository securityQuoteRepository;
+    @Mock
+    PlatformTransactionManager transactionManager;
+    final Collection<URI> requests = new ConcurrentLinkedQueue<>();
+    final InvestbookProperties properties = new InvestbookProperties();
+    HttpServer server;
+    MoexIssSecurityQuoteService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        properties.setMoexIssUrl("http://localhost:" + server.getAddress().getPort());
+
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(securityRepository.getReferenceById(anyInt())).thenAnswer(invocation -> {
+            SecurityEntity security = new SecurityEntity();
+            security.setId(invocation.getArgument(0));
+            return security;
+        });
+        MoexIssClientImpl moexClient = new MoexIssClientImpl(moexDerivativeCodeService, new RestTemplate(), properties);
+        service = new MoexIssSecurityQuoteService(moexClient, moexDerivativeCodeService,
+                new SecurityQuoteConverter(securityRepository), securityQuoteRepository,
+                new TransactionTemplate(transactionManager),
+                new InvestbookExecutors(properties, new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void updateQuotesByBoard() throws Exception {
+        service.updateQuotes(List.of(
+                security(1, "RU0009029540", SecurityType.STOCK),
+                security(2, "RU0007661625", SecurityType.STOCK),
+                security(3, "RU0009024277", SecurityType.STOCK),
+                security(4, "RU000A0JXQ93", SecurityType.BOND),
+                security(5, "RU000UNKNOWN", SecurityType.STOCK), // MOEX hasn't quote
+                security(6, "RU000ABSENT0", SecurityType.STOCK))); // MOEX hasn't security
+
+        // one request per board
+        assertEquals(getRequests(SHARES_PATH).size(), 1);
+        assertEquals(getRequests(BONDS_PATH).size(), 1);
+        assertEquals(getRequestedSecids(getRequests(SHARES_PATH).getFirst()), Set.of("SBER", "GAZP", "LKOH", "UNKN"));
+        assertEquals(getRequestedSecids(getRequests(BONDS_PATH).getFirst()), Set.of("SU26238RMFS4"));
+        // board is requested for each found secid only
+        assertEquals(getRequests("/iss/securities.json").size(), 6);
+        assertEquals(requests.stream()
+                .map(URI::getPath)
+                .filter(path -> path.startsWith("/iss/securities/"))
+                .collect(toSet()), Set.of(
+                "/iss/securities/SBER.json",
+                "/iss/securities/GAZP.json",
+                "/iss/securities/LKOH.json",
+                "/iss/securities/UNKN.json",
+                "/iss/securities/SU26238RMFS4.json"));
+
+        Map<Integer, SecurityQuoteEntity> quotes = getSavedQuotes();
+        assertEquals(quotes.keySet(), Set.of(1, 2, 3, 4));
+        assertEquals(quotes.get(1).getQuote(), BigDecimal.valueOf(250.5));
+        assertEquals(quotes.get(2).getQuote(), BigDecimal.valueOf(160.1));
+        assertEquals(quotes.get(3).getQuote(), BigDecimal.valueOf(7000.0));
+        assertEquals(quotes.get(4).getQuote(), BigDecimal.valueOf(98.5));
+        assertEquals(quotes.get(4).getAccruedInterest(), BigDecimal.valueOf(12.3));
+        assertEquals(quotes.get(4).getPrice().compareTo(BigDecimal.valueOf(985)), 0);
+        assertEquals(quotes.get(1).getCurrency(), "SUR");
+    }
+
+    @Test
+    void quotesAreNotSavedIfMoexFailed() throws Exception {
+        server.removeContext("/");
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        service.updateQuotes(List.of(security(1, "RU0009029540", SecurityType.STOCK)));
+
+        verify(securityQuoteRepository, never()).saveAll(any());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        URI uri = exchange.getRequestURI();
+        requests.add(uri);
+        String path = uri.getPath();
+        String body;
+        if (path.equals("/iss/securities.json")) {
+            body = SEARCH_RESPONSE;
+        } else if (path.equals("/iss/securities/SU26238RMFS4.json")) {
+            body = BOND_BOARDS_RESPONSE;
+        } else if (path.startsWith("/iss/securities/")) {
+            body = BOARDS_RESPONSE;
+        } else if (path.equals(SHARES_PATH)) {
+            body = SHARES_QUOTES_RESPONSE;
+        } else if (path.equals(BONDS_PATH)) {
+            body = BONDS_QUOTES_RESPONSE;
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private List<URI> getRequests(String path) {
+        return requests.stream()
+                .filter(uri -> uri.getPath().equals(path))
+                .toList();
+    }
+
+    private static Set<String> getRequestedSecids(URI uri) {
+        return Arrays.stream(uri.getQuery().split("&"))
+                .filter(param -> param.startsWith("securities="))
+                .flatMap(param -> Arrays.stream(param.substring("securities=".length()).split(",")))
+                .collect(toSet());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Integer, SecurityQuoteEntity> getSavedQuotes() {
+        ArgumentCaptor<Iterable<SecurityQuoteEntity>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(securityQuoteRepository).saveAll(captor.capture());
+        return ((Collection<SecurityQuoteEntity>) captor.getValue())
+                .stream()
+                .collect(toMap(quote -> quote.getSecurity().getId(), quote -> quote));
+    }
+
+    private static SecurityEntity security(int id, String isin, SecurityType type) {
+        SecurityEntity security = new SecurityEntity();
+        security.setId(id);
+        security.setIsin(isin);
+        security.setType(type);
+        return security;
+    }
+}
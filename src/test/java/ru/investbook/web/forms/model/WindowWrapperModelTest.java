@@ -0,0 +1,187 @@
+/*
+ * InvestBook
+ * Copyright (C) 2024  Spacious Team <spacious-team@ya.ru>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package ru.investbook.web.forms.model;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import ru.investbook.repository.ScrollPositionHelper;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+class WindowWrapperModelTest {
+
+    @Test
+    void firstPage() {
+        WindowWrapperModel<Integer> model = new WindowWrapperModel<>(window(List.of(1, 2, 3), true), null);
+
+        assertEquals(model.getContent(), List.of(1, 2, 3));
+        assertNull(model.getPrevious());
+        assertForward(model.getNext(), 3);
+    }
+
+    @Test
+    void singlePage() {
+        WindowWrapperModel<Integer> model = new WindowWrapperModel<>(window(List.of(1, 2), false), "");
+
+        assertNull(model.getPrevious());
+        assertNull(model.getNext());
+    }
+
+    @Test
+    void emptyFirstPage() {
+        WindowWrapperModel<Integer> model = new WindowWrapperModel<>(window(List.of(), false), null);
+
+        assertTrue(model.getContent().isEmpty());
+        assertNull(model.getPrevious());
+        assertNull(model.getNext());
+    }
+
+    @Test
+    void middlePageScrolledForward() {
+        String cursor = forward(3);
+        WindowWrapperModel<Integer> model = new WindowWrapperModel<>(window(List.of(4, 5, 6), true), cursor);
+
+        assertBackward(model.getPrevious(), 4);
+        assertForward(model.getNext(), 6);
+    }
+
+    @Test
+    void lastPageScrolledForward() {
+        String cursor = forward(6);
+        WindowWrapperModel<Integer> model = new WindowWrapperModel<>(window(List.of(7), false), cursor);
+
+        assertBackward(model.getPrevious(), 7);
+        assertNull(model.getNext());
+    }
+
+    @Test
+    void emptyPageScrolledForward() {
+        // rows after cursor were deleted, previous page is selected relative to cursor
+        String cursor = forward(6);
+        WindowWrapperModel<Integer> model = new WindowWrapperModel<>(window(List.of(), false), cursor);
+
+        assertBackward(model.getPrevious(), 6);
+        assertNull(model.getNext());
+    }
+
+    @Test
+    void middlePageScrolledBackward() {
+        // window content is returned by Spring Data in sort order, hasNext means more rows before window
+        String cursor = backward(7);
+        WindowWrapperModel<Integer> model = new WindowWrapperModel<>(window(List.of(4, 5, 6), true), cursor);
+
+        assertEquals(model.getContent(), List.of(4, 5, 6));
+        assertBackward(model.getPrevious(), 4);
+        assertForward(model.getNext(), 6);
+    }
+
+    @Test
+    void firstPageScrolledBackward() {
+        String cursor = backward(4);
+        WindowWrapperModel<Integer> model = new WindowWrapperModel<>(window(List.of(1, 2, 3), false), cursor);
+
+        assertNull(model.getPrevious());
+        assertForward(model.getNext(), 3);
+    }
+
+    @Test
+    void emptyPageScrolledBackward() {
+        String cursor = backward(1);
+        WindowWrapperModel<Integer> model = new WindowWrapperModel<>(window(List.of(), false), cursor);
+
+        assertNull(model.getPrevious());
+        assertNull(model.getNext());
+    }
+
+    @Test
+    void scrollForwardAndBackwardReturnsToSamePage() {
+        List<Integer> rows = List.of(1, 2, 3, 4, 5, 6, 7);
+        int size = 3;
+
+        WindowWrapperModel<Integer> page1 = select(rows, null, size);
+        WindowWrapperModel<Integer> page2 = select(rows, page1.getNext(), size);
+        WindowWrapperModel<Integer> page3 = select(rows, page2.getNext(), size);
+        WindowWrapperModel<Integer> page2Again = select(rows, page3.getPrevious(), size);
+        WindowWrapperModel<Integer> page1Again = select(rows, page2Again.getPrevious(), size);
+
+        assertEquals(page1.getContent(), List.of(1, 2, 3));
+        assertEquals(page2.getContent(), List.of(4, 5, 6));
+        assertEquals(page3.getContent(), List.of(7));
+        assertNull(page3.getNext());
+        assertEquals(page2Again.getContent(), List.of(4, 5, 6));
+        assertEquals(page1Again.getContent(), List.of(1, 2, 3));
+        assertNull(page1Again.getPrevious());
+    }
+
+    /**
+     * Selects rows as Spring Data keyset scrolling does
+     */
+    private static WindowWrapperModel<Integer> select(List<Integer> rows, String cursor, int size) {
+        KeysetScrollPosition position = ScrollPositionHelper.fromToken(cursor);
+        List<Integer> selected;
+        boolean hasNext;
+        if (position.isInitial()) {
+            selected = rows.stream().limit(size).toList();
+            hasNext = rows.size() > size;
+        } else if (position.scrollsForward()) {
+            int key = (int) position.getKeys().get("id");
+            List<Integer> after = rows.stream().filter(row -> row > key).toList();
+            selected = after.stream().limit(size).toList();
+            hasNext = after.size() > size;
+        } else {
+            int key = (int) position.getKeys().get("id");
+            List<Integer> before = rows.stream().filter(row -> row < key).toList();
+            selected = before.subList(Math.max(0, before.size() - size), before.size());
+            hasNext = before.size() > size;
+        }
+        return new WindowWrapperModel<>(window(selected, hasNext), cursor);
+    }
+
+    private static Window<Integer> window(List<Integer> items, boolean hasNext) {
+        return Window.from(items, i -> ScrollPosition.forward(Map.of("id", items.get(i))), hasNext);
+    }
+
+    private static String forward(int id) {
+        return ScrollPositionHelper.toToken(ScrollPosition.forward(Map.of("id", id)));
+    }
+
+    private static String backward(int id) {
+        return ScrollPositionHelper.toToken(ScrollPosition.backward(Map.of("id", id)));
+    }
+
+    private static void assertForward(String token, int id) {
+        KeysetScrollPosition position = ScrollPositionHelper.fromToken(token);
+        assertTrue(position.scrollsForward());
+        assertEquals(position.getKeys(), Map.of("id", id));
+    }
+
+    private static void assertBackward(String token, int id) {
+        KeysetScrollPosition position = ScrollPositionHelper.fromToken(token);
+        assertTrue(position.scrollsBackward());
+        assertEquals(position.getKeys(), Map.of("id", id));
+    }
+}